@@ -9,4 +9,9 @@ public interface JdbcEntityStats
 	public long getUpdateCount();
 
 	public long getDeleteCount();
+
+	/**
+	 * @return количество записей, объединенных с более поздними записями той же сущности и не выполненных отдельно
+	 */
+	public long getCoalescedCount();
 }
@@ -32,6 +32,11 @@ public class Polygon extends AbstractShape
 		return this;
 	}
 
+	public Point2D[] getPoints()
+	{
+		return points;
+	}
+
 	@Override
 	public Polygon setZmax(int z)
 	{
@@ -0,0 +1,11 @@
+package l2mv.commons.net.nio.impl;
+
+/**
+ * Marker for packets whose content does not depend on the receiving client.
+ * Such a packet is serialized only once, the plain bytes are kept in the packet
+ * and every following recipient just copies them before its own encryption.
+ * Packets that call getClient() while writing must never implement it.
+ */
+public interface IBroadcastPacket
+{
+}
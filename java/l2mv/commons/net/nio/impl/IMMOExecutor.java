@@ -4,4 +4,23 @@ package l2mv.commons.net.nio.impl;
 public interface IMMOExecutor<T extends MMOClient>
 {
 	public void execute(Runnable r);
-}
\ No newline at end of file
+
+	/**
+	 * Очередь исполнения, в которой должен выполняться пакет. Пакеты одного клиента выполняются строго по порядку
+	 * независимо от очереди, меняется только пул, в котором исполняется очередь клиента.
+	 * @param packet пакет
+	 * @return номер очереди
+	 */
+	public default int getLane(ReceivablePacket<T> packet)
+	{
+		return 0;
+	}
+
+	/**
+	 * Запускает очередь пакетов клиента в пуле указанной очереди исполнения.
+	 */
+	public default void execute(Runnable r, int lane)
+	{
+		execute(r);
+	}
+}
@@ -171,6 +171,7 @@ public class MMOConnection<T extends MMOClient>
 			if (_isPengingWrite.compareAndSet(false, true))
 			{
 				_pendingWriteTime = System.currentTimeMillis();
+				_selectorThread.onPendingWrite(this);
 			}
 		}
 		catch (CancelledKeyException e)
@@ -197,6 +198,21 @@ public class MMOConnection<T extends MMOClient>
 		}
 	}
 
+	/**
+	 * Removes OP_WRITE once everything was written, used only by the blocking selectors
+	 */
+	protected void clearWriteInterest()
+	{
+		try
+		{
+			_selectionKey.interestOps(_selectionKey.interestOps() & ~SelectionKey.OP_WRITE);
+		}
+		catch (CancelledKeyException e)
+		{
+			// ignore
+		}
+	}
+
 	protected void enableWriteInterest()
 	{
 		if (_isPengingWrite.compareAndSet(true, false))
@@ -334,6 +350,8 @@ public class MMOConnection<T extends MMOClient>
 			_pendingCloseTime = System.currentTimeMillis();
 		}
 
+		_selectorThread.onPendingClose(this);
+
 		disableReadInterest();
 		disableWriteInterest();
 	}
@@ -355,6 +373,8 @@ public class MMOConnection<T extends MMOClient>
 			_pendingCloseTime = System.currentTimeMillis();
 		}
 
+		_selectorThread.onPendingClose(this);
+
 		disableReadInterest();
 	}
 
@@ -370,6 +390,8 @@ public class MMOConnection<T extends MMOClient>
 			_pendingClose = true;
 			_pendingCloseTime = System.currentTimeMillis();
 		}
+
+		_selectorThread.onPendingClose(this);
 	}
 
 	protected void releaseBuffers()
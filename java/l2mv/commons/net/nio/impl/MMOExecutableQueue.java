@@ -17,6 +17,8 @@ public class MMOExecutableQueue<T extends MMOClient> implements Queue<Receivable
 	private final Queue<ReceivablePacket<T>> _queue;
 
 	private AtomicInteger _state = new AtomicInteger(NONE);
+	/** Очередь исполнения, в пуле которой сейчас запущены пакеты клиента */
+	private volatile int _lane;
 
 	public MMOExecutableQueue(IMMOExecutor<T> executor)
 	{
@@ -29,14 +31,29 @@ public class MMOExecutableQueue<T extends MMOClient> implements Queue<Receivable
 	{
 		while (_state.compareAndSet(QUEUED, RUNNING))
 		{
+			int nextLane = -1;
 			try
 			{
 				for (;;)
 				{
-					final Runnable t = poll();
-					if (t == null)
+					final Runnable t;
+					synchronized (_queue)
 					{
-						break;
+						ReceivablePacket<T> head = _queue.peek();
+						if (head == null)
+						{
+							break;
+						}
+
+						// Следующий пакет исполняется в другом пуле, передаем туда очередь, не нарушая порядка
+						int lane = _executor.getLane(head);
+						if (lane != _lane)
+						{
+							nextLane = lane;
+							break;
+						}
+
+						t = _queue.poll();
 					}
 
 					t.run();
@@ -44,11 +61,35 @@ public class MMOExecutableQueue<T extends MMOClient> implements Queue<Receivable
 			}
 			finally
 			{
-				_state.compareAndSet(RUNNING, NONE);
+				if (nextLane < 0)
+				{
+					_state.compareAndSet(RUNNING, NONE);
+				}
+			}
+
+			if (nextLane >= 0)
+			{
+				// Остаемся в состоянии QUEUED, чтобы новые пакеты не запустили очередь повторно
+				_state.set(QUEUED);
+				_lane = nextLane;
+				_executor.execute(this, nextLane);
+				return;
 			}
 		}
 	}
 
+	private void schedule()
+	{
+		ReceivablePacket<T> head;
+		synchronized (_queue)
+		{
+			head = _queue.peek();
+		}
+
+		_lane = head == null ? 0 : _executor.getLane(head);
+		_executor.execute(this, _lane);
+	}
+
 	@Override
 	public int size()
 	{
@@ -137,7 +178,7 @@ public class MMOExecutableQueue<T extends MMOClient> implements Queue<Receivable
 
 		if (_state.getAndSet(QUEUED) == NONE)
 		{
-			_executor.execute(this);
+			schedule();
 		}
 
 		return true;
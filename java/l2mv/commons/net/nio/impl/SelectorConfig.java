@@ -36,6 +36,19 @@ public class SelectorConfig
 	 * ?????????? ??????????????? ???????
 	 */
 	public int HELPER_BUFFER_COUNT = 64;
+	/**
+	 * Number of selector threads serving the connections. 0 - the accepting thread serves them itself and polls every SLEEP_TIME,
+	 * otherwise the accepting thread hands new connections out to this many selectors which block on select
+	 */
+	public int SELECTOR_THREAD_COUNT = 0;
+	/**
+	 * Hand new connections to the selector with the fewest connections instead of round-robin
+	 */
+	public boolean SELECTOR_LEAST_LOADED = false;
+	/**
+	 * Maximum time a selector blocks in select when SELECTOR_THREAD_COUNT > 0
+	 */
+	public long SELECT_TIMEOUT = 100;
 	/**
 	 * ??????? ??????
 	 */
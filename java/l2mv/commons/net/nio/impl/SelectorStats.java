@@ -4,6 +4,12 @@ import java.util.concurrent.atomic.AtomicLong;
 
 public class SelectorStats
 {
+	/**
+	 * Connections of all selectors together, the peak of the sum is not the sum of the peaks
+	 */
+	private static final AtomicLong ALL_CONNECTIONS_CURRENT = new AtomicLong();
+	private static final AtomicLong ALL_CONNECTIONS_MAX = new AtomicLong();
+
 	private AtomicLong _connectionsTotal = new AtomicLong();
 	private AtomicLong _connectionsCurrent = new AtomicLong();
 	private AtomicLong _connectionsMax = new AtomicLong();
@@ -11,6 +17,8 @@ public class SelectorStats
 	private AtomicLong _outgoingBytesTotal = new AtomicLong();
 	private AtomicLong _incomingPacketsTotal = new AtomicLong();
 	private AtomicLong _outgoingPacketsTotal = new AtomicLong();
+	private AtomicLong _serializedPacketsTotal = new AtomicLong();
+	private AtomicLong _reusedBroadcastPacketsTotal = new AtomicLong();
 	private AtomicLong _bytesMaxPerRead = new AtomicLong();
 	private AtomicLong _bytesMaxPerWrite = new AtomicLong();
 
@@ -21,11 +29,15 @@ public class SelectorStats
 			_connectionsMax.incrementAndGet();
 		}
 		_connectionsTotal.incrementAndGet();
+
+		long all = ALL_CONNECTIONS_CURRENT.incrementAndGet();
+		ALL_CONNECTIONS_MAX.accumulateAndGet(all, Math::max);
 	}
 
 	public void decreseOpenedConnections()
 	{
 		_connectionsCurrent.decrementAndGet();
+		ALL_CONNECTIONS_CURRENT.decrementAndGet();
 	}
 
 	public void increaseIncomingBytes(int size)
@@ -56,6 +68,35 @@ public class SelectorStats
 		_outgoingPacketsTotal.incrementAndGet();
 	}
 
+	public void increaseSerializedPacketsCount()
+	{
+		_serializedPacketsTotal.incrementAndGet();
+	}
+
+	public void increaseReusedBroadcastPacketsCount()
+	{
+		_reusedBroadcastPacketsTotal.incrementAndGet();
+	}
+
+	/**
+	 * Accumulates the counters of another selector, used for the summary of all selectors. <BR>
+	 * The maximum of the summary is the common peak of all selectors.
+	 */
+	public void add(SelectorStats other)
+	{
+		_connectionsTotal.addAndGet(other.getTotalConnections());
+		_connectionsCurrent.addAndGet(other.getCurrentConnections());
+		_connectionsMax.set(ALL_CONNECTIONS_MAX.get());
+		_incomingBytesTotal.addAndGet(other.getIncomingBytesTotal());
+		_outgoingBytesTotal.addAndGet(other.getOutgoingBytesTotal());
+		_incomingPacketsTotal.addAndGet(other.getIncomingPacketsTotal());
+		_outgoingPacketsTotal.addAndGet(other.getOutgoingPacketsTotal());
+		_serializedPacketsTotal.addAndGet(other.getSerializedPacketsTotal());
+		_reusedBroadcastPacketsTotal.addAndGet(other.getReusedBroadcastPacketsTotal());
+		_bytesMaxPerRead.set(Math.max(_bytesMaxPerRead.get(), other.getMaxBytesPerRead()));
+		_bytesMaxPerWrite.set(Math.max(_bytesMaxPerWrite.get(), other.getMaxBytesPerWrite()));
+	}
+
 	public long getTotalConnections()
 	{
 		return _connectionsTotal.get();
@@ -91,6 +132,16 @@ public class SelectorStats
 		return _outgoingPacketsTotal.get();
 	}
 
+	public long getSerializedPacketsTotal()
+	{
+		return _serializedPacketsTotal.get();
+	}
+
+	public long getReusedBroadcastPacketsTotal()
+	{
+		return _reusedBroadcastPacketsTotal.get();
+	}
+
 	public long getMaxBytesPerRead()
 	{
 		return _bytesMaxPerRead.get();
@@ -15,7 +15,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,10 +50,24 @@ public class SelectorThread<T extends MMOClient> extends Thread
 	private final Queue<ByteBuffer> _bufferPool;
 	private final List<MMOConnection<T>> _connections;
 
+	// Multi-selector mode: the accepting thread hands connections out to the workers
+	private final SelectorThread<T>[] _workers;
+	private int _nextWorker;
+	private final Queue<SocketChannel> _pendingRegistrations;
+	private final Queue<MMOConnection<T>> _pendingWrites;
+	private final Queue<MMOConnection<T>> _pendingCloses;
+	private final AtomicBoolean _wakeupPending = new AtomicBoolean();
+
 	private static final List<SelectorThread> ALL_SELECTORS = new ArrayList<SelectorThread>();
-	private static SelectorStats stats = new SelectorStats();
+	private final SelectorStats stats = new SelectorStats();
 
 	public SelectorThread(SelectorConfig sc, IPacketHandler<T> packetHandler, IMMOExecutor<T> executor, IClientFactory<T> clientFactory, IAcceptFilter acceptFilter) throws IOException
+	{
+		this(sc, packetHandler, executor, clientFactory, acceptFilter, false);
+	}
+
+	@SuppressWarnings("unchecked")
+	private SelectorThread(SelectorConfig sc, IPacketHandler<T> packetHandler, IMMOExecutor<T> executor, IClientFactory<T> clientFactory, IAcceptFilter acceptFilter, boolean worker) throws IOException
 	{
 		synchronized (ALL_SELECTORS)
 		{
@@ -64,6 +80,23 @@ public class SelectorThread<T extends MMOClient> extends Thread
 		_clientFactory = clientFactory;
 		_executor = executor;
 
+		if (!worker && isMultiSelector())
+		{
+			_workers = new SelectorThread[_sc.SELECTOR_THREAD_COUNT];
+			for (int i = 0; i < _workers.length; i++)
+			{
+				_workers[i] = new SelectorThread<T>(sc, packetHandler, executor, clientFactory, acceptFilter, true);
+			}
+		}
+		else
+		{
+			_workers = null;
+		}
+
+		_pendingRegistrations = new ConcurrentLinkedQueue<SocketChannel>();
+		_pendingWrites = new ConcurrentLinkedQueue<MMOConnection<T>>();
+		_pendingCloses = new ConcurrentLinkedQueue<MMOConnection<T>>();
+
 		_bufferPool = new ArrayDeque<ByteBuffer>(_sc.HELPER_BUFFER_COUNT);
 		_connections = new CopyOnWriteArrayList<MMOConnection<T>>();
 
@@ -72,7 +105,8 @@ public class SelectorThread<T extends MMOClient> extends Thread
 		READ_BUFFER = ByteBuffer.wrap(new byte[_sc.READ_BUFFER_SIZE]).order(_sc.BYTE_ORDER);
 		HELPER_BUFFER_SIZE = Math.max(_sc.READ_BUFFER_SIZE, _sc.WRITE_BUFFER_SIZE);
 
-		for (int i = 0; i < _sc.HELPER_BUFFER_COUNT; i++)
+		// the accepting thread of a multi-selector never reads or writes
+		for (int i = 0; _workers == null && i < _sc.HELPER_BUFFER_COUNT; i++)
 		{
 			_bufferPool.add(ByteBuffer.wrap(new byte[HELPER_BUFFER_SIZE]).order(_sc.BYTE_ORDER));
 		}
@@ -86,6 +120,124 @@ public class SelectorThread<T extends MMOClient> extends Thread
 		selectable.socket().bind(address == null ? new InetSocketAddress(tcpPort) : new InetSocketAddress(address, tcpPort));
 		selectable.register(getSelector(), selectable.validOps());
 		setName("SelectorThread:" + selectable.socket().getLocalPort());
+
+		if (_workers != null)
+		{
+			for (int i = 0; i < _workers.length; i++)
+			{
+				_workers[i].setName(getName() + "-" + (i + 1));
+			}
+		}
+	}
+
+	@Override
+	public synchronized void start()
+	{
+		if (_workers != null)
+		{
+			for (SelectorThread<T> worker : _workers)
+			{
+				worker.start();
+			}
+		}
+
+		super.start();
+	}
+
+	/**
+	 * @return true if the connections are served by SELECTOR_THREAD_COUNT blocking selectors
+	 */
+	protected boolean isMultiSelector()
+	{
+		return _sc.SELECTOR_THREAD_COUNT > 0;
+	}
+
+	/**
+	 * Wakes up the blocked selector, a single wakeup is enough for everything queued before the next select
+	 */
+	protected void wakeup()
+	{
+		if (_wakeupPending.compareAndSet(false, true))
+		{
+			getSelector().wakeup();
+		}
+	}
+
+	/**
+	 * Called when the send queue of the connection became non-empty
+	 */
+	protected void onPendingWrite(MMOConnection<T> con)
+	{
+		if (isMultiSelector())
+		{
+			_pendingWrites.add(con);
+			wakeup();
+		}
+	}
+
+	/**
+	 * Called when the connection was marked to be closed
+	 */
+	protected void onPendingClose(MMOConnection<T> con)
+	{
+		if (isMultiSelector())
+		{
+			_pendingCloses.add(con);
+			wakeup();
+		}
+	}
+
+	/**
+	 * Multi-selector mode: instead of walking all connections only the queued ones are handled.
+	 */
+	protected void processPendingOperations(long currentMillis)
+	{
+		SocketChannel sc;
+		while ((sc = _pendingRegistrations.poll()) != null)
+		{
+			try
+			{
+				registerConnection(sc);
+			}
+			catch (IOException e)
+			{
+				_log.error("Error in " + getName(), e);
+				try
+				{
+					sc.close();
+				}
+				catch (IOException e2)
+				{
+					// ignore
+				}
+			}
+		}
+
+		MMOConnection<T> con;
+		while ((con = _pendingWrites.poll()) != null)
+		{
+			try
+			{
+				con.enableWriteInterest();
+			}
+			catch (CancelledKeyException cke)
+			{
+				// connection already closed
+			}
+		}
+
+		for (Iterator<MMOConnection<T>> itr = _pendingCloses.iterator(); itr.hasNext();)
+		{
+			con = itr.next();
+			if (con.getSendQueue().isEmpty() && !con.hasPendingWriteBuffer() || currentMillis - con.getPendingCloseTime() >= 10000L)
+			{
+				itr.remove();
+				if (con.getSelectionKey().isValid())
+				{
+					closeConnectionImpl(con);
+				}
+			}
+		}
 	}
 
 	protected ByteBuffer getPooledBuffer()
@@ -144,28 +296,37 @@ public class SelectorThread<T extends MMOClient> extends Thread
 
 				currentMillis = System.currentTimeMillis();
 
-				conItr = _connections.iterator();
-				while (conItr.hasNext())
+				if (isMultiSelector())
+				{
+					_wakeupPending.set(false);
+					processPendingOperations(currentMillis);
+					totalKeys = getSelector().select(_pendingCloses.isEmpty() ? _sc.SELECT_TIMEOUT : Math.min(_sc.SELECT_TIMEOUT, _sc.INTEREST_DELAY));
+				}
+				else
 				{
-					con = conItr.next();
-					if (con.isPengingClose())
+					conItr = _connections.iterator();
+					while (conItr.hasNext())
 					{
-						if (!con.isPendingWrite() || currentMillis - con.getPendingCloseTime() >= 10000L)
+						con = conItr.next();
+						if (con.isPengingClose())
 						{
-							closeConnectionImpl(con);
-							continue;
+							if (!con.isPendingWrite() || currentMillis - con.getPendingCloseTime() >= 10000L)
+							{
+								closeConnectionImpl(con);
+								continue;
+							}
 						}
-					}
-					if (con.isPendingWrite())
-					{
-						if (currentMillis - con.getPendingWriteTime() >= _sc.INTEREST_DELAY)
+						if (con.isPendingWrite())
 						{
-							con.enableWriteInterest();
+							if (currentMillis - con.getPendingWriteTime() >= _sc.INTEREST_DELAY)
+							{
+								con.enableWriteInterest();
+							}
 						}
 					}
-				}
 
-				totalKeys = getSelector().selectNow();
+					totalKeys = getSelector().selectNow();
+				}
 
 				if (totalKeys > 0)
 				{
@@ -212,13 +373,16 @@ public class SelectorThread<T extends MMOClient> extends Thread
 					}
 				}
 
-				try
-				{
-					Thread.sleep(_sc.SLEEP_TIME);
-				}
-				catch (InterruptedException ie)
+				if (!isMultiSelector())
 				{
+					try
+					{
+						Thread.sleep(_sc.SLEEP_TIME);
+					}
+					catch (InterruptedException ie)
+					{
 
+					}
 				}
 			}
 			catch (IOException e)
@@ -253,12 +417,10 @@ public class SelectorThread<T extends MMOClient> extends Thread
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	protected void acceptConnection(SelectionKey key)
 	{
 		ServerSocketChannel ssc = (ServerSocketChannel) key.channel();
 		SocketChannel sc;
-		SelectionKey clientKey;
 		try
 		{
 			while ((sc = ssc.accept()) != null)
@@ -266,16 +428,16 @@ public class SelectorThread<T extends MMOClient> extends Thread
 				if (getAcceptFilter() == null || getAcceptFilter().accept(sc))
 				{
 					sc.configureBlocking(false);
-					clientKey = sc.register(getSelector(), SelectionKey.OP_READ);
-
-					MMOConnection<T> con = new MMOConnection<T>(this, sc.socket(), clientKey);
-					T client = getClientFactory().create(con);
-					client.setConnection(con);
-					con.setClient(client);
-					clientKey.attach(con);
-
-					_connections.add(con);
-					stats.increaseOpenedConnections();
+					if (_workers != null)
+					{
+						SelectorThread<T> worker = nextWorker();
+						worker._pendingRegistrations.add(sc);
+						worker.wakeup();
+					}
+					else
+					{
+						registerConnection(sc);
+					}
 				}
 				else
 				{
@@ -289,6 +451,43 @@ public class SelectorThread<T extends MMOClient> extends Thread
 		}
 	}
 
+	/**
+	 * @return the worker selector for a new connection: round-robin or the one with fewest connections
+	 */
+	protected SelectorThread<T> nextWorker()
+	{
+		if (_sc.SELECTOR_LEAST_LOADED)
+		{
+			SelectorThread<T> worker = _workers[0];
+			for (int i = 1; i < _workers.length; i++)
+			{
+				if (_workers[i]._connections.size() < worker._connections.size())
+				{
+					worker = _workers[i];
+				}
+			}
+			return worker;
+		}
+
+		_nextWorker = (_nextWorker + 1) % _workers.length;
+		return _workers[_nextWorker];
+	}
+
+	@SuppressWarnings("unchecked")
+	protected void registerConnection(SocketChannel sc) throws IOException
+	{
+		SelectionKey clientKey = sc.register(getSelector(), SelectionKey.OP_READ);
+
+		MMOConnection<T> con = new MMOConnection<T>(this, sc.socket(), clientKey);
+		T client = getClientFactory().create(con);
+		client.setConnection(con);
+		con.setClient(client);
+		clientKey.attach(con);
+
+		_connections.add(con);
+		stats.increaseOpenedConnections();
+	}
+
 	@SuppressWarnings("unchecked")
 	protected void readPacket(SelectionKey key)
 	{
@@ -501,7 +700,15 @@ public class SelectorThread<T extends MMOClient> extends Thread
 			if (!con.getSendQueue().isEmpty() || con.hasPendingWriteBuffer())
 			{
 				// ?????? ?? ?????????
-				con.scheduleWriteInterest();
+				if (!isMultiSelector())
+				{
+					con.scheduleWriteInterest();
+				}
+			}
+			else if (isMultiSelector())
+			{
+				// nothing left, otherwise the blocking select would return at once
+				con.clearWriteInterest();
 			}
 		}
 		else
@@ -584,7 +791,15 @@ public class SelectorThread<T extends MMOClient> extends Thread
 		WRITE_BUFFER.position(headerPos + _sc.HEADER_SIZE);
 
 		// write content to buffer
-		sp.write();
+		if (sp instanceof IBroadcastPacket)
+		{
+			writeBroadcastPacket(sp);
+		}
+		else
+		{
+			stats.increaseSerializedPacketsCount();
+			sp.write();
+		}
 
 		// size (incl header)
 		int dataSize = WRITE_BUFFER.position() - headerPos - _sc.HEADER_SIZE;
@@ -607,6 +822,29 @@ public class SelectorThread<T extends MMOClient> extends Thread
 		WRITE_BUFFER.position(headerPos + _sc.HEADER_SIZE + dataSize);
 	}
 
+	/**
+	 * Writes a broadcast packet: the first recipient serializes it, the others copy the cached bytes.
+	 */
+	private void writeBroadcastPacket(SendablePacket<T> sp)
+	{
+		byte[] data = sp.getBroadcastData();
+		if (data != null)
+		{
+			stats.increaseReusedBroadcastPacketsCount();
+			WRITE_BUFFER.put(data);
+			return;
+		}
+
+		int start = WRITE_BUFFER.position();
+		stats.increaseSerializedPacketsCount();
+		if (sp.write())
+		{
+			data = new byte[WRITE_BUFFER.position() - start];
+			System.arraycopy(WRITE_BUFFER.array(), start, data, 0, data.length);
+			sp.setBroadcastData(data);
+		}
+	}
+
 	protected SelectorConfig getConfig()
 	{
 		return _sc;
@@ -684,6 +922,19 @@ public class SelectorThread<T extends MMOClient> extends Thread
 	public void shutdown()
 	{
 		_shutdown = true;
+
+		if (_workers != null)
+		{
+			for (SelectorThread<T> worker : _workers)
+			{
+				worker.shutdown();
+			}
+		}
+
+		if (isMultiSelector())
+		{
+			getSelector().wakeup();
+		}
 	}
 
 	public boolean isShuttingDown()
@@ -724,9 +975,39 @@ public class SelectorThread<T extends MMOClient> extends Thread
 	public static CharSequence getStats()
 	{
 		StringBuilder list = new StringBuilder();
+		SelectorStats stats = new SelectorStats();
+
+		synchronized (ALL_SELECTORS)
+		{
+			for (SelectorThread st : ALL_SELECTORS)
+			{
+				stats.add(st.stats);
+			}
+		}
 
 		list.append("selectorThreadCount: .... ").append(ALL_SELECTORS.size()).append("\n\r");
 		list.append("=================================================\n\r");
+		appendStats(list, stats);
+		list.append("=================================================\n\r");
+
+		if (ALL_SELECTORS.size() > 1)
+		{
+			synchronized (ALL_SELECTORS)
+			{
+				for (SelectorThread st : ALL_SELECTORS)
+				{
+					list.append(st.getName()).append(":\n\r");
+					appendStats(list, st.stats);
+					list.append("=================================================\n\r");
+				}
+			}
+		}
+
+		return list;
+	}
+
+	private static void appendStats(StringBuilder list, SelectorStats stats)
+	{
 		list.append("getTotalConnections: .... ").append(stats.getTotalConnections()).append("\n\r");
 		list.append("getCurrentConnections: .. ").append(stats.getCurrentConnections()).append("\n\r");
 		list.append("getMaximumConnections: .. ").append(stats.getMaximumConnections()).append("\n\r");
@@ -734,10 +1015,9 @@ public class SelectorThread<T extends MMOClient> extends Thread
 		list.append("getOutgoingBytesTotal: .. ").append(stats.getOutgoingBytesTotal()).append("\n\r");
 		list.append("getIncomingPacketsTotal:  ").append(stats.getIncomingPacketsTotal()).append("\n\r");
 		list.append("getOutgoingPacketsTotal:  ").append(stats.getOutgoingPacketsTotal()).append("\n\r");
+		list.append("getSerializedPacketsTotal:").append(stats.getSerializedPacketsTotal()).append("\n\r");
+		list.append("getReusedBroadcastTotal:  ").append(stats.getReusedBroadcastPacketsTotal()).append("\n\r");
 		list.append("getMaxBytesPerRead: ..... ").append(stats.getMaxBytesPerRead()).append("\n\r");
 		list.append("getMaxBytesPerWrite: .... ").append(stats.getMaxBytesPerWrite()).append("\n\r");
-		list.append("=================================================\n\r");
-
-		return list;
 	}
 }
\ No newline at end of file
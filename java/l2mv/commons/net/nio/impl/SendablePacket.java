@@ -5,6 +5,11 @@ import java.nio.ByteBuffer;
 @SuppressWarnings("rawtypes")
 public abstract class SendablePacket<T extends MMOClient> extends l2mv.commons.net.nio.SendablePacket<T>
 {
+	/**
+	 * Serialized content (without header) of an IBroadcastPacket, shared by all recipients
+	 */
+	private volatile byte[] _broadcastData;
+
 	@Override
 	protected ByteBuffer getByteBuffer()
 	{
@@ -18,6 +23,16 @@ public abstract class SendablePacket<T extends MMOClient> extends l2mv.commons.n
 		return (T) ((SelectorThread) Thread.currentThread()).getWriteClient();
 	}
 
+	protected byte[] getBroadcastData()
+	{
+		return _broadcastData;
+	}
+
+	protected void setBroadcastData(byte[] data)
+	{
+		_broadcastData = data;
+	}
+
 	@Override
 	protected abstract boolean write();
 }
\ No newline at end of file
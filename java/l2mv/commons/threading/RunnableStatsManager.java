@@ -10,29 +10,32 @@
  */
 package l2mv.commons.threading;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Статистика выполнения задач по классам.
+ * <p>
+ * Счетчики каждого класса распределены по ячейкам ({@link LongAdder}) и складываются только при чтении, поэтому потоки пула не
+ * конкурируют за общую блокировку. Время выполнения собирается в логарифмическую гистограмму: четыре корзины на каждую степень двойки,
+ * откуда берутся перцентили с точностью до четверти степени.
  * @author Mobius
  * @version $Revision: 1.0 $
  */
 public final class RunnableStatsManager
 {
-	/**
-	 * Field _instance.
-	 */
-	private static final RunnableStatsManager _instance = new RunnableStatsManager();
+	private static final RunnableStatsManager _instance = new RunnableStatsManager("Runnables");
+	private static final RunnableStatsManager _packetsInstance = new RunnableStatsManager("Client packets");
 
 	/**
-	 * Method getInstance.
-	 * @return RunnableStatsManager
+	 * @return статистика задач пулов потоков
 	 */
 	public static final RunnableStatsManager getInstance()
 	{
@@ -40,127 +43,186 @@ public final class RunnableStatsManager
 	}
 
 	/**
-	 * Field classStats.
-	 */
-	final Map<Class<?>, ClassStat> classStats = new HashMap<>();
-	/**
-	 * Field lock.
+	 * @return статистика выполнения клиентских пакетов
 	 */
-	private final Lock lock = new ReentrantLock();
+	public static final RunnableStatsManager getPacketsInstance()
+	{
+		return _packetsInstance;
+	}
 
-	/**
-	 * @author Mobius
-	 */
-	private class ClassStat
+	/** Корзин на степень двойки, 1 << SUB_BUCKET_BITS */
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) << SUB_BUCKET_BITS;
+
+	private final String _name;
+	private final ConcurrentMap<Class<?>, ClassStat> _classStats = new ConcurrentHashMap<Class<?>, ClassStat>();
+
+	private RunnableStatsManager(String name)
+	{
+		_name = name;
+	}
+
+	private static final class ClassStat
 	{
-		/**
-		 * Field clazz.
-		 */
 		final Class<?> clazz;
-		/**
-		 * Field runCount.
-		 */
-		long runCount = 0;
-		/**
-		 * Field runTime.
-		 */
-		long runTime = 0;
-		/**
-		 * Field minTime.
-		 */
-		long minTime = Long.MAX_VALUE;
-		/**
-		 * Field maxTime.
-		 */
-		long maxTime = Long.MIN_VALUE;
+		final LongAdder runCount = new LongAdder();
+		final LongAdder runTime = new LongAdder();
+		final LongAccumulator minTime = new LongAccumulator(Math::min, Long.MAX_VALUE);
+		final LongAccumulator maxTime = new LongAccumulator(Math::max, Long.MIN_VALUE);
+		/** Корзины гистограммы, создаются при первом попадании */
+		final AtomicReferenceArray<LongAdder> buckets = new AtomicReferenceArray<LongAdder>(BUCKETS);
 
-		/**
-		 * Constructor for ClassStat.
-		 * @param cl Class<?>
-		 */
 		ClassStat(Class<?> cl)
 		{
 			clazz = cl;
-			classStats.put(cl, this);
+		}
+
+		void add(long time)
+		{
+			runCount.increment();
+			runTime.add(time);
+			minTime.accumulate(time);
+			maxTime.accumulate(time);
+
+			int index = bucketOf(time);
+			LongAdder bucket = buckets.get(index);
+			if (bucket == null)
+			{
+				buckets.compareAndSet(index, null, new LongAdder());
+				bucket = buckets.get(index);
+			}
+			bucket.increment();
 		}
 	}
 
 	/**
-	 * Method handleStats.
-	 * @param cl Class<?>
-	 * @param runTime long
+	 * Неизменяемый срез статистики одного класса на момент чтения
 	 */
-	public void handleStats(Class<?> cl, long runTime)
+	private static final class Summary
 	{
-		try
+		final Class<?> clazz;
+		final long runCount;
+		final long runTime;
+		final long minTime;
+		final long maxTime;
+		final long[] histogram = new long[BUCKETS];
+		long histogramCount;
+
+		Summary(ClassStat stat)
 		{
-			lock.lock();
-			ClassStat stat = classStats.get(cl);
-			if (stat == null)
+			clazz = stat.clazz;
+			runCount = stat.runCount.sum();
+			runTime = stat.runTime.sum();
+			minTime = stat.minTime.get();
+			maxTime = stat.maxTime.get();
+			for (int i = 0; i < BUCKETS; i++)
 			{
-				stat = new ClassStat(cl);
+				LongAdder bucket = stat.buckets.get(i);
+				if (bucket != null)
+				{
+					histogram[i] = bucket.sum();
+					histogramCount += histogram[i];
+				}
 			}
-			stat.runCount++;
-			stat.runTime += runTime;
-			if (stat.minTime > runTime)
+		}
+
+		/**
+		 * @return верхняя граница корзины, в которую попадает перцентиль
+		 */
+		long getPercentile(double percentile)
+		{
+			if (histogramCount == 0)
 			{
-				stat.minTime = runTime;
+				return 0;
 			}
-			if (stat.maxTime < runTime)
+
+			long rank = (long) Math.ceil(histogramCount * percentile);
+			long count = 0;
+			for (int i = 0; i < BUCKETS; i++)
 			{
-				stat.maxTime = runTime;
+				count += histogram[i];
+				if (count >= rank)
+				{
+					return Math.min(upperBoundOf(i), maxTime);
+				}
 			}
+			return maxTime;
 		}
-		finally
+	}
+
+	static int bucketOf(long value)
+	{
+		if (value < SUB_BUCKETS)
 		{
-			lock.unlock();
+			return (int) Math.max(0, value);
 		}
+
+		int exp = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return ((exp - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + sub;
 	}
 
-	/**
-	 * Method getSortedClassStats.
-	 * @return List<ClassStat>
-	 */
-	private List<ClassStat> getSortedClassStats()
+	static long upperBoundOf(int index)
 	{
-		List<ClassStat> result = Collections.emptyList();
-		try
+		if (index < SUB_BUCKETS - 1)
 		{
-			lock.lock();
-			result = Arrays.asList(classStats.values().toArray(new ClassStat[classStats.size()]));
+			return index;
 		}
-		finally
+		if (index == BUCKETS - 1)
 		{
-			lock.unlock();
+			return Long.MAX_VALUE;
 		}
-		Collections.sort(result, new Comparator<ClassStat>()
+
+		int next = index + 1;
+		int exp = (next >> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+		long sub = next & (SUB_BUCKETS - 1);
+		return ((SUB_BUCKETS + sub) << (exp - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Учитывает выполнение задачи. Не блокирует.
+	 * @param cl класс задачи
+	 * @param runTime время выполнения, нс
+	 */
+	public void handleStats(Class<?> cl, long runTime)
+	{
+		ClassStat stat = _classStats.get(cl);
+		if (stat == null)
 		{
-			@Override
-			public int compare(ClassStat c1, ClassStat c2)
+			stat = _classStats.computeIfAbsent(cl, ClassStat::new);
+		}
+		stat.add(runTime);
+	}
+
+	public void clear()
+	{
+		_classStats.clear();
+	}
+
+	private List<Summary> getSummaries(Comparator<Summary> comparator)
+	{
+		List<Summary> result = new ArrayList<Summary>(_classStats.size());
+		for (ClassStat stat : _classStats.values())
+		{
+			Summary summary = new Summary(stat);
+			if (summary.runCount > 0)
 			{
-				if (c1.maxTime < c2.maxTime)
-				{
-					return 1;
-				}
-				if (c1.maxTime == c2.maxTime)
-				{
-					return 0;
-				}
-				return -1;
+				result.add(summary);
 			}
-		});
+		}
+		Collections.sort(result, comparator);
 		return result;
 	}
 
 	/**
-	 * Method getStats.
+	 * Полная статистика по всем классам, отсортированная по максимальному времени выполнения
 	 * @return CharSequence
 	 */
 	public CharSequence getStats()
 	{
 		StringBuilder list = new StringBuilder();
-		List<ClassStat> stats = getSortedClassStats();
-		for (ClassStat stat : stats)
+		for (Summary stat : getSummaries((c1, c2) -> Long.compare(c2.maxTime, c1.maxTime)))
 		{
 			list.append(stat.clazz.getName()).append(":\n");
 			list.append("\tRun: ............ ").append(stat.runCount).append('\n');
@@ -168,7 +230,34 @@ public final class RunnableStatsManager
 			list.append("\tMin: ............ ").append(stat.minTime).append('\n');
 			list.append("\tMax: ............ ").append(stat.maxTime).append('\n');
 			list.append("\tAverage: ........ ").append(stat.runTime / stat.runCount).append('\n');
+			list.append("\tp50: ............ ").append(stat.getPercentile(0.5)).append('\n');
+			list.append("\tp99: ............ ").append(stat.getPercentile(0.99)).append('\n');
+			list.append("\tp999: ........... ").append(stat.getPercentile(0.999)).append('\n');
+		}
+		return list;
+	}
+
+	/**
+	 * Краткая таблица классов с наибольшим суммарным временем выполнения, время в микросекундах
+	 * @param limit количество строк
+	 * @return CharSequence
+	 */
+	public CharSequence getTopStats(int limit)
+	{
+		List<Summary> stats = getSummaries((c1, c2) -> Long.compare(c2.runTime, c1.runTime));
+
+		StringBuilder list = new StringBuilder();
+		list.append(_name).append(" (us):\n");
+		list.append(String.format("%-40s %10s %10s %8s %8s %8s %8s %8s%n", "Class", "Run", "Total ms", "Avg", "p50", "p99", "p999", "Max"));
+		for (int i = 0; (i < stats.size()) && (i < limit); i++)
+		{
+			Summary stat = stats.get(i);
+			list.append(String.format("%-40s %10d %10d %8d %8d %8d %8d %8d%n", stat.clazz.getSimpleName(), stat.runCount, stat.runTime / 1000000L, stat.runTime / stat.runCount / 1000L, stat.getPercentile(0.5) / 1000L, stat.getPercentile(0.99) / 1000L, stat.getPercentile(0.999) / 1000L, stat.maxTime / 1000L));
+		}
+		if (stats.size() > limit)
+		{
+			list.append("... ").append(stats.size() - limit).append(" more\n");
 		}
 		return list;
 	}
-}
\ No newline at end of file
+}
@@ -3,8 +3,9 @@ package l2mv.commons.threading;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.TreeMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -15,6 +16,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Runs its tasks in steps of tickPerStepInMillis, driven by an external scheduler calling {@link #run()} every step.
+ * <p>
+ * Tasks are kept in a hierarchical timing wheel: {@link #WHEEL_LEVELS} levels of {@link #WHEEL_SIZE} buckets, where a bucket of
+ * level n covers WHEEL_SIZE^n steps. A step only looks at the bucket that is due, and moves the tasks of a higher level bucket down
+ * once the lower level has wrapped around. New tasks are queued without locking and put into the wheel at the next step, cancelled
+ * tasks are only flagged and dropped when their bucket is reached or on {@link #purge()}.
  * @author Mobius
  * @version $Revision: 1.0 $
  */
@@ -24,14 +31,50 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 	 * Field _log.
 	 */
 	static final Logger _log = LoggerFactory.getLogger(SteppingRunnableQueueManager.class);
+	/**
+	 * Field WHEEL_BITS.
+	 */
+	private static final int WHEEL_BITS = 6;
+	/**
+	 * Field WHEEL_SIZE.
+	 */
+	static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+	/**
+	 * Field WHEEL_MASK.
+	 */
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+	/**
+	 * Field WHEEL_LEVELS.
+	 */
+	static final int WHEEL_LEVELS = 4;
+	/**
+	 * Field MAX_STEPPING. Longer delays are parked in the last bucket and rescheduled from there.
+	 */
+	private static final long MAX_STEPPING = (1L << (WHEEL_BITS * WHEEL_LEVELS)) - 1;
 	/**
 	 * Field tickPerStepInMillis.
 	 */
 	protected final long tickPerStepInMillis;
 	/**
-	 * Field queue.
+	 * Field wheel.
+	 */
+	private final List<SteppingScheduledFuture<?>>[][] wheel;
+	/**
+	 * Field pending. Tasks scheduled since the last step.
 	 */
-	private final List<SteppingScheduledFuture<?>> queue = new CopyOnWriteArrayList<>();
+	private final Queue<SteppingScheduledFuture<?>> pending = new ConcurrentLinkedQueue<>();
+	/**
+	 * Field spare. Empty bucket swapped with the due one on every step.
+	 */
+	private List<SteppingScheduledFuture<?>> spare = new ArrayList<>();
+	/**
+	 * Field currentStep. Number of the last processed step.
+	 */
+	volatile long currentStep;
+	/**
+	 * Field size. Number of tasks in the wheel.
+	 */
+	private int size;
 	/**
 	 * Field isRunning.
 	 */
@@ -41,9 +84,22 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 	 * Constructor for SteppingRunnableQueueManager.
 	 * @param tickPerStepInMillis long
 	 */
+	@SuppressWarnings(
+	{
+		"unchecked",
+		"rawtypes"
+	})
 	public SteppingRunnableQueueManager(long tickPerStepInMillis)
 	{
 		this.tickPerStepInMillis = tickPerStepInMillis;
+		wheel = new List[WHEEL_LEVELS][WHEEL_SIZE];
+		for (int level = 0; level < WHEEL_LEVELS; level++)
+		{
+			for (int i = 0; i < WHEEL_SIZE; i++)
+			{
+				wheel[level][i] = new ArrayList<>();
+			}
+		}
 	}
 
 	/**
@@ -55,6 +111,10 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 		 * Field r.
 		 */
 		final Runnable r;
+		/**
+		 * Field initial.
+		 */
+		final long initial;
 		/**
 		 * Field stepping.
 		 */
@@ -64,13 +124,17 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 		 */
 		private final boolean isPeriodic;
 		/**
-		 * Field step.
+		 * Field deadline. Step at which the task is due, set when the task enters the wheel.
+		 */
+		volatile long deadline = -1L;
+		/**
+		 * Field isDone.
 		 */
-		private long step;
+		private volatile boolean isDone;
 		/**
 		 * Field isCancelled.
 		 */
-		private boolean isCancelled;
+		private volatile boolean isCancelled;
 
 		/**
 		 * Constructor for SteppingScheduledFuture.
@@ -82,7 +146,7 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 		public SteppingScheduledFuture(Runnable r, long initial, long stepping, boolean isPeriodic)
 		{
 			this.r = r;
-			this.step = initial;
+			this.initial = initial;
 			this.stepping = stepping;
 			this.isPeriodic = isPeriodic;
 		}
@@ -94,22 +158,19 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 		@Override
 		public void run()
 		{
-			if (--step == 0)
+			try
 			{
-				try
-				{
-					r.run();
-				}
-				catch (Exception e)
+				r.run();
+			}
+			catch (Exception e)
+			{
+				_log.error("Exception in a Runnable execution:", e);
+			}
+			finally
+			{
+				if (!isPeriodic)
 				{
-					_log.error("Exception in a Runnable execution:", e);
-				}
-				finally
-				{
-					if (isPeriodic)
-					{
-						step = stepping;
-					}
+					isDone = true;
 				}
 			}
 		}
@@ -121,7 +182,7 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 		@Override
 		public boolean isDone()
 		{
-			return isCancelled || (!isPeriodic && (step == 0));
+			return isCancelled || isDone;
 		}
 
 		/**
@@ -135,7 +196,7 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 		}
 
 		/**
-		 * Method cancel.
+		 * Method cancel. The task stays in its bucket until the bucket is reached or purged.
 		 * @param mayInterruptIfRunning boolean
 		 * @return boolean * @see java.util.concurrent.Future#cancel(boolean)
 		 */
@@ -175,6 +236,8 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 		@Override
 		public long getDelay(TimeUnit unit)
 		{
+			long deadline = this.deadline;
+			long step = deadline < 0 ? initial : Math.max(0L, deadline - currentStep);
 			return unit.convert(step * tickPerStepInMillis, TimeUnit.MILLISECONDS);
 		}
 
@@ -236,7 +299,7 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 		SteppingScheduledFuture<?> sr;
 		long initialStepping = getStepping(initial);
 		long stepping = getStepping(delay);
-		queue.add(sr = new SteppingScheduledFuture<Boolean>(r, initialStepping, stepping, isPeriodic));
+		pending.add(sr = new SteppingScheduledFuture<Boolean>(r, initialStepping, stepping, isPeriodic));
 		return sr;
 	}
 
@@ -251,6 +314,50 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 		return (delay % tickPerStepInMillis) > (tickPerStepInMillis / 2) ? (delay / tickPerStepInMillis) + 1 : delay < tickPerStepInMillis ? 1 : delay / tickPerStepInMillis;
 	}
 
+	/**
+	 * Method add. Puts the task into the bucket matching its distance from the given step.
+	 * @param sr SteppingScheduledFuture<?>
+	 * @param now long
+	 */
+	private void add(SteppingScheduledFuture<?> sr, long now)
+	{
+		long delta = sr.deadline - now;
+		long due = delta > MAX_STEPPING ? now + MAX_STEPPING : sr.deadline;
+		int level = 0;
+		while ((level < (WHEEL_LEVELS - 1)) && (delta >= (1L << (WHEEL_BITS * (level + 1)))))
+		{
+			level++;
+		}
+		wheel[level][(int) (due >>> (WHEEL_BITS * level)) & WHEEL_MASK].add(sr);
+		size++;
+	}
+
+	/**
+	 * Method cascade. Moves the tasks of a higher level bucket down to the buckets matching their remaining steps.
+	 * @param level int
+	 * @param now long
+	 */
+	private void cascade(int level, long now)
+	{
+		int index = (int) (now >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+		List<SteppingScheduledFuture<?>> bucket = wheel[level][index];
+		if (bucket.isEmpty())
+		{
+			return;
+		}
+		wheel[level][index] = spare;
+		size -= bucket.size();
+		for (SteppingScheduledFuture<?> sr : bucket)
+		{
+			if (!sr.isDone())
+			{
+				add(sr, now);
+			}
+		}
+		bucket.clear();
+		spare = bucket;
+	}
+
 	/**
 	 * Method run.
 	 * @see java.lang.Runnable#run()
@@ -260,21 +367,68 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 	{
 		if (!isRunning.compareAndSet(false, true))
 		{
-			_log.warn("Slow running queue, managed by " + this + ", queue size : " + queue.size() + "!");
+			_log.warn("Slow running queue, managed by " + this + ", queue size : " + size + "!");
 			return;
 		}
 		try
 		{
-			if (queue.isEmpty())
-			{
-				return;
-			}
-			for (SteppingScheduledFuture<?> sr : queue)
+			synchronized (wheel)
 			{
-				if (!sr.isDone())
+				long now = currentStep;
+
+				SteppingScheduledFuture<?> sr;
+				while ((sr = pending.poll()) != null)
+				{
+					if (!sr.isDone())
+					{
+						sr.deadline = now + sr.initial;
+						add(sr, now);
+					}
+				}
+
+				if (size == 0)
+				{
+					currentStep = now + 1;
+					return;
+				}
+
+				currentStep = ++now;
+
+				// Higher levels first, so that their tasks can still land in the lower buckets cascaded at this step
+				for (int level = WHEEL_LEVELS - 1; level > 0; level--)
+				{
+					if ((now & ((1L << (WHEEL_BITS * level)) - 1)) == 0)
+					{
+						cascade(level, now);
+					}
+				}
+
+				int index = (int) now & WHEEL_MASK;
+				List<SteppingScheduledFuture<?>> due = wheel[0][index];
+				if (due.isEmpty())
+				{
+					return;
+				}
+				wheel[0][index] = spare;
+				size -= due.size();
+				for (int i = 0; i < due.size(); i++)
 				{
+					sr = due.get(i);
+					if (sr.isDone())
+					{
+						continue;
+					}
+
 					sr.run();
+
+					if (sr.isPeriodic() && !sr.isDone())
+					{
+						sr.deadline = now + sr.stepping;
+						add(sr, now);
+					}
 				}
+				due.clear();
+				spare = due;
 			}
 		}
 		finally
@@ -284,19 +438,25 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 	}
 
 	/**
-	 * Method purge.
+	 * Method purge. Drops cancelled and finished tasks from every bucket.
 	 */
 	public void purge()
 	{
-		final List<SteppingScheduledFuture<?>> purge = new ArrayList<>();
-		for (SteppingScheduledFuture<?> sr : queue)
+		synchronized (wheel)
 		{
-			if (sr != null && sr.isDone())
+			for (List<SteppingScheduledFuture<?>>[] buckets : wheel)
 			{
-				purge.add(sr);
+				for (List<SteppingScheduledFuture<?>> bucket : buckets)
+				{
+					int before = bucket.size();
+					if ((before > 0) && bucket.removeIf(SteppingScheduledFuture::isDone))
+					{
+						size -= before - bucket.size();
+					}
+				}
 			}
 		}
-		queue.removeAll(purge);
+		pending.removeIf(SteppingScheduledFuture::isDone);
 	}
 
 	/**
@@ -309,6 +469,17 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 		Map<String, MutableLong> stats = new TreeMap<>();
 		int total = 0;
 		int done = 0;
+		List<SteppingScheduledFuture<?>> queue = new ArrayList<>(pending);
+		synchronized (wheel)
+		{
+			for (List<SteppingScheduledFuture<?>>[] buckets : wheel)
+			{
+				for (List<SteppingScheduledFuture<?>> bucket : buckets)
+				{
+					queue.addAll(bucket);
+				}
+			}
+		}
 		for (SteppingScheduledFuture<?> sr : queue)
 		{
 			if (sr.isDone())
@@ -335,4 +506,4 @@ public abstract class SteppingRunnableQueueManager implements Runnable
 		list.append("Done/Cancelled: .. ").append(done).append('\n');
 		return list;
 	}
-}
\ No newline at end of file
+}
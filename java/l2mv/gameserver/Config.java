@@ -268,6 +268,7 @@ public class Config
 	public static String DATABASE_LOGIN_USER;
 	public static String DATABASE_LOGIN_PASSWORD;
 	public static String MYSQL_DUMP_PATH;
+	public static boolean ID_FACTORY_BLOCKS;
 	public static boolean ACCEPT_ALTERNATE_ID;
 	public static int REQUEST_ID;
 	public static String SERVER_NAME;
@@ -321,10 +322,25 @@ public class Config
 	public static long BROADCAST_CHAR_INFO_INTERVAL;
 
 	public static int EFFECT_TASK_MANAGER_COUNT;
+	public static int MOVE_TASK_MANAGER_COUNT;
+	public static long MOVE_TASK_TICK;
+	public static boolean STATS_CACHE_ENABLED;
+	public static boolean CHARACTER_STORE_WRITE_BEHIND;
+	public static int CHARACTER_STORE_THREADS;
+	public static long CHARACTER_STORE_FLUSH_DELAY;
+	public static int CHARACTER_STORE_BATCH_SIZE;
+	public static long CHARACTER_STORE_FULL_SAVE_INTERVAL;
+	public static boolean ITEMS_WRITE_BEHIND;
+	public static long ITEMS_FLUSH_DELAY;
+	public static boolean QUESTS_WRITE_BEHIND;
+	public static long QUESTS_FLUSH_DELAY;
 	/** Thread pools size */
 	public static int SCHEDULED_THREAD_POOL_SIZE;
 	public static int EXECUTOR_THREAD_POOL_SIZE;
 	public static boolean ENABLE_RUNNABLE_STATS;
+	public static boolean CLIENT_PACKET_LANES;
+	public static int CLIENT_PACKET_FAST_THREADS;
+	public static int CLIENT_PACKET_BLOCKING_THREADS;
 	/** Network settings */
 	public static SelectorConfig SELECTOR_CONFIG = new SelectorConfig();
 	public static String DEFAULT_LANG;
@@ -474,6 +490,7 @@ public class Config
 		Config.DATABASE_MAX_CONNECTIONS = serverSettings.getProperty("MaximumDbConnections", 10);
 		Config.DATABASE_MAX_IDLE_TIMEOUT = serverSettings.getProperty("MaxIdleConnectionTimeout", 600);
 		Config.DATABASE_IDLE_TEST_PERIOD = serverSettings.getProperty("IdleConnectionTestPeriod", 60);
+		Config.ID_FACTORY_BLOCKS = serverSettings.getProperty("IdFactoryBlocks", true);
 
 		Config.DATABASE_DRIVER = serverSettings.getProperty("dataSourceClassName", "com.mariadb.jdbc.Driver");
 		Config.DATABASE_GAME_URL = serverSettings.getProperty("GameURL", "jdbc:mariadb://localhost/l2jdb");
@@ -487,18 +504,37 @@ public class Config
 		Config.BROADCAST_CHAR_INFO_INTERVAL = serverSettings.getProperty("BroadcastCharInfoInterval", 100L);
 
 		Config.EFFECT_TASK_MANAGER_COUNT = serverSettings.getProperty("EffectTaskManagers", 2);
+		Config.MOVE_TASK_MANAGER_COUNT = serverSettings.getProperty("MoveTaskManagers", 4);
+		Config.MOVE_TASK_TICK = serverSettings.getProperty("MoveTaskTick", 50L);
+		Config.STATS_CACHE_ENABLED = serverSettings.getProperty("StatsCache", true);
+		Config.CHARACTER_STORE_WRITE_BEHIND = serverSettings.getProperty("CharacterStoreWriteBehind", true);
+		Config.CHARACTER_STORE_THREADS = serverSettings.getProperty("CharacterStoreThreads", 2);
+		Config.CHARACTER_STORE_FLUSH_DELAY = serverSettings.getProperty("CharacterStoreFlushDelay", 1000L);
+		Config.CHARACTER_STORE_BATCH_SIZE = serverSettings.getProperty("CharacterStoreBatchSize", 100);
+		Config.CHARACTER_STORE_FULL_SAVE_INTERVAL = serverSettings.getProperty("CharacterStoreFullSaveInterval", 1800000L);
+		Config.ITEMS_WRITE_BEHIND = serverSettings.getProperty("ItemsWriteBehind", true);
+		Config.ITEMS_FLUSH_DELAY = serverSettings.getProperty("ItemsFlushDelay", 1000L);
+		Config.QUESTS_WRITE_BEHIND = serverSettings.getProperty("QuestsWriteBehind", true);
+		Config.QUESTS_FLUSH_DELAY = serverSettings.getProperty("QuestsFlushDelay", 5000L);
 
 		Config.SCHEDULED_THREAD_POOL_SIZE = serverSettings.getProperty("ScheduledThreadPoolSize", NCPUS * 4);
 		Config.EXECUTOR_THREAD_POOL_SIZE = serverSettings.getProperty("ExecutorThreadPoolSize", NCPUS * 2);
 
 		Config.ENABLE_RUNNABLE_STATS = serverSettings.getProperty("EnableRunnableStats", false);
 
+		Config.CLIENT_PACKET_LANES = serverSettings.getProperty("ClientPacketLanes", true);
+		Config.CLIENT_PACKET_FAST_THREADS = serverSettings.getProperty("ClientPacketFastThreadPoolSize", NCPUS);
+		Config.CLIENT_PACKET_BLOCKING_THREADS = serverSettings.getProperty("ClientPacketBlockingThreadPoolSize", Math.max(2, NCPUS / 2));
+
 		Config.SELECTOR_CONFIG.SLEEP_TIME = serverSettings.getProperty("SelectorSleepTime", 10L);
 		Config.SELECTOR_CONFIG.INTEREST_DELAY = serverSettings.getProperty("InterestDelay", 30L);
 		Config.SELECTOR_CONFIG.MAX_SEND_PER_PASS = serverSettings.getProperty("MaxSendPerPass", 32);
 		Config.SELECTOR_CONFIG.READ_BUFFER_SIZE = serverSettings.getProperty("ReadBufferSize", 65536);
 		Config.SELECTOR_CONFIG.WRITE_BUFFER_SIZE = serverSettings.getProperty("WriteBufferSize", 131072);
 		Config.SELECTOR_CONFIG.HELPER_BUFFER_COUNT = serverSettings.getProperty("BufferPoolSize", 64);
+		Config.SELECTOR_CONFIG.SELECTOR_THREAD_COUNT = serverSettings.getProperty("SelectorThreadCount", 0);
+		Config.SELECTOR_CONFIG.SELECTOR_LEAST_LOADED = serverSettings.getProperty("SelectorLeastLoaded", false);
+		Config.SELECTOR_CONFIG.SELECT_TIMEOUT = serverSettings.getProperty("SelectTimeout", 100L);
 
 		Config.DEFAULT_LANG = serverSettings.getProperty("DefaultLang", "ru");
 		Config.RESTART_AT_TIME = serverSettings.getProperty("AutoRestartAt", "0 5 * * *");
@@ -1776,6 +1812,9 @@ public class Config
 	public static int INSTANCES_LEVEL_MAX;
 	public static int INSTANCES_PARTY_MIN;
 	public static int INSTANCES_PARTY_MAX;
+	public static boolean ALLOW_INSTANCE_POOL;
+	public static int INSTANCE_POOL_MAX_SIZE;
+	public static int INSTANCE_POOL_INTERVAL;
 
 	public static void loadInstancesConfig()
 	{
@@ -1787,6 +1826,9 @@ public class Config
 		Config.INSTANCES_LEVEL_MAX = instancesSettings.getProperty("InstancesLevelMax", 85);
 		Config.INSTANCES_PARTY_MIN = instancesSettings.getProperty("InstancesPartyMin", 2);
 		Config.INSTANCES_PARTY_MAX = instancesSettings.getProperty("InstancesPartyMax", 100);
+		Config.ALLOW_INSTANCE_POOL = instancesSettings.getProperty("AllowInstancePool", false);
+		Config.INSTANCE_POOL_MAX_SIZE = instancesSettings.getProperty("InstancePoolMaxSize", 4);
+		Config.INSTANCE_POOL_INTERVAL = instancesSettings.getProperty("InstancePoolInterval", 60);
 	}
 
 	public static final String EPIC_BOSS_FILE = "config/Boss/epic.ini";
@@ -3958,6 +4000,7 @@ public class Config
 	public static boolean ALLOW_FALL_FROM_WALLS;
 	public static boolean ALLOW_KEYBOARD_MOVE;
 	public static boolean COMPACT_GEO;
+	public static boolean GEODATA_MAPPED;
 	public static int CLIENT_Z_SHIFT;
 	public static int MAX_Z_DIFF;
 	public static int MIN_LAYER_HEIGHT;
@@ -3971,6 +4014,13 @@ public class Config
 	public static int PATHFIND_MAX_Z_DIFF;
 	public static long PATHFIND_MAX_TIME;
 	public static String PATHFIND_BUFFERS;
+	public static boolean PATHFIND_HIERARCHICAL;
+	public static int PATHFIND_HIERARCHICAL_DISTANCE;
+	public static boolean PATHFIND_HIERARCHICAL_PRELOAD;
+	public static int PATHFIND_CLUSTER_SIZE;
+	public static boolean PATHFIND_ASYNC;
+	public static int PATHFIND_THREADS;
+	public static int PATHFIND_CACHE_SIZE;
 
 	public static int GEODATA_SKILL_CHECK_TASK_INTERVAL;
 	public static final String GEODATA_CONFIG_FILE = "config/geodata.ini";
@@ -3989,6 +4039,7 @@ public class Config
 		Config.ALLOW_FALL_FROM_WALLS = geodataSettings.getProperty("AllowFallFromWalls", false);
 		Config.ALLOW_KEYBOARD_MOVE = geodataSettings.getProperty("AllowMoveWithKeyboard", true);
 		Config.COMPACT_GEO = geodataSettings.getProperty("CompactGeoData", false);
+		Config.GEODATA_MAPPED = geodataSettings.getProperty("GeoDataMapped", false);
 		Config.CLIENT_Z_SHIFT = geodataSettings.getProperty("ClientZShift", 16);
 		Config.PATHFIND_BOOST = geodataSettings.getProperty("PathFindBoost", 2);
 		Config.PATHFIND_DIAGONAL = geodataSettings.getProperty("PathFindDiagonal", true);
@@ -4000,6 +4051,13 @@ public class Config
 		Config.REGION_EDGE_MAX_Z_DIFF = geodataSettings.getProperty("RegionEdgeMaxZDiff", 128);
 		Config.PATHFIND_MAX_TIME = geodataSettings.getProperty("PathFindMaxTime", 10000000);
 		Config.PATHFIND_BUFFERS = geodataSettings.getProperty("PathFindBuffers", "8x96;8x128;8x160;8x192;4x224;4x256;4x288;2x320;2x384;2x352;1x512");
+		Config.PATHFIND_HIERARCHICAL = geodataSettings.getProperty("PathFindHierarchical", false);
+		Config.PATHFIND_HIERARCHICAL_DISTANCE = geodataSettings.getProperty("PathFindHierarchicalDistance", 96);
+		Config.PATHFIND_HIERARCHICAL_PRELOAD = geodataSettings.getProperty("PathFindHierarchicalPreload", false);
+		Config.PATHFIND_CLUSTER_SIZE = geodataSettings.getProperty("PathFindClusterSize", 64);
+		Config.PATHFIND_ASYNC = geodataSettings.getProperty("PathFindAsync", true);
+		Config.PATHFIND_THREADS = geodataSettings.getProperty("PathFindThreads", 2);
+		Config.PATHFIND_CACHE_SIZE = geodataSettings.getProperty("PathFindCacheSize", 1024);
 		Config.GEODATA_SKILL_CHECK_TASK_INTERVAL = geodataSettings.getProperty("GeodataSkillCheckTaskInterval", 200);
 	}
 
@@ -4383,6 +4441,7 @@ public class Config
 	public static final String RANKING_CB_CONFIG_FILE = "config/CommunityBoardTerryMaster/ranking.ini";
 	public static int SERVER_RANKING_REWARD_ITEM_ID;
 	public static int[] SERVER_RANKING_REWARD_ITEM_COUNT;
+	public static int SERVER_RANKING_LIST_SIZE;
 
 	public static void loadRankingCBConfig()
 	{
@@ -4395,6 +4454,7 @@ public class Config
 			3,
 			1
 		});
+		Config.SERVER_RANKING_LIST_SIZE = rankingCBSetting.getProperty("ServerRankingListSize", 500);
 	}
 
 	public static final String AUGMENT_CB_CONFIG_FILE = "config/CommunityBoardTerryMaster/augment.ini";
@@ -44,6 +44,7 @@ import l2mv.gameserver.instancemanager.CursedWeaponsManager;
 import l2mv.gameserver.instancemanager.DimensionalRiftManager;
 import l2mv.gameserver.instancemanager.HellboundManager;
 import l2mv.gameserver.instancemanager.L2TopManager;
+import l2mv.gameserver.instancemanager.LeaderboardManager;
 import l2mv.gameserver.instancemanager.PetitionManager;
 import l2mv.gameserver.instancemanager.PlayerMessageStack;
 import l2mv.gameserver.instancemanager.QuestManager;
@@ -326,6 +327,7 @@ public class GameServer
 		printSection("");
 		CharacterDAO.getInstance();
 		ClanTable.getInstance();
+		LeaderboardManager.getInstance().load();
 		printSection("Fish Table");
 		FishTable.getInstance();
 		printSection("Skills");
@@ -12,8 +12,12 @@ import org.slf4j.LoggerFactory;
 import l2mv.commons.net.nio.impl.SelectorThread;
 import l2mv.commons.time.cron.SchedulingPattern;
 import l2mv.commons.time.cron.SchedulingPattern.InvalidPatternException;
+import l2mv.gameserver.dao.CharacterStoreQueue;
 import l2mv.gameserver.dao.DatabaseBackupManager;
+import l2mv.gameserver.dao.ItemsDAO;
+import l2mv.gameserver.dao.QuestStoreQueue;
 import l2mv.gameserver.database.DatabaseFactory;
+import l2mv.gameserver.geodata.PathFindService;
 import l2mv.gameserver.hwid.HwidEngine;
 import l2mv.gameserver.instancemanager.CoupleManager;
 import l2mv.gameserver.instancemanager.CursedWeaponsManager;
@@ -28,6 +32,7 @@ import l2mv.gameserver.model.entity.SevenSigns;
 import l2mv.gameserver.model.entity.SevenSignsFestival.SevenSignsFestival;
 import l2mv.gameserver.model.entity.olympiad.OlympiadDatabase;
 import l2mv.gameserver.network.GameClient;
+import l2mv.gameserver.network.GamePacketExecutor;
 import l2mv.gameserver.network.loginservercon.AuthServerCommunication;
 import l2mv.gameserver.network.serverpackets.SystemMessage;
 import l2mv.gameserver.scripts.Scripts;
@@ -163,6 +168,15 @@ public class Shutdown extends Thread
 		_log.info("Saving data...");
 		saveData();
 
+		_log.info("Flushing character store queue...");
+		CharacterStoreQueue.getInstance().shutdown();
+
+		_log.info("Flushing item writes...");
+		ItemsDAO.getInstance().shutdown();
+
+		_log.info("Flushing quest writes...");
+		QuestStoreQueue.getInstance().shutdown();
+
 		_log.info("Deleting Void Items...");
 		removeVoidItems();
 
@@ -173,6 +187,8 @@ public class Shutdown extends Thread
 		{
 			_log.info("Shutting down thread pool...");
 			ThreadPoolManager.getInstance().shutdown();
+			GamePacketExecutor.getInstance().shutdown();
+			PathFindService.getInstance().shutdown();
 		}
 		catch (InterruptedException e)
 		{
@@ -1,5 +1,6 @@
 package l2mv.gameserver.ai;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -355,6 +356,53 @@ public class DefaultAI extends CharacterAI
 		return !target.isInvisible();
 	}
 
+	/**
+	 * Класс AI, в котором последний раз переопределены checkAggression или canAttackCharacter
+	 */
+	private static final ClassValue<Class<?>> AGGRESSION_DECLARER = new ClassValue<Class<?>>()
+	{
+		@Override
+		protected Class<?> computeValue(Class<?> type)
+		{
+			for (Class<?> c = type; c != DefaultAI.class; c = c.getSuperclass())
+			{
+				for (Method method : c.getDeclaredMethods())
+				{
+					if ((method.getName().equals("checkAggression") && Arrays.equals(method.getParameterTypes(), new Class<?>[]
+					{
+						Creature.class,
+						boolean.class
+					})) || (method.getName().equals("canAttackCharacter") && Arrays.equals(method.getParameterTypes(), new Class<?>[]
+					{
+						Creature.class
+					})))
+					{
+						return c;
+					}
+				}
+			}
+			return DefaultAI.class;
+		}
+	};
+
+	/**
+	 * @return класс, задающий правила агрессии этого AI
+	 */
+	protected final Class<?> getAggressionDeclarer()
+	{
+		return AGGRESSION_DECLARER.get(getClass());
+	}
+
+	/**
+	 * Определяет, может ли этот AI по своей инициативе нападать только на Playable. Тогда поиск целей в thinkActive
+	 * просматривает только игроков и питомцев и пропускается, если по счетчикам регионов их рядом нет.
+	 * AI с собственными checkAggression или canAttackCharacter по умолчанию просматривают всех персонажей.
+	 */
+	protected boolean isPlayableAggressionOnly()
+	{
+		return getAggressionDeclarer() == DefaultAI.class;
+	}
+
 	protected boolean checkAggression(Creature target)
 	{
 		return checkAggression(target, false);
@@ -468,7 +516,7 @@ public class DefaultAI extends CharacterAI
 			return false;
 		}
 
-		return !actor.isMoving && maybeMoveToHome();
+		return !actor.isMoving && !actor.isPathPending() && maybeMoveToHome();
 	}
 
 	/**
@@ -504,7 +552,16 @@ public class DefaultAI extends CharacterAI
 				 * We call checkAggresion but without action, only checking, then if aggrolist is not empty then we sort it by distance and do the attack
 				 * If done otherwise, the performance drop is huge
 				 */
-				final List<Creature> knowns = World.getAroundCharacters(actor);
+				final List<? extends Creature> knowns;
+				if (isPlayableAggressionOnly())
+				{
+					// Целью могут быть только игроки и питомцы: без них рядом не просматриваем окружение вовсе
+					knowns = World.hasAroundPlayables(actor) ? World.getAroundPlayables(actor) : Collections.<Creature> emptyList();
+				}
+				else
+				{
+					knowns = World.getAroundCharacters(actor);
+				}
 				if (!knowns.isEmpty())
 				{
 					final List<Creature> aggroList = new ArrayList<>();
@@ -834,18 +891,22 @@ public class DefaultAI extends CharacterAI
 				return maybeNextTask(currentTask);
 			}
 
-			if (actor.isMoving)
+			if (actor.isMoving || actor.isPathPending())
 			{
 				return false;
 			}
 
-			if (!actor.moveToLocation(currentTask.loc, 0, currentTask.pathfind))
+			// Путь ищется асинхронно, после телепорта задание завершится на следующем ходу AI
+			final Location loc = currentTask.loc;
+			actor.moveToLocationAsync(loc, 0, currentTask.pathfind, moved ->
 			{
-				clientStopMoving();
-				_pathfindFails = 0;
-				actor.teleToLocation(currentTask.loc);
-				return maybeNextTask(currentTask);
-			}
+				if (!moved)
+				{
+					clientStopMoving();
+					_pathfindFails = 0;
+					actor.teleToLocation(loc);
+				}
+			});
 		}
 			break;
 		// Задание "добежать - ударить"
@@ -1204,10 +1265,13 @@ public class DefaultAI extends CharacterAI
 		actor.setWalking();
 
 		// Телепортируемся домой, только если далеко от дома
-		if (!actor.moveToLocation(pos.x, pos.y, pos.z, 0, true) && !isInRange)
+		actor.moveToLocationAsync(pos, 0, true, moved ->
 		{
-			teleportHome();
-		}
+			if (!moved && !isInRange)
+			{
+				teleportHome();
+			}
+		});
 
 		return true;
 	}
@@ -48,6 +48,13 @@ public class Guard extends Fighter
 		return super.checkAggression(target, avoidAttack);
 	}
 
+	@Override
+	protected boolean isPlayableAggressionOnly()
+	{
+		// Monsters are never attacked on own initiative, see checkAggression
+		return getAggressionDeclarer() == Guard.class;
+	}
+
 	@Override
 	public int getMaxAttackTimeout()
 	{
@@ -14,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import l2mv.gameserver.Config;
 import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.database.mysql;
+import l2mv.gameserver.instancemanager.LeaderboardManager;
 import l2mv.gameserver.model.GameObjectsStorage;
 import l2mv.gameserver.model.Player;
 import l2mv.gameserver.utils.Language;
@@ -84,6 +85,12 @@ public class CharacterDAO
 			return;
 		}
 
+		// Отложенные записи квестов не должны попасть в базу после удаления
+		for (int objid : objids)
+		{
+			QuestStoreQueue.getInstance().flush(objid);
+		}
+
 		try (Connection con = DatabaseFactory.getInstance().getConnection())
 		{
 			StringBuilder queryFinishBuilder = new StringBuilder();
@@ -231,6 +238,7 @@ public class CharacterDAO
 
 			queryFinish = queryFinish.replace("obj_Id", "owner_id");
 
+			ItemsDAO.getInstance().flush();
 			try (PreparedStatement statement = con.prepareStatement("DELETE FROM items WHERE " + queryFinish))
 			{
 				statement.execute();
@@ -240,6 +248,11 @@ public class CharacterDAO
 		{
 			_log.error("Error while deleting character!", e);
 		}
+
+		for (int objid : objids)
+		{
+			LeaderboardManager.getInstance().remove(objid);
+		}
 	}
 
 	public boolean insert(Player player)
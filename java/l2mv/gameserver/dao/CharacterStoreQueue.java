@@ -0,0 +1,551 @@
+package l2mv.gameserver.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import l2mv.commons.threading.LoggingRejectedExecutionHandler;
+import l2mv.commons.threading.PriorityThreadFactory;
+import l2mv.commons.threading.RunnableImpl;
+import l2mv.gameserver.Config;
+import l2mv.gameserver.database.DatabaseFactory;
+
+/**
+ * Write-behind queue for character saves.
+ * <p>
+ * The state of a character is captured on the calling thread as a {@link Snapshot}: a list of statements with their parameter values.
+ * Snapshots are kept per character, so a newer save of a character that has not been written yet is merged into one write. Pending
+ * snapshots are written by a dedicated pool of writers in one transaction per flush, the same statement of all characters of the flush
+ * being executed as a single JDBC batch. A character is never written by two writers at the same time, so saves of a character
+ * reach the database in the order they were made.
+ */
+public class CharacterStoreQueue
+{
+	private static final Logger _log = LoggerFactory.getLogger(CharacterStoreQueue.class);
+
+	private static final CharacterStoreQueue _instance = new CharacterStoreQueue();
+
+	public static CharacterStoreQueue getInstance()
+	{
+		return _instance;
+	}
+
+	/**
+	 * State of a character to be written, taken on the thread that saves the character.
+	 * Saves that add their statements in the same order are written with the fewest batches.
+	 */
+	public static class Snapshot
+	{
+		private final int _objectId;
+		private final String _accountName;
+		private final List<String> _statements = new ArrayList<String>();
+		private final List<Object[]> _parameters = new ArrayList<Object[]>();
+		/** Строки, значения которых запомнены этим снимком, забываются если запись не удалась */
+		private final List<StoredRow> _rows = new ArrayList<StoredRow>();
+		private boolean _reduced;
+
+		public Snapshot(int objectId, String accountName)
+		{
+			_objectId = objectId;
+			_accountName = accountName;
+		}
+
+		/**
+		 * @param sql запрос
+		 * @param parameters значения параметров, должны быть неизменяемыми или скопированными
+		 */
+		public Snapshot add(String sql, Object... parameters)
+		{
+			_statements.add(sql);
+			_parameters.add(parameters);
+			return this;
+		}
+
+		void addRow(StoredRow row)
+		{
+			_rows.add(row);
+		}
+
+		/**
+		 * Отмечает, что часть состояния персонажа не попала в снимок, так как не изменилась с прошлого сохранения.
+		 */
+		public void setReduced()
+		{
+			_reduced = true;
+		}
+
+		public boolean isReduced()
+		{
+			return _reduced;
+		}
+
+		/**
+		 * Дописывает перед запросами снимка запросы более старого, еще не записанного снимка того же персонажа.
+		 * Снимки с записью только изменившихся столбцов не заменяют друг друга, а дополняют.
+		 */
+		void merge(Snapshot older)
+		{
+			_statements.addAll(0, older._statements);
+			_parameters.addAll(0, older._parameters);
+			_rows.addAll(older._rows);
+			_reduced |= older._reduced;
+		}
+
+		public int getObjectId()
+		{
+			return _objectId;
+		}
+
+		public String getAccountName()
+		{
+			return _accountName;
+		}
+
+		public int size()
+		{
+			return _statements.size();
+		}
+
+		public boolean isEmpty()
+		{
+			return _statements.isEmpty();
+		}
+	}
+
+	/** Снимки, ожидающие записи, по objectId */
+	private final Map<Integer, Snapshot> _pending = new LinkedHashMap<Integer, Snapshot>();
+	/** Персонажи, записываемые в данный момент, с их аккаунтами */
+	private final Map<Integer, String> _inFlight = new HashMap<Integer, String>();
+
+	private final ScheduledThreadPoolExecutor _writers;
+	private volatile boolean _shutdown;
+
+	private final AtomicLong _storeCount = new AtomicLong();
+	private final AtomicLong _coalescedCount = new AtomicLong();
+	private final AtomicLong _skippedCount = new AtomicLong();
+	private final AtomicLong _reducedCount = new AtomicLong();
+	private final AtomicLong _writtenCount = new AtomicLong();
+	private final AtomicLong _failedCount = new AtomicLong();
+	private final AtomicLong _batchCount = new AtomicLong();
+	private final AtomicLong _rowCount = new AtomicLong();
+	private final AtomicLong _maxRowsPerBatch = new AtomicLong();
+	private final AtomicLong _flushTime = new AtomicLong();
+	private final AtomicLong _maxFlushTime = new AtomicLong();
+
+	private CharacterStoreQueue()
+	{
+		_writers = new ScheduledThreadPoolExecutor(Math.max(1, Config.CHARACTER_STORE_THREADS), new PriorityThreadFactory("CharacterStoreWriter", Thread.NORM_PRIORITY), new LoggingRejectedExecutionHandler());
+		if (Config.CHARACTER_STORE_WRITE_BEHIND)
+		{
+			_writers.scheduleWithFixedDelay(new RunnableImpl()
+			{
+				@Override
+				public void runImpl()
+				{
+					schedulePending();
+				}
+			}, Config.CHARACTER_STORE_FLUSH_DELAY, Config.CHARACTER_STORE_FLUSH_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Ставит снимок в очередь на запись, заменяя еще не записанный снимок того же персонажа.
+	 * Если отложенная запись выключена или сервер выключается, снимок записывается сразу.
+	 */
+	public void store(Snapshot snapshot)
+	{
+		if (snapshot.isEmpty())
+		{
+			_skippedCount.incrementAndGet();
+			return;
+		}
+
+		_storeCount.incrementAndGet();
+		if (snapshot.isReduced())
+		{
+			_reducedCount.incrementAndGet();
+		}
+
+		if (!Config.CHARACTER_STORE_WRITE_BEHIND || _shutdown)
+		{
+			storeNow(snapshot);
+			return;
+		}
+
+		synchronized (_pending)
+		{
+			Snapshot pending = _pending.put(snapshot.getObjectId(), snapshot);
+			if (pending != null)
+			{
+				snapshot.merge(pending);
+				_coalescedCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Записывает снимок на текущем потоке, предварительно дописав ожидающий снимок того же персонажа.
+	 */
+	public void storeNow(Snapshot snapshot)
+	{
+		if (snapshot.isEmpty())
+		{
+			return;
+		}
+
+		List<Snapshot> batch = new ArrayList<Snapshot>(2);
+		synchronized (_pending)
+		{
+			if (!acquire(snapshot.getObjectId(), snapshot.getAccountName()))
+			{
+				// Interrupted while another writer held the character, the save is left to the writers
+				Snapshot pending = _pending.put(snapshot.getObjectId(), snapshot);
+				if (pending != null)
+				{
+					snapshot.merge(pending);
+				}
+				return;
+			}
+			Snapshot pending = _pending.remove(snapshot.getObjectId());
+			if (pending != null)
+			{
+				batch.add(pending);
+			}
+		}
+		batch.add(snapshot);
+		write(batch);
+	}
+
+	/**
+	 * Дожидается записи всех сохранений персонажа. Вызывается перед чтением персонажа из базы.
+	 */
+	public void flush(int objectId)
+	{
+		Snapshot pending;
+		synchronized (_pending)
+		{
+			if (!acquire(objectId, null))
+			{
+				return;
+			}
+			pending = _pending.remove(objectId);
+			if (pending == null)
+			{
+				release(Collections.singletonList(objectId));
+				return;
+			}
+			_inFlight.put(objectId, pending.getAccountName());
+		}
+		write(Collections.singletonList(pending));
+	}
+
+	/**
+	 * Дожидается записи всех сохранений персонажей аккаунта, в том числе уже взятых писателями.
+	 */
+	public void flush(String accountName)
+	{
+		List<Integer> objectIds = new ArrayList<Integer>();
+		synchronized (_pending)
+		{
+			for (Snapshot snapshot : _pending.values())
+			{
+				if (snapshot.getAccountName() != null && snapshot.getAccountName().equalsIgnoreCase(accountName))
+				{
+					objectIds.add(snapshot.getObjectId());
+				}
+			}
+			for (Map.Entry<Integer, String> entry : _inFlight.entrySet())
+			{
+				if (entry.getValue() != null && entry.getValue().equalsIgnoreCase(accountName) && !objectIds.contains(entry.getKey()))
+				{
+					objectIds.add(entry.getKey());
+				}
+			}
+		}
+		for (int objectId : objectIds)
+		{
+			flush(objectId);
+		}
+	}
+
+	/**
+	 * Дописывает очередь и останавливает писателей. Сохранения после вызова записываются сразу.
+	 */
+	public void shutdown()
+	{
+		_shutdown = true;
+		_writers.shutdown();
+		try
+		{
+			_writers.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (InterruptedException e)
+		{
+			_log.error("CharacterStoreQueue: interrupted while waiting for writers!", e);
+		}
+
+		List<Snapshot> batch;
+		while (!(batch = takeBatch()).isEmpty())
+		{
+			write(batch);
+		}
+
+		synchronized (_pending)
+		{
+			if (!_pending.isEmpty() || !_inFlight.isEmpty())
+			{
+				_log.warn("CharacterStoreQueue: " + (_pending.size() + _inFlight.size()) + " character saves were not written!");
+			}
+		}
+	}
+
+	/**
+	 * Раздает ожидающие снимки писателям пачками.
+	 */
+	private void schedulePending()
+	{
+		List<Snapshot> batch;
+		while (!(batch = takeBatch()).isEmpty())
+		{
+			final List<Snapshot> toWrite = batch;
+			_writers.execute(new RunnableImpl()
+			{
+				@Override
+				public void runImpl()
+				{
+					write(toWrite);
+				}
+			});
+		}
+	}
+
+	private List<Snapshot> takeBatch()
+	{
+		synchronized (_pending)
+		{
+			List<Snapshot> batch = new ArrayList<Snapshot>(Math.min(_pending.size(), Config.CHARACTER_STORE_BATCH_SIZE));
+			Iterator<Snapshot> iterator = _pending.values().iterator();
+			while (iterator.hasNext() && batch.size() < Config.CHARACTER_STORE_BATCH_SIZE)
+			{
+				Snapshot snapshot = iterator.next();
+				// The character is still being written, its newer save waits for the next flush
+				if (!_inFlight.containsKey(snapshot.getObjectId()))
+				{
+					_inFlight.put(snapshot.getObjectId(), snapshot.getAccountName());
+					batch.add(snapshot);
+					iterator.remove();
+				}
+			}
+			return batch;
+		}
+	}
+
+	/**
+	 * Must be called while holding the _pending lock.
+	 * @return false if the thread was interrupted before the character was released by another writer, the character is not acquired then
+	 */
+	private boolean acquire(int objectId, String accountName)
+	{
+		while (_inFlight.containsKey(objectId))
+		{
+			try
+			{
+				_pending.wait();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		_inFlight.put(objectId, accountName);
+		return true;
+	}
+
+	private void release(List<Integer> objectIds)
+	{
+		synchronized (_pending)
+		{
+			_inFlight.keySet().removeAll(objectIds);
+			_pending.notifyAll();
+		}
+	}
+
+	/**
+	 * Записывает снимки одной транзакцией, каждый запрос одним пакетом для всех персонажей.
+	 * Если пакет не удалось записать, снимки записываются по одному, чтобы ошибка одного персонажа не теряла сохранения остальных.
+	 */
+	private void write(List<Snapshot> batch)
+	{
+		List<Integer> objectIds = new ArrayList<Integer>(batch.size());
+		for (Snapshot snapshot : batch)
+		{
+			objectIds.add(snapshot.getObjectId());
+		}
+
+		try
+		{
+			long start = System.currentTimeMillis();
+			int rows = writeBatch(batch);
+
+			long time = System.currentTimeMillis() - start;
+			_writtenCount.addAndGet(batch.size());
+			_batchCount.incrementAndGet();
+			_rowCount.addAndGet(rows);
+			_flushTime.addAndGet(time);
+			updateMax(_maxRowsPerBatch, rows);
+			updateMax(_maxFlushTime, time);
+		}
+		catch (SQLException e)
+		{
+			if (batch.size() == 1)
+			{
+				_failedCount.incrementAndGet();
+				forgetRows(batch.get(0));
+				_log.error("CharacterStoreQueue: could not store character " + batch.get(0).getObjectId() + "!", e);
+			}
+			else
+			{
+				_log.warn("CharacterStoreQueue: batch of " + batch.size() + " characters failed, storing them one by one.", e);
+				for (Snapshot snapshot : batch)
+				{
+					try
+					{
+						writeBatch(Collections.singletonList(snapshot));
+						_writtenCount.incrementAndGet();
+					}
+					catch (SQLException e2)
+					{
+						_failedCount.incrementAndGet();
+						forgetRows(snapshot);
+						_log.error("CharacterStoreQueue: could not store character " + snapshot.getObjectId() + "!", e2);
+					}
+				}
+			}
+		}
+		finally
+		{
+			release(objectIds);
+		}
+	}
+
+	/**
+	 * Записанные значения строк неизвестны, следующее сохранение персонажа запишет их полностью.
+	 */
+	private static void forgetRows(Snapshot snapshot)
+	{
+		for (StoredRow row : snapshot._rows)
+		{
+			row.reset();
+		}
+	}
+
+	private static int writeBatch(List<Snapshot> batch) throws SQLException
+	{
+		int rows = 0;
+		try (Connection con = DatabaseFactory.getInstance().getConnection())
+		{
+			boolean autoCommit = con.getAutoCommit();
+			con.setAutoCommit(false);
+			try
+			{
+				// Snapshots may differ in their statements, so a batch takes the next statement of the first unfinished snapshot
+				// together with the same statement standing next in every other one. Statements of a character keep their order.
+				int[] positions = new int[batch.size()];
+				String sql;
+				while ((sql = nextStatement(batch, positions)) != null)
+				{
+					try (PreparedStatement statement = con.prepareStatement(sql))
+					{
+						for (int s = 0; s < batch.size(); s++)
+						{
+							Snapshot snapshot = batch.get(s);
+							while (positions[s] < snapshot.size() && sql.equals(snapshot._statements.get(positions[s])))
+							{
+								Object[] parameters = snapshot._parameters.get(positions[s]++);
+								for (int i = 0; i < parameters.length; i++)
+								{
+									statement.setObject(i + 1, parameters[i]);
+								}
+								statement.addBatch();
+								rows++;
+							}
+						}
+						statement.executeBatch();
+					}
+				}
+				con.commit();
+			}
+			catch (SQLException e)
+			{
+				con.rollback();
+				throw e;
+			}
+			finally
+			{
+				con.setAutoCommit(autoCommit);
+			}
+		}
+		return rows;
+	}
+
+	private static String nextStatement(List<Snapshot> batch, int[] positions)
+	{
+		for (int s = 0; s < batch.size(); s++)
+		{
+			if (positions[s] < batch.get(s).size())
+			{
+				return batch.get(s)._statements.get(positions[s]);
+			}
+		}
+		return null;
+	}
+
+	private static void updateMax(AtomicLong max, long value)
+	{
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value))
+		{
+		}
+	}
+
+	public int getQueueSize()
+	{
+		synchronized (_pending)
+		{
+			return _pending.size();
+		}
+	}
+
+	public CharSequence getStats()
+	{
+		long batches = _batchCount.get();
+		StringBuilder list = new StringBuilder();
+		list.append("Character store").append("\n");
+		list.append("     Write behind: ................ ").append(Config.CHARACTER_STORE_WRITE_BEHIND).append("\n");
+		list.append("     Queue size: .................. ").append(getQueueSize()).append("\n");
+		list.append("     Stores: ...................... ").append(_storeCount.get()).append("\n");
+		list.append("     Coalesced: ................... ").append(_coalescedCount.get()).append("\n");
+		list.append("     Skipped, unchanged: .......... ").append(_skippedCount.get()).append("\n");
+		list.append("     Reduced, changes only: ....... ").append(_reducedCount.get()).append("\n");
+		list.append("     Written: ..................... ").append(_writtenCount.get()).append("\n");
+		list.append("     Failed: ...................... ").append(_failedCount.get()).append("\n");
+		list.append("     Batches: ..................... ").append(batches).append("\n");
+		list.append("     Rows per batch avg/max: ...... ").append(batches == 0 ? 0 : _rowCount.get() / batches).append('/').append(_maxRowsPerBatch.get()).append("\n");
+		list.append("     Flush time avg/max (ms): ..... ").append(batches == 0 ? 0 : _flushTime.get() / batches).append('/').append(_maxFlushTime.get()).append("\n");
+		return list;
+	}
+}
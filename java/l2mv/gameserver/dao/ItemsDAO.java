@@ -59,27 +59,57 @@ public class ItemsDAO implements JdbcDAO<Integer, ItemInstance>
 		@Override
 		public long getInsertCount()
 		{
-			return insert.get();
+			return insert.get() + queue.getInsertCount();
 		}
 
 		@Override
 		public long getUpdateCount()
 		{
-			return update.get();
+			return update.get() + queue.getUpdateCount();
 		}
 
 		@Override
 		public long getDeleteCount()
 		{
-			return delete.get();
+			return delete.get() + queue.getDeleteCount();
+		}
+
+		@Override
+		public long getCoalescedCount()
+		{
+			return queue.getCoalescedCount();
 		}
 	};
 
+	private final ItemsStoreQueue queue = new ItemsStoreQueue(STORE_ITEM, UPDATE_ITEM, REMOVE_ITEM);
+
 	private ItemsDAO()
 	{
 		cache = CacheManager.getInstance().getCache(ItemInstance.class.getName());
 	}
 
+	/**
+	 * Записывает все отложенные изменения предметов на текущем потоке.
+	 * Вызывается после операций, которые не должны потеряться при падении сервера: обмен, почта, склад.
+	 */
+	public void flush()
+	{
+		queue.flush();
+	}
+
+	/**
+	 * Дописывает отложенные изменения предметов и переводит запись в синхронный режим.
+	 */
+	public void shutdown()
+	{
+		queue.shutdown();
+	}
+
+	public int getQueueSize()
+	{
+		return queue.getQueueSize();
+	}
+
 	public Cache getCache()
 	{
 		return cache;
@@ -171,8 +201,44 @@ public class ItemsDAO implements JdbcDAO<Integer, ItemInstance>
 		statement.setInt(20, item.getVisualItemId());
 	}
 
+	/**
+	 * @return значения столбцов в порядке STORE_ITEM
+	 */
+	private static Object[] values0(ItemInstance item)
+	{
+		return new Object[]
+		{
+			item.getObjectId(),
+			item.getOwnerId(),
+			item.getItemId(),
+			item.getCount(),
+			item.getEnchantLevel(),
+			item.getLocName(),
+			item.getLocData(),
+			item.getCustomType1(),
+			item.getCustomType2(),
+			item.getLifeTime(),
+			item.getCustomFlags(),
+			item.getAugmentationId(),
+			item.getAttributes().getFire(),
+			item.getAttributes().getWater(),
+			item.getAttributes().getWind(),
+			item.getAttributes().getEarth(),
+			item.getAttributes().getHoly(),
+			item.getAttributes().getUnholy(),
+			item.getAgathionEnergy(),
+			item.getVisualItemId()
+		};
+	}
+
 	private void save0(ItemInstance item) throws SQLException
 	{
+		if (queue.isEnabled())
+		{
+			queue.insert(item.getObjectId(), values0(item));
+			return;
+		}
+
 		Connection con = null;
 		PreparedStatement statement = null;
 		try
@@ -197,6 +263,12 @@ public class ItemsDAO implements JdbcDAO<Integer, ItemInstance>
 
 	private void delete0(ItemInstance item) throws SQLException
 	{
+		if (queue.isEnabled())
+		{
+			queue.delete(item.getObjectId());
+			return;
+		}
+
 		Connection con = null;
 		PreparedStatement statement = null;
 		try
@@ -240,6 +312,12 @@ public class ItemsDAO implements JdbcDAO<Integer, ItemInstance>
 
 	private void update0(ItemInstance item) throws SQLException
 	{
+		if (queue.isEnabled())
+		{
+			queue.update(item.getObjectId(), values0(item));
+			return;
+		}
+
 		Connection con = null;
 		PreparedStatement statement = null;
 		try
@@ -269,6 +347,12 @@ public class ItemsDAO implements JdbcDAO<Integer, ItemInstance>
 			return item;
 		}
 
+		// The row may have changes not written yet, or being written right now
+		if (queue.isPending(objectId))
+		{
+			queue.flush();
+		}
+
 		try
 		{
 			item = load0(objectId);
@@ -454,6 +538,8 @@ public class ItemsDAO implements JdbcDAO<Integer, ItemInstance>
 	{
 		Collection<Integer> objectIds = Collections.emptyList();
 
+		queue.flush();
+
 		Connection con = null;
 		PreparedStatement statement = null;
 		ResultSet rset = null;
@@ -487,6 +573,8 @@ public class ItemsDAO implements JdbcDAO<Integer, ItemInstance>
 	{
 		Collection<Integer> objectIds = Collections.emptyList();
 
+		queue.flush();
+
 		try (Connection con = DatabaseFactory.getInstance().getConnection(); PreparedStatement statement = con.prepareStatement(RESTORE_ITEMS))
 		{
 			statement.setString(1, loc.name());
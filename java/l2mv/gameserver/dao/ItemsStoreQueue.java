@@ -0,0 +1,378 @@
+package l2mv.gameserver.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import l2mv.commons.threading.LoggingRejectedExecutionHandler;
+import l2mv.commons.threading.PriorityThreadFactory;
+import l2mv.commons.threading.RunnableImpl;
+import l2mv.gameserver.Config;
+import l2mv.gameserver.database.DatabaseFactory;
+
+/**
+ * Write-behind queue for the items table, used by {@link ItemsDAO}.
+ * <p>
+ * Only the last pending write of every item is kept: repeated updates of an item within a flush window collapse into one row write,
+ * an update of an item that is not inserted yet is folded into its insert, and an item created and deleted within the window never
+ * reaches the database. A flush executes deletes, inserts and updates as JDBC batches in one transaction; flushes never overlap, so
+ * writes of an item reach the database in the order they were made.
+ */
+public class ItemsStoreQueue
+{
+	private static final Logger _log = LoggerFactory.getLogger(ItemsStoreQueue.class);
+
+	private static final int MAX_BATCH_ROWS = 500;
+
+	private static enum Operation
+	{
+		INSERT,
+		UPDATE,
+		DELETE,
+		/** Удаление и повторная вставка строки с тем же objectId */
+		REPLACE
+	}
+
+	private static class PendingWrite
+	{
+		final int objectId;
+		Operation operation;
+		/** Значения столбцов в порядке INSERT, null для удаления */
+		Object[] values;
+
+		PendingWrite(int objectId, Operation operation, Object[] values)
+		{
+			this.objectId = objectId;
+			this.operation = operation;
+			this.values = values;
+		}
+	}
+
+	private final String _insertSql;
+	private final String _updateSql;
+	private final String _deleteSql;
+
+	/** Ожидающие записи по objectId */
+	private final Map<Integer, PendingWrite> _pending = new LinkedHashMap<Integer, PendingWrite>();
+	/** Предметы, записываемые в данный момент */
+	private final Set<Integer> _inFlight = new HashSet<Integer>();
+	/** Запись идет строго по одной, чтобы более поздняя запись предмета не обогнала раннюю */
+	private final Object _writeLock = new Object();
+
+	private final ScheduledThreadPoolExecutor _writer;
+	private volatile boolean _shutdown;
+
+	private final AtomicLong _insertCount = new AtomicLong();
+	private final AtomicLong _updateCount = new AtomicLong();
+	private final AtomicLong _deleteCount = new AtomicLong();
+	private final AtomicLong _coalescedCount = new AtomicLong();
+
+	/**
+	 * @param insertSql вставка, параметры в порядке значений столбцов, objectId первый
+	 * @param updateSql обновление, параметры в порядке значений столбцов без objectId, objectId последний
+	 * @param deleteSql удаление по objectId
+	 */
+	ItemsStoreQueue(String insertSql, String updateSql, String deleteSql)
+	{
+		_insertSql = insertSql;
+		_updateSql = updateSql;
+		_deleteSql = deleteSql;
+
+		_writer = new ScheduledThreadPoolExecutor(1, new PriorityThreadFactory("ItemsStoreWriter", Thread.NORM_PRIORITY), new LoggingRejectedExecutionHandler());
+		if (Config.ITEMS_WRITE_BEHIND)
+		{
+			_writer.scheduleWithFixedDelay(new RunnableImpl()
+			{
+				@Override
+				public void runImpl()
+				{
+					flush();
+				}
+			}, Config.ITEMS_FLUSH_DELAY, Config.ITEMS_FLUSH_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public boolean isEnabled()
+	{
+		return Config.ITEMS_WRITE_BEHIND && !_shutdown;
+	}
+
+	public void insert(int objectId, Object[] values)
+	{
+		synchronized (_pending)
+		{
+			PendingWrite pending = _pending.get(objectId);
+			if (pending == null)
+			{
+				_pending.put(objectId, new PendingWrite(objectId, Operation.INSERT, values));
+				return;
+			}
+
+			// A row that may already exist, e.g. an id deleted and reused before the delete was written, is replaced
+			pending.operation = pending.operation == Operation.INSERT ? Operation.INSERT : Operation.REPLACE;
+			pending.values = values;
+			_coalescedCount.incrementAndGet();
+		}
+	}
+
+	public void update(int objectId, Object[] values)
+	{
+		synchronized (_pending)
+		{
+			PendingWrite pending = _pending.get(objectId);
+			if (pending == null)
+			{
+				_pending.put(objectId, new PendingWrite(objectId, Operation.UPDATE, values));
+				return;
+			}
+
+			if (pending.operation == Operation.DELETE)
+			{
+				// Deleted items are not updatable, the write is stale
+				return;
+			}
+
+			// Pending insert or update just takes the newer values
+			pending.values = values;
+			_coalescedCount.incrementAndGet();
+		}
+	}
+
+	public void delete(int objectId)
+	{
+		synchronized (_pending)
+		{
+			PendingWrite pending = _pending.get(objectId);
+			if (pending == null)
+			{
+				_pending.put(objectId, new PendingWrite(objectId, Operation.DELETE, null));
+				return;
+			}
+
+			_coalescedCount.incrementAndGet();
+			if (pending.operation == Operation.INSERT)
+			{
+				// Never written, nothing to delete
+				_pending.remove(objectId);
+				return;
+			}
+
+			pending.operation = Operation.DELETE;
+			pending.values = null;
+		}
+	}
+
+	/**
+	 * @return true, если запись предмета ожидает очереди или выполняется. Дождаться ее можно через {@link #flush()}.
+	 */
+	public boolean isPending(int objectId)
+	{
+		synchronized (_pending)
+		{
+			return _pending.containsKey(objectId) || _inFlight.contains(objectId);
+		}
+	}
+
+	public int getQueueSize()
+	{
+		synchronized (_pending)
+		{
+			return _pending.size();
+		}
+	}
+
+	/**
+	 * Записывает все ожидающие записи на текущем потоке и дожидается их завершения.
+	 */
+	public void flush()
+	{
+		synchronized (_writeLock)
+		{
+			List<PendingWrite> writes;
+			synchronized (_pending)
+			{
+				if (_pending.isEmpty())
+				{
+					return;
+				}
+				writes = new ArrayList<PendingWrite>(_pending.values());
+				_inFlight.addAll(_pending.keySet());
+				_pending.clear();
+			}
+
+			try
+			{
+				write(writes);
+			}
+			catch (SQLException e)
+			{
+				_log.warn("ItemsStoreQueue: batch of " + writes.size() + " item writes failed, writing them one by one.", e);
+				for (PendingWrite write : writes)
+				{
+					try
+					{
+						write(Collections.singletonList(write));
+					}
+					catch (SQLException e2)
+					{
+						_log.error("ItemsStoreQueue: could not write item " + write.objectId + " (" + write.operation + ")!", e2);
+					}
+				}
+			}
+			finally
+			{
+				synchronized (_pending)
+				{
+					_inFlight.clear();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Дописывает очередь и останавливает писателя. Записи после вызова выполняются сразу.
+	 */
+	public void shutdown()
+	{
+		_shutdown = true;
+		_writer.shutdown();
+		try
+		{
+			_writer.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (InterruptedException e)
+		{
+			_log.error("ItemsStoreQueue: interrupted while waiting for writer!", e);
+		}
+		flush();
+	}
+
+	private void write(List<PendingWrite> writes) throws SQLException
+	{
+		List<PendingWrite> deletes = new ArrayList<PendingWrite>();
+		List<PendingWrite> inserts = new ArrayList<PendingWrite>();
+		List<PendingWrite> updates = new ArrayList<PendingWrite>();
+		for (PendingWrite write : writes)
+		{
+			switch (write.operation)
+			{
+			case DELETE:
+				deletes.add(write);
+				break;
+			case REPLACE:
+				deletes.add(write);
+				inserts.add(write);
+				break;
+			case INSERT:
+				inserts.add(write);
+				break;
+			case UPDATE:
+				updates.add(write);
+				break;
+			}
+		}
+
+		try (Connection con = DatabaseFactory.getInstance().getConnection())
+		{
+			boolean autoCommit = con.getAutoCommit();
+			con.setAutoCommit(false);
+			try
+			{
+				// Every item has one pending write, so only a replaced row needs its delete before its insert
+				executeBatch(con, _deleteSql, deletes, Operation.DELETE);
+				executeBatch(con, _insertSql, inserts, Operation.INSERT);
+				executeBatch(con, _updateSql, updates, Operation.UPDATE);
+				con.commit();
+			}
+			catch (SQLException e)
+			{
+				con.rollback();
+				throw e;
+			}
+			finally
+			{
+				con.setAutoCommit(autoCommit);
+			}
+		}
+
+		_deleteCount.addAndGet(deletes.size());
+		_insertCount.addAndGet(inserts.size());
+		_updateCount.addAndGet(updates.size());
+	}
+
+	private static void executeBatch(Connection con, String sql, List<PendingWrite> writes, Operation operation) throws SQLException
+	{
+		if (writes.isEmpty())
+		{
+			return;
+		}
+
+		try (PreparedStatement statement = con.prepareStatement(sql))
+		{
+			int rows = 0;
+			for (PendingWrite write : writes)
+			{
+				switch (operation)
+				{
+				case DELETE:
+					statement.setInt(1, write.objectId);
+					break;
+				case INSERT:
+					for (int i = 0; i < write.values.length; i++)
+					{
+						statement.setObject(i + 1, write.values[i]);
+					}
+					break;
+				default:
+					// objectId goes last in the update
+					for (int i = 1; i < write.values.length; i++)
+					{
+						statement.setObject(i, write.values[i]);
+					}
+					statement.setObject(write.values.length, write.values[0]);
+					break;
+				}
+				statement.addBatch();
+
+				if (++rows % MAX_BATCH_ROWS == 0)
+				{
+					statement.executeBatch();
+				}
+			}
+			statement.executeBatch();
+		}
+	}
+
+	public long getInsertCount()
+	{
+		return _insertCount.get();
+	}
+
+	public long getUpdateCount()
+	{
+		return _updateCount.get();
+	}
+
+	public long getDeleteCount()
+	{
+		return _deleteCount.get();
+	}
+
+	public long getCoalescedCount()
+	{
+		return _coalescedCount.get();
+	}
+}
@@ -82,6 +82,12 @@ public class MailDAO implements JdbcDAO<Integer, Mail>
 		{
 			return delete.get();
 		}
+
+		@Override
+		public long getCoalescedCount()
+		{
+			return 0;
+		}
 	};
 
 	private MailDAO()
@@ -0,0 +1,422 @@
+package l2mv.gameserver.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import l2mv.commons.threading.LoggingRejectedExecutionHandler;
+import l2mv.commons.threading.PriorityThreadFactory;
+import l2mv.commons.threading.RunnableImpl;
+import l2mv.gameserver.Config;
+import l2mv.gameserver.database.DatabaseFactory;
+
+/**
+ * Write-behind journal for the character_quests table.
+ * <p>
+ * Changed quest variables are kept in memory per character, only the last value of a (quest, variable) pair is written, so a variable
+ * set many times within a flush window costs one row write. Deleting a whole quest drops the pending writes of its variables and is
+ * written before any variable of the quest set after it. A flush executes quest deletes, variable deletes and variable writes as JDBC
+ * batches in one transaction; flushes never overlap, so the database always gets the writes of a character in the order they were made.
+ * <p>
+ * The journal is flushed by a timer, on logout of the character, before quests of a character are read from the database and on
+ * shutdown.
+ */
+public class QuestStoreQueue
+{
+	private static final Logger _log = LoggerFactory.getLogger(QuestStoreQueue.class);
+
+	private static final int MAX_BATCH_ROWS = 500;
+
+	private static final String DELETE_QUEST = "DELETE FROM character_quests WHERE char_id=? AND name=?";
+	private static final String DELETE_VAR = "DELETE FROM character_quests WHERE char_id=? AND name=? AND var=?";
+	private static final String REPLACE_VAR = "REPLACE INTO character_quests (char_id,name,var,value) VALUES (?,?,?,?)";
+
+	private static final QuestStoreQueue _instance = new QuestStoreQueue();
+
+	public static QuestStoreQueue getInstance()
+	{
+		return _instance;
+	}
+
+	/**
+	 * Ожидающие записи одного персонажа
+	 */
+	private static class PendingQuests
+	{
+		final int objectId;
+		/** Квесты, удаляемые целиком. Удаление пишется раньше переменных квеста. */
+		final Set<String> deletedQuests = new LinkedHashSet<String>();
+		/** Значения переменных по квестам, null для удаления переменной */
+		final Map<String, Map<String, String>> vars = new LinkedHashMap<String, Map<String, String>>();
+
+		PendingQuests(int objectId)
+		{
+			this.objectId = objectId;
+		}
+	}
+
+	/** Ожидающие записи по objectId */
+	private final Map<Integer, PendingQuests> _pending = new LinkedHashMap<Integer, PendingQuests>();
+	/** Запись идет строго по одной, чтобы более поздняя запись квеста не обогнала раннюю */
+	private final Object _writeLock = new Object();
+
+	private final ScheduledThreadPoolExecutor _writer;
+	private volatile boolean _shutdown;
+
+	private final AtomicLong _setCount = new AtomicLong();
+	private final AtomicLong _coalescedCount = new AtomicLong();
+	private final AtomicLong _replaceCount = new AtomicLong();
+	private final AtomicLong _deleteCount = new AtomicLong();
+	private final AtomicLong _flushCount = new AtomicLong();
+	private final AtomicLong _failedCount = new AtomicLong();
+
+	private QuestStoreQueue()
+	{
+		_writer = new ScheduledThreadPoolExecutor(1, new PriorityThreadFactory("QuestStoreWriter", Thread.NORM_PRIORITY), new LoggingRejectedExecutionHandler());
+		if (Config.QUESTS_WRITE_BEHIND)
+		{
+			_writer.scheduleWithFixedDelay(new RunnableImpl()
+			{
+				@Override
+				public void runImpl()
+				{
+					flush();
+				}
+			}, Config.QUESTS_FLUSH_DELAY, Config.QUESTS_FLUSH_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private boolean isEnabled()
+	{
+		return Config.QUESTS_WRITE_BEHIND && !_shutdown;
+	}
+
+	/**
+	 * Записывает значение переменной квеста персонажа.
+	 */
+	public void set(int objectId, String quest, String var, String value)
+	{
+		put(objectId, quest, var, value);
+	}
+
+	/**
+	 * Удаляет переменную квеста персонажа.
+	 */
+	public void delete(int objectId, String quest, String var)
+	{
+		put(objectId, quest, var, null);
+	}
+
+	/**
+	 * Удаляет квест персонажа со всеми переменными.
+	 */
+	public void delete(int objectId, String quest)
+	{
+		if (!isEnabled())
+		{
+			PendingQuests write = new PendingQuests(objectId);
+			write.deletedQuests.add(quest);
+			writeNow(write);
+			return;
+		}
+
+		synchronized (_pending)
+		{
+			PendingQuests pending = getPending(objectId);
+			Map<String, String> vars = pending.vars.remove(quest);
+			if (vars != null)
+			{
+				_coalescedCount.addAndGet(vars.size());
+			}
+			if (!pending.deletedQuests.add(quest))
+			{
+				_coalescedCount.incrementAndGet();
+			}
+		}
+	}
+
+	private void put(int objectId, String quest, String var, String value)
+	{
+		_setCount.incrementAndGet();
+
+		if (!isEnabled())
+		{
+			PendingQuests write = new PendingQuests(objectId);
+			write.vars.computeIfAbsent(quest, k -> new HashMap<String, String>()).put(var, value);
+			writeNow(write);
+			return;
+		}
+
+		synchronized (_pending)
+		{
+			Map<String, String> vars = getPending(objectId).vars.computeIfAbsent(quest, k -> new LinkedHashMap<String, String>());
+			if (vars.containsKey(var))
+			{
+				_coalescedCount.incrementAndGet();
+			}
+			vars.put(var, value);
+		}
+	}
+
+	/**
+	 * Must be called while holding the _pending lock.
+	 */
+	private PendingQuests getPending(int objectId)
+	{
+		PendingQuests pending = _pending.get(objectId);
+		if (pending == null)
+		{
+			pending = new PendingQuests(objectId);
+			_pending.put(objectId, pending);
+		}
+		return pending;
+	}
+
+	/**
+	 * Записывает запись, минуя очередь. Ожидающие записи того же персонажа пишутся раньше нее.
+	 */
+	private void writeNow(PendingQuests write)
+	{
+		synchronized (_writeLock)
+		{
+			PendingQuests pending;
+			synchronized (_pending)
+			{
+				pending = _pending.remove(write.objectId);
+			}
+			if (pending != null)
+			{
+				write(Collections.singletonList(pending));
+			}
+			write(Collections.singletonList(write));
+		}
+	}
+
+	/**
+	 * Записывает все ожидающие записи на текущем потоке и дожидается их завершения.
+	 */
+	public void flush()
+	{
+		synchronized (_writeLock)
+		{
+			List<PendingQuests> writes;
+			synchronized (_pending)
+			{
+				if (_pending.isEmpty())
+				{
+					return;
+				}
+				writes = new ArrayList<PendingQuests>(_pending.values());
+				_pending.clear();
+			}
+			write(writes);
+		}
+	}
+
+	/**
+	 * Дожидается записи всех квестов персонажа. Вызывается перед чтением квестов персонажа из базы.
+	 */
+	public void flush(int objectId)
+	{
+		synchronized (_writeLock)
+		{
+			PendingQuests pending;
+			synchronized (_pending)
+			{
+				pending = _pending.remove(objectId);
+			}
+			if (pending != null)
+			{
+				write(Collections.singletonList(pending));
+			}
+		}
+	}
+
+	/**
+	 * Записывает квесты персонажа в фоне, не дожидаясь таймера. Вызывается при выходе персонажа из игры.
+	 */
+	public void flushLater(final int objectId)
+	{
+		if (_shutdown)
+		{
+			flush(objectId);
+			return;
+		}
+
+		synchronized (_pending)
+		{
+			if (!_pending.containsKey(objectId))
+			{
+				return;
+			}
+		}
+
+		_writer.execute(new RunnableImpl()
+		{
+			@Override
+			public void runImpl()
+			{
+				flush(objectId);
+			}
+		});
+	}
+
+	/**
+	 * Дописывает журнал и останавливает писателя. Записи после вызова выполняются сразу.
+	 */
+	public void shutdown()
+	{
+		_shutdown = true;
+		_writer.shutdown();
+		try
+		{
+			_writer.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (InterruptedException e)
+		{
+			_log.error("QuestStoreQueue: interrupted while waiting for writer!", e);
+		}
+		flush();
+	}
+
+	/**
+	 * Записывает персонажей одной транзакцией. Если пакет не удалось записать, персонажи записываются по одному, чтобы ошибка одного
+	 * персонажа не теряла квесты остальных.
+	 */
+	private void write(List<PendingQuests> writes)
+	{
+		try
+		{
+			writeBatch(writes);
+			_flushCount.incrementAndGet();
+		}
+		catch (SQLException e)
+		{
+			if (writes.size() == 1)
+			{
+				_failedCount.incrementAndGet();
+				_log.error("QuestStoreQueue: could not store quests of character " + writes.get(0).objectId + "!", e);
+				return;
+			}
+
+			_log.warn("QuestStoreQueue: batch of " + writes.size() + " characters failed, writing them one by one.", e);
+			for (PendingQuests write : writes)
+			{
+				write(Collections.singletonList(write));
+			}
+		}
+	}
+
+	private void writeBatch(List<PendingQuests> writes) throws SQLException
+	{
+		int questDeletes = 0, varDeletes = 0, replaces = 0;
+		try (Connection con = DatabaseFactory.getInstance().getConnection())
+		{
+			boolean autoCommit = con.getAutoCommit();
+			con.setAutoCommit(false);
+			try (PreparedStatement deleteQuest = con.prepareStatement(DELETE_QUEST); PreparedStatement deleteVar = con.prepareStatement(DELETE_VAR); PreparedStatement replaceVar = con.prepareStatement(REPLACE_VAR))
+			{
+				// Variables set after a quest delete are not in the journal before it, so deleting whole quests first keeps the order
+				for (PendingQuests write : writes)
+				{
+					for (String quest : write.deletedQuests)
+					{
+						deleteQuest.setInt(1, write.objectId);
+						deleteQuest.setString(2, quest);
+						deleteQuest.addBatch();
+						if (++questDeletes % MAX_BATCH_ROWS == 0)
+						{
+							deleteQuest.executeBatch();
+						}
+					}
+				}
+				deleteQuest.executeBatch();
+
+				// A variable has one pending value, deletes and writes of different variables do not depend on each other
+				for (PendingQuests write : writes)
+				{
+					for (Map.Entry<String, Map<String, String>> quest : write.vars.entrySet())
+					{
+						for (Map.Entry<String, String> var : quest.getValue().entrySet())
+						{
+							if (var.getValue() == null)
+							{
+								deleteVar.setInt(1, write.objectId);
+								deleteVar.setString(2, quest.getKey());
+								deleteVar.setString(3, var.getKey());
+								deleteVar.addBatch();
+								if (++varDeletes % MAX_BATCH_ROWS == 0)
+								{
+									deleteVar.executeBatch();
+								}
+							}
+							else
+							{
+								replaceVar.setInt(1, write.objectId);
+								replaceVar.setString(2, quest.getKey());
+								replaceVar.setString(3, var.getKey());
+								replaceVar.setString(4, var.getValue());
+								replaceVar.addBatch();
+								if (++replaces % MAX_BATCH_ROWS == 0)
+								{
+									replaceVar.executeBatch();
+								}
+							}
+						}
+					}
+				}
+				deleteVar.executeBatch();
+				replaceVar.executeBatch();
+				con.commit();
+			}
+			catch (SQLException e)
+			{
+				con.rollback();
+				throw e;
+			}
+			finally
+			{
+				con.setAutoCommit(autoCommit);
+			}
+		}
+
+		_deleteCount.addAndGet(questDeletes + varDeletes);
+		_replaceCount.addAndGet(replaces);
+	}
+
+	public int getQueueSize()
+	{
+		synchronized (_pending)
+		{
+			return _pending.size();
+		}
+	}
+
+	public CharSequence getStats()
+	{
+		StringBuilder list = new StringBuilder();
+		list.append("Quest store").append("\n");
+		list.append("     Write behind: ................ ").append(Config.QUESTS_WRITE_BEHIND).append("\n");
+		list.append("     Characters pending: .......... ").append(getQueueSize()).append("\n");
+		list.append("     Variable writes: ............. ").append(_setCount.get()).append("\n");
+		list.append("     Coalesced: ................... ").append(_coalescedCount.get()).append("\n");
+		list.append("     Rows replaced/deleted: ....... ").append(_replaceCount.get()).append('/').append(_deleteCount.get()).append("\n");
+		list.append("     Flushes: ..................... ").append(_flushCount.get()).append("\n");
+		list.append("     Failed: ...................... ").append(_failedCount.get()).append("\n");
+		return list;
+	}
+}
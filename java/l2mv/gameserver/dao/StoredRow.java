@@ -0,0 +1,145 @@
+package l2mv.gameserver.dao;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Строка таблицы, сохраняемая через {@link CharacterStoreQueue}, вместе с последними отправленными на запись значениями.
+ * <p>
+ * При сохранении значения сравниваются с предыдущими: в снимок попадает UPDATE только изменившихся столбцов, а строка без изменений
+ * не пишется вовсе. Полное сохранение пишет все столбцы независимо от того, что запомнено.
+ */
+public class StoredRow
+{
+	/**
+	 * Описание таблицы, общее для всех строк. Запросы для каждого набора изменившихся столбцов строятся один раз, чтобы одинаковые
+	 * сохранения разных персонажей попадали в один пакет.
+	 */
+	public static class Table
+	{
+		private final String _name;
+		private final String _where;
+		private final String[] _columns;
+		private final Map<BitSet, String> _updates = new ConcurrentHashMap<BitSet, String>();
+
+		/**
+		 * @param name имя таблицы
+		 * @param where условие, параметры которого передаются ключом строки, например "obj_Id=? LIMIT 1"
+		 * @param columns сохраняемые столбцы
+		 */
+		public Table(String name, String where, String... columns)
+		{
+			_name = name;
+			_where = where;
+			_columns = columns;
+		}
+
+		public int getColumnCount()
+		{
+			return _columns.length;
+		}
+
+		private String getUpdate(BitSet changed)
+		{
+			String sql = _updates.get(changed);
+			if (sql == null)
+			{
+				StringBuilder sb = new StringBuilder();
+				sb.append("UPDATE ").append(_name).append(" SET ");
+				for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1))
+				{
+					if (sb.charAt(sb.length() - 1) == '?')
+					{
+						sb.append(',');
+					}
+					sb.append(_columns[i]).append("=?");
+				}
+				sb.append(" WHERE ").append(_where);
+				sql = sb.toString();
+				_updates.put(changed, sql);
+			}
+			return sql;
+		}
+	}
+
+	private final Table _table;
+	private Object[] _stored;
+	private Object[] _storedKey;
+
+	public StoredRow(Table table)
+	{
+		_table = table;
+	}
+
+	/**
+	 * Добавляет в снимок запись изменившихся столбцов строки.
+	 * @param snapshot снимок персонажа
+	 * @param full записать все столбцы
+	 * @param values значения столбцов в порядке описания таблицы, массив не должен изменяться после вызова
+	 * @param key значения параметров условия
+	 * @return true, если строка попала в снимок
+	 */
+	public synchronized boolean store(CharacterStoreQueue.Snapshot snapshot, boolean full, Object[] values, Object... key)
+	{
+		if (values.length != _table.getColumnCount())
+		{
+			throw new IllegalArgumentException("Expected " + _table.getColumnCount() + " values for " + _table._name + ", got " + values.length);
+		}
+
+		// The row was written under another key, nothing is known about the new one
+		boolean all = full || _stored == null || !Arrays.equals(_storedKey, key);
+
+		BitSet changed = new BitSet(values.length);
+		for (int i = 0; i < values.length; i++)
+		{
+			if (all || !Objects.deepEquals(_stored[i], values[i]))
+			{
+				changed.set(i);
+			}
+		}
+
+		int count = changed.cardinality();
+		if (count < values.length)
+		{
+			snapshot.setReduced();
+		}
+		if (count == 0)
+		{
+			return false;
+		}
+
+		Object[] parameters = new Object[count + key.length];
+		int index = 0;
+		for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1))
+		{
+			parameters[index++] = values[i];
+		}
+		System.arraycopy(key, 0, parameters, index, key.length);
+		snapshot.add(_table.getUpdate(changed), parameters);
+		snapshot.addRow(this);
+
+		_stored = values;
+		_storedKey = key;
+		return true;
+	}
+
+	/**
+	 * @return true, если строка уже сохранялась и ее значения известны
+	 */
+	public synchronized boolean isStored()
+	{
+		return _stored != null;
+	}
+
+	/**
+	 * Забывает сохраненные значения, следующее сохранение запишет все столбцы.
+	 */
+	public synchronized void reset()
+	{
+		_stored = null;
+		_storedKey = null;
+	}
+}
@@ -1,6 +1,7 @@
 package l2mv.gameserver.data.xml.holder;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,6 +10,11 @@ import gnu.trove.iterator.TIntObjectIterator;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import l2mv.commons.data.xml.AbstractHolder;
 import l2mv.commons.lang.ArrayUtils;
+import l2mv.gameserver.model.reward.RewardData;
+import l2mv.gameserver.model.reward.RewardGroup;
+import l2mv.gameserver.model.reward.RewardList;
+import l2mv.gameserver.model.reward.RewardSource;
+import l2mv.gameserver.model.reward.RewardType;
 import l2mv.gameserver.templates.npc.NpcTemplate;
 
 public final class NpcHolder extends AbstractHolder
@@ -19,6 +25,8 @@ public final class NpcHolder extends AbstractHolder
 	private TIntObjectHashMap<List<NpcTemplate>> _npcsByLevel;
 	private NpcTemplate[] _allTemplates;
 	private Map<String, NpcTemplate> _npcsNames;
+	/** Обратный индекс наград: itemId -> вхождения в списки наград NPC */
+	private TIntObjectHashMap<List<RewardSource>> _rewardsByItem = new TIntObjectHashMap<List<RewardSource>>();
 
 	public static NpcHolder getInstance()
 	{
@@ -61,6 +69,52 @@ public final class NpcHolder extends AbstractHolder
 		return _npcs.values(new NpcTemplate[_npcs.size()]);
 	}
 
+	/**
+	 * @return все вхождения предмета в списки наград NPC, в порядке шаблонов и списков
+	 */
+	public List<RewardSource> getRewardSources(int itemId)
+	{
+		List<RewardSource> sources = _rewardsByItem.get(itemId);
+		return sources == null ? Collections.<RewardSource> emptyList() : sources;
+	}
+
+	/**
+	 * @return itemId всех предметов, которые есть в списках наград NPC
+	 */
+	public int[] getRewardItemIds()
+	{
+		return _rewardsByItem.keys();
+	}
+
+	private void buildRewardIndex()
+	{
+		TIntObjectHashMap<List<RewardSource>> rewardsByItem = new TIntObjectHashMap<List<RewardSource>>();
+		for (NpcTemplate npc : _allTemplates)
+		{
+			if (npc == null)
+			{
+				continue;
+			}
+
+			for (Map.Entry<RewardType, RewardList> entry : npc.getRewards().entrySet())
+			{
+				for (RewardGroup group : entry.getValue())
+				{
+					for (RewardData data : group.getItems())
+					{
+						List<RewardSource> sources = rewardsByItem.get(data.getItemId());
+						if (sources == null)
+						{
+							rewardsByItem.put(data.getItemId(), sources = new ArrayList<RewardSource>(1));
+						}
+						sources.add(new RewardSource(npc, entry.getKey(), group, data));
+					}
+				}
+			}
+		}
+		_rewardsByItem = rewardsByItem;
+	}
+
 	private void buildFastLookupTable()
 	{
 		_npcsByLevel = new TIntObjectHashMap<List<NpcTemplate>>();
@@ -99,6 +153,7 @@ public final class NpcHolder extends AbstractHolder
 	protected void process()
 	{
 		buildFastLookupTable();
+		buildRewardIndex();
 	}
 
 	@Override
@@ -112,5 +167,6 @@ public final class NpcHolder extends AbstractHolder
 	{
 		_npcsNames.clear();
 		_npcs.clear();
+		_rewardsByItem = new TIntObjectHashMap<List<RewardSource>>();
 	}
 }
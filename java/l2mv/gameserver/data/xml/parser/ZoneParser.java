@@ -174,6 +174,10 @@ public class ZoneParser extends AbstractDirParser<ZoneHolder>
 				{
 					error("Empty territory for zone: " + zoneDat.get("name"));
 				}
+				else
+				{
+					territory.buildRaster();
+				}
 				ZoneTemplate template = new ZoneTemplate(zoneDat);
 				getHolder().addTemplate(template);
 			}
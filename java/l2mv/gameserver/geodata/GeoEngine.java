@@ -6,10 +6,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -61,6 +63,25 @@ public class GeoEngine
 	 */
 	private static final byte[][][][][] geodata = new byte[World.WORLD_SIZE_X][World.WORLD_SIZE_Y][1][][];
 
+	/**
+	 * Unmodified blocks of every region as they were loaded from the file. <BR>
+	 * Reflection layers (and the main layer) share these blocks and copy a block only when a collision is written into it, <BR>
+	 * so a block is owned by a layer when it is not the same array as the base one. <BR>
+	 */
+	private static final byte[][][][] baseGeodata = new byte[World.WORLD_SIZE_X][World.WORLD_SIZE_Y][][];
+
+	/**
+	 * Mapped storage (Config.GEODATA_MAPPED): every layer of a region is a private mapping of the region file, <BR>
+	 * the blocks are read directly from it and the system copies only the pages written by collisions. <BR>
+	 * Third [] is the reflection layer like in geodata. <BR>
+	 */
+	private static final MappedByteBuffer[][][] mappedGeodata = new MappedByteBuffer[World.WORLD_SIZE_X][World.WORLD_SIZE_Y][];
+
+	/**
+	 * Mapped storage: offset of every block of the region inside the file, shared by all layers of the region.
+	 */
+	private static final int[][][] blockOffsets = new int[World.WORLD_SIZE_X][World.WORLD_SIZE_Y][];
+
 	public static short getType(int x, int y, int geoIndex)
 	{
 		return NgetType(x - World.MAP_MIN_X >> 4, y - World.MAP_MIN_Y >> 4, geoIndex);
@@ -1078,21 +1099,22 @@ public class GeoEngine
 	{
 		result[0] = 0;
 		byte[] block = getGeoBlockFromGeoCoords(geoX, geoY, geoIndex);
-		if (block == null)
+		ByteBuffer buf = block == null ? getGeoBufferFromGeoCoords(geoX, geoY, geoIndex) : null;
+		if (block == null && buf == null)
 		{
 			return;
 		}
 
 		int cellX, cellY;
-		int index = 0;
+		int index = block == null ? getBlockOffset(geoX, geoY) : 0;
 		// Read current block type: 0 - flat, 1 - complex, 2 - multilevel
-		byte type = block[index];
+		byte type = get(block, buf, index);
 		index++;
 
 		switch (type)
 		{
 		case BLOCKTYPE_FLAT:
-			short height = makeShort(block[index + 1], block[index]);
+			short height = makeShort(get(block, buf, index + 1), get(block, buf, index));
 			height = (short) (height & 0x0fff0);
 			result[0]++;
 			result[1] = (short) ((short) (height << 1) | NSWE_ALL);
@@ -1101,7 +1123,7 @@ public class GeoEngine
 			cellX = getCell(geoX);
 			cellY = getCell(geoY);
 			index += (cellX << 3) + cellY << 1;
-			height = makeShort(block[index + 1], block[index]);
+			height = makeShort(get(block, buf, index + 1), get(block, buf, index));
 			result[0]++;
 			result[1] = height;
 			return;
@@ -1111,11 +1133,11 @@ public class GeoEngine
 			int offset = (cellX << 3) + cellY;
 			while (offset > 0)
 			{
-				byte lc = block[index];
+				byte lc = get(block, buf, index);
 				index += (lc << 1) + 1;
 				offset--;
 			}
-			byte layer_count = block[index];
+			byte layer_count = get(block, buf, index);
 			index++;
 			if (layer_count <= 0 || layer_count > MAX_LAYERS)
 			{
@@ -1124,7 +1146,7 @@ public class GeoEngine
 			result[0] = layer_count;
 			while (layer_count > 0)
 			{
-				result[layer_count] = makeShort(block[index + 1], block[index]);
+				result[layer_count] = makeShort(get(block, buf, index + 1), get(block, buf, index));
 				layer_count--;
 				index += 2;
 			}
@@ -1138,41 +1160,43 @@ public class GeoEngine
 	private static short NgetType(int geoX, int geoY, int geoIndex)
 	{
 		byte[] block = getGeoBlockFromGeoCoords(geoX, geoY, geoIndex);
+		ByteBuffer buf = block == null ? getGeoBufferFromGeoCoords(geoX, geoY, geoIndex) : null;
 
-		if (block == null)
+		if (block == null && buf == null)
 		{
 			return 0;
 		}
 
-		return block[0];
+		return get(block, buf, block == null ? getBlockOffset(geoX, geoY) : 0);
 	}
 
 	public static int NgetHeight(int geoX, int geoY, int z, int geoIndex)
 	{
 		byte[] block = getGeoBlockFromGeoCoords(geoX, geoY, geoIndex);
+		ByteBuffer buf = block == null ? getGeoBufferFromGeoCoords(geoX, geoY, geoIndex) : null;
 
-		if (block == null)
+		if (block == null && buf == null)
 		{
 			return z;
 		}
 
-		int cellX, cellY, index = 0;
+		int cellX, cellY, index = block == null ? getBlockOffset(geoX, geoY) : 0;
 
 		// Read current block type: 0 - flat, 1 - complex, 2 - multilevel
-		byte type = block[index];
+		byte type = get(block, buf, index);
 		index++;
 
 		short height;
 		switch (type)
 		{
 		case BLOCKTYPE_FLAT:
-			height = makeShort(block[index + 1], block[index]);
+			height = makeShort(get(block, buf, index + 1), get(block, buf, index));
 			return (short) (height & 0x0fff0);
 		case BLOCKTYPE_COMPLEX:
 			cellX = getCell(geoX);
 			cellY = getCell(geoY);
 			index += (cellX << 3) + cellY << 1;
-			height = makeShort(block[index + 1], block[index]);
+			height = makeShort(get(block, buf, index + 1), get(block, buf, index));
 			return (short) ((short) (height & 0x0fff0) >> 1); // height / 2
 		case BLOCKTYPE_MULTILEVEL:
 			cellX = getCell(geoX);
@@ -1180,11 +1204,11 @@ public class GeoEngine
 			int offset = (cellX << 3) + cellY;
 			while (offset > 0)
 			{
-				byte lc = block[index];
+				byte lc = get(block, buf, index);
 				index += (lc << 1) + 1;
 				offset--;
 			}
-			byte layers = block[index];
+			byte layers = get(block, buf, index);
 			index++;
 			if (layers <= 0 || layers > MAX_LAYERS)
 			{
@@ -1197,7 +1221,7 @@ public class GeoEngine
 
 			while (layers > 0)
 			{
-				height = (short) ((short) (makeShort(block[index + 1], block[index]) & 0x0fff0) >> 1);
+				height = (short) ((short) (makeShort(get(block, buf, index + 1), get(block, buf, index)) & 0x0fff0) >> 1);
 				if (height < z_nearest_lower_limit)
 				{
 					z_nearest_lower = Math.max(z_nearest_lower, height);
@@ -1227,17 +1251,18 @@ public class GeoEngine
 	public static byte NgetNSWE(int geoX, int geoY, int z, int geoIndex)
 	{
 		byte[] block = getGeoBlockFromGeoCoords(geoX, geoY, geoIndex);
+		ByteBuffer buf = block == null ? getGeoBufferFromGeoCoords(geoX, geoY, geoIndex) : null;
 
-		if (block == null)
+		if (block == null && buf == null)
 		{
 			return NSWE_ALL;
 		}
 
 		int cellX, cellY;
-		int index = 0;
+		int index = block == null ? getBlockOffset(geoX, geoY) : 0;
 
 		// Read current block type: 0 - flat, 1 - complex, 2 - multilevel
-		byte type = block[index];
+		byte type = get(block, buf, index);
 		index++;
 
 		switch (type)
@@ -1248,7 +1273,7 @@ public class GeoEngine
 			cellX = getCell(geoX);
 			cellY = getCell(geoY);
 			index += (cellX << 3) + cellY << 1;
-			short height = makeShort(block[index + 1], block[index]);
+			short height = makeShort(get(block, buf, index + 1), get(block, buf, index));
 			return (byte) (height & 0x0F);
 		case BLOCKTYPE_MULTILEVEL:
 			cellX = getCell(geoX);
@@ -1256,11 +1281,11 @@ public class GeoEngine
 			int offset = (cellX << 3) + cellY;
 			while (offset > 0)
 			{
-				byte lc = block[index];
+				byte lc = get(block, buf, index);
 				index += (lc << 1) + 1;
 				offset--;
 			}
-			byte layers = block[index];
+			byte layers = get(block, buf, index);
 			index++;
 			if (layers <= 0 || layers > MAX_LAYERS)
 			{
@@ -1275,7 +1300,7 @@ public class GeoEngine
 
 			while (layers > 0)
 			{
-				height = (short) ((short) (makeShort(block[index + 1], block[index]) & 0x0fff0) >> 1); // height / 2
+				height = (short) ((short) (makeShort(get(block, buf, index + 1), get(block, buf, index)) & 0x0fff0) >> 1); // height / 2
 
 				if (height < z_nearest_lower_limit)
 				{
@@ -1297,11 +1322,11 @@ public class GeoEngine
 
 			if (index_nswe1 > 0)
 			{
-				return (byte) (makeShort(block[index_nswe1 + 1], block[index_nswe1]) & 0x0F);
+				return (byte) (makeShort(get(block, buf, index_nswe1 + 1), get(block, buf, index_nswe1)) & 0x0F);
 			}
 			if (index_nswe2 > 0)
 			{
-				return (byte) (makeShort(block[index_nswe2 + 1], block[index_nswe2]) & 0x0F);
+				return (byte) (makeShort(get(block, buf, index_nswe2 + 1), get(block, buf, index_nswe2)) & 0x0F);
 			}
 
 			return NSWE_ALL;
@@ -1314,25 +1339,26 @@ public class GeoEngine
 	public static void NgetHeightAndNSWE(int geoX, int geoY, short z, short[] result, int geoIndex)
 	{
 		byte[] block = getGeoBlockFromGeoCoords(geoX, geoY, geoIndex);
+		ByteBuffer buf = block == null ? getGeoBufferFromGeoCoords(geoX, geoY, geoIndex) : null;
 
-		if (block == null)
+		if (block == null && buf == null)
 		{
 			result[0] = z;
 			result[1] = NSWE_ALL;
 			return;
 		}
 
-		int cellX, cellY, index = 0;
+		int cellX, cellY, index = block == null ? getBlockOffset(geoX, geoY) : 0;
 		short height, NSWE = NSWE_ALL;
 
 		// Read current block type: 0 - flat, 1 - complex, 2 - multilevel
-		byte type = block[index];
+		byte type = get(block, buf, index);
 		index++;
 
 		switch (type)
 		{
 		case BLOCKTYPE_FLAT:
-			height = makeShort(block[index + 1], block[index]);
+			height = makeShort(get(block, buf, index + 1), get(block, buf, index));
 			result[0] = (short) (height & 0x0fff0);
 			result[1] = NSWE_ALL;
 			return;
@@ -1340,7 +1366,7 @@ public class GeoEngine
 			cellX = getCell(geoX);
 			cellY = getCell(geoY);
 			index += (cellX << 3) + cellY << 1;
-			height = makeShort(block[index + 1], block[index]);
+			height = makeShort(get(block, buf, index + 1), get(block, buf, index));
 			result[0] = (short) ((short) (height & 0x0fff0) >> 1); // height / 2
 			result[1] = (short) (height & 0x0F);
 			return;
@@ -1350,11 +1376,11 @@ public class GeoEngine
 			int offset = (cellX << 3) + cellY;
 			while (offset > 0)
 			{
-				byte lc = block[index];
+				byte lc = get(block, buf, index);
 				index += (lc << 1) + 1;
 				offset--;
 			}
-			byte layers = block[index];
+			byte layers = get(block, buf, index);
 			index++;
 			if (layers <= 0 || layers > MAX_LAYERS)
 			{
@@ -1371,7 +1397,7 @@ public class GeoEngine
 
 			while (layers > 0)
 			{
-				height = (short) ((short) (makeShort(block[index + 1], block[index]) & 0x0fff0) >> 1); // height / 2
+				height = (short) ((short) (makeShort(get(block, buf, index + 1), get(block, buf, index)) & 0x0fff0) >> 1); // height / 2
 
 				if (height < z_nearest_lower_limit)
 				{
@@ -1393,12 +1419,12 @@ public class GeoEngine
 
 			if (index_nswe1 > 0)
 			{
-				NSWE = makeShort(block[index_nswe1 + 1], block[index_nswe1]);
+				NSWE = makeShort(get(block, buf, index_nswe1 + 1), get(block, buf, index_nswe1));
 				NSWE = (short) (NSWE & 0x0F);
 			}
 			else if (index_nswe2 > 0)
 			{
-				NSWE = makeShort(block[index_nswe2 + 1], block[index_nswe2]);
+				NSWE = makeShort(get(block, buf, index_nswe2 + 1), get(block, buf, index_nswe2));
 				NSWE = (short) (NSWE & 0x0F);
 			}
 			result[0] = tempz1 > Short.MIN_VALUE ? tempz1 : tempz2;
@@ -1412,6 +1438,26 @@ public class GeoEngine
 		}
 	}
 
+	/**
+	 * Reads a byte of the block, either from the heap block or, in mapped storage, from the buffer at an absolute index
+	 */
+	private static byte get(byte[] block, ByteBuffer buf, int index)
+	{
+		return block != null ? block[index] : buf.get(index);
+	}
+
+	private static void put(byte[] block, ByteBuffer buf, int index, byte value)
+	{
+		if (block != null)
+		{
+			block[index] = value;
+		}
+		else
+		{
+			buf.put(index, value);
+		}
+	}
+
 	protected static short makeShort(byte b1, byte b0)
 	{
 		return (short) (b1 << 8 | b0 & 0xff);
@@ -1468,7 +1514,7 @@ public class GeoEngine
 	 */
 	private static byte[] getGeoBlockFromGeoCoords(int geoX, int geoY, int geoIndex)
 	{
-		if (!Config.ALLOW_GEODATA)
+		if (!Config.ALLOW_GEODATA || Config.GEODATA_MAPPED)
 		{
 			return null;
 		}
@@ -1515,6 +1561,158 @@ public class GeoEngine
 		return region[regIndex][getBlockIndex(blockX, blockY)];
 	}
 
+	/**
+	 * Mapped storage: the buffer of the layer containing the block, see getBlockOffset for the position of the block.
+	 * @param geoX geographic coordinates
+	 * @param geoY geographic coordinates
+	 * @param geoIndex index of the reflection layer
+	 * @return the mapped layer or null if there is no geodata
+	 */
+	private static ByteBuffer getGeoBufferFromGeoCoords(int geoX, int geoY, int geoIndex)
+	{
+		if (!Config.ALLOW_GEODATA || !Config.GEODATA_MAPPED)
+		{
+			return null;
+		}
+
+		int ix = geoX >> 11;
+		int iy = geoY >> 11;
+
+		if (ix < 0 || ix >= World.WORLD_SIZE_X || iy < 0 || iy >= World.WORLD_SIZE_Y)
+		{
+			return null;
+		}
+
+		MappedByteBuffer[] layers = mappedGeodata[ix][iy];
+		if (layers == null)
+		{
+			return null;
+		}
+
+		int regIndex = 0;
+		if ((geoIndex & 0x0f000000) == 0x0f000000 && ix == (geoIndex & 0x00ff0000) >> 16 && iy == (geoIndex & 0x0000ff00) >> 8)
+		{
+			regIndex = geoIndex & 0x000000ff;
+		}
+
+		return regIndex < layers.length ? layers[regIndex] : null;
+	}
+
+	/**
+	 * @return mapped storage: position of the block in the region file
+	 */
+	private static int getBlockOffset(int geoX, int geoY)
+	{
+		return blockOffsets[geoX >> 11][geoY >> 11][getBlockIndex(getBlock(geoX), getBlock(geoY))];
+	}
+
+	/**
+	 * Returns the block of the layer ready to be written: a block still shared with the base geodata is copied first.
+	 * @param geoX geographic coordinates
+	 * @param geoY geographic coordinates
+	 * @param geoIndex index of the reflection layer
+	 * @return the block owned by the layer
+	 */
+	private static byte[] getOwnGeoBlock(int geoX, int geoY, int geoIndex)
+	{
+		int ix = geoX >> 11;
+		int iy = geoY >> 11;
+
+		int regIndex = 0;
+		if ((geoIndex & 0x0f000000) == 0x0f000000 && ix == (geoIndex & 0x00ff0000) >> 16 && iy == (geoIndex & 0x0000ff00) >> 8)
+		{
+			regIndex = geoIndex & 0x000000ff;
+		}
+
+		byte[][] blocks = geodata[ix][iy][regIndex];
+		byte[][] base = baseGeodata[ix][iy];
+		int blockIndex = getBlockIndex(getBlock(geoX), getBlock(geoY));
+
+		synchronized (blocks)
+		{
+			byte[] block = blocks[blockIndex];
+			if (base != null && block == base[blockIndex])
+			{
+				block = block.clone();
+				blocks[blockIndex] = block;
+			}
+			return block;
+		}
+	}
+
+	/**
+	 * @return {shared bytes, copied bytes} of all loaded layers, the main layer included.
+	 * In mapped storage the copies are made by the system per page, then only the mapped bytes are known.
+	 */
+	public static long[] getLayersMemoryUsage()
+	{
+		long shared = 0, copied = 0;
+
+		synchronized (geodata)
+		{
+			for (int ix = 0; ix < World.WORLD_SIZE_X; ix++)
+			{
+				for (int iy = 0; iy < World.WORLD_SIZE_Y; iy++)
+				{
+					if (mappedGeodata[ix][iy] == null)
+					{
+						continue;
+					}
+
+					for (MappedByteBuffer layer : mappedGeodata[ix][iy])
+					{
+						if (layer != null)
+						{
+							shared += layer.capacity();
+						}
+					}
+				}
+			}
+
+			for (int ix = 0; ix < World.WORLD_SIZE_X; ix++)
+			{
+				for (int iy = 0; iy < World.WORLD_SIZE_Y; iy++)
+				{
+					byte[][] base = baseGeodata[ix][iy];
+					if (base == null || geodata[ix][iy] == null)
+					{
+						continue;
+					}
+
+					for (byte[][] blocks : geodata[ix][iy])
+					{
+						if (blocks == null)
+						{
+							continue;
+						}
+
+						for (int i = 0; i < BLOCKS_IN_MAP; i++)
+						{
+							if (blocks[i] == null)
+							{
+								continue;
+							}
+							if (blocks[i] == base[i])
+							{
+								shared += blocks[i].length;
+							}
+							else
+							{
+								copied += blocks[i].length;
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return new long[]
+		{
+			shared,
+			copied
+		};
+	}
+
 	/**
 	 * Download geodata in memory
 	 */
@@ -1544,6 +1742,8 @@ public class GeoEngine
 		int counter = 0;
 		Pattern p = Pattern.compile(Config.GEOFILES_PATTERN);
 
+		// Maps are independent, load them in parallel
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
 		for (File q : f.listFiles())
 		{
 			if (q.isDirectory())
@@ -1557,22 +1757,46 @@ public class GeoEngine
 			{
 				fn = fn.substring(0, 5); // cut off. l2j
 				String[] xy = fn.split("_");
-				byte rx = Byte.parseByte(xy[0]);
-				byte ry = Byte.parseByte(xy[1]);
+				final byte rx = Byte.parseByte(xy[0]);
+				final byte ry = Byte.parseByte(xy[1]);
 
-				LoadGeodataFile(rx, ry);
-				LoadGeodata(rx, ry, 0);
+				executor.execute(() ->
+				{
+					try
+					{
+						if (LoadGeodataFile(rx, ry))
+						{
+							LoadGeodata(rx, ry, 0);
+						}
+					}
+					catch (RuntimeException e)
+					{
+						_log.error("GeoEngine: Error while loading " + rx + "_" + ry, e);
+					}
+				});
 
 				counter++;
 			}
 		}
 
-		_log.info("GeoEngine: Loaded " + counter + " map(s), max layers: " + MAX_LAYERS);
+		executor.shutdown();
+		try
+		{
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			_log.error("Interrupted Exception on GeoEngine load ", e);
+		}
+
+		_log.info("GeoEngine: Loaded " + counter + " map(s), max layers: " + MAX_LAYERS + (Config.GEODATA_MAPPED ? ", mapped storage" : ""));
 
-		if (Config.COMPACT_GEO)
+		if (Config.COMPACT_GEO && !Config.GEODATA_MAPPED)
 		{
 			compact();
 		}
+
+		HierarchicalPathFind.load();
 	}
 
 	public static void DumpGeodata(String dir)
@@ -1582,7 +1806,7 @@ public class GeoEngine
 		{
 			for (int mapY = 0; mapY < World.WORLD_SIZE_Y; mapY++)
 			{
-				if (geodata[mapX][mapY] == null)
+				if ((Config.GEODATA_MAPPED ? mappedGeodata[mapX][mapY] : geodata[mapX][mapY]) == null)
 				{
 					continue;
 				}
@@ -1611,6 +1835,11 @@ public class GeoEngine
 		int ix = rx - Config.GEO_X_FIRST;
 		int iy = ry - Config.GEO_Y_FIRST;
 
+		if (Config.GEODATA_MAPPED)
+		{
+			return DumpMappedGeodataFile(name, ix, iy);
+		}
+
 		byte[][] geoblocks = geodata[ix][iy][0];
 		if (geoblocks == null)
 		{
@@ -1654,6 +1883,45 @@ public class GeoEngine
 		return true;
 	}
 
+	/**
+	 * Mapped storage: the main layer keeps the blocks in the order of the region file, then it is written as a whole.
+	 */
+	private static boolean DumpMappedGeodataFile(String name, int ix, int iy)
+	{
+		ByteBuffer layer;
+		synchronized (geodata)
+		{
+			MappedByteBuffer[] layers = mappedGeodata[ix][iy];
+			if (layers == null || layers[0] == null)
+			{
+				return false;
+			}
+			// own position for the copy, the readers use absolute access only
+			layer = layers[0].duplicate();
+		}
+
+		File f = new File(name);
+		if (f.exists())
+		{
+			f.delete();
+		}
+		try (FileOutputStream os = new FileOutputStream(f); FileChannel channel = os.getChannel())
+		{
+			layer.clear();
+			while (layer.hasRemaining())
+			{
+				channel.write(layer);
+			}
+		}
+		catch (IOException e)
+		{
+			_log.error("Error in DumpGeodataFile", e);
+			return false;
+		}
+
+		return true;
+	}
+
 	/**
 	 * Download region geodata.
 	 *
@@ -1700,6 +1968,12 @@ public class GeoEngine
 
 	public static void LoadGeodata(int rx, int ry, int regIndex)
 	{
+		if (Config.GEODATA_MAPPED)
+		{
+			LoadMappedGeodata(rx, ry, regIndex);
+			return;
+		}
+
 		int ix = rx - Config.GEO_X_FIRST;
 		int iy = ry - Config.GEO_Y_FIRST;
 
@@ -1769,7 +2043,6 @@ public class GeoEngine
 				for (int b = 0; b < 64; b++)
 				{
 					byte layers = geo.get(index);
-					MAX_LAYERS = Math.max(MAX_LAYERS, layers);
 					index += (layers << 1) + 1;
 					if (layers > floor)
 					{
@@ -1796,6 +2069,94 @@ public class GeoEngine
 				throw new RuntimeException("Invalid geodata: " + rx + "_" + ry + "!");
 			}
 		}
+
+		updateMaxLayers(floor);
+
+		if (regIndex == 0)
+		{
+			baseGeodata[ix][iy] = blocks.clone();
+		}
+	}
+
+	private static synchronized void updateMaxLayers(int layers)
+	{
+		MAX_LAYERS = Math.max(MAX_LAYERS, layers);
+	}
+
+	/**
+	 * Mapped storage: maps the region file privately as the layer regIndex, the block offsets are built with the main layer.
+	 */
+	private static void LoadMappedGeodata(int rx, int ry, int regIndex)
+	{
+		int ix = rx - Config.GEO_X_FIRST;
+		int iy = ry - Config.GEO_Y_FIRST;
+
+		MappedByteBuffer layer;
+		File geoFile = new File(Config.DATAPACK_ROOT, "geodata/" + rx + "_" + ry + ".l2j");
+		try (RandomAccessFile raf = new RandomAccessFile(geoFile, "rw"); FileChannel channel = raf.getChannel())
+		{
+			layer = channel.map(FileChannel.MapMode.PRIVATE, 0, channel.size());
+			layer.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Cannot map geodata: " + rx + "_" + ry + "!", e);
+		}
+
+		if (regIndex == 0)
+		{
+			int[] offsets = new int[BLOCKS_IN_MAP];
+			int index = 0, floor = 0;
+			for (int block = 0; block < BLOCKS_IN_MAP; block++)
+			{
+				offsets[block] = index;
+				byte type = layer.get(index);
+				index++;
+
+				switch (type)
+				{
+				case BLOCKTYPE_FLAT:
+					index += 2;
+					break;
+				case BLOCKTYPE_COMPLEX:
+					index += 128;
+					break;
+				case BLOCKTYPE_MULTILEVEL:
+					for (int b = 0; b < 64; b++)
+					{
+						byte layers = layer.get(index);
+						index += (layers << 1) + 1;
+						if (layers > floor)
+						{
+							floor = layers;
+						}
+					}
+					break;
+				default:
+					throw new RuntimeException("Invalid geodata: " + rx + "_" + ry + "!");
+				}
+			}
+
+			updateMaxLayers(floor);
+			blockOffsets[ix][iy] = offsets;
+
+			// only the block offsets are needed from the read only mapping
+			rawgeo[ix][iy] = null;
+		}
+
+		synchronized (geodata)
+		{
+			MappedByteBuffer[] layers = mappedGeodata[ix][iy];
+			if (layers == null)
+			{
+				mappedGeodata[ix][iy] = (layers = new MappedByteBuffer[regIndex + 1]);
+			}
+			else if (layers.length <= regIndex)
+			{
+				mappedGeodata[ix][iy] = (layers = Arrays.copyOf(layers, regIndex + 1));
+			}
+			layers[regIndex] = layer;
+		}
 	}
 
 	public static int NextGeoIndex(int rx, int ry, int refId)
@@ -1810,6 +2171,36 @@ public class GeoEngine
 
 		int regIndex = -1;
 
+		if (Config.GEODATA_MAPPED)
+		{
+			synchronized (geodata)
+			{
+				MappedByteBuffer[] layers = mappedGeodata[ix][iy];
+				if (layers == null)
+				{
+					return 0;
+				}
+
+				for (int i = 0; i < layers.length; i++)
+				{
+					if (layers[i] == null)
+					{
+						regIndex = i;
+						break;
+					}
+				}
+
+				if (regIndex == -1)
+				{
+					regIndex = layers.length;
+				}
+
+				LoadMappedGeodata(rx, ry, regIndex);
+			}
+
+			return 0x0f000000 | (ix << 16) | (iy << 8) | regIndex;
+		}
+
 		synchronized (geodata)
 		{
 			byte[][][] region = geodata[ix][iy];
@@ -1835,14 +2226,22 @@ public class GeoEngine
 				geodata[ix][iy] = resizedRegion;
 			}
 
-			LoadGeodata(rx, ry, regIndex);
+			// The new layer shares all blocks with the base, they are copied on the first collision write
+			if (baseGeodata[ix][iy] != null)
+			{
+				geodata[ix][iy][regIndex] = baseGeodata[ix][iy].clone();
+			}
+			else
+			{
+				LoadGeodata(rx, ry, regIndex);
+			}
 		}
 
 		return 0x0f000000 | (ix << 16) | (iy << 8) | regIndex;
 	}
 
 	/**
-	 * Liberate occupied Reflect index geodata
+	 * Liberate occupied Reflect index geodata. Only the blocks copied by this layer become garbage, the shared ones stay in the base.
 	 *
 	 * @param geoIndex
 	 */
@@ -1860,8 +2259,18 @@ public class GeoEngine
 
 		synchronized (geodata)
 		{
-			geodata[ix][iy][regIndex] = null;
+			if (Config.GEODATA_MAPPED)
+			{
+				// the mapping is released together with the buffer
+				mappedGeodata[ix][iy][regIndex] = null;
+			}
+			else
+			{
+				geodata[ix][iy][regIndex] = null;
+			}
 		}
+
+		PathFindService.getInstance().invalidate(geoIndex);
 	}
 
 	public static void removeGeoCollision(GeoCollision collision, int geoIndex)
@@ -1890,7 +2299,8 @@ public class GeoEngine
 				int geoY = minY + gY;
 
 				byte[] block = getGeoBlockFromGeoCoords(geoX, geoY, geoIndex);
-				if (block == null)
+				ByteBuffer buf = block == null ? getGeoBufferFromGeoCoords(geoX, geoY, geoIndex) : null;
+				if (block == null && buf == null)
 				{
 					continue;
 				}
@@ -1898,8 +2308,8 @@ public class GeoEngine
 				int cellX = getCell(geoX);
 				int cellY = getCell(geoY);
 
-				int index = 0;
-				byte blockType = block[index];
+				int index = block == null ? getBlockOffset(geoX, geoY) : 0;
+				byte blockType = get(block, buf, index);
 				index++;
 
 				switch (blockType)
@@ -1908,7 +2318,7 @@ public class GeoEngine
 					index += (cellX << 3) + cellY << 1;
 
 					// Gets the height of the cell
-					height = makeShort(block[index + 1], block[index]);
+					height = makeShort(get(block, buf, index + 1), get(block, buf, index));
 					old_nswe = (byte) (height & 0x0F);
 					height &= 0xfff0;
 					height >>= 1;
@@ -1933,8 +2343,12 @@ public class GeoEngine
 					}
 
 					// Record the height of the array
-					block[index + 1] = (byte) (height >> 8);
-					block[index] = (byte) (height & 0x00ff);
+					if (block != null)
+					{
+						block = getOwnGeoBlock(geoX, geoY, geoIndex);
+					}
+					put(block, buf, index + 1, (byte) (height >> 8));
+					put(block, buf, index, (byte) (height & 0x00ff));
 					break;
 				case BLOCKTYPE_MULTILEVEL:
 					// The last valid index for the door
@@ -1944,11 +2358,11 @@ public class GeoEngine
 					int offset = (cellX << 3) + cellY;
 					while (offset > 0)
 					{
-						byte lc = block[index];
+						byte lc = get(block, buf, index);
 						index += (lc << 1) + 1;
 						offset--;
 					}
-					byte layers = block[index];
+					byte layers = get(block, buf, index);
 					index++;
 					if (layers <= 0 || layers > MAX_LAYERS)
 					{
@@ -1958,7 +2372,7 @@ public class GeoEngine
 					old_nswe = NSWE_ALL;
 					while (layers > 0)
 					{
-						height = makeShort(block[index + 1], block[index]);
+						height = makeShort(get(block, buf, index + 1), get(block, buf, index));
 						byte tmp_nswe = (byte) (height & 0x0F);
 						height &= 0xfff0;
 						height >>= 1;
@@ -1994,12 +2408,18 @@ public class GeoEngine
 					}
 
 					// record high
-					block[neededIndex + 1] = (byte) (temph >> 8);
-					block[neededIndex] = (byte) (temph & 0x00ff);
+					if (block != null)
+					{
+						block = getOwnGeoBlock(geoX, geoY, geoIndex);
+					}
+					put(block, buf, neededIndex + 1, (byte) (temph >> 8));
+					put(block, buf, neededIndex, (byte) (temph & 0x00ff));
 					break;
 				}
 			}
 		}
+
+		PathFindService.getInstance().invalidate(geoIndex, minX, minY, minX + around.length - 1, minY + around[0].length - 1);
 	}
 
 	public static void applyGeoCollision(GeoCollision collision, int geoIndex)
@@ -2112,12 +2532,9 @@ public class GeoEngine
 				int geoX = minX + gX;
 				int geoY = minY + gY;
 
-				// Trying to copy a block of geodata, if already exists, it is not copied
-				// TODO: if (first_time)
-				// copyBlock(ix, iy, blockIndex);
-
 				byte[] block = getGeoBlockFromGeoCoords(geoX, geoY, geoIndex);
-				if (block == null)
+				ByteBuffer buf = block == null ? getGeoBufferFromGeoCoords(geoX, geoY, geoIndex) : null;
+				if (block == null && buf == null)
 				{
 					continue;
 				}
@@ -2125,8 +2542,8 @@ public class GeoEngine
 				int cellX = getCell(geoX);
 				int cellY = getCell(geoY);
 
-				int index = 0;
-				byte blockType = block[index];
+				int index = block == null ? getBlockOffset(geoX, geoY) : 0;
+				byte blockType = get(block, buf, index);
 				index++;
 
 				switch (blockType)
@@ -2135,7 +2552,7 @@ public class GeoEngine
 					index += (cellX << 3) + cellY << 1;
 
 					// Gets the height of the cell
-					height = makeShort(block[index + 1], block[index]);
+					height = makeShort(get(block, buf, index + 1), get(block, buf, index));
 					old_nswe = (byte) (height & 0x0F);
 					height &= 0xfff0;
 					height >>= 1;
@@ -2176,8 +2593,12 @@ public class GeoEngine
 					}
 
 					// Record the height of the array
-					block[index + 1] = (byte) (height >> 8);
-					block[index] = (byte) (height & 0x00ff);
+					if (block != null)
+					{
+						block = getOwnGeoBlock(geoX, geoY, geoIndex);
+					}
+					put(block, buf, index + 1, (byte) (height >> 8));
+					put(block, buf, index, (byte) (height & 0x00ff));
 					break;
 				case BLOCKTYPE_MULTILEVEL:
 					// The last valid index for the door
@@ -2187,11 +2608,11 @@ public class GeoEngine
 					int offset = (cellX << 3) + cellY;
 					while (offset > 0)
 					{
-						byte lc = block[index];
+						byte lc = get(block, buf, index);
 						index += (lc << 1) + 1;
 						offset--;
 					}
-					byte layers = block[index];
+					byte layers = get(block, buf, index);
 					index++;
 					if (layers <= 0 || layers > MAX_LAYERS)
 					{
@@ -2201,7 +2622,7 @@ public class GeoEngine
 					old_nswe = NSWE_ALL;
 					while (layers > 0)
 					{
-						height = makeShort(block[index + 1], block[index]);
+						height = makeShort(get(block, buf, index + 1), get(block, buf, index));
 						byte tmp_nswe = (byte) (height & 0x0F);
 						height &= 0xfff0;
 						height >>= 1;
@@ -2252,12 +2673,18 @@ public class GeoEngine
 					}
 
 					// record high
-					block[neededIndex + 1] = (byte) (temph >> 8);
-					block[neededIndex] = (byte) (temph & 0x00ff);
+					if (block != null)
+					{
+						block = getOwnGeoBlock(geoX, geoY, geoIndex);
+					}
+					put(block, buf, neededIndex + 1, (byte) (temph >> 8));
+					put(block, buf, neededIndex, (byte) (temph & 0x00ff));
 					break;
 				}
 			}
 		}
+
+		PathFindService.getInstance().invalidate(geoIndex, minX, minY, maxX, maxY);
 	}
 
 	/**
@@ -2416,10 +2843,32 @@ public class GeoEngine
 			for (int mapY = 0; mapY < World.WORLD_SIZE_Y; mapY++)
 			{
 				geodata[mapX][mapY] = null;
+				baseGeodata[mapX][mapY] = null;
+				mappedGeodata[mapX][mapY] = null;
+				blockOffsets[mapX][mapY] = null;
 			}
 		}
 	}
 
+	/**
+	 * @return true if the main layer of the region containing the cell is loaded
+	 */
+	public static boolean hasGeodata(int geoX, int geoY)
+	{
+		int ix = geoX >> 11;
+		int iy = geoY >> 11;
+		if (!Config.ALLOW_GEODATA || ix < 0 || ix >= World.WORLD_SIZE_X || iy < 0 || iy >= World.WORLD_SIZE_Y)
+		{
+			return false;
+		}
+
+		if (Config.GEODATA_MAPPED)
+		{
+			return mappedGeodata[ix][iy] != null;
+		}
+		return geodata[ix][iy] != null && geodata[ix][iy][0] != null;
+	}
+
 	public static int getGeoX(int worldX)
 	{
 		if ((worldX < World.MAP_MIN_X) || (worldX > World.MAP_MAX_X))
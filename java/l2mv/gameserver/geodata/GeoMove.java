@@ -4,8 +4,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import org.apache.log4j.Logger;
-
 import l2mv.gameserver.Config;
 import l2mv.gameserver.model.GameObject;
 import l2mv.gameserver.model.Player;
@@ -18,9 +16,13 @@ import l2mv.gameserver.utils.Location;
  */
 public class GeoMove
 {
-	private static final Logger _log = Logger.getLogger(GeoMove.class.getName());
+	/** Long paths check shortcuts only this many points ahead, every check walks the geodata along the line */
+	private static final int MAX_CLEAN_LOOKAHEAD = 32;
 
-	private static List<Location> findPath(int x, int y, int z, Location target, GameObject obj, boolean showTrace, int geoIndex)
+	/**
+	 * @return path points in world coordinates from the start to the target, empty if there is no path
+	 */
+	static List<Location> findPath(int x, int y, int z, Location target, GameObject obj, int geoIndex)
 	{
 		if (Math.abs(z - target.z) > 256)
 		{
@@ -29,18 +31,29 @@ public class GeoMove
 
 		z = GeoEngine.getHeight(x, y, z, geoIndex);
 		target.z = GeoEngine.getHeight(target, geoIndex);
-		final PathFind n = new PathFind(x, y, z, target.x, target.y, target.z, obj, geoIndex);
-		if (n.getPath() == null || n.getPath().isEmpty())
+
+		// Long paths go over the cluster graph first, the exact search stays as the fallback
+		List<Location> path = null;
+		final boolean hierarchical = HierarchicalPathFind.isApplicable(x, y, target.x, target.y);
+		if (hierarchical)
+		{
+			path = HierarchicalPathFind.findPath(x, y, z, target.x, target.y, target.z, obj, geoIndex);
+		}
+		if (path == null || path.isEmpty())
+		{
+			path = new PathFind(x, y, z, target.x, target.y, target.z, obj, geoIndex).getPath();
+		}
+		if (path == null || path.isEmpty())
 		{
 			return Collections.emptyList();
 		}
 
-		List<Location> targetRecorder = new ArrayList<Location>(n.getPath().size() + 2);
+		List<Location> targetRecorder = new ArrayList<Location>(path.size() + 2);
 
 		// add the first point in the list (starting position Chara)
 		targetRecorder.add(new Location(x, y, z));
 
-		for (Location p : n.getPath())
+		for (Location p : path)
 		{
 			targetRecorder.add(p.geo2world());
 		}
@@ -50,18 +63,23 @@ public class GeoMove
 
 		if (Config.PATH_CLEAN)
 		{
-			pathClean(targetRecorder, geoIndex);
+			pathClean(targetRecorder, geoIndex, hierarchical ? MAX_CLEAN_LOOKAHEAD : Integer.MAX_VALUE);
 		}
 
-		if (showTrace && obj.isPlayer() && ((Player) obj).getVarB("trace"))
+		return targetRecorder;
+	}
+
+	static void showTrace(List<Location> path, GameObject obj)
+	{
+		if (obj.isPlayer() && ((Player) obj).getVarB("trace"))
 		{
 			final Player player = (Player) obj;
 			final ExShowTrace trace = new ExShowTrace();
 			int i = 0;
-			for (Location loc : targetRecorder)
+			for (Location loc : path)
 			{
 				i++;
-				if (i == 1 || i == targetRecorder.size())
+				if (i == 1 || i == path.size())
 				{
 					continue;
 				}
@@ -69,25 +87,17 @@ public class GeoMove
 			}
 			player.sendPacket(trace);
 		}
-
-		return targetRecorder;
 	}
 
+	/**
+	 * Finds the path through {@link PathFindService}, repeated searches of the same path come from its cache
+	 */
 	public static List<List<Location>> findMovePath(int x, int y, int z, Location target, GameObject obj, boolean showTrace, int geoIndex)
 	{
-		try
-		{
-			return getNodePath(findPath(x, y, z, target, obj, showTrace, geoIndex), geoIndex);
-		}
-		catch (Exception e)
-		{
-			_log.error("Error while finding move path from x: " + x + " y: " + y + " z: " + z + " to location: " + target + " at geoIndex: " + geoIndex);
-		}
-
-		return Collections.emptyList();
+		return PathFindService.getInstance().findMovePath(x, y, z, target, obj, showTrace, geoIndex);
 	}
 
-	private static List<List<Location>> getNodePath(List<Location> path, int geoIndex)
+	static List<List<Location>> getNodePath(List<Location> path, int geoIndex)
 	{
 		final int size = path.size();
 		if (size <= 1)
@@ -146,8 +156,9 @@ public class GeoMove
 	/**
 	 *Clears the way of unnecessary points.
 	 * @ Param path the path to be cleared
+	 * @param maxLookahead how many points ahead a shortcut is looked for
 	 */
-	private static void pathClean(List<Location> path, int geoIndex)
+	private static void pathClean(List<Location> path, int geoIndex, int maxLookahead)
 	{
 		int size = path.size();
 		if (size > 2)
@@ -172,7 +183,7 @@ public class GeoMove
 		{
 			Location one = path.get(current);
 			sub = current + 2;
-			while (sub < path.size())
+			while (sub < path.size() && sub - current <= maxLookahead)
 			{
 				Location two = path.get(sub);
 				if (one.equals(two) || GeoEngine.canMoveWithCollision(one.x, one.y, one.z, two.x, two.y, two.z, geoIndex)) // canMoveWithCollision / canMoveToCoord
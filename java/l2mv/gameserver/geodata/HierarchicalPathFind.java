@@ -0,0 +1,1163 @@
+package l2mv.gameserver.geodata;
+
+import static l2mv.gameserver.geodata.GeoEngine.EAST;
+import static l2mv.gameserver.geodata.GeoEngine.NORTH;
+import static l2mv.gameserver.geodata.GeoEngine.NSWE_NONE;
+import static l2mv.gameserver.geodata.GeoEngine.SOUTH;
+import static l2mv.gameserver.geodata.GeoEngine.WEST;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import l2mv.commons.threading.PriorityThreadFactory;
+import l2mv.gameserver.Config;
+import l2mv.gameserver.model.GameObject;
+import l2mv.gameserver.model.World;
+import l2mv.gameserver.utils.Location;
+
+/**
+ * Иерархический поиск пути (HPA*).
+ * <p>
+ * Геодата делится на квадратные кластеры по {@link Config#PATHFIND_CLUSTER_SIZE} клеток. На границах соседних кластеров выбираются входы,
+ * а между входами одного кластера заранее считается стоимость перехода. Длинный путь сначала ищется по графу входов, затем каждый его
+ * участок внутри кластера уточняется обычным {@link PathFind} в своем geoIndex, поэтому двери и отражения учитывает точный поиск.
+ * <p>
+ * Граф строится по основной геодате: в фоне при первом обращении к кластеру, пока он не готов путь ищет обычный {@link PathFind},
+ * либо при старте сервера для всех регионов с кешем в файлах .hpa рядом с файлами .l2j.
+ */
+public class HierarchicalPathFind
+{
+	private static final Logger _log = LoggerFactory.getLogger(HierarchicalPathFind.class);
+
+	/** Клеток геодаты по стороне региона */
+	private static final int REGION_SIZE = 2048;
+	/** Более широкие проходы между кластерами делятся на несколько входов */
+	private static final int MAX_ENTRANCE_WIDTH = 16;
+	private static final float DIAGONAL_COST = 1.414f;
+	private static final float NO_PATH = Float.POSITIVE_INFINITY;
+
+	private static final String CACHE_EXTENSION = ".hpa";
+	private static final int CACHE_VERSION = 1;
+
+	private static final int CLUSTER_SIZE = getClusterSize();
+	private static final int CLUSTERS_IN_REGION = REGION_SIZE / CLUSTER_SIZE;
+
+	private static final Map<Integer, Cluster> _clusters = new ConcurrentHashMap<Integer, Cluster>();
+	/** Кластеры, постройка которых заказана в фоне */
+	private static final Set<Integer> _building = ConcurrentHashMap.newKeySet();
+	private static final ExecutorService _builder = Executors.newSingleThreadExecutor(new PriorityThreadFactory("HierarchicalPathFindBuilder", Thread.MIN_PRIORITY));
+	private static final ThreadLocal<SearchBuffers> _buffers = ThreadLocal.withInitial(SearchBuffers::new);
+
+	private static final LongAdder _searches = new LongAdder();
+	private static final LongAdder _found = new LongAdder();
+	private static final LongAdder _expanded = new LongAdder();
+	private static final LongAdder _legs = new LongAdder();
+	private static final LongAdder _totalTime = new LongAdder();
+	private static final LongAdder _clustersBuilt = new LongAdder();
+	private static final LongAdder _clustersLoaded = new LongAdder();
+	private static final LongAdder _notReady = new LongAdder();
+
+	/**
+	 * Входы одного кластера и стоимости переходов между ними
+	 */
+	private static class Cluster
+	{
+		final long[] nodes;
+		/** Клетки соседних кластеров, смежные со входом */
+		final long[][] exits;
+		/** nodes.length x nodes.length, NO_PATH если вход недостижим */
+		final float[] costs;
+
+		Cluster(long[] nodes, long[][] exits, float[] costs)
+		{
+			this.nodes = nodes;
+			this.exits = exits;
+			this.costs = costs;
+		}
+
+		int indexOf(long key)
+		{
+			for (int i = 0; i < nodes.length; i++)
+			{
+				if (nodes[i] == key)
+				{
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		float getCost(int from, int to)
+		{
+			return costs[from * nodes.length + to];
+		}
+	}
+
+	/**
+	 * Слои клеток кластера по основной геодате и поиск стоимостей внутри кластера. Массивы переиспользуются для следующих кластеров.
+	 */
+	private static class Grid
+	{
+		int minX, minY;
+		/** Слои клетки cell занимают [cell * maxLayers, cell * maxLayers + counts[cell]) */
+		final short[] heights;
+		final byte[] nswes;
+		final byte[] counts;
+		final int maxLayers;
+		/** Буферы чтения слоев одной клетки */
+		final short[] rawLayers, layerHeights;
+		final byte[] layerNswes;
+		final boolean[] wanted;
+		final LongHeap open = new LongHeap();
+
+		Grid()
+		{
+			maxLayers = Math.max(1, GeoEngine.MAX_LAYERS);
+			heights = new short[CLUSTER_SIZE * CLUSTER_SIZE * maxLayers];
+			nswes = new byte[heights.length];
+			counts = new byte[CLUSTER_SIZE * CLUSTER_SIZE];
+			rawLayers = new short[maxLayers + 1];
+			layerHeights = new short[maxLayers];
+			layerNswes = new byte[maxLayers];
+			wanted = new boolean[heights.length];
+		}
+
+		Grid load(int cx, int cy)
+		{
+			minX = cx * CLUSTER_SIZE;
+			minY = cy * CLUSTER_SIZE;
+
+			if (!GeoEngine.hasGeodata(minX, minY))
+			{
+				Arrays.fill(counts, (byte) 0);
+				return this;
+			}
+
+			for (int x = 0; x < CLUSTER_SIZE; x++)
+			{
+				for (int y = 0; y < CLUSTER_SIZE; y++)
+				{
+					int cell = x * CLUSTER_SIZE + y;
+					int count = readLayers(minX + x, minY + y, rawLayers, layerHeights, layerNswes);
+					System.arraycopy(layerHeights, 0, heights, cell * maxLayers, count);
+					System.arraycopy(layerNswes, 0, nswes, cell * maxLayers, count);
+					counts[cell] = (byte) count;
+				}
+			}
+			return this;
+		}
+
+		float[] newDistances()
+		{
+			return new float[heights.length];
+		}
+
+		/**
+		 * @return номер состояния (клетка и слой) в локальных координатах или -1 если клетка вне кластера или без геодаты
+		 */
+		private int state(int lx, int ly, int z)
+		{
+			if (lx < 0 || ly < 0 || lx >= CLUSTER_SIZE || ly >= CLUSTER_SIZE)
+			{
+				return -1;
+			}
+
+			int cell = lx * CLUSTER_SIZE + ly;
+			int layer = selectLayer(heights, cell * maxLayers, counts[cell], z);
+			return layer < 0 ? -1 : cell * maxLayers + layer;
+		}
+
+		int stateAt(int x, int y, int z)
+		{
+			return state(x - minX, y - minY, z);
+		}
+
+		float getCost(float[] dist, long key)
+		{
+			int state = stateAt(key);
+			return state < 0 ? NO_PATH : dist[state];
+		}
+
+		int stateAt(long key)
+		{
+			return stateAt(keyX(key), keyY(key), keyZ(key));
+		}
+
+		/**
+		 * Дейкстра от точки по клеткам кластера с теми же правилами перехода, что у {@link PathFind}. Поиск останавливается,
+		 * как только найдены все цели.
+		 * @param targets состояния, стоимость до которых нужна, -1 пропускаются
+		 * @param dist сюда пишется стоимость пути до каждого состояния, NO_PATH для недостижимых и не найденных
+		 * @return dist
+		 */
+		float[] search(long from, int[] targets, float[] dist)
+		{
+			Arrays.fill(dist, NO_PATH);
+
+			int start = stateAt(from);
+			if (start < 0)
+			{
+				return dist;
+			}
+
+			int remaining = 0;
+			for (int target : targets)
+			{
+				if (target >= 0 && !wanted[target])
+				{
+					wanted[target] = true;
+					remaining++;
+				}
+			}
+			if (remaining == 0)
+			{
+				return dist;
+			}
+
+			open.clear();
+			dist[start] = 0f;
+			open.push(0f, start);
+			while (!open.isEmpty())
+			{
+				long entry = open.pop();
+				int state = LongHeap.index(entry);
+				float cost = LongHeap.cost(entry);
+				if (cost > dist[state])
+				{
+					continue;
+				}
+				if (wanted[state] && --remaining == 0)
+				{
+					break;
+				}
+
+				int cell = state / maxLayers;
+				int lx = cell / CLUSTER_SIZE;
+				int ly = cell % CLUSTER_SIZE;
+				short h = heights[state];
+				byte nswe = nswes[state];
+
+				if (Config.PATHFIND_DIAGONAL)
+				{
+					if ((nswe & SOUTH) == SOUTH && (nswe & EAST) == EAST && hasDirection(lx + 1, ly, h, SOUTH) && hasDirection(lx, ly + 1, h, EAST))
+					{
+						relax(dist, open, lx + 1, ly + 1, h, cost + DIAGONAL_COST);
+					}
+					if ((nswe & SOUTH) == SOUTH && (nswe & WEST) == WEST && hasDirection(lx - 1, ly, h, SOUTH) && hasDirection(lx, ly + 1, h, WEST))
+					{
+						relax(dist, open, lx - 1, ly + 1, h, cost + DIAGONAL_COST);
+					}
+					if ((nswe & NORTH) == NORTH && (nswe & EAST) == EAST && hasDirection(lx + 1, ly, h, NORTH) && hasDirection(lx, ly - 1, h, EAST))
+					{
+						relax(dist, open, lx + 1, ly - 1, h, cost + DIAGONAL_COST);
+					}
+					if ((nswe & NORTH) == NORTH && (nswe & WEST) == WEST && hasDirection(lx - 1, ly, h, NORTH) && hasDirection(lx, ly - 1, h, WEST))
+					{
+						relax(dist, open, lx - 1, ly - 1, h, cost + DIAGONAL_COST);
+					}
+				}
+
+				if ((nswe & EAST) == EAST)
+				{
+					relax(dist, open, lx + 1, ly, h, cost + 1f);
+				}
+				if ((nswe & WEST) == WEST)
+				{
+					relax(dist, open, lx - 1, ly, h, cost + 1f);
+				}
+				if ((nswe & SOUTH) == SOUTH)
+				{
+					relax(dist, open, lx, ly + 1, h, cost + 1f);
+				}
+				if ((nswe & NORTH) == NORTH)
+				{
+					relax(dist, open, lx, ly - 1, h, cost + 1f);
+				}
+			}
+
+			for (int target : targets)
+			{
+				if (target >= 0)
+				{
+					wanted[target] = false;
+				}
+			}
+			return dist;
+		}
+
+		private boolean hasDirection(int lx, int ly, short z, byte direction)
+		{
+			int state = state(lx, ly, z);
+			return state >= 0 && (nswes[state] & direction) == direction;
+		}
+
+		private void relax(float[] dist, LongHeap open, int lx, int ly, short z, float cost)
+		{
+			int state = state(lx, ly, z);
+			if (state < 0 || nswes[state] == NSWE_NONE || Math.abs(heights[state] - z) > Config.PATHFIND_MAX_Z_DIFF)
+			{
+				return;
+			}
+
+			if (cost < dist[state])
+			{
+				dist[state] = cost;
+				open.push(cost, state);
+			}
+		}
+	}
+
+	/**
+	 * Сетки и стоимости поиска одного потока
+	 */
+	private static class SearchBuffers
+	{
+		final Grid startGrid = new Grid();
+		final Grid goalGrid = new Grid();
+		final float[] fromStart = startGrid.newDistances();
+		final float[] toGoal = goalGrid.newDistances();
+	}
+
+	/**
+	 * Двоичная куча пар (стоимость, индекс), упакованных в long: неотрицательные float сравниваются как их биты
+	 */
+	private static class LongHeap
+	{
+		private long[] _heap = new long[64];
+		private int _size;
+
+		void push(float cost, int index)
+		{
+			if (_size == _heap.length)
+			{
+				_heap = Arrays.copyOf(_heap, _size * 2);
+			}
+
+			long entry = (long) Float.floatToIntBits(cost) << 32 | index;
+			int i = _size++;
+			while (i > 0)
+			{
+				int parent = (i - 1) >> 1;
+				if (_heap[parent] <= entry)
+				{
+					break;
+				}
+				_heap[i] = _heap[parent];
+				i = parent;
+			}
+			_heap[i] = entry;
+		}
+
+		long pop()
+		{
+			long result = _heap[0];
+			long last = _heap[--_size];
+			int i = 0;
+			int child;
+			while ((child = (i << 1) + 1) < _size)
+			{
+				if (child + 1 < _size && _heap[child + 1] < _heap[child])
+				{
+					child++;
+				}
+				if (last <= _heap[child])
+				{
+					break;
+				}
+				_heap[i] = _heap[child];
+				i = child;
+			}
+			_heap[i] = last;
+			return result;
+		}
+
+		boolean isEmpty()
+		{
+			return _size == 0;
+		}
+
+		void clear()
+		{
+			_size = 0;
+		}
+
+		static float cost(long entry)
+		{
+			return Float.intBitsToFloat((int) (entry >>> 32));
+		}
+
+		static int index(long entry)
+		{
+			return (int) entry;
+		}
+	}
+
+	/**
+	 * Состояние поиска по графу входов. Узел 0 - начало пути, узел 1 - цель.
+	 */
+	private static class AbstractSearch
+	{
+		static final int START = 0;
+		static final int GOAL = 1;
+
+		final int goalX, goalY;
+		final Map<Long, Integer> ids = new HashMap<Long, Integer>();
+		final LongHeap open = new LongHeap();
+		long[] keys = new long[64];
+		float[] costs = new float[64];
+		int[] parents = new int[64];
+		boolean[] closed = new boolean[64];
+		int size;
+
+		AbstractSearch(long start, long goal)
+		{
+			goalX = keyX(goal);
+			goalY = keyY(goal);
+			add(start);
+			add(goal);
+		}
+
+		private int add(long key)
+		{
+			if (size == keys.length)
+			{
+				keys = Arrays.copyOf(keys, size * 2);
+				costs = Arrays.copyOf(costs, size * 2);
+				parents = Arrays.copyOf(parents, size * 2);
+				closed = Arrays.copyOf(closed, size * 2);
+			}
+			keys[size] = key;
+			costs[size] = NO_PATH;
+			parents[size] = -1;
+			return size++;
+		}
+
+		int getId(long key)
+		{
+			Integer id = ids.get(key);
+			if (id == null)
+			{
+				id = add(key);
+				ids.put(key, id);
+			}
+			return id;
+		}
+
+		void relax(int id, int parent, float cost)
+		{
+			if (cost == NO_PATH || closed[id])
+			{
+				return;
+			}
+
+			float newCost = costs[parent] + cost;
+			if (newCost < costs[id])
+			{
+				costs[id] = newCost;
+				parents[id] = parent;
+				int dx = keyX(keys[id]) - goalX;
+				int dy = keyY(keys[id]) - goalY;
+				open.push(newCost + (float) Math.sqrt(dx * dx + dy * dy), id);
+			}
+		}
+	}
+
+	private static int getClusterSize()
+	{
+		int size = Config.PATHFIND_CLUSTER_SIZE;
+		if (size < 16 || size > 256 || Integer.bitCount(size) != 1)
+		{
+			_log.warn("HierarchicalPathFind: invalid cluster size " + size + ", using 64.");
+			return 64;
+		}
+		return size;
+	}
+
+	static long key(int geoX, int geoY, int z)
+	{
+		return (long) geoX << 32 | (long) (geoY & 0xFFFF) << 16 | z & 0xFFFF;
+	}
+
+	static int keyX(long key)
+	{
+		return (int) (key >>> 32);
+	}
+
+	static int keyY(long key)
+	{
+		return (int) (key >>> 16) & 0xFFFF;
+	}
+
+	static short keyZ(long key)
+	{
+		return (short) key;
+	}
+
+	private static Integer clusterId(int cx, int cy)
+	{
+		return cx << 16 | cy;
+	}
+
+	/**
+	 * Читает слои клетки основной геодаты
+	 * @return количество слоев
+	 */
+	private static int readLayers(int geoX, int geoY, short[] raw, short[] heights, byte[] nswes)
+	{
+		GeoEngine.NGetLayers(geoX, geoY, raw, 0);
+		int count = raw[0];
+		for (int i = 0; i < count; i++)
+		{
+			heights[i] = (short) ((short) (raw[i + 1] & 0x0fff0) >> 1);
+			nswes[i] = (byte) (raw[i + 1] & 0x0F);
+		}
+		return count;
+	}
+
+	/**
+	 * Выбор слоя по высоте как в {@link GeoEngine#NgetHeightAndNSWE}: ближайший нижний, иначе ближайший
+	 * @return номер слоя или -1 если слоев нет
+	 */
+	private static int selectLayer(short[] heights, int offset, int count, int z)
+	{
+		int lower = -1;
+		int nearest = -1;
+		int limit = z + Config.MIN_LAYER_HEIGHT;
+		for (int i = 0; i < count; i++)
+		{
+			short height = heights[offset + i];
+			if (height < limit)
+			{
+				if (lower < 0 || height > heights[offset + lower])
+				{
+					lower = i;
+				}
+			}
+			else if (nearest < 0 || Math.abs(z - height) < Math.abs(z - heights[offset + nearest]))
+			{
+				nearest = i;
+			}
+		}
+		return lower >= 0 ? lower : nearest;
+	}
+
+	/**
+	 * Входы на границе кластера с восточным или южным соседом. Непрерывный участок границы, проходимый в обе стороны,
+	 * делится на куски не шире MAX_ENTRANCE_WIDTH, вход ставится в середину куска.
+	 * @return пары ключей {клетка кластера, клетка соседа}
+	 */
+	private static List<long[]> scanBorder(int cx, int cy, boolean east)
+	{
+		List<long[]> result = new ArrayList<long[]>();
+
+		int ax = east ? (cx + 1) * CLUSTER_SIZE - 1 : cx * CLUSTER_SIZE;
+		int ay = east ? cy * CLUSTER_SIZE : (cy + 1) * CLUSTER_SIZE - 1;
+		int bx = east ? ax + 1 : ax;
+		int by = east ? ay : ay + 1;
+		if (!GeoEngine.hasGeodata(ax, ay) || !GeoEngine.hasGeodata(bx, by))
+		{
+			return result;
+		}
+
+		byte toB = east ? EAST : SOUTH;
+		byte toA = east ? WEST : NORTH;
+		short[] raw = new short[GeoEngine.MAX_LAYERS + 1];
+		short[] heightsA = new short[GeoEngine.MAX_LAYERS];
+		byte[] nswesA = new byte[GeoEngine.MAX_LAYERS];
+		short[] heightsB = new short[GeoEngine.MAX_LAYERS];
+		byte[] nswesB = new byte[GeoEngine.MAX_LAYERS];
+
+		// Участки границы, каждая позиция {смещение вдоль границы, высота A, высота B}
+		List<List<int[]>> open = new ArrayList<List<int[]>>();
+		for (int i = 0; i < CLUSTER_SIZE; i++)
+		{
+			int countA = readLayers(east ? ax : ax + i, east ? ay + i : ay, raw, heightsA, nswesA);
+			int countB = readLayers(east ? bx : bx + i, east ? by + i : by, raw, heightsB, nswesB);
+
+			List<List<int[]>> extended = new ArrayList<List<int[]>>();
+			for (int la = 0; la < countA; la++)
+			{
+				if ((nswesA[la] & toB) != toB)
+				{
+					continue;
+				}
+
+				int lb = selectLayer(heightsB, 0, countB, heightsA[la]);
+				if (lb < 0 || (nswesB[lb] & toA) != toA || Math.abs(heightsB[lb] - heightsA[la]) > Config.PATHFIND_MAX_Z_DIFF)
+				{
+					continue;
+				}
+
+				List<int[]> run = null;
+				for (int r = 0; r < open.size(); r++)
+				{
+					List<int[]> candidate = open.get(r);
+					if (Math.abs(candidate.get(candidate.size() - 1)[1] - heightsA[la]) <= Config.PATHFIND_MAX_Z_DIFF)
+					{
+						run = open.remove(r);
+						break;
+					}
+				}
+				if (run == null)
+				{
+					run = new ArrayList<int[]>();
+				}
+				run.add(new int[]
+				{
+					i,
+					heightsA[la],
+					heightsB[lb]
+				});
+				extended.add(run);
+			}
+
+			for (List<int[]> run : open)
+			{
+				addEntrances(run, ax, ay, east, result);
+			}
+			open = extended;
+		}
+
+		for (List<int[]> run : open)
+		{
+			addEntrances(run, ax, ay, east, result);
+		}
+
+		return result;
+	}
+
+	private static void addEntrances(List<int[]> run, int ax, int ay, boolean east, List<long[]> result)
+	{
+		int pieces = (run.size() + MAX_ENTRANCE_WIDTH - 1) / MAX_ENTRANCE_WIDTH;
+		for (int p = 0; p < pieces; p++)
+		{
+			int[] pos = run.get((run.size() * p / pieces + run.size() * (p + 1) / pieces) / 2);
+			int x = east ? ax : ax + pos[0];
+			int y = east ? ay + pos[0] : ay;
+			result.add(new long[]
+			{
+				key(x, y, pos[1]),
+				east ? key(x + 1, y, pos[2]) : key(x, y + 1, pos[2])
+			});
+		}
+	}
+
+	private static void addExit(Map<Long, List<Long>> entrances, long node, long exit)
+	{
+		List<Long> exits = entrances.get(node);
+		if (exits == null)
+		{
+			entrances.put(node, exits = new ArrayList<Long>(1));
+		}
+		exits.add(exit);
+	}
+
+	private static Cluster buildCluster(int cx, int cy)
+	{
+		Map<Long, List<Long>> entrances = new LinkedHashMap<Long, List<Long>>();
+		for (long[] entrance : scanBorder(cx, cy, true))
+		{
+			addExit(entrances, entrance[0], entrance[1]);
+		}
+		for (long[] entrance : scanBorder(cx, cy, false))
+		{
+			addExit(entrances, entrance[0], entrance[1]);
+		}
+		if (cx > 0)
+		{
+			for (long[] entrance : scanBorder(cx - 1, cy, true))
+			{
+				addExit(entrances, entrance[1], entrance[0]);
+			}
+		}
+		if (cy > 0)
+		{
+			for (long[] entrance : scanBorder(cx, cy - 1, false))
+			{
+				addExit(entrances, entrance[1], entrance[0]);
+			}
+		}
+
+		int n = entrances.size();
+		long[] nodes = new long[n];
+		long[][] exits = new long[n][];
+		int i = 0;
+		for (Map.Entry<Long, List<Long>> entrance : entrances.entrySet())
+		{
+			nodes[i] = entrance.getKey();
+			exits[i] = new long[entrance.getValue().size()];
+			for (int e = 0; e < exits[i].length; e++)
+			{
+				exits[i][e] = entrance.getValue().get(e);
+			}
+			i++;
+		}
+
+		float[] costs = new float[n * n];
+		if (n > 0)
+		{
+			Grid grid = new Grid().load(cx, cy);
+			float[] dist = grid.newDistances();
+			int[] states = new int[n];
+			for (i = 0; i < n; i++)
+			{
+				states[i] = grid.stateAt(nodes[i]);
+			}
+
+			// Стоимости считаются симметричными, поиск от входа идет только до входов с большим номером
+			for (i = 0; i < n; i++)
+			{
+				grid.search(nodes[i], Arrays.copyOfRange(states, i + 1, n), dist);
+				for (int j = i + 1; j < n; j++)
+				{
+					costs[i * n + j] = costs[j * n + i] = states[j] < 0 ? NO_PATH : dist[states[j]];
+				}
+			}
+		}
+
+		_clustersBuilt.increment();
+		return new Cluster(nodes, exits, costs);
+	}
+
+	private static Cluster getCluster(int cx, int cy)
+	{
+		Integer id = clusterId(cx, cy);
+		Cluster cluster = _clusters.get(id);
+		if (cluster == null)
+		{
+			// Кластер строится без блокировки, при гонке остается первый построенный
+			cluster = buildCluster(cx, cy);
+			Cluster old = _clusters.putIfAbsent(id, cluster);
+			if (old != null)
+			{
+				cluster = old;
+			}
+		}
+		return cluster;
+	}
+
+	/**
+	 * @return построенный кластер или null, если его еще нет. Тогда он строится в фоне, чтобы не задерживать поток, ищущий путь.
+	 */
+	private static Cluster getReadyCluster(final int cx, final int cy)
+	{
+		final Integer id = clusterId(cx, cy);
+		Cluster cluster = _clusters.get(id);
+		if (cluster == null && _building.add(id))
+		{
+			_builder.execute(() ->
+			{
+				try
+				{
+					getCluster(cx, cy);
+				}
+				catch (RuntimeException e)
+				{
+					_log.error("HierarchicalPathFind: Error while building cluster " + cx + "_" + cy, e);
+				}
+				finally
+				{
+					_building.remove(id);
+				}
+			});
+		}
+		return cluster;
+	}
+
+	/**
+	 * @return true если путь между точками в мировых координатах длиннее порога, до которого ищет только точный поиск
+	 */
+	public static boolean isApplicable(int x, int y, int destX, int destY)
+	{
+		return Config.PATHFIND_HIERARCHICAL && Math.max(Math.abs(destX - x), Math.abs(destY - y)) >> 4 > Config.PATHFIND_HIERARCHICAL_DISTANCE;
+	}
+
+	/**
+	 * Ищет путь по графу входов и уточняет его участки точным поиском.
+	 * @return путь в координатах геодаты без начальной точки, как {@link PathFind#getPath()}, или null если путь не найден
+	 */
+	public static List<Location> findPath(int x, int y, int z, int destX, int destY, int destZ, GameObject obj, int geoIndex)
+	{
+		long started = System.nanoTime();
+		_searches.increment();
+		try
+		{
+			List<Location> path = search(x, y, z, destX, destY, destZ, obj, geoIndex, started);
+			if (path != null)
+			{
+				_found.increment();
+			}
+			return path;
+		}
+		finally
+		{
+			_totalTime.add(System.nanoTime() - started);
+		}
+	}
+
+	private static List<Location> search(int x, int y, int z, int destX, int destY, int destZ, GameObject obj, int geoIndex, long started)
+	{
+		int sx = GeoEngine.getGeoX(x);
+		int sy = GeoEngine.getGeoY(y);
+		int gx = GeoEngine.getGeoX(destX);
+		int gy = GeoEngine.getGeoY(destY);
+		if (!GeoEngine.hasGeodata(sx, sy) || !GeoEngine.hasGeodata(gx, gy))
+		{
+			return null;
+		}
+
+		short sz = (short) GeoEngine.NgetHeight(sx, sy, z, geoIndex);
+		short gz = (short) GeoEngine.NgetHeight(gx, gy, destZ, geoIndex);
+		int scx = sx / CLUSTER_SIZE;
+		int scy = sy / CLUSTER_SIZE;
+		int gcx = gx / CLUSTER_SIZE;
+		int gcy = gy / CLUSTER_SIZE;
+
+		long start = key(sx, sy, sz);
+		long goal = key(gx, gy, gz);
+		Cluster startCluster = getReadyCluster(scx, scy);
+		Cluster goalCluster = getReadyCluster(gcx, gcy);
+		if (startCluster == null || goalCluster == null)
+		{
+			_notReady.increment();
+			return null;
+		}
+
+		SearchBuffers buffers = _buffers.get();
+		Grid startGrid = buffers.startGrid.load(scx, scy);
+		Grid goalGrid = startCluster == goalCluster ? startGrid : buffers.goalGrid.load(gcx, gcy);
+		float[] fromStart = startGrid.search(start, getTargets(startGrid, startCluster, startCluster == goalCluster ? goal : start), buffers.fromStart);
+		// Переходы геодаты почти всегда симметричны, неточность исправит уточнение участка
+		float[] toGoal = goalGrid.search(goal, getTargets(goalGrid, goalCluster, goal), buffers.toGoal);
+
+		AbstractSearch search = new AbstractSearch(start, goal);
+		search.costs[AbstractSearch.START] = 0f;
+		search.open.push(0f, AbstractSearch.START);
+
+		int expanded = 0;
+		boolean found = false;
+		boolean complete = true;
+		while (!search.open.isEmpty() && System.nanoTime() - started < Config.PATHFIND_MAX_TIME)
+		{
+			int id = LongHeap.index(search.open.pop());
+			if (search.closed[id])
+			{
+				continue;
+			}
+			search.closed[id] = true;
+			expanded++;
+
+			if (id == AbstractSearch.GOAL)
+			{
+				found = true;
+				break;
+			}
+
+			if (id == AbstractSearch.START)
+			{
+				for (long node : startCluster.nodes)
+				{
+					search.relax(search.getId(node), id, startGrid.getCost(fromStart, node));
+				}
+				if (startGrid == goalGrid)
+				{
+					search.relax(AbstractSearch.GOAL, id, startGrid.getCost(fromStart, goal));
+				}
+				continue;
+			}
+
+			long key = search.keys[id];
+			int kx = keyX(key);
+			int ky = keyY(key);
+			Cluster cluster = getReadyCluster(kx / CLUSTER_SIZE, ky / CLUSTER_SIZE);
+			if (cluster == null)
+			{
+				// Поиск продолжается, чтобы заказать постройку остальных недостающих кластеров на пути
+				complete = false;
+				continue;
+			}
+			int index = cluster.indexOf(key);
+			if (index < 0)
+			{
+				continue;
+			}
+
+			for (int j = 0; j < cluster.nodes.length; j++)
+			{
+				if (j != index)
+				{
+					search.relax(search.getId(cluster.nodes[j]), id, cluster.getCost(index, j));
+				}
+			}
+			for (long exit : cluster.exits[index])
+			{
+				search.relax(search.getId(exit), id, 1f);
+			}
+			if (kx / CLUSTER_SIZE == gcx && ky / CLUSTER_SIZE == gcy)
+			{
+				search.relax(AbstractSearch.GOAL, id, goalGrid.getCost(toGoal, key));
+			}
+		}
+
+		_expanded.add(expanded);
+		if (!complete)
+		{
+			// Путь по неполному графу может быть далек от кратчайшего, пока кластеры строятся, ищет точный поиск
+			_notReady.increment();
+			return null;
+		}
+		if (!found)
+		{
+			return null;
+		}
+
+		List<Long> waypoints = new ArrayList<Long>();
+		for (int id = AbstractSearch.GOAL; id >= 0; id = search.parents[id])
+		{
+			waypoints.add(0, search.keys[id]);
+		}
+
+		List<Location> path = new ArrayList<Location>();
+		for (int i = 1; i < waypoints.size(); i++)
+		{
+			long from = waypoints.get(i - 1);
+			long to = waypoints.get(i);
+			Location end = new Location(keyX(to), keyY(to), keyZ(to));
+
+			// Соседние клетки на границе кластеров
+			if (Math.abs(keyX(to) - keyX(from)) <= 1 && Math.abs(keyY(to) - keyY(from)) <= 1)
+			{
+				path.add(end);
+				continue;
+			}
+
+			_legs.increment();
+			PathFind leg = new PathFind(GeoEngine.getWorldX(keyX(from)), GeoEngine.getWorldY(keyY(from)), keyZ(from), GeoEngine.getWorldX(end.x), GeoEngine.getWorldY(end.y), end.z, obj, geoIndex);
+			if (leg.getPath() == null)
+			{
+				return null;
+			}
+			path.addAll(leg.getPath());
+			path.add(end);
+		}
+
+		return path;
+	}
+
+	/**
+	 * @return состояния входов кластера и дополнительной точки
+	 */
+	private static int[] getTargets(Grid grid, Cluster cluster, long extra)
+	{
+		int[] targets = new int[cluster.nodes.length + 1];
+		for (int i = 0; i < cluster.nodes.length; i++)
+		{
+			targets[i] = grid.stateAt(cluster.nodes[i]);
+		}
+		targets[cluster.nodes.length] = grid.stateAt(extra);
+		return targets;
+	}
+
+	/**
+	 * Строит граф входов всех загруженных регионов. Граф региона читается из кеша рядом с файлом геодаты, если кеш не старше файла,
+	 * иначе строится и записывается в кеш.
+	 */
+	public static void load()
+	{
+		if (!Config.ALLOW_GEODATA || !Config.PATHFIND_HIERARCHICAL || !Config.PATHFIND_HIERARCHICAL_PRELOAD)
+		{
+			return;
+		}
+
+		File[] files = new File(Config.DATAPACK_ROOT, "geodata").listFiles();
+		if (files == null)
+		{
+			return;
+		}
+
+		long started = System.currentTimeMillis();
+		Pattern p = Pattern.compile(Config.GEOFILES_PATTERN);
+
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		for (final File file : files)
+		{
+			if (file.isDirectory() || !p.matcher(file.getName()).matches())
+			{
+				continue;
+			}
+
+			String[] xy = file.getName().substring(0, 5).split("_");
+			final int rx = Integer.parseInt(xy[0]);
+			final int ry = Integer.parseInt(xy[1]);
+
+			executor.execute(() ->
+			{
+				try
+				{
+					loadRegion(rx, ry, file);
+				}
+				catch (RuntimeException e)
+				{
+					_log.error("HierarchicalPathFind: Error while building " + rx + "_" + ry, e);
+				}
+			});
+		}
+
+		executor.shutdown();
+		try
+		{
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			_log.error("Interrupted Exception on HierarchicalPathFind load ", e);
+		}
+
+		_log.info("HierarchicalPathFind: " + _clusters.size() + " clusters ready (" + _clustersLoaded.sum() + " from cache), cluster size " + CLUSTER_SIZE + ", " + (System.currentTimeMillis() - started) + " ms.");
+	}
+
+	private static void loadRegion(int rx, int ry, File geoFile)
+	{
+		int ix = rx - Config.GEO_X_FIRST;
+		int iy = ry - Config.GEO_Y_FIRST;
+		if (ix < 0 || iy < 0 || ix >= World.WORLD_SIZE_X || iy >= World.WORLD_SIZE_Y || !GeoEngine.hasGeodata(ix * REGION_SIZE, iy * REGION_SIZE))
+		{
+			return;
+		}
+
+		File cache = new File(geoFile.getParentFile(), rx + "_" + ry + CACHE_EXTENSION);
+		if (cache.exists() && cache.lastModified() >= geoFile.lastModified() && readCache(ix, iy, cache))
+		{
+			return;
+		}
+
+		for (int cx = ix * CLUSTERS_IN_REGION; cx < (ix + 1) * CLUSTERS_IN_REGION; cx++)
+		{
+			for (int cy = iy * CLUSTERS_IN_REGION; cy < (iy + 1) * CLUSTERS_IN_REGION; cy++)
+			{
+				getCluster(cx, cy);
+			}
+		}
+
+		writeCache(ix, iy, cache);
+	}
+
+	private static boolean readCache(int ix, int iy, File file)
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			if (in.readInt() != CACHE_VERSION || in.readInt() != CLUSTER_SIZE)
+			{
+				return false;
+			}
+
+			Map<Integer, Cluster> clusters = new HashMap<Integer, Cluster>();
+			for (int cx = ix * CLUSTERS_IN_REGION; cx < (ix + 1) * CLUSTERS_IN_REGION; cx++)
+			{
+				for (int cy = iy * CLUSTERS_IN_REGION; cy < (iy + 1) * CLUSTERS_IN_REGION; cy++)
+				{
+					int n = in.readInt();
+					long[] nodes = new long[n];
+					long[][] exits = new long[n][];
+					float[] costs = new float[n * n];
+					for (int i = 0; i < n; i++)
+					{
+						nodes[i] = in.readLong();
+						exits[i] = new long[in.readInt()];
+						for (int e = 0; e < exits[i].length; e++)
+						{
+							exits[i][e] = in.readLong();
+						}
+					}
+					for (int i = 0; i < costs.length; i++)
+					{
+						costs[i] = in.readFloat();
+					}
+					clusters.put(clusterId(cx, cy), new Cluster(nodes, exits, costs));
+				}
+			}
+
+			_clusters.putAll(clusters);
+			_clustersLoaded.add(clusters.size());
+			return true;
+		}
+		catch (IOException e)
+		{
+			_log.warn("HierarchicalPathFind: Could not read " + file.getName() + ", rebuilding.", e);
+			return false;
+		}
+	}
+
+	private static void writeCache(int ix, int iy, File file)
+	{
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
+		{
+			out.writeInt(CACHE_VERSION);
+			out.writeInt(CLUSTER_SIZE);
+			for (int cx = ix * CLUSTERS_IN_REGION; cx < (ix + 1) * CLUSTERS_IN_REGION; cx++)
+			{
+				for (int cy = iy * CLUSTERS_IN_REGION; cy < (iy + 1) * CLUSTERS_IN_REGION; cy++)
+				{
+					Cluster cluster = getCluster(cx, cy);
+					out.writeInt(cluster.nodes.length);
+					for (int i = 0; i < cluster.nodes.length; i++)
+					{
+						out.writeLong(cluster.nodes[i]);
+						out.writeInt(cluster.exits[i].length);
+						for (long exit : cluster.exits[i])
+						{
+							out.writeLong(exit);
+						}
+					}
+					for (float cost : cluster.costs)
+					{
+						out.writeFloat(cost);
+					}
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			_log.error("HierarchicalPathFind: Could not write " + file.getName(), e);
+		}
+	}
+
+	public static CharSequence getStats()
+	{
+		long searches = _searches.sum();
+		StringBuilder list = new StringBuilder();
+		list.append("HierarchicalPathFind").append(Config.PATHFIND_HIERARCHICAL ? "" : " (disabled)").append("\n");
+		list.append("=================================================\n");
+		list.append("\tCluster size: ....... ").append(CLUSTER_SIZE).append("\n");
+		list.append("\tClusters: ........... ").append(_clusters.size()).append(" (built ").append(_clustersBuilt.sum()).append(", from cache ").append(_clustersLoaded.sum()).append(")\n");
+		list.append("\tSearches: ........... ").append(searches).append("\n");
+		list.append("\tFound: .............. ").append(_found.sum()).append("\n");
+		list.append("\tClusters not ready: . ").append(_notReady.sum()).append(" (building ").append(_building.size()).append(")\n");
+		list.append("\tAverage expanded: ... ").append(searches == 0 ? 0 : _expanded.sum() / searches).append("\n");
+		list.append("\tAverage legs: ....... ").append(searches == 0 ? 0 : _legs.sum() / searches).append("\n");
+		list.append("\tAverage time, us: ... ").append(searches == 0 ? 0 : _totalTime.sum() / searches / 1000L).append("\n");
+		return list;
+	}
+}
@@ -1,111 +1,88 @@
 package l2mv.gameserver.geodata;
 
-import java.util.Arrays;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Queue;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import gnu.trove.iterator.TIntIntIterator;
-import gnu.trove.map.hash.TIntIntHashMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
 import l2mv.commons.text.StrTable;
 import l2mv.gameserver.Config;
 import l2mv.gameserver.utils.Location;
 
+/**
+ * Буферы поиска пути по классам размера карты с шагом STEP_MAP_SIZE.
+ * <p>
+ * Свободные буферы каждого класса лежат в неблокирующей очереди, поэтому одновременные поиски не ждут друг друга на общей блокировке.
+ * Если свободного буфера нет, создается новый, после поиска он возвращается в очередь своего класса.
+ */
 public class PathFindBuffers
 {
 	public final static int MIN_MAP_SIZE = 1 << 6;
 	public final static int STEP_MAP_SIZE = 1 << 5;
 	public final static int MAX_MAP_SIZE = 1 << 9;
 
-	private static TIntObjectHashMap<PathFindBuffer[]> buffers = new TIntObjectHashMap<>();
-	private static int[] sizes = new int[0];
-	private static Lock lock = new ReentrantLock();
+	private final static int SIZE_CLASSES = (MAX_MAP_SIZE - MIN_MAP_SIZE) / STEP_MAP_SIZE + 1;
+
+	/** Свободные буферы по классам размера */
+	@SuppressWarnings(
+	{
+		"unchecked",
+		"rawtypes"
+	})
+	private static final Queue<PathFindBuffer>[] free = new Queue[SIZE_CLASSES];
+	/** Все созданные буферы по классам размера, для статистики */
+	@SuppressWarnings(
+	{
+		"unchecked",
+		"rawtypes"
+	})
+	private static final List<PathFindBuffer>[] all = new List[SIZE_CLASSES];
 
 	static
 	{
-		TIntIntHashMap config = new TIntIntHashMap();
+		for (int i = 0; i < SIZE_CLASSES; i++)
+		{
+			free[i] = new ConcurrentLinkedQueue<PathFindBuffer>();
+			all[i] = new CopyOnWriteArrayList<PathFindBuffer>();
+		}
+
 		String[] k;
 		for (String e : Config.PATHFIND_BUFFERS.split(";"))
 		{
 			if (!e.isEmpty() && ((k = e.split("x")).length == 2))
 			{
-				config.put(Integer.valueOf(k[1]), Integer.valueOf(k[0]));
-			}
-		}
-
-		TIntIntIterator itr = config.iterator();
-
-		while (itr.hasNext())
-		{
-			itr.advance();
-			int size = itr.key();
-			int count = itr.value();
+				int sizeClass = getSizeClass(Integer.parseInt(k[1]));
+				if (sizeClass < 0)
+				{
+					continue;
+				}
 
-			PathFindBuffer[] buff = new PathFindBuffer[count];
-			for (int i = 0; i < count; i++)
-			{
-				buff[i] = new PathFindBuffer(size);
+				for (int i = Integer.parseInt(k[0]); i > 0; i--)
+				{
+					free[sizeClass].add(create(sizeClass));
+				}
 			}
-
-			buffers.put(size, buff);
 		}
-
-		sizes = config.keys();
-		Arrays.sort(sizes);
 	}
 
-	private static PathFindBuffer create(int mapSize)
+	/**
+	 * @return класс размера, вмещающий карту, или -1 если карта больше максимальной
+	 */
+	private static int getSizeClass(int mapSize)
 	{
-		lock.lock();
-		try
-		{
-			PathFindBuffer buffer;
-			PathFindBuffer[] buff = buffers.get(mapSize);
-			if (buff != null)
-			{
-				buff = l2mv.commons.lang.ArrayUtils.add(buff, buffer = new PathFindBuffer(mapSize));
-			}
-			else
-			{
-				buff = new PathFindBuffer[]
-				{
-					buffer = new PathFindBuffer(mapSize)
-				};
-				sizes = org.apache.commons.lang3.ArrayUtils.add(sizes, mapSize);
-				Arrays.sort(sizes);
-			}
-			buffers.put(mapSize, buff);
-			buffer.inUse = true;
-			return buffer;
-		}
-		finally
+		if (mapSize > MAX_MAP_SIZE)
 		{
-			lock.unlock();
+			return -1;
 		}
+		return Math.max(0, (mapSize - MIN_MAP_SIZE + STEP_MAP_SIZE - 1) / STEP_MAP_SIZE);
 	}
 
-	private static PathFindBuffer get(int mapSize)
+	private static PathFindBuffer create(int sizeClass)
 	{
-		lock.lock();
-		try
-		{
-			PathFindBuffer[] buff = buffers.get(mapSize);
-			for (PathFindBuffer buffer : buff)
-			{
-				if (!buffer.inUse)
-				{
-					buffer.inUse = true;
-					return buffer;
-				}
-			}
-			return null;
-		}
-		finally
-		{
-			lock.unlock();
-		}
+		PathFindBuffer buffer = new PathFindBuffer(MIN_MAP_SIZE + sizeClass * STEP_MAP_SIZE);
+		all[sizeClass].add(buffer);
+		return buffer;
 	}
 
 	public static PathFindBuffer alloc(int mapSize)
@@ -114,111 +91,83 @@ public class PathFindBuffers
 		{
 			return null;
 		}
-		mapSize += STEP_MAP_SIZE;
-		if (mapSize < MIN_MAP_SIZE)
-		{
-			mapSize = MIN_MAP_SIZE;
-		}
 
-		PathFindBuffer buffer = null;
-		for (int size : sizes)
+		int sizeClass = getSizeClass(mapSize + STEP_MAP_SIZE);
+		if (sizeClass < 0)
 		{
-			if (size >= mapSize)
-			{
-				mapSize = size;
-				buffer = get(mapSize);
-				break;
-			}
+			return null;
 		}
 
-		// Не найден свободный буффер, или буфферов под такой размер нет
+		PathFindBuffer buffer = free[sizeClass].poll();
 		if (buffer == null)
 		{
-			for (int size = MIN_MAP_SIZE; size < MAX_MAP_SIZE; size += STEP_MAP_SIZE)
-			{
-				if (size >= mapSize)
-				{
-					mapSize = size;
-					buffer = create(mapSize);
-					break;
-				}
-			}
+			buffer = create(sizeClass);
 		}
-
+		buffer.inUse = true;
 		return buffer;
 	}
 
 	public static void recycle(PathFindBuffer buffer)
 	{
-		lock.lock();
-		try
-		{
-			buffer.inUse = false;
-		}
-		finally
-		{
-			lock.unlock();
-		}
+		buffer.inUse = false;
+		free[getSizeClass(buffer.mapSize)].offer(buffer);
 	}
 
 	public static StrTable getStats()
 	{
 		StrTable table = new StrTable("PathFind Buffers Stats");
-		lock.lock();
-		try
+		long totalUses = 0, totalPlayable = 0, totalTime = 0;
+		int index = 0;
+		int count;
+		long uses;
+		long playable;
+		long itrs;
+		long success;
+		long overtime;
+		long time;
+
+		for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++)
 		{
-			long totalUses = 0, totalPlayable = 0, totalTime = 0;
-			int index = 0;
-			int count;
-			long uses;
-			long playable;
-			long itrs;
-			long success;
-			long overtime;
-			long time;
-
-			for (int size : sizes)
+			if (all[sizeClass].isEmpty())
 			{
-				index++;
-				count = 0;
-				uses = 0;
-				playable = 0;
-				itrs = 0;
-				success = 0;
-				overtime = 0;
-				time = 0;
-				for (PathFindBuffer buff : buffers.get(size))
-				{
-					count++;
-					uses += buff.totalUses;
-					playable += buff.playableUses;
-					success += buff.successUses;
-					overtime += buff.overtimeUses;
-					time += buff.totalTime / 1000000;
-					itrs += buff.totalItr;
-				}
+				continue;
+			}
 
-				totalUses += uses;
-				totalPlayable += playable;
-				totalTime += time;
-
-				table.set(index, "Size", size);
-				table.set(index, "Count", count);
-				table.set(index, "Uses (success%)", uses + "(" + String.format("%2.2f", (uses > 0) ? success * 100. / uses : 0) + "%)");
-				table.set(index, "Uses, playble", playable + "(" + String.format("%2.2f", (uses > 0) ? playable * 100. / uses : 0) + "%)");
-				table.set(index, "Uses, overtime", overtime + "(" + String.format("%2.2f", (uses > 0) ? overtime * 100. / uses : 0) + "%)");
-				table.set(index, "Iter., avg", (uses > 0) ? itrs / uses : 0);
-				table.set(index, "Time, avg (ms)", String.format("%1.3f", (uses > 0) ? (double) time / uses : 0.));
+			index++;
+			count = 0;
+			uses = 0;
+			playable = 0;
+			itrs = 0;
+			success = 0;
+			overtime = 0;
+			time = 0;
+			for (PathFindBuffer buff : all[sizeClass])
+			{
+				count++;
+				uses += buff.totalUses;
+				playable += buff.playableUses;
+				success += buff.successUses;
+				overtime += buff.overtimeUses;
+				time += buff.totalTime / 1000000;
+				itrs += buff.totalItr;
 			}
 
-			table.addTitle("Uses, total / playable  : " + totalUses + " / " + totalPlayable);
-			table.addTitle("Uses, total time / avg (ms) : " + totalTime + " / " + String.format("%1.3f", totalUses > 0 ? (double) totalTime / totalUses : 0));
-		}
-		finally
-		{
-			lock.unlock();
+			totalUses += uses;
+			totalPlayable += playable;
+			totalTime += time;
+
+			table.set(index, "Size", MIN_MAP_SIZE + sizeClass * STEP_MAP_SIZE);
+			table.set(index, "Count", count);
+			table.set(index, "Uses (success%)", uses + "(" + String.format("%2.2f", (uses > 0) ? success * 100. / uses : 0) + "%)");
+			table.set(index, "Uses, playble", playable + "(" + String.format("%2.2f", (uses > 0) ? playable * 100. / uses : 0) + "%)");
+			table.set(index, "Uses, overtime", overtime + "(" + String.format("%2.2f", (uses > 0) ? overtime * 100. / uses : 0) + "%)");
+			table.set(index, "Iter., avg", (uses > 0) ? itrs / uses : 0);
+			table.set(index, "Time, avg (ms)", String.format("%1.3f", (uses > 0) ? (double) time / uses : 0.));
 		}
 
+		table.addTitle("Uses, total / playable  : " + totalUses + " / " + totalPlayable);
+		table.addTitle("Uses, total time / avg (ms) : " + totalTime + " / " + String.format("%1.3f", totalUses > 0 ? (double) totalTime / totalUses : 0));
+
 		return table;
 	}
 
@@ -228,7 +177,7 @@ public class PathFindBuffers
 		final GeoNode[][] nodes;
 		final Queue<GeoNode> open;
 		int offsetX, offsetY;
-		boolean inUse;
+		volatile boolean inUse;
 
 		// статистика
 		long totalUses;
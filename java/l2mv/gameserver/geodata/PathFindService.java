@@ -0,0 +1,421 @@
+package l2mv.gameserver.geodata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import l2mv.commons.threading.LoggingRejectedExecutionHandler;
+import l2mv.commons.threading.PriorityThreadFactory;
+import l2mv.gameserver.Config;
+import l2mv.gameserver.model.GameObject;
+import l2mv.gameserver.utils.Location;
+
+/**
+ * Сервис поиска пути.
+ * <p>
+ * Одинаковые запросы (клетка начала, клетка конца, geoIndex) не ищутся повторно: ожидают уже идущий поиск, а недавние результаты,
+ * в том числе неудачные, берутся из LRU кеша. Изменение геодаты дверями сбрасывает пути, проходящие через измененную область,
+ * и все неудачные поиски этого geoIndex. Асинхронные запросы ищутся в отдельном пуле и не задерживают поток AI.
+ */
+public class PathFindService
+{
+	private static final Logger _log = LoggerFactory.getLogger(PathFindService.class);
+
+	/** Неудачный поиск мог упереться в ограничение времени, поэтому помнится недолго */
+	private static final long FAILED_PATH_TTL = 10000L;
+
+	private static final PathFindService _instance = new PathFindService();
+
+	public static PathFindService getInstance()
+	{
+		return _instance;
+	}
+
+	private static final class PathKey
+	{
+		final int startX, startY, startZ;
+		final int endX, endY, endZ;
+		final int geoIndex;
+
+		PathKey(int startX, int startY, int startZ, int endX, int endY, int endZ, int geoIndex)
+		{
+			this.startX = startX;
+			this.startY = startY;
+			this.startZ = startZ;
+			this.endX = endX;
+			this.endY = endY;
+			this.endZ = endZ;
+			this.geoIndex = geoIndex;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = startX;
+			result = 31 * result + startY;
+			result = 31 * result + startZ;
+			result = 31 * result + endX;
+			result = 31 * result + endY;
+			result = 31 * result + endZ;
+			return 31 * result + geoIndex;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+			{
+				return true;
+			}
+			if (!(o instanceof PathKey))
+			{
+				return false;
+			}
+			PathKey key = (PathKey) o;
+			return startX == key.startX && startY == key.startY && startZ == key.startZ && endX == key.endX && endY == key.endY && endZ == key.endZ && geoIndex == key.geoIndex;
+		}
+	}
+
+	/**
+	 * Найденный путь и его границы в координатах геодаты
+	 */
+	private static final class CachedPath
+	{
+		/** Точки пути в мировых координатах, пустой если пути нет */
+		final List<Location> path;
+		final int minX, minY, maxX, maxY;
+		final long time = System.currentTimeMillis();
+
+		CachedPath(List<Location> path)
+		{
+			this.path = path;
+			int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+			for (Location loc : path)
+			{
+				int x = GeoEngine.getGeoX(loc.x);
+				int y = GeoEngine.getGeoY(loc.y);
+				minX = Math.min(minX, x);
+				minY = Math.min(minY, y);
+				maxX = Math.max(maxX, x);
+				maxY = Math.max(maxY, y);
+			}
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+		}
+
+		boolean intersects(int minX, int minY, int maxX, int maxY)
+		{
+			// Неудачный поиск мог упереться в любую клетку области поиска
+			return path.isEmpty() || this.minX <= maxX && this.maxX >= minX && this.minY <= maxY && this.maxY >= minY;
+		}
+	}
+
+	private final ThreadPoolExecutor _executor;
+	/** Идущие поиски */
+	private final Map<PathKey, CompletableFuture<List<Location>>> _running = new ConcurrentHashMap<PathKey, CompletableFuture<List<Location>>>();
+	private final Map<PathKey, CachedPath> _cache = new LinkedHashMap<PathKey, CachedPath>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<PathKey, CachedPath> eldest)
+		{
+			return size() > Config.PATHFIND_CACHE_SIZE;
+		}
+	};
+	/** Меняется при каждом изменении геодаты, результат поиска, начатого до изменения, не кешируется */
+	private final AtomicLong _geoVersion = new AtomicLong();
+
+	private final LongAdder _requests = new LongAdder();
+	private final LongAdder _cacheHits = new LongAdder();
+	private final LongAdder _deduplicated = new LongAdder();
+	private final LongAdder _searches = new LongAdder();
+	private final LongAdder _searchTime = new LongAdder();
+	private final LongAdder _invalidated = new LongAdder();
+
+	private PathFindService()
+	{
+		_executor = new ThreadPoolExecutor(Config.PATHFIND_THREADS, Config.PATHFIND_THREADS, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new PriorityThreadFactory("PathFind", Thread.NORM_PRIORITY), new LoggingRejectedExecutionHandler());
+	}
+
+	/**
+	 * Поиск пути на текущем потоке. Путь берется из кеша или из уже идущего поиска того же пути.
+	 * @return путь, разбитый на прямые участки, пустой если пути нет
+	 */
+	public List<List<Location>> findMovePath(int x, int y, int z, Location target, GameObject obj, boolean showTrace, int geoIndex)
+	{
+		try
+		{
+			PathKey key = createKey(x, y, z, target, geoIndex);
+			if (key == null)
+			{
+				return Collections.emptyList();
+			}
+
+			return toMovePath(request(key, x, y, z, target, obj, geoIndex, false).join(), key, x, y, target, obj, showTrace, geoIndex);
+		}
+		catch (Exception e)
+		{
+			_log.error("Error while finding move path from x: " + x + " y: " + y + " z: " + z + " to location: " + target + " at geoIndex: " + geoIndex, e);
+		}
+
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Поиск пути в пуле сервиса. Вызывающий поток не ждет поиска.
+	 * @param callback получает путь, разбитый на прямые участки, пустой если пути нет. Вызывается на потоке пула, а если путь уже
+	 *            есть в кеше, то сразу, до возврата из метода.
+	 */
+	public void findMovePathAsync(final int x, final int y, final int z, final Location target, final GameObject obj, final int geoIndex, final Consumer<List<List<Location>>> callback)
+	{
+		final PathKey key;
+		try
+		{
+			key = createKey(x, y, z, target, geoIndex);
+		}
+		catch (RuntimeException e)
+		{
+			_log.error("Error while finding move path from x: " + x + " y: " + y + " z: " + z + " to location: " + target + " at geoIndex: " + geoIndex, e);
+			callback.accept(Collections.<List<Location>>emptyList());
+			return;
+		}
+
+		if (key == null)
+		{
+			callback.accept(Collections.<List<Location>>emptyList());
+			return;
+		}
+
+		request(key, x, y, z, target, obj, geoIndex, true).thenAccept(path ->
+		{
+			List<List<Location>> result = Collections.emptyList();
+			try
+			{
+				result = toMovePath(path, key, x, y, target, obj, false, geoIndex);
+			}
+			catch (RuntimeException e)
+			{
+				_log.error("Error while finding move path from x: " + x + " y: " + y + " z: " + z + " to location: " + target + " at geoIndex: " + geoIndex, e);
+			}
+
+			try
+			{
+				callback.accept(result);
+			}
+			catch (RuntimeException e)
+			{
+				_log.error("PathFindService: Error in path callback ", e);
+			}
+		});
+	}
+
+	/**
+	 * @return ключ запроса или null, если между точками слишком большой перепад высот
+	 */
+	private static PathKey createKey(int x, int y, int z, Location target, int geoIndex)
+	{
+		if (Math.abs(z - target.z) > 256)
+		{
+			return null;
+		}
+
+		return new PathKey(GeoEngine.getGeoX(x), GeoEngine.getGeoY(y), GeoEngine.getHeight(x, y, z, geoIndex), GeoEngine.getGeoX(target.x), GeoEngine.getGeoY(target.y), GeoEngine.getHeight(target, geoIndex), geoIndex);
+	}
+
+	private CompletableFuture<List<Location>> request(final PathKey key, final int x, final int y, final int z, final Location target, final GameObject obj, final int geoIndex, boolean async)
+	{
+		_requests.increment();
+
+		CachedPath cached = getCached(key);
+		if (cached != null)
+		{
+			_cacheHits.increment();
+			return CompletableFuture.completedFuture(cached.path);
+		}
+
+		final CompletableFuture<List<Location>> future = new CompletableFuture<List<Location>>();
+		CompletableFuture<List<Location>> running = _running.putIfAbsent(key, future);
+		if (running != null)
+		{
+			_deduplicated.increment();
+			return running;
+		}
+
+		final Location dest = target.clone();
+		Runnable search = () ->
+		{
+			long version = _geoVersion.get();
+			long started = System.nanoTime();
+			List<Location> path = Collections.emptyList();
+			try
+			{
+				path = Collections.unmodifiableList(GeoMove.findPath(x, y, z, dest, obj, geoIndex));
+			}
+			catch (RuntimeException e)
+			{
+				_log.error("Error while finding path from x: " + x + " y: " + y + " z: " + z + " to location: " + dest + " at geoIndex: " + geoIndex, e);
+			}
+			finally
+			{
+				_searches.increment();
+				_searchTime.add(System.nanoTime() - started);
+
+				// Кеш заполняется раньше снятия запроса, чтобы повторный запрос нашел одно из двух
+				putCached(key, new CachedPath(path), version);
+				_running.remove(key);
+				future.complete(path);
+			}
+		};
+
+		if (async && !_executor.isShutdown())
+		{
+			_executor.execute(search);
+		}
+		else
+		{
+			search.run();
+		}
+		return future;
+	}
+
+	/**
+	 * Путь из кеша начинается и заканчивается в тех же клетках, начальная и конечная точки заменяются точками запроса.
+	 */
+	private static List<List<Location>> toMovePath(List<Location> path, PathKey key, int x, int y, Location target, GameObject obj, boolean showTrace, int geoIndex)
+	{
+		if (path.isEmpty())
+		{
+			return Collections.emptyList();
+		}
+
+		List<Location> points = new ArrayList<Location>(path.size());
+		points.add(new Location(x, y, key.startZ));
+		for (int i = 1; i < path.size() - 1; i++)
+		{
+			points.add(path.get(i).clone());
+		}
+		points.add(new Location(target.x, target.y, key.endZ));
+
+		if (showTrace)
+		{
+			GeoMove.showTrace(points, obj);
+		}
+
+		return GeoMove.getNodePath(points, geoIndex);
+	}
+
+	private CachedPath getCached(PathKey key)
+	{
+		if (Config.PATHFIND_CACHE_SIZE <= 0)
+		{
+			return null;
+		}
+
+		synchronized (_cache)
+		{
+			CachedPath cached = _cache.get(key);
+			if (cached != null && cached.path.isEmpty() && System.currentTimeMillis() - cached.time > FAILED_PATH_TTL)
+			{
+				_cache.remove(key);
+				return null;
+			}
+			return cached;
+		}
+	}
+
+	/**
+	 * @param version версия геодаты на начало поиска. Путь, найденный до изменения геодаты, не кешируется.
+	 */
+	private void putCached(PathKey key, CachedPath path, long version)
+	{
+		if (Config.PATHFIND_CACHE_SIZE <= 0)
+		{
+			return;
+		}
+
+		synchronized (_cache)
+		{
+			// Проверка под блокировкой кеша: invalidate() меняет версию до очистки кеша, поэтому путь либо не попадет в кеш,
+			// либо попадет до очистки и будет ею удален
+			if (version == _geoVersion.get())
+			{
+				_cache.put(key, path);
+			}
+		}
+	}
+
+	/**
+	 * Сбрасывает пути geoIndex, проходящие через область, и все неудачные поиски этого geoIndex.
+	 * @param minX область в координатах геодаты
+	 */
+	public void invalidate(int geoIndex, int minX, int minY, int maxX, int maxY)
+	{
+		_geoVersion.incrementAndGet();
+		synchronized (_cache)
+		{
+			for (Iterator<Map.Entry<PathKey, CachedPath>> iterator = _cache.entrySet().iterator(); iterator.hasNext();)
+			{
+				Map.Entry<PathKey, CachedPath> entry = iterator.next();
+				if (entry.getKey().geoIndex == geoIndex && entry.getValue().intersects(minX, minY, maxX, maxY))
+				{
+					iterator.remove();
+					_invalidated.increment();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Сбрасывает все пути geoIndex
+	 */
+	public void invalidate(int geoIndex)
+	{
+		invalidate(geoIndex, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	public void shutdown() throws InterruptedException
+	{
+		_executor.shutdown();
+		_executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	public CharSequence getStats()
+	{
+		long searches = _searches.sum();
+		int cacheSize;
+		synchronized (_cache)
+		{
+			cacheSize = _cache.size();
+		}
+
+		StringBuilder list = new StringBuilder();
+		list.append("PathFindService").append("\n");
+		list.append("=================================================\n");
+		list.append("\tRequests: ........... ").append(_requests.sum()).append("\n");
+		list.append("\tCache hits: ......... ").append(_cacheHits.sum()).append("\n");
+		list.append("\tDeduplicated: ....... ").append(_deduplicated.sum()).append("\n");
+		list.append("\tSearches: ........... ").append(searches).append("\n");
+		list.append("\tAverage search, us: . ").append(searches == 0 ? 0 : _searchTime.sum() / searches / 1000L).append("\n");
+		list.append("\tCached paths: ....... ").append(cacheSize).append('/').append(Config.PATHFIND_CACHE_SIZE).append("\n");
+		list.append("\tInvalidated: ........ ").append(_invalidated.sum()).append("\n");
+		list.append("\tQueued/active: ...... ").append(_executor.getQueue().size()).append('/').append(_executor.getActiveCount()).append("\n");
+		return list;
+	}
+}
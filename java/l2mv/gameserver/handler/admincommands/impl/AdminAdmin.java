@@ -15,6 +15,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import l2mv.commons.lang.StatsUtils;
+import l2mv.commons.threading.RunnableStatsManager;
 import l2mv.gameserver.Announcements;
 import l2mv.gameserver.Config;
 import l2mv.gameserver.data.htm.HtmCache;
@@ -75,6 +76,7 @@ public class AdminAdmin implements IAdminCommandHandler
 		admin_undying,
 		admin_garbage_collector,
 		admin_show_memory,
+		admin_show_runnable_stats,
 		admin_trivia,
 	}
 
@@ -572,6 +574,20 @@ public class AdminAdmin implements IAdminCommandHandler
 				}
 				_log.info("=================================================");
 				break;
+			case admin_show_runnable_stats:
+				if (!Config.ENABLE_RUNNABLE_STATS)
+				{
+					Functions.sendDebugMessage(activeChar, "Runnable stats are disabled, see EnableRunnableStats.");
+					break;
+				}
+				_log.info("=================================================");
+				for (String line : (RunnableStatsManager.getInstance().getTopStats(30) + "\n" + RunnableStatsManager.getPacketsInstance().getTopStats(30)).split("\n"))
+				{
+					_log.info(line);
+				}
+				_log.info("=================================================");
+				Functions.sendDebugMessage(activeChar, "Runnable stats were written to the server log.");
+				break;
 			case admin_trivia:
 			{
 				final String customHtm = HtmCache.getInstance().getNotNull("admin/events/trivia.htm", activeChar);
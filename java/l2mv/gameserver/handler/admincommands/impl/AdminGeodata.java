@@ -20,6 +20,7 @@ public class AdminGeodata implements IAdminCommandHandler
 		admin_geo_dump,
 		admin_geo_trace,
 		admin_geo_map,
+		admin_geo_memory,
 		admin_geogrid
 	}
 
@@ -115,11 +116,23 @@ public class AdminGeodata implements IAdminCommandHandler
 		case admin_geo_dump:
 			if (wordList.length > 2)
 			{
-				GeoEngine.DumpGeodataFileMap(Byte.parseByte(wordList[1]), Byte.parseByte(wordList[2]));
-				activeChar.sendMessage("Geo square saved " + wordList[1] + "_" + wordList[2]);
+				if (GeoEngine.DumpGeodataFileMap(Byte.parseByte(wordList[1]), Byte.parseByte(wordList[2])))
+				{
+					activeChar.sendMessage("Geo square saved " + wordList[1] + "_" + wordList[2]);
+				}
+				else
+				{
+					activeChar.sendMessage("Geo square " + wordList[1] + "_" + wordList[2] + " not saved.");
+				}
+			}
+			if (GeoEngine.DumpGeodataFile(activeChar.getX(), activeChar.getY()))
+			{
+				activeChar.sendMessage("Actual geo square saved.");
+			}
+			else
+			{
+				activeChar.sendMessage("Actual geo square not saved.");
 			}
-			GeoEngine.DumpGeodataFile(activeChar.getX(), activeChar.getY());
-			activeChar.sendMessage("Actual geo square saved.");
 			break;
 		case admin_geo_trace:
 			if (wordList.length < 2)
@@ -146,6 +159,10 @@ public class AdminGeodata implements IAdminCommandHandler
 
 			activeChar.sendMessage("GeoMap: " + x + "_" + y);
 			break;
+		case admin_geo_memory:
+			long[] usage = GeoEngine.getLayersMemoryUsage();
+			activeChar.sendMessage("GeoEngine: shared " + (usage[0] >> 10) + " KB, copied " + (usage[1] >> 10) + " KB");
+			break;
 		}
 
 		return true;
@@ -5,6 +5,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 
 import l2mv.commons.dbutils.DbUtils;
+import l2mv.gameserver.dao.ItemsDAO;
 import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.handler.admincommands.IAdminCommandHandler;
 import l2mv.gameserver.model.Player;
@@ -62,6 +63,7 @@ public class AdminRepairChar implements IAdminCommandHandler
 			DbUtils.close(statement);
 
 			// con = L2DatabaseFactory.getInstance().getConnection();
+			ItemsDAO.getInstance().flush();
 			statement = con.prepareStatement("UPDATE items SET loc='INVENTORY' WHERE owner_id=? AND loc!='WAREHOUSE'");
 			statement.setInt(1, objId);
 			statement.execute();
@@ -0,0 +1,333 @@
+package l2mv.gameserver.idfactory;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Object IDs are handed out from per-thread blocks of {@link #BLOCK_SIZE} ids, so getNextId() takes no lock.
+ * <p>
+ * Fresh blocks are leased from a cursor running over the ID range. The IDs used in the database are kept as a sorted array and
+ * skipped by the cursor, there is no bitmap of the whole range. Released IDs are collected into per-thread blocks, full blocks go
+ * to a lock-free free list and are handed out again not earlier than {@link #RELEASE_DELAY} later, so a stale reference to a
+ * deleted object does not meet a new object with the same ID right away.
+ * <p>
+ * The blocks of a finished thread are taken back when the next thread starts using the factory, the IDs not handed out and the
+ * released ones go to the free list. The blocks of the threads alive at shutdown need no return, the used IDs are read from the
+ * database again at start.
+ */
+public class BlockIDFactory extends IdFactory
+{
+	private static final Logger _log = LoggerFactory.getLogger(BlockIDFactory.class);
+
+	static final int BLOCK_SIZE = 256;
+	/** Minimum time before a released ID is handed out again */
+	static final long RELEASE_DELAY = 60000L;
+	/** A page of the released IDs bitmap covers 2^PAGE_BITS IDs */
+	private static final int PAGE_BITS = 16;
+
+	private static class Block
+	{
+		final int[] ids;
+		/** IDs of the block were released before, their released bits are cleared as they are handed out */
+		final boolean released;
+		int next;
+
+		Block(int[] ids, boolean released)
+		{
+			this.ids = ids;
+			this.released = released;
+		}
+	}
+
+	private static class ReleasedBlock
+	{
+		final int[] ids;
+		final long time;
+
+		ReleasedBlock(int[] ids, long time)
+		{
+			this.ids = ids;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * Blocks of one thread
+	 */
+	private static class Owner
+	{
+		final Thread thread = Thread.currentThread();
+		Block block;
+		Block releaseBlock;
+	}
+
+	private final ThreadLocal<Owner> _owners = ThreadLocal.withInitial(this::register);
+	/** Owners of all threads that used the factory, the finished ones are reclaimed on register */
+	private final Queue<Owner> _allOwners = new ConcurrentLinkedQueue<Owner>();
+
+	/** Sorted IDs used in the database the cursor has not passed yet, null once it has passed all of them */
+	private int[] _usedIds;
+	private int _usedIndex;
+	private int _usedCount;
+	/** Next ID of the range that was never leased */
+	private long _cursor = FIRST_OID;
+
+	/** Full blocks of released IDs in the order of release */
+	private final Queue<ReleasedBlock> _released = new ConcurrentLinkedQueue<ReleasedBlock>();
+	/** Bitmap of the released IDs not handed out yet, a repeated release of such an ID is ignored. Pages are created on demand. */
+	private final AtomicReferenceArray<AtomicLongArray> _releasedPages = new AtomicReferenceArray<AtomicLongArray>((FREE_OBJECT_ID_SIZE >>> PAGE_BITS) + 1);
+
+	private final LongAdder _allocatedCount = new LongAdder();
+	private final LongAdder _releasedCount = new LongAdder();
+
+	protected BlockIDFactory()
+	{
+		super();
+		initialize();
+	}
+
+	private void initialize()
+	{
+		try
+		{
+			int[] extracted = extractUsedObjectIDTable();
+			int[] used = new int[extracted.length];
+			int count = 0;
+			for (int usedObjectId : extracted)
+			{
+				if (usedObjectId < FIRST_OID)
+				{
+					_log.warn("Object ID " + usedObjectId + " in DB is less than minimum ID of " + FIRST_OID);
+					continue;
+				}
+				// the array is sorted, duplicates are adjacent
+				if (count == 0 || used[count - 1] != usedObjectId)
+				{
+					used[count++] = usedObjectId;
+				}
+			}
+
+			_usedIds = count == 0 ? null : Arrays.copyOf(used, count);
+			_usedCount = count;
+			initialized = true;
+
+			_log.info("IdFactory: " + size() + " id's available.");
+		}
+		catch (SQLException e)
+		{
+			initialized = false;
+			_log.error("Block ID Factory could not be initialized correctly!", e);
+		}
+	}
+
+	@Override
+	public int getNextId()
+	{
+		Owner owner = _owners.get();
+		Block block = owner.block;
+		if (block == null || block.next == block.ids.length)
+		{
+			block = nextBlock();
+			owner.block = block;
+		}
+
+		_allocatedCount.increment();
+		int id = block.ids[block.next++];
+		if (block.released)
+		{
+			// Until now a repeated release of the ID was ignored
+			setReleased(id, false);
+		}
+		return id;
+	}
+
+	private Block nextBlock()
+	{
+		int[] ids = pollReleased(System.currentTimeMillis() - RELEASE_DELAY);
+		if (ids != null)
+		{
+			return new Block(ids, true);
+		}
+
+		ids = leaseRange();
+		if (ids.length == 0)
+		{
+			// The range is over, only released IDs are left
+			ids = pollReleased(Long.MAX_VALUE);
+			if (ids == null)
+			{
+				throw new IllegalStateException("Ran out of valid Id's.");
+			}
+			return new Block(ids, true);
+		}
+		return new Block(ids, false);
+	}
+
+	/**
+	 * @return the oldest block of released IDs if it was released not later than releasedBefore, otherwise null
+	 */
+	private int[] pollReleased(long releasedBefore)
+	{
+		ReleasedBlock block;
+		while ((block = _released.peek()) != null && block.time <= releasedBefore)
+		{
+			// Another thread may take the same block
+			if (_released.remove(block))
+			{
+				return block.ids;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return next IDs of the range that are not used in the database, empty if the range is over
+	 */
+	private synchronized int[] leaseRange()
+	{
+		int[] ids = new int[BLOCK_SIZE];
+		int count = 0;
+		while (count < BLOCK_SIZE && _cursor <= LAST_OID)
+		{
+			int id = (int) _cursor++;
+			if (_usedIds != null)
+			{
+				while (_usedIndex < _usedIds.length && _usedIds[_usedIndex] < id)
+				{
+					_usedIndex++;
+				}
+				if (_usedIndex == _usedIds.length)
+				{
+					_usedIds = null;
+				}
+				else if (_usedIds[_usedIndex] == id)
+				{
+					continue;
+				}
+			}
+			ids[count++] = id;
+		}
+		return count == BLOCK_SIZE ? ids : Arrays.copyOf(ids, count);
+	}
+
+	@Override
+	public void releaseId(int objectID)
+	{
+		if (objectID < FIRST_OID)
+		{
+			_log.warn("Block ID Factory: release objectID " + objectID + " failed (< " + FIRST_OID + ")");
+			return;
+		}
+
+		if (!setReleased(objectID, true))
+		{
+			return;
+		}
+		_releasedCount.increment();
+
+		Owner owner = _owners.get();
+		Block block = owner.releaseBlock;
+		if (block == null)
+		{
+			block = new Block(new int[BLOCK_SIZE], false);
+			owner.releaseBlock = block;
+		}
+
+		block.ids[block.next++] = objectID;
+		if (block.next == BLOCK_SIZE)
+		{
+			_released.add(new ReleasedBlock(block.ids, System.currentTimeMillis()));
+			owner.releaseBlock = new Block(new int[BLOCK_SIZE], false);
+		}
+	}
+
+	private Owner register()
+	{
+		reclaimFinished();
+
+		Owner owner = new Owner();
+		_allOwners.add(owner);
+		return owner;
+	}
+
+	/**
+	 * Returns the partly used blocks of the finished threads to the free list, the leaked IDs are limited by the threads alive
+	 */
+	private void reclaimFinished()
+	{
+		for (Owner owner : _allOwners)
+		{
+			// the end of the thread makes its blocks visible here, only the thread removing the owner returns them
+			if (owner.thread.isAlive() || !_allOwners.remove(owner))
+			{
+				continue;
+			}
+
+			Block block = owner.block;
+			if (block != null && block.next < block.ids.length)
+			{
+				// never handed out or already waited for the delay
+				_released.add(new ReleasedBlock(Arrays.copyOfRange(block.ids, block.next, block.ids.length), 0L));
+			}
+
+			block = owner.releaseBlock;
+			if (block != null && block.next > 0)
+			{
+				_released.add(new ReleasedBlock(Arrays.copyOf(block.ids, block.next), System.currentTimeMillis()));
+			}
+		}
+	}
+
+	/**
+	 * @return false if the ID is already in this state
+	 */
+	private boolean setReleased(int objectID, boolean released)
+	{
+		int offset = objectID - FIRST_OID;
+		int pageIndex = offset >>> PAGE_BITS;
+		AtomicLongArray page = _releasedPages.get(pageIndex);
+		if (page == null)
+		{
+			if (!released)
+			{
+				return false;
+			}
+			_releasedPages.compareAndSet(pageIndex, null, new AtomicLongArray(1 << PAGE_BITS - 6));
+			page = _releasedPages.get(pageIndex);
+		}
+
+		int word = (offset & (1 << PAGE_BITS) - 1) >>> 6;
+		long bit = 1L << offset;
+		long value;
+		do
+		{
+			value = page.get(word);
+			if (((value & bit) != 0) == released)
+			{
+				return false;
+			}
+		}
+		while (!page.compareAndSet(word, value, value ^ bit));
+		return true;
+	}
+
+	@Override
+	public long getReleasedCount()
+	{
+		return _releasedCount.sum();
+	}
+
+	@Override
+	public int size()
+	{
+		return (int) (FREE_OBJECT_ID_SIZE - _usedCount - _allocatedCount.sum() + _releasedCount.sum());
+	}
+}
@@ -11,6 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import gnu.trove.list.array.TIntArrayList;
 import l2mv.commons.dbutils.DbUtils;
+import l2mv.gameserver.Config;
 import l2mv.gameserver.database.DatabaseFactory;
 
 public abstract class IdFactory
@@ -49,7 +50,7 @@ public abstract class IdFactory
 	public static final int LAST_OID = 0x7FFFFFFF;
 	public static final int FREE_OBJECT_ID_SIZE = LAST_OID - FIRST_OID;
 
-	protected static final IdFactory _instance = new BitSetIDFactory();
+	protected static final IdFactory _instance = Config.ID_FACTORY_BLOCKS ? new BlockIDFactory() : new BitSetIDFactory();
 
 	public static final IdFactory getInstance()
 	{
@@ -26,6 +26,7 @@ import l2mv.commons.threading.RunnableImpl;
 import l2mv.commons.util.Rnd;
 import l2mv.gameserver.Config;
 import l2mv.gameserver.ThreadPoolManager;
+import l2mv.gameserver.dao.ItemsDAO;
 import l2mv.gameserver.data.xml.holder.ItemHolder;
 import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.model.CursedWeapon;
@@ -301,6 +302,7 @@ public class CursedWeaponsManager
 		PreparedStatement statement = null;
 		try
 		{
+			ItemsDAO.getInstance().flush();
 			con = DatabaseFactory.getInstance().getConnection();
 
 			// Delete the item
@@ -412,6 +414,7 @@ public class CursedWeaponsManager
 				PreparedStatement statement = null;
 				try
 				{
+					ItemsDAO.getInstance().flush();
 					con = DatabaseFactory.getInstance().getConnection();
 
 					// Delete the item
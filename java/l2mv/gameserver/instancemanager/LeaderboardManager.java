@@ -0,0 +1,507 @@
+package l2mv.gameserver.instancemanager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import l2mv.commons.threading.RunnableImpl;
+import l2mv.gameserver.Config;
+import l2mv.gameserver.ThreadPoolManager;
+import l2mv.gameserver.database.DatabaseFactory;
+import l2mv.gameserver.model.GameObjectsStorage;
+import l2mv.gameserver.model.Player;
+import l2mv.gameserver.model.SubClass;
+import l2mv.gameserver.model.pledge.Clan;
+import l2mv.gameserver.tables.ClanTable;
+
+/**
+ * Таблицы лидеров по показателям персонажей, которые хранятся в памяти.
+ * <p>
+ * Каждая таблица заполняется из базы один раз при старте и дальше обновляется событиями игры: убийствами, изменением адены в
+ * инвентаре, сохранением персонажа. Таблица держит вдвое больше строк, чем показывается, и помнит наибольшее значение среди
+ * вытесненных персонажей: пока показанные строки не ниже его, порядок точен без обращения к базе. Если снижение значений опустило
+ * точную часть ниже показываемой, таблица перечитывается из базы в фоне.
+ */
+public class LeaderboardManager
+{
+	private static final Logger _log = LoggerFactory.getLogger(LeaderboardManager.class);
+
+	/** Места по убыванию значения, при равенстве раньше созданный персонаж выше */
+	private static final Comparator<Entry> ORDER = (e1, e2) ->
+	{
+		int result = Long.compare(e2._value, e1._value);
+		return result != 0 ? result : Integer.compare(e1._objectId, e2._objectId);
+	};
+
+	private static final LeaderboardManager _instance = new LeaderboardManager();
+
+	/** Не чаще одного перечитывания таблицы из базы за этот срок */
+	private static final long RESEED_DELAY = 10 * 60 * 1000L;
+
+	public static LeaderboardManager getInstance()
+	{
+		return _instance;
+	}
+
+	public static enum Metric
+	{
+		PVP("c.pvpkills"),
+		PK("c.pkkills"),
+		ONLINE_TIME("c.onlinetime"),
+		FAME("c.fame"),
+		RAID_KILLS("c.raidkills"),
+		EVENT_KILLS("c.eventKills"),
+		SIEGE_KILLS("c.siege_kills"),
+		OLY_WINS("c.oly_wins"),
+		ADENA("it.count");
+
+		static final Metric[] VALUES = values();
+
+		private final String _column;
+
+		private Metric(String column)
+		{
+			_column = column;
+		}
+
+		long getValue(Player player)
+		{
+			switch (this)
+			{
+			case PVP:
+				return player.getPvpKills();
+			case PK:
+				return player.getPkKills();
+			case ONLINE_TIME:
+				return player.getOnlineTime() / 1000L;
+			case FAME:
+				return player.getFame();
+			case RAID_KILLS:
+				return player.getRaidKills();
+			case EVENT_KILLS:
+				return player.getEventKills();
+			case SIEGE_KILLS:
+				return player.getSiegeKills();
+			case OLY_WINS:
+				return player.getOlyWins();
+			case ADENA:
+				return player.getInventory().getAdena();
+			default:
+				return 0L;
+			}
+		}
+
+		String getSeedQuery()
+		{
+			StringBuilder sb = new StringBuilder();
+			sb.append("SELECT c.obj_Id, c.char_name, c.clanid, cs.class_id, cs.level, ").append(_column).append(" AS value FROM characters AS c");
+			sb.append(" JOIN character_subclasses AS cs ON (c.obj_Id=cs.char_obj_id AND cs.isBase=1)");
+			if (this == ADENA)
+			{
+				sb.append(" JOIN items AS it ON (it.owner_id=c.obj_Id AND it.item_id=57 AND it.loc='INVENTORY')");
+			}
+			sb.append(" WHERE c.accesslevel=0 AND c.char_name<>'' AND ").append(_column).append(" > 0");
+			sb.append(" ORDER BY ").append(_column).append(" DESC LIMIT ?");
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Строка таблицы: персонаж на момент последнего обновления и его значение
+	 */
+	public static class Entry
+	{
+		private final int _objectId;
+		private final String _name;
+		private final int _clanId;
+		private final int _classId;
+		private final int _level;
+		private final long _value;
+
+		Entry(int objectId, String name, int clanId, int classId, int level, long value)
+		{
+			_objectId = objectId;
+			_name = name;
+			_clanId = clanId;
+			_classId = classId;
+			_level = level;
+			_value = value;
+		}
+
+		public int getObjectId()
+		{
+			return _objectId;
+		}
+
+		public String getName()
+		{
+			return _name;
+		}
+
+		public int getClanId()
+		{
+			return _clanId;
+		}
+
+		/**
+		 * @return имя клана сейчас или null
+		 */
+		public String getClanName()
+		{
+			Clan clan = _clanId == 0 ? null : ClanTable.getInstance().getClan(_clanId);
+			return clan == null ? null : clan.getName();
+		}
+
+		/**
+		 * @return основной класс
+		 */
+		public int getClassId()
+		{
+			return _classId;
+		}
+
+		/**
+		 * @return уровень основного класса
+		 */
+		public int getLevel()
+		{
+			return _level;
+		}
+
+		public long getValue()
+		{
+			return _value;
+		}
+	}
+
+	private static class Board
+	{
+		final Metric metric;
+		final TreeSet<Entry> sorted = new TreeSet<Entry>(ORDER);
+		final Map<Integer, Entry> members = new ConcurrentHashMap<Integer, Entry>();
+		/** Наименьшее значение заполненной таблицы, ниже него посторонние персонажи в таблицу не попадают */
+		volatile long minValue;
+		/** Значения персонажей вне таблицы не больше этого */
+		volatile long outsideMax;
+		volatile List<Entry> snapshot;
+		final AtomicBoolean seeding = new AtomicBoolean();
+		volatile long lastSeedTime;
+
+		Board(Metric metric)
+		{
+			this.metric = metric;
+			snapshot = Collections.emptyList();
+		}
+	}
+
+	private final Board[] _boards = new Board[Metric.VALUES.length];
+
+	private LeaderboardManager()
+	{
+		for (Metric metric : Metric.VALUES)
+		{
+			_boards[metric.ordinal()] = new Board(metric);
+		}
+	}
+
+	private static int getCapacity()
+	{
+		return Config.SERVER_RANKING_LIST_SIZE * 2;
+	}
+
+	/**
+	 * Заполняет все таблицы из базы. Вызывается при старте сервера.
+	 */
+	public void load()
+	{
+		long time = System.currentTimeMillis();
+		for (Board board : _boards)
+		{
+			seed(board);
+		}
+		_log.info("LeaderboardManager: loaded " + _boards.length + " leaderboards of up to " + getCapacity() + " characters in " + (System.currentTimeMillis() - time) + " ms.");
+	}
+
+	private void seed(Board board)
+	{
+		int capacity = getCapacity();
+		List<Entry> entries = new ArrayList<Entry>(capacity + 1);
+		try (Connection con = DatabaseFactory.getInstance().getConnection(); PreparedStatement statement = con.prepareStatement(board.metric.getSeedQuery()))
+		{
+			statement.setInt(1, capacity + 1);
+			try (ResultSet rset = statement.executeQuery())
+			{
+				while (rset.next())
+				{
+					entries.add(new Entry(rset.getInt("obj_Id"), rset.getString("char_name"), rset.getInt("clanid"), rset.getInt("class_id"), rset.getInt("level"), rset.getLong("value")));
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			_log.error("LeaderboardManager: could not load " + board.metric + " leaderboard!", e);
+			return;
+		}
+
+		synchronized (board)
+		{
+			board.sorted.clear();
+			board.members.clear();
+			board.outsideMax = 0L;
+			for (Entry entry : entries)
+			{
+				add(board, entry);
+			}
+		}
+
+		// The database lags behind the characters in game by the unsaved changes
+		for (Player player : GameObjectsStorage.getAllPlayersForIterate())
+		{
+			update(player, board.metric);
+		}
+		board.lastSeedTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Обновляет все таблицы по текущим значениям персонажа.
+	 */
+	public void update(Player player)
+	{
+		for (Metric metric : Metric.VALUES)
+		{
+			update(player, metric);
+		}
+	}
+
+	/**
+	 * Обновляет таблицу показателя по текущему значению персонажа.
+	 */
+	public void update(Player player, Metric metric)
+	{
+		if (player.isPhantom() || (player.getName() == null))
+		{
+			return;
+		}
+
+		Board board = _boards[metric.ordinal()];
+		if (player.getAccessLevel() > 0)
+		{
+			remove(board, player.getObjectId());
+			return;
+		}
+
+		long value = metric.getValue(player);
+		// Neither enters the board nor raises the known bound of characters outside it
+		if ((value <= board.minValue) && (value <= board.outsideMax) && !board.members.containsKey(player.getObjectId()))
+		{
+			return;
+		}
+
+		SubClass base = player.getSubClasses().get(player.getBaseClassId());
+		Entry entry = new Entry(player.getObjectId(), player.getName(), player.getClanId(), player.getBaseClassId(), base == null ? player.getLevel() : base.getLevel(), value);
+		synchronized (board)
+		{
+			Entry old = board.members.get(entry._objectId);
+			if (old != null)
+			{
+				board.sorted.remove(old);
+				board.members.remove(entry._objectId);
+			}
+			add(board, entry);
+		}
+	}
+
+	/**
+	 * Убирает персонажа из всех таблиц, например при удалении.
+	 */
+	public void remove(int objectId)
+	{
+		for (Board board : _boards)
+		{
+			remove(board, objectId);
+		}
+	}
+
+	private static void remove(Board board, int objectId)
+	{
+		if (!board.members.containsKey(objectId))
+		{
+			return;
+		}
+
+		synchronized (board)
+		{
+			Entry old = board.members.remove(objectId);
+			if (old != null)
+			{
+				board.sorted.remove(old);
+				board.minValue = 0L;
+				board.snapshot = null;
+			}
+		}
+	}
+
+	private static void add(Board board, Entry entry)
+	{
+		int capacity = getCapacity();
+		if ((entry._value > 0) && ((board.sorted.size() < capacity) || (ORDER.compare(entry, board.sorted.last()) < 0)))
+		{
+			board.sorted.add(entry);
+			board.members.put(entry._objectId, entry);
+			while (board.sorted.size() > capacity)
+			{
+				Entry last = board.sorted.pollLast();
+				board.members.remove(last._objectId);
+				board.outsideMax = Math.max(board.outsideMax, last._value);
+			}
+		}
+		else if (entry._value > 0)
+		{
+			board.outsideMax = Math.max(board.outsideMax, entry._value);
+		}
+
+		board.minValue = board.sorted.size() < capacity ? 0L : board.sorted.last()._value;
+		board.snapshot = null;
+	}
+
+	/**
+	 * @return первые строки таблицы в порядке мест, список не изменяется
+	 */
+	public List<Entry> getTop(Metric metric)
+	{
+		Board board = _boards[metric.ordinal()];
+		List<Entry> snapshot = board.snapshot;
+		if (snapshot != null)
+		{
+			return snapshot;
+		}
+
+		boolean incomplete;
+		synchronized (board)
+		{
+			snapshot = board.snapshot;
+			if (snapshot != null)
+			{
+				return snapshot;
+			}
+
+			int limit = Config.SERVER_RANKING_LIST_SIZE;
+			List<Entry> list = new ArrayList<Entry>(Math.min(limit, board.sorted.size()));
+			for (Iterator<Entry> iterator = board.sorted.iterator(); iterator.hasNext() && (list.size() < limit);)
+			{
+				Entry entry = iterator.next();
+				// A character outside the board may be ahead of this one
+				if (entry._value < board.outsideMax)
+				{
+					break;
+				}
+				list.add(entry);
+			}
+			incomplete = (list.size() < limit) && (list.size() < board.sorted.size());
+
+			snapshot = Collections.unmodifiableList(list);
+			board.snapshot = snapshot;
+		}
+
+		if (incomplete)
+		{
+			scheduleSeed(board);
+		}
+		return snapshot;
+	}
+
+	private void scheduleSeed(final Board board)
+	{
+		if ((System.currentTimeMillis() - board.lastSeedTime < RESEED_DELAY) || !board.seeding.compareAndSet(false, true))
+		{
+			return;
+		}
+
+		ThreadPoolManager.getInstance().execute(new RunnableImpl()
+		{
+			@Override
+			public void runImpl()
+			{
+				try
+				{
+					seed(board);
+				}
+				finally
+				{
+					board.seeding.set(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return последние известные данные персонажа из любой таблицы или null
+	 */
+	public Entry getCharacter(int objectId)
+	{
+		for (Board board : _boards)
+		{
+			Entry entry = board.members.get(objectId);
+			if (entry != null)
+			{
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Данные персонажей: из таблиц, а тех, кого в них нет, одним запросом к базе. Значение строк не определено.
+	 * @return objectId -> данные, без не найденных персонажей
+	 */
+	public Map<Integer, Entry> getCharacters(Collection<Integer> objectIds)
+	{
+		Map<Integer, Entry> result = new HashMap<Integer, Entry>(objectIds.size());
+		StringBuilder missing = new StringBuilder();
+		for (int objectId : objectIds)
+		{
+			Entry entry = getCharacter(objectId);
+			if (entry != null)
+			{
+				result.put(objectId, entry);
+			}
+			else
+			{
+				missing.append(missing.length() == 0 ? "" : ",").append(objectId);
+			}
+		}
+
+		if (missing.length() == 0)
+		{
+			return result;
+		}
+
+		try (Connection con = DatabaseFactory.getInstance().getConnection(); PreparedStatement statement = con.prepareStatement("SELECT c.obj_Id, c.char_name, c.clanid, cs.class_id, cs.level FROM characters AS c JOIN character_subclasses AS cs ON (c.obj_Id=cs.char_obj_id AND cs.isBase=1) WHERE c.obj_Id IN (" + missing + ")"); ResultSet rset = statement.executeQuery())
+		{
+			while (rset.next())
+			{
+				result.put(rset.getInt("obj_Id"), new Entry(rset.getInt("obj_Id"), rset.getString("char_name"), rset.getInt("clanid"), rset.getInt("class_id"), rset.getInt("level"), 0L));
+			}
+		}
+		catch (SQLException e)
+		{
+			_log.error("LeaderboardManager: could not load characters " + missing + "!", e);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,258 @@
+package l2mv.gameserver.instancemanager;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import l2mv.commons.threading.RunnableImpl;
+import l2mv.gameserver.Config;
+import l2mv.gameserver.ThreadPoolManager;
+import l2mv.gameserver.geodata.GeoEngine;
+import l2mv.gameserver.geodata.PathFindService;
+import l2mv.gameserver.model.entity.Reflection;
+import l2mv.gameserver.templates.InstantZone;
+
+/**
+ * Пул заранее подготовленных отражений.
+ * <p>
+ * Для каждой инстанс-зоны, в которую входят игроки, в фоне готовятся отражения с дверями, зонами, спаунами и слоем геодаты.
+ * Размер пула зависит от числа входов за последние интервалы. Вход в зону берет готовое отражение и только запускает его
+ * таймер. Слои геодаты отражений после коллапса не освобождаются, а отдаются следующим отражениям на той же карте.
+ */
+public class ReflectionPool
+{
+	private static final Logger _log = LoggerFactory.getLogger(ReflectionPool.class);
+
+	/** Спрос ниже этого считается нулевым */
+	private static final double MIN_DEMAND = 0.1;
+
+	private static final ReflectionPool _instance = new ReflectionPool();
+
+	public static ReflectionPool getInstance()
+	{
+		return _instance;
+	}
+
+	/**
+	 * Готовые отражения одной инстанс-зоны
+	 */
+	private static class ZonePool
+	{
+		final InstantZone zone;
+		final Queue<Reflection> ready = new ConcurrentLinkedQueue<Reflection>();
+		final AtomicInteger building = new AtomicInteger();
+		/** Входы с последнего пересчета */
+		final AtomicInteger entries = new AtomicInteger();
+		/** Входы за интервал, сглаженные по предыдущим интервалам */
+		double demand;
+		volatile int size;
+
+		ZonePool(InstantZone zone)
+		{
+			this.zone = zone;
+		}
+	}
+
+	private final Map<Integer, ZonePool> _pools = new ConcurrentHashMap<Integer, ZonePool>();
+	/** Свободные слои геодаты по картам */
+	private final Map<Integer, Queue<Integer>> _geoIndexes = new ConcurrentHashMap<Integer, Queue<Integer>>();
+
+	private final LongAdder _hits = new LongAdder();
+	private final LongAdder _misses = new LongAdder();
+	private final LongAdder _built = new LongAdder();
+	private final LongAdder _discarded = new LongAdder();
+	private final LongAdder _geoReused = new LongAdder();
+
+	private ReflectionPool()
+	{
+		if (Config.ALLOW_INSTANCE_POOL)
+		{
+			long interval = Config.INSTANCE_POOL_INTERVAL * 1000L;
+			ThreadPoolManager.getInstance().scheduleAtFixedRate(new RunnableImpl()
+			{
+				@Override
+				public void runImpl() throws Exception
+				{
+					resize();
+				}
+			}, interval, interval);
+		}
+	}
+
+	/**
+	 * @return готовое отражение инстанс-зоны или новое, если готовых нет. Отражение еще нужно запустить через
+	 *         {@link Reflection#init(InstantZone)}.
+	 */
+	public Reflection acquire(InstantZone iz)
+	{
+		if (!Config.ALLOW_INSTANCE_POOL || iz == null)
+		{
+			return new Reflection();
+		}
+
+		ZonePool pool = _pools.computeIfAbsent(iz.getId(), id -> new ZonePool(iz));
+		while (pool.zone != iz)
+		{
+			// Зоны перезагружены, старый пул заменяет и сбрасывает только один поток
+			ZonePool fresh = new ZonePool(iz);
+			if (_pools.replace(iz.getId(), pool, fresh))
+			{
+				discard(pool, 0);
+				pool = fresh;
+			}
+			else
+			{
+				pool = _pools.computeIfAbsent(iz.getId(), id -> new ZonePool(iz));
+			}
+		}
+		pool.entries.incrementAndGet();
+
+		Reflection r = pool.ready.poll();
+		if (r == null)
+		{
+			_misses.increment();
+			return new Reflection();
+		}
+
+		_hits.increment();
+		fill(pool);
+		return r;
+	}
+
+	/**
+	 * Пересчитывает размеры пулов по числу входов за интервал
+	 */
+	private void resize()
+	{
+		for (ZonePool pool : _pools.values())
+		{
+			pool.demand = (pool.demand + pool.entries.getAndSet(0)) / 2;
+			if (pool.demand < MIN_DEMAND)
+			{
+				pool.demand = 0;
+			}
+			pool.size = Math.min(Config.INSTANCE_POOL_MAX_SIZE, (int) Math.ceil(pool.demand));
+
+			discard(pool, pool.size);
+			fill(pool);
+		}
+	}
+
+	private void fill(final ZonePool pool)
+	{
+		while (pool.ready.size() + pool.building.get() < pool.size)
+		{
+			pool.building.incrementAndGet();
+			ThreadPoolManager.getInstance().execute(new RunnableImpl()
+			{
+				@Override
+				public void runImpl() throws Exception
+				{
+					try
+					{
+						Reflection r = new Reflection();
+						r.prepare(pool.zone);
+						pool.ready.add(r);
+						_built.increment();
+					}
+					catch (RuntimeException e)
+					{
+						_log.error("ReflectionPool: Error while preparing reflection for instant zone " + pool.zone.getId(), e);
+					}
+					finally
+					{
+						pool.building.decrementAndGet();
+					}
+				}
+			});
+		}
+	}
+
+	private void discard(ZonePool pool, int size)
+	{
+		Reflection r;
+		while (pool.ready.size() > size && (r = pool.ready.poll()) != null)
+		{
+			r.collapse();
+			_discarded.increment();
+		}
+	}
+
+	/**
+	 * @return слой геодаты карты для нового отражения, освободившийся после коллапса или новый
+	 */
+	public int nextGeoIndex(int mapX, int mapY, int refId)
+	{
+		Queue<Integer> free = _geoIndexes.get(mapX << 8 | mapY);
+		Integer geoIndex = free == null ? null : free.poll();
+		if (geoIndex != null)
+		{
+			_geoReused.increment();
+			return geoIndex;
+		}
+
+		return GeoEngine.NextGeoIndex(mapX, mapY, refId);
+	}
+
+	/**
+	 * @return можно ли будет отдать слой геодаты отражения другому. Для этого при коллапсе нужно открыть все двери, вернув геодату
+	 *         к исходной.
+	 */
+	public boolean canRecycle(Reflection r)
+	{
+		return Config.ALLOW_INSTANCE_POOL && Config.ALLOW_GEODATA && r.getInstancedZone() != null && r.getInstancedZone().getMapX() >= 0 && (r.getGeoIndex() & 0x0f000000) == 0x0f000000;
+	}
+
+	/**
+	 * Освобождает слой геодаты отражения после коллапса.
+	 * @param clean геодата слоя вернулась к исходной
+	 */
+	public void freeGeoIndex(Reflection r, boolean clean)
+	{
+		int geoIndex = r.getGeoIndex();
+		if (clean && canRecycle(r))
+		{
+			InstantZone iz = r.getInstancedZone();
+			Queue<Integer> free = _geoIndexes.computeIfAbsent(iz.getMapX() << 8 | iz.getMapY(), k -> new ConcurrentLinkedQueue<Integer>());
+			if (free.size() < Config.INSTANCE_POOL_MAX_SIZE)
+			{
+				PathFindService.getInstance().invalidate(geoIndex);
+				free.add(geoIndex);
+				return;
+			}
+		}
+
+		GeoEngine.FreeGeoIndex(geoIndex);
+	}
+
+	public CharSequence getStats()
+	{
+		int ready = 0, building = 0, freeGeo = 0;
+		for (ZonePool pool : _pools.values())
+		{
+			ready += pool.ready.size();
+			building += pool.building.get();
+		}
+		for (Queue<Integer> free : _geoIndexes.values())
+		{
+			freeGeo += free.size();
+		}
+
+		StringBuilder list = new StringBuilder();
+		list.append("ReflectionPool").append(Config.ALLOW_INSTANCE_POOL ? "" : " (disabled)").append("\n");
+		list.append("=================================================\n");
+		list.append("\tInstant zones: ...... ").append(_pools.size()).append("\n");
+		list.append("\tReady/building: ..... ").append(ready).append('/').append(building).append("\n");
+		list.append("\tHits/misses: ........ ").append(_hits.sum()).append('/').append(_misses.sum()).append("\n");
+		list.append("\tBuilt/discarded: .... ").append(_built.sum()).append('/').append(_discarded.sum()).append("\n");
+		list.append("\tGeo layers free: .... ").append(freeGeo).append("\n");
+		list.append("\tGeo layers reused: .. ").append(_geoReused.sum()).append("\n");
+		return list;
+	}
+}
@@ -16,13 +16,18 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import l2mv.gameserver.ThreadPoolManager;
 import l2mv.gameserver.database.DatabaseFactory;
+import l2mv.gameserver.instancemanager.LeaderboardManager;
 
 /**
  * This class contains informations about the best killers and rank points gatherers.
@@ -185,119 +190,71 @@ public class TopTable
 
 		Connection con = null;
 		PreparedStatement statement = null;
-		ResultSet rset = null;
-
-		// order and load top killers & gatherers from model:
-		Map<Integer, PvpSummary> pvpList = PvpTable.getInstance().getPvpTable();
 
-		Map<Integer, TopField> tmpTopKillsTable = new LinkedHashMap<>();
-		Map<Integer, TopField> tmpTopGatherersTable = new LinkedHashMap<>();
+		// order top killers & gatherers from model in one pass, values are copied because kills go on while sorting:
+		List<long[]> killers = new ArrayList<>();
+		List<long[]> gatherers = new ArrayList<>();
 
-		int KillPosition = 0;
-		int PointPosition = 0;
-
-		try
+		for (PvpSummary kps : PvpTable.getInstance().getPvpTable().values())
 		{
-			con = DatabaseFactory.getInstance().getConnection();
-
-			// for TopKillersTable:
-			for (int i = 1; i <= TOP_LIMIT; i++)
+			if ((RPSConfig.TOP_LIST_IGNORE_TIME_LIMIT == 0) || (kps.getLastKillTime() >= sysTime)) // if last kill is in TOP_LIST_IGNORE_TIME_LIMIT.
 			{
-				int maxKills = 0;
-				int bestKiller = 0;
-
-				long maxPoints = 0;
-				int bestGatherer = 0;
-
-				for (Map.Entry<Integer, PvpSummary> e : pvpList.entrySet())
+				int kills = kps.getTotalKillsLegal();
+				if (kills > 0)
 				{
-					PvpSummary kps = e.getValue();
-
-					if ((RPSConfig.TOP_LIST_IGNORE_TIME_LIMIT == 0) || (kps.getLastKillTime() >= sysTime)) // if last kill is in TOP_LIST_IGNORE_TIME_LIMIT.
+					killers.add(new long[]
 					{
-						if (!tmpTopKillsTable.containsKey(kps.getKillerId())) // don't check already added killer.
-						{
-							if ((kps.getTotalKillsLegal() > maxKills) && (kps.getTotalKillsLegal() > 0)) // finding the best.
-							{
-								maxKills = kps.getTotalKillsLegal();
-								bestKiller = kps.getKillerId();
-							}
-						}
-
-						if (!tmpTopGatherersTable.containsKey(kps.getKillerId())) // don't check already added gatherer.
-						{
-							if ((kps.getTotalRankPoints() > maxPoints) && (kps.getTotalRankPoints() > 0)) // finding the best.
-							{
-								maxPoints = kps.getTotalRankPoints();
-								bestGatherer = kps.getKillerId();
-							}
-						}
-					}
+						kps.getKillerId(),
+						kills
+					});
 				}
 
-				// if killer found:
-				if (bestKiller != 0)
+				long points = kps.getTotalRankPoints();
+				if (points > 0)
 				{
-					KillPosition++;
-
-					// if founded, add him to list:
-					TopField tf = new TopField();
-
-					tf.setCharacterId(bestKiller);
-					tf.setValue(maxKills);
-					tf.setTopPosition(KillPosition);
-
-					// get character data:
-					statement = con.prepareStatement("SELECT char_name as name, base_class as base_class, level as level FROM characters WHERE " + RPSConfig.CHAR_ID_COLUMN_NAME + " = ?");
-					statement.setInt(1, bestKiller);
-
-					rset = statement.executeQuery();
-
-					while (rset.next())
+					gatherers.add(new long[]
 					{
-						tf.setCharacterName(rset.getString("name"));
-						tf.setCharacterLevel(rset.getInt("level"));
-						tf.setCharacterBaseClassId(rset.getInt("base_class"));
-					}
-
-					rset.close();
-
-					// add this killer on temporary top list:
-					tmpTopKillsTable.put(bestKiller, tf);
+						kps.getKillerId(),
+						points
+					});
 				}
+			}
+		}
 
-				// if any best killer not found, break action:
-				if (bestGatherer != 0)
-				{
-					PointPosition++;
-
-					// if founded, add him to list:
-					TopField tf = new TopField();
-
-					tf.setCharacterId(bestGatherer);
-					tf.setValue(maxPoints);
-					tf.setTopPosition(PointPosition);
+		killers.sort((k1, k2) -> Long.compare(k2[1], k1[1]));
+		gatherers.sort((k1, k2) -> Long.compare(k2[1], k1[1]));
 
-					// get character data:
-					statement = con.prepareStatement("SELECT char_name as name, base_class as base_class, level as level FROM characters WHERE " + RPSConfig.CHAR_ID_COLUMN_NAME + " = ?");
-					statement.setInt(1, bestGatherer);
+		killers = killers.subList(0, Math.min(TOP_LIMIT, killers.size()));
+		gatherers = gatherers.subList(0, Math.min(TOP_LIMIT, gatherers.size()));
 
-					rset = statement.executeQuery();
+		// character data comes from the leaderboards, only unknown characters are loaded from database:
+		Set<Integer> characterIds = new HashSet<>();
+		for (long[] killer : killers)
+		{
+			characterIds.add((int) killer[0]);
+		}
+		for (long[] gatherer : gatherers)
+		{
+			characterIds.add((int) gatherer[0]);
+		}
+		Map<Integer, LeaderboardManager.Entry> characters = LeaderboardManager.getInstance().getCharacters(characterIds);
 
-					while (rset.next())
-					{
-						tf.setCharacterName(rset.getString("name"));
-						tf.setCharacterLevel(rset.getInt("level"));
-						tf.setCharacterBaseClassId(rset.getInt("base_class"));
-					}
+		Map<Integer, TopField> tmpTopKillsTable = new LinkedHashMap<>();
+		Map<Integer, TopField> tmpTopGatherersTable = new LinkedHashMap<>();
 
-					rset.close();
+		for (long[] killer : killers)
+		{
+			tmpTopKillsTable.put((int) killer[0], createTopField((int) killer[0], killer[1], tmpTopKillsTable.size() + 1, characters));
+		}
 
-					// add this gatherer on top list:
-					tmpTopGatherersTable.put(bestGatherer, tf);
-				}
+		for (long[] gatherer : gatherers)
+		{
+			tmpTopGatherersTable.put((int) gatherer[0], createTopField((int) gatherer[0], gatherer[1], tmpTopGatherersTable.size() + 1, characters));
+		}
 
-			}
+		try
+		{
+			con = DatabaseFactory.getInstance().getConnection();
 
 			// TODO reorder the tmpTopKillsTable and tmpTopGatherersTable here, can be required in special situations.
 
@@ -305,10 +262,7 @@ public class TopTable
 			setTopKillsTable(tmpTopKillsTable);
 			setTopGatherersTable(tmpTopGatherersTable);
 
-			if (statement == null)
-			{
-				statement = con.prepareStatement("");
-			}
+			statement = con.prepareStatement("");
 
 			// clear Top Table:
 			statement.addBatch("DELETE FROM rank_pvp_system_top_table");
@@ -372,6 +326,25 @@ public class TopTable
 
 	}
 
+	private static TopField createTopField(int characterId, long value, int position, Map<Integer, LeaderboardManager.Entry> characters)
+	{
+		TopField tf = new TopField();
+
+		tf.setCharacterId(characterId);
+		tf.setValue(value);
+		tf.setTopPosition(position);
+
+		LeaderboardManager.Entry character = characters.get(characterId);
+		if (character != null)
+		{
+			tf.setCharacterName(character.getName());
+			tf.setCharacterLevel(character.getLevel());
+			tf.setCharacterBaseClassId(character.getClassId());
+		}
+
+		return tf;
+	}
+
 	/**
 	 * Load Top Table from rank_pvp_system_top table. Used only on server start.
 	 */
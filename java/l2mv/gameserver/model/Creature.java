@@ -17,10 +17,13 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -48,6 +51,7 @@ import l2mv.gameserver.data.xml.holder.EventHolder;
 import l2mv.gameserver.multverso.managers.GmEventManager;
 import l2mv.gameserver.geodata.GeoEngine;
 import l2mv.gameserver.geodata.GeoMove;
+import l2mv.gameserver.geodata.PathFindService;
 import l2mv.gameserver.instancemanager.DimensionalRiftManager;
 import l2mv.gameserver.instancemanager.QuestManager;
 import l2mv.gameserver.instancemanager.ReflectionManager;
@@ -117,6 +121,7 @@ import l2mv.gameserver.stats.triggers.TriggerInfo;
 import l2mv.gameserver.stats.triggers.TriggerType;
 import l2mv.gameserver.taskmanager.GlobalPvPZoneTaskManager;
 import l2mv.gameserver.taskmanager.LazyPrecisionTaskManager;
+import l2mv.gameserver.taskmanager.MoveTaskManager;
 import l2mv.gameserver.taskmanager.RegenTaskManager;
 import l2mv.gameserver.templates.CharTemplate;
 import l2mv.gameserver.templates.item.ItemTemplate.Grade;
@@ -136,6 +141,26 @@ public abstract class Creature extends GameObject
 	protected long _reuseDelay = 0L;
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Асинхронный поиск пути для {@link Creature#moveToLocationAsync(Location, int, boolean, Consumer)}
+	 */
+	private static class PathRequest
+	{
+		final int offset;
+		final Consumer<Boolean> callback;
+		/** Точка назначения в геокоординатах */
+		Location geoDest;
+		/** Точка назначения без учета offset */
+		Location dest;
+		boolean submitted;
+
+		PathRequest(int offset, Consumer<Boolean> callback)
+		{
+			this.offset = offset;
+			this.callback = callback;
+		}
+	}
+
 	public class MoveNextTask extends RunnableImpl
 	{
 		private double alldist, donedist;
@@ -268,7 +293,7 @@ public abstract class Creature extends GameObject
 						stopMove();
 						return;
 					}
-					if (buildPathTo(follow.getX(), follow.getY(), follow.getZ(), _offset, follow, true, true))
+					if (buildPathTo(follow.getX(), follow.getY(), follow.getZ(), _offset, follow, true, true, null))
 					{
 						movingDestTempPos.set(follow.getX(), follow.getY(), follow.getZ());
 					}
@@ -283,7 +308,7 @@ public abstract class Creature extends GameObject
 
 				_previousSpeed = speed;
 				_startMoveTime = now;
-				_moveTask = ThreadPoolManager.getInstance().schedule(this, getMoveTickInterval());
+				_nextMoveTime = now + getMoveTickInterval();
 			}
 			catch (RuntimeException e)
 			{
@@ -411,7 +436,12 @@ public abstract class Creature extends GameObject
 	public boolean isMoving;
 	public boolean isFollow;
 	private final Lock moveLock = new ReentrantLock();
-	private Future<?> _moveTask;
+	/** Время следующего шага движения */
+	private volatile long _nextMoveTime;
+	/** Находится ли персонаж в MoveTaskManager */
+	private boolean _moveTaskScheduled;
+	/** Смена региона при шаге движения откладывается до конца тика MoveTaskManager */
+	private boolean _deferRegionUpdate;
 	private MoveNextTask _moveTaskRunnable;
 	private List<Location> moveList;
 	private Location destination;
@@ -423,6 +453,8 @@ public abstract class Creature extends GameObject
 	private int _offset;
 
 	private boolean _forestalling;
+	/** Ожидающий асинхронный поиск пути, отменяется любой новой командой движения и остановкой */
+	private volatile PathRequest _pathRequest;
 
 	private volatile HardReference<? extends GameObject> target = HardReferences.emptyRef();
 	private volatile HardReference<? extends Creature> castingTarget = HardReferences.emptyRef();
@@ -437,6 +469,10 @@ public abstract class Creature extends GameObject
 
 	private final Calculator[] _calculators;
 
+	private static final LongAdder _statsInvalidations = new LongAdder();
+	/** Поколение характеристик, кэшированные результаты калькуляторов действительны только для текущего */
+	private final AtomicInteger _statsEpoch = new AtomicInteger();
+
 	protected CharTemplate _template;
 	protected CharTemplate _baseTemplate;
 
@@ -821,6 +857,26 @@ public abstract class Creature extends GameObject
 		return _calculators;
 	}
 
+	public final int getStatsEpoch()
+	{
+		return _statsEpoch.get();
+	}
+
+	/**
+	 * Сбрасывает кэш характеристик. Вызывается при любом изменении, от которого зависят функции калькуляторов помимо их
+	 * собственного набора: шаблон, хенны, экипировка, включение эффектов.
+	 */
+	public final void invalidateStatsCache()
+	{
+		_statsEpoch.incrementAndGet();
+		_statsInvalidations.increment();
+	}
+
+	public static long getStatsInvalidationCount()
+	{
+		return _statsInvalidations.sum();
+	}
+
 	public final void addStatFunc(Func f)
 	{
 		if (f == null)
@@ -1046,13 +1102,7 @@ public abstract class Creature extends GameObject
 			return;
 		}
 
-		List<Player> players = World.getAroundPlayers(this);
-		Player target;
-		for (int i = 0; i < players.size(); i++)
-		{
-			target = players.get(i);
-			target.sendPacket(packets);
-		}
+		World.forEachAroundPlayers(this, target -> target.sendPacket(packets));
 	}
 
 	public void broadcastPacketToOthers(List<L2GameServerPacket> packets)
@@ -1062,13 +1112,7 @@ public abstract class Creature extends GameObject
 			return;
 		}
 
-		List<Player> players = World.getAroundPlayers(this);
-		Player target;
-		for (int i = 0; i < players.size(); i++)
-		{
-			target = players.get(i);
-			target.sendPacket(packets);
-		}
+		World.forEachAroundPlayers(this, target -> target.sendPacket(packets));
 	}
 
 	public void broadcastToStatusListeners(L2GameServerPacket... packets)
@@ -1224,21 +1268,25 @@ public abstract class Creature extends GameObject
 		{
 			return init;
 		}
-		Env env = new Env();
-		env.character = this;
-
+		if (target == null && skill == null)
+		{
+			return c.calc(init);
+		}
 		if ((skill != null) && (skill.getId() == 1557))
 		{
-			env.target = getPlayer().getPet();
+			target = getPlayer().getPet();
 		}
-		else
+
+		Env env = Env.acquire(this, target, skill, init);
+		try
 		{
-			env.target = target;
+			c.calc(env);
+			return env.value;
+		}
+		finally
+		{
+			Env.release(env);
 		}
-		env.skill = skill;
-		env.value = init;
-		c.calc(env);
-		return env.value;
 	}
 
 	public final double calcStat(Stats stat, Creature target, Skill skill)
@@ -1247,20 +1295,32 @@ public abstract class Creature extends GameObject
 		{
 			target = getPlayer().getPet();
 		}
-		Env env = new Env(this, target, skill);
 		if (stat == null)
 		{
 			_log.warn("FIX ME FAST(!) My name IS " + getName() + " and I'm a player?(" + isPlayer() + ") my target is " + target.getName() + " skill:" + skill.getName() + "");
 			return 0;
 		}
-		env.value = stat.getInit();
 		int id = stat.ordinal();
 		Calculator c = _calculators[id];
-		if (c != null)
+		if (c != null && target == null && skill == null)
+		{
+			return c.calc(stat.getInit());
+		}
+		if (c == null)
+		{
+			return stat.getInit();
+		}
+
+		Env env = Env.acquire(this, target, skill, stat.getInit());
+		try
 		{
 			c.calc(env);
+			return env.value;
+		}
+		finally
+		{
+			Env.release(env);
 		}
-		return env.value;
 	}
 
 	/**
@@ -2977,12 +3037,60 @@ public abstract class Creature extends GameObject
 		return true;
 	}
 
-	private boolean buildPathTo(int x, int y, int z, int offset, boolean pathFind)
+	/**
+	 * Разбитый на участки путь из поиска пути, последний участок укорачивается на offset
+	 */
+	private boolean setPath(List<List<Location>> targets, int offset)
+	{
+		if (targets.isEmpty())
+		{
+			return false;
+		}
+
+		List<Location> moveList = targets.remove(targets.size() - 1);
+		applyOffset(moveList, offset);
+		if (!moveList.isEmpty())
+		{
+			targets.add(moveList);
+		}
+		if (targets.isEmpty())
+		{
+			return false;
+		}
+
+		_targetRecorder.clear();
+		_targetRecorder.addAll(targets);
+		return true;
+	}
+
+	/**
+	 * Путь по прямой до куда можно дойти, если полный путь не найден
+	 */
+	private boolean setPartialPath(Location dest, int offset)
 	{
-		return buildPathTo(x, y, z, offset, null, false, pathFind);
+		applyOffset(dest, offset);
+
+		List<Location> moveList = GeoEngine.MoveList(getX(), getY(), getZ(), dest.x, dest.y, getGeoIndex(), false); // onlyFullPath = false - идем до куда можем
+		if (moveList != null && !moveList.isEmpty()) // null - нет геодаты, empty - уже стоим на нужной клетке
+		{
+			_targetRecorder.clear();
+			_targetRecorder.add(moveList);
+			return true;
+		}
+
+		return false;
 	}
 
-	private boolean buildPathTo(int x, int y, int z, int offset, Creature follow, boolean forestalling, boolean pathFind)
+	private boolean buildPathTo(int x, int y, int z, int offset, boolean pathFind, PathRequest request)
+	{
+		return buildPathTo(x, y, z, offset, null, false, pathFind, request);
+	}
+
+	/**
+	 * @param request если не null, поиск пути отправляется в {@link PathFindService}, метод возвращает false и отмечает запрос
+	 *            отправленным, движение начнется в {@link #onPathFound(PathRequest, List)}
+	 */
+	private boolean buildPathTo(int x, int y, int z, int offset, Creature follow, boolean forestalling, boolean pathFind, PathRequest request)
 	{
 		int geoIndex = getGeoIndex();
 
@@ -3089,21 +3197,18 @@ public abstract class Creature extends GameObject
 
 		if (pathFind)
 		{
-			final List<List<Location>> targets = GeoMove.findMovePath(getX(), getY(), getZ(), dest.clone(), this, true, geoIndex);
-			if (!targets.isEmpty())
+			if (request != null)
 			{
-				moveList = targets.remove(targets.size() - 1);
-				applyOffset(moveList, offset);
-				if (!moveList.isEmpty())
-				{
-					targets.add(moveList);
-				}
-				if (!targets.isEmpty())
-				{
-					_targetRecorder.clear();
-					_targetRecorder.addAll(targets);
-					return true;
-				}
+				request.dest = dest;
+				request.submitted = true;
+				_pathRequest = request;
+				PathFindService.getInstance().findMovePathAsync(getX(), getY(), getZ(), dest.clone(), this, geoIndex, targets -> onPathFound(request, targets));
+				return false;
+			}
+
+			if (setPath(GeoMove.findMovePath(getX(), getY(), getZ(), dest.clone(), this, true, geoIndex), offset))
+			{
+				return true;
 			}
 		}
 
@@ -3112,17 +3217,43 @@ public abstract class Creature extends GameObject
 			return false;
 		}
 
-		applyOffset(dest, offset);
+		return setPartialPath(dest, offset);
+	}
 
-		moveList = GeoEngine.MoveList(getX(), getY(), getZ(), dest.x, dest.y, geoIndex, false); // onlyFullPath = false - идем до куда можем
-		if (moveList != null && !moveList.isEmpty()) // null - нет геодаты, empty - уже стоим на нужной клетке
+	/**
+	 * Завершение асинхронного поиска пути, вызывается на потоке поиска пути
+	 */
+	private void onPathFound(PathRequest request, List<List<Location>> targets)
+	{
+		boolean moved = false;
+		moveLock.lock();
+		try
 		{
-			_targetRecorder.clear();
-			_targetRecorder.add(moveList);
-			return true;
+			// Запрос отменен новой командой движения или остановкой
+			if (_pathRequest != request)
+			{
+				return;
+			}
+			_pathRequest = null;
+
+			if (!isMovementDisabled() && (setPath(targets, request.offset) || setPartialPath(request.dest, request.offset)))
+			{
+				movingDestTempPos.set(request.geoDest);
+				isMoving = true;
+				moveNext(true);
+				moved = true;
+			}
+		}
+		finally
+		{
+			moveLock.unlock();
 		}
 
-		return false;
+		if (!moved)
+		{
+			sendActionFailed();
+		}
+		request.callback.accept(moved);
 	}
 
 	public Creature getFollowTarget()
@@ -3169,7 +3300,7 @@ public abstract class Creature extends GameObject
 
 			stopMove(false, false);
 
-			if (buildPathTo(loc.x, loc.y, loc.z, offset, target, forestalling, !target.isDoor()))
+			if (buildPathTo(loc.x, loc.y, loc.z, offset, target, forestalling, !target.isDoor(), null))
 			{
 				movingDestTempPos.set(loc.x, loc.y, loc.z);
 			}
@@ -3200,6 +3331,41 @@ public abstract class Creature extends GameObject
 	}
 
 	public boolean moveToLocation(int x_dest, int y_dest, int z_dest, int offset, boolean pathfinding)
+	{
+		return moveToLocation(x_dest, y_dest, z_dest, offset, pathfinding, null);
+	}
+
+	/**
+	 * Движение с поиском пути в {@link PathFindService}, поток вызова не ждет поиска. Без поиска пути, в воде, в полете и без
+	 * геодаты движение начинается сразу, как в {@link #moveToLocation(Location, int, boolean)}.
+	 * @param callback получает true, если движение началось. Не вызывается, если поиск отменен новой командой движения или
+	 *            остановкой, или если этот же путь уже ищется.
+	 */
+	public void moveToLocationAsync(Location loc, int offset, boolean pathfinding, Consumer<Boolean> callback)
+	{
+		if (!Config.PATHFIND_ASYNC || !pathfinding)
+		{
+			callback.accept(moveToLocation(loc.x, loc.y, loc.z, offset, pathfinding, null));
+			return;
+		}
+
+		PathRequest request = new PathRequest(Math.max(offset, 0), callback);
+		boolean moved = moveToLocation(loc.x, loc.y, loc.z, offset, pathfinding, request);
+		if (!request.submitted)
+		{
+			callback.accept(moved);
+		}
+	}
+
+	/**
+	 * @return ищется ли путь для начатого {@link #moveToLocationAsync(Location, int, boolean, Consumer)} движения
+	 */
+	public boolean isPathPending()
+	{
+		return _pathRequest != null;
+	}
+
+	private boolean moveToLocation(int x_dest, int y_dest, int z_dest, int offset, boolean pathfinding, PathRequest request)
 	{
 		moveLock.lock();
 		try
@@ -3212,6 +3378,17 @@ public abstract class Creature extends GameObject
 				return true;
 			}
 
+			PathRequest pending = _pathRequest;
+			if (pending != null && pending.geoDest.equals(dst_geoloc))
+			{
+				if (request != null)
+				{
+					request.submitted = true;
+				}
+				sendActionFailed();
+				return true;
+			}
+
 			if (isMovementDisabled())
 			{
 				getAI().setNextAction(nextAction.MOVE, new Location(x_dest, y_dest, z_dest), offset, pathfinding, false);
@@ -3228,10 +3405,19 @@ public abstract class Creature extends GameObject
 
 			stopMove(false, false);
 
-			if (buildPathTo(x_dest, y_dest, z_dest, offset, pathfinding))
+			if (request != null)
+			{
+				request.geoDest = dst_geoloc;
+			}
+
+			if (buildPathTo(x_dest, y_dest, z_dest, offset, pathfinding, request))
 			{
 				movingDestTempPos.set(dst_geoloc);
 			}
+			else if (request != null && request.submitted)
+			{
+				return true;
+			}
 			else
 			{
 				sendActionFailed();
@@ -3305,7 +3491,54 @@ public abstract class Creature extends GameObject
 		{
 			_moveTaskRunnable = new MoveNextTask();
 		}
-		_moveTask = ThreadPoolManager.getInstance().schedule(_moveTaskRunnable.setDist(distance), getMoveTickInterval());
+		_moveTaskRunnable.setDist(distance);
+		_nextMoveTime = _startMoveTime + getMoveTickInterval();
+		if (!_moveTaskScheduled)
+		{
+			_moveTaskScheduled = true;
+			MoveTaskManager.getInstance().add(this);
+		}
+	}
+
+	public long getNextMoveTime()
+	{
+		return _nextMoveTime;
+	}
+
+	/**
+	 * Шаг движения, вызывается MoveTaskManager'ом, когда наступило время следующего шага.
+	 * Смена региона, если она произошла, выполняется MoveTaskManager'ом после шага.
+	 * @return false, если персонаж больше не движется и должен быть убран из MoveTaskManager
+	 */
+	public boolean updateMove(long now)
+	{
+		moveLock.lock();
+		try
+		{
+			if (!isMoving)
+			{
+				_moveTaskScheduled = false;
+				return false;
+			}
+
+			if (now >= _nextMoveTime)
+			{
+				_deferRegionUpdate = true;
+				try
+				{
+					_moveTaskRunnable.run();
+				}
+				finally
+				{
+					_deferRegionUpdate = false;
+				}
+			}
+			return true;
+		}
+		finally
+		{
+			moveLock.unlock();
+		}
 	}
 
 	public int getMoveTickInterval()
@@ -3343,6 +3576,8 @@ public abstract class Creature extends GameObject
 	 */
 	public void stopMove(boolean stop, boolean validate)
 	{
+		_pathRequest = null;
+
 		if (!isMoving)
 		{
 			return;
@@ -3359,12 +3594,6 @@ public abstract class Creature extends GameObject
 			isMoving = false;
 			isFollow = false;
 
-			if (_moveTask != null)
-			{
-				_moveTask.cancel(false);
-				_moveTask = null;
-			}
-
 			destination = null;
 			moveList = null;
 
@@ -3438,62 +3667,64 @@ public abstract class Creature extends GameObject
 			return;
 		}
 
-		Zone[] zones = isVisible() ? getCurrentRegion().getZones() : Zone.EMPTY_L2ZONE_ARRAY;
+		int x = getX();
+		int y = getY();
+		int z = getZ();
+		Reflection reflection = getReflection();
 
-		ArrayList<Zone> entering = null;
-		ArrayList<Zone> leaving = null;
+		// Только зоны, пересекающие клетку региона с персонажем
+		Zone[] zones = isVisible() ? getCurrentRegion().getZones(x, y) : Zone.EMPTY_L2ZONE_ARRAY;
+
+		// Списки создаются только при входе или выходе из зоны
+		List<Zone> entering = null;
+		List<Zone> leaving = null;
 
 		Zone zone;
 
 		zonesWrite.lock();
 		try
 		{
-			if (!_zones.isEmpty())
+			for (int i = 0; i < _zones.size(); i++)
 			{
-				leaving = new ArrayList<>();
-				for (int i = 0; i < _zones.size(); i++)
+				zone = _zones.get(i);
+				// зоны больше нет в регионе, либо вышли за территорию зоны
+				if (!ArrayUtils.contains(zones, zone) || !zone.checkIfInZone(x, y, z, reflection))
 				{
-					zone = _zones.get(i);
-					// зоны больше нет в регионе, либо вышли за территорию зоны
-					if (!ArrayUtils.contains(zones, zone) || !zone.checkIfInZone(getX(), getY(), getZ(), getReflection()))
+					if (leaving == null)
 					{
-						leaving.add(zone);
+						leaving = new ArrayList<>(2);
 					}
+					leaving.add(zone);
 				}
+			}
 
-				// Покинули зоны, убираем из списка зон персонажа
-				if (!leaving.isEmpty())
+			// Покинули зоны, убираем из списка зон персонажа
+			if (leaving != null)
+			{
+				for (int i = 0; i < leaving.size(); i++)
 				{
-					for (int i = 0; i < leaving.size(); i++)
-					{
-						zone = leaving.get(i);
-						_zones.remove(zone);
-					}
+					_zones.remove(leaving.get(i));
 				}
 			}
 
-			if (zones.length > 0)
+			for (Zone zone2 : zones)
 			{
-				entering = new ArrayList<>();
-				for (Zone zone2 : zones)
+				zone = zone2;
+				// в зону еще не заходили и зашли на территорию зоны
+				if (!_zones.contains(zone) && zone.checkIfInZone(x, y, z, reflection))
 				{
-					zone = zone2;
-					// в зону еще не заходили и зашли на территорию зоны
-					if (!_zones.contains(zone) && zone.checkIfInZone(getX(), getY(), getZ(), getReflection()))
+					if (entering == null)
 					{
-						entering.add(zone);
+						entering = new ArrayList<>(2);
 					}
+					entering.add(zone);
 				}
+			}
 
-				// Вошли в зоны, добавим в список зон персонажа
-				if (!entering.isEmpty())
-				{
-					for (int i = 0; i < entering.size(); i++)
-					{
-						zone = entering.get(i);
-						_zones.add(zone);
-					}
-				}
+			// Вошли в зоны, добавим в список зон персонажа
+			if (entering != null)
+			{
+				_zones.addAll(entering);
 			}
 		}
 		finally
@@ -5816,6 +6047,8 @@ public abstract class Creature extends GameObject
 
 	public void updateStats()
 	{
+		invalidateStatsCache();
+
 		// Support for propper stats update for skills like Servitor Share
 		if (isPlayer() && (getPlayer().getPet() != null))
 		{
@@ -5921,7 +6154,19 @@ public abstract class Creature extends GameObject
 		moveLock.lock();
 		try
 		{
-			super.setXYZ(x, y, z);
+			if (MoveTask && _deferRegionUpdate)
+			{
+				setXYZDeferred(x, y, z);
+				// Зоны ниже ищутся по текущему региону, поэтому переход в другой регион не откладывается
+				if (World.getRegion(this) != getCurrentRegion())
+				{
+					World.addVisibleObject(this, null);
+				}
+			}
+			else
+			{
+				super.setXYZ(x, y, z);
+			}
 		}
 		finally
 		{
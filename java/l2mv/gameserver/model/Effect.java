@@ -184,7 +184,13 @@ public abstract class Effect extends RunnableImpl implements Comparable<Effect>,
 
 	public void setInUse(boolean inUse)
 	{
+		boolean changed = _inUse != inUse;
 		_inUse = inUse;
+		if (changed && getEffected() != null)
+		{
+			// Stat funcs of the effect are enabled only while it is in use
+			getEffected().invalidateStatsCache();
+		}
 	}
 
 	public boolean isActive()
@@ -1,17 +1,17 @@
 package l2mv.gameserver.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-import org.apache.commons.lang3.ArrayUtils;
-
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 import l2mv.gameserver.Config;
 import l2mv.gameserver.skills.EffectType;
@@ -32,8 +32,76 @@ public class EffectList
 	public static final int MUSIC_LIMIT = 12;
 	public static final int TRIGGER_LIMIT = 12;
 
+	/**
+	 * Неизменяемый снимок списка эффектов с индексами по скиллу, типу эффекта и типу стека.
+	 * Строится при первом чтении после изменения списка.
+	 */
+	private static final class Snapshot
+	{
+		static final Snapshot EMPTY = new Snapshot(Collections.<Effect> emptyList());
+
+		/** Эффекты в порядке добавления */
+		final Effect[] effects;
+		/** Эффекты каждого скилла в порядке добавления */
+		final TIntObjectHashMap<Effect[]> bySkillId;
+		/** Первый эффект каждого типа */
+		final Map<EffectType, Effect> byType;
+		/** Первый эффект каждого типа стека */
+		final Map<String, Effect> byStackType;
+		/** Последний эффект каждого скилла, в порядке первого появления скилла */
+		final Effect[] firstEffects;
+
+		Snapshot(List<Effect> list)
+		{
+			effects = list.toArray(new Effect[list.size()]);
+			bySkillId = new TIntObjectHashMap<Effect[]>(effects.length);
+			byType = new EnumMap<EffectType, Effect>(EffectType.class);
+			byStackType = new HashMap<String, Effect>(effects.length);
+
+			TIntArrayList skillIds = new TIntArrayList(effects.length);
+			for (Effect e : effects)
+			{
+				int skillId = e.getSkill().getId();
+				Effect[] bySkill = bySkillId.get(skillId);
+				if (bySkill == null)
+				{
+					skillIds.add(skillId);
+					bySkillId.put(skillId, new Effect[]
+					{
+						e
+					});
+				}
+				else
+				{
+					bySkill = Arrays.copyOf(bySkill, bySkill.length + 1);
+					bySkill[bySkill.length - 1] = e;
+					bySkillId.put(skillId, bySkill);
+				}
+
+				if (!byType.containsKey(e.getEffectType()))
+				{
+					byType.put(e.getEffectType(), e);
+				}
+				if (!byStackType.containsKey(e.getStackType()))
+				{
+					byStackType.put(e.getStackType(), e);
+				}
+			}
+
+			firstEffects = new Effect[skillIds.size()];
+			for (int i = 0; i < firstEffects.length; i++)
+			{
+				Effect[] bySkill = bySkillId.get(skillIds.get(i));
+				firstEffects[i] = bySkill[bySkill.length - 1];
+			}
+		}
+	}
+
 	private final Creature _actor;
+	/** Изменяемый список, доступ только под блокировкой на самом списке */
 	private List<Effect> _effects;
+	/** Снимок текущего списка, null если список изменился и снимок еще не построен */
+	private volatile Snapshot _snapshot = Snapshot.EMPTY;
 	private final Lock lock = new ReentrantLock();
 
 	public EffectList(Creature owner)
@@ -46,40 +114,13 @@ public class EffectList
 	 */
 	public int getEffectsCountForSkill(int skill_id)
 	{
-		if (isEmpty())
-		{
-			return 0;
-		}
-
-		int count = 0;
-
-		for (Effect e : _effects)
-		{
-			if (e.getSkill().getId() == skill_id)
-			{
-				count++;
-			}
-		}
-
-		return count;
+		Effect[] effects = getSnapshot().bySkillId.get(skill_id);
+		return effects == null ? 0 : effects.length;
 	}
 
 	public Effect getEffectByType(EffectType et)
 	{
-		if (isEmpty())
-		{
-			return null;
-		}
-
-		for (Effect e : _effects)
-		{
-			if (e.getEffectType() == et)
-			{
-				return e;
-			}
-		}
-
-		return null;
+		return getSnapshot().byType.get(et);
 	}
 
 	public List<Effect> getEffectsBySkill(Skill skill)
@@ -93,32 +134,20 @@ public class EffectList
 
 	public List<Effect> getEffectsBySkillId(int skillId)
 	{
-		if (isEmpty())
-		{
-			return null;
-		}
-
-		List<Effect> list = new ArrayList<Effect>(2);
-		for (Effect e : _effects)
-		{
-			if (e.getSkill().getId() == skillId)
-			{
-				list.add(e);
-			}
-		}
-
-		return list.isEmpty() ? null : list;
+		Effect[] effects = getSnapshot().bySkillId.get(skillId);
+		return effects == null ? null : new ArrayList<Effect>(Arrays.asList(effects));
 	}
 
 	public Effect getEffectByIndexAndType(int skillId, EffectType type)
 	{
-		if (isEmpty())
+		Effect[] effects = getSnapshot().bySkillId.get(skillId);
+		if (effects == null)
 		{
 			return null;
 		}
-		for (Effect e : _effects)
+		for (Effect e : effects)
 		{
-			if ((e.getSkill().getId() == skillId) && (e.getEffectType() == type))
+			if (e.getEffectType() == type)
 			{
 				return e;
 			}
@@ -129,33 +158,20 @@ public class EffectList
 
 	public Effect getEffectByStackType(String type)
 	{
-		if (isEmpty())
-		{
-			return null;
-		}
-		for (Effect e : _effects)
-		{
-			if (e.getStackType().equals(type))
-			{
-				return e;
-			}
-		}
-
-		return null;
+		return getSnapshot().byStackType.get(type);
 	}
 
 	public boolean containEffectFromSkills(int[] skillIds)
 	{
-		if (isEmpty())
+		Snapshot snapshot = getSnapshot();
+		if (snapshot.effects.length == 0)
 		{
 			return false;
 		}
 
-		int skillId;
-		for (Effect e : _effects)
+		for (int skillId : skillIds)
 		{
-			skillId = e.getSkill().getId();
-			if (ArrayUtils.contains(skillIds, skillId))
+			if (snapshot.bySkillId.containsKey(skillId))
 			{
 				return true;
 			}
@@ -166,16 +182,17 @@ public class EffectList
 
 	public List<Effect> getAllEffects()
 	{
-		if (isEmpty())
+		Effect[] effects = getSnapshot().effects;
+		if (effects.length == 0)
 		{
 			return Collections.emptyList();
 		}
-		return new ArrayList<Effect>(_effects);
+		return new ArrayList<Effect>(Arrays.asList(effects));
 	}
 
 	public boolean isEmpty()
 	{
-		return (_effects == null) || _effects.isEmpty();
+		return getSnapshot().effects.length == 0;
 	}
 
 	/**
@@ -183,27 +200,56 @@ public class EffectList
 	 */
 	public Effect[] getAllFirstEffects()
 	{
-		if (isEmpty())
+		Effect[] effects = getSnapshot().firstEffects;
+		return effects.length == 0 ? Effect.EMPTY_L2EFFECT_ARRAY : effects.clone();
+	}
+
+	/**
+	 * @return снимок текущего списка эффектов, при необходимости строит его
+	 */
+	private Snapshot getSnapshot()
+	{
+		Snapshot snapshot = _snapshot;
+		if (snapshot == null)
 		{
-			return Effect.EMPTY_L2EFFECT_ARRAY;
+			// Under the list monitor only, nothing foreign is called while it is held
+			synchronized (_effects)
+			{
+				snapshot = _snapshot;
+				if (snapshot == null)
+				{
+					_snapshot = snapshot = new Snapshot(_effects);
+				}
+			}
 		}
+		return snapshot;
+	}
 
-		Map<Integer, Effect> map = new LinkedHashMap<Integer, Effect>();
-		for (Effect e : _effects)
+	private boolean add(Effect effect)
+	{
+		synchronized (_effects)
 		{
-			map.put(e.getSkill().getId(), e); // putIfAbsent
+			_effects.add(effect);
+			_snapshot = null;
 		}
-
-		return map.values().toArray(new Effect[map.size()]);
+		return true;
 	}
 
-	private void checkSlotLimit(Effect newEffect)
+	private boolean remove(Effect effect)
 	{
-		if (_effects == null)
+		synchronized (_effects)
 		{
-			return;
+			if (!_effects.remove(effect))
+			{
+				return false;
+			}
+			_snapshot = null;
 		}
+		return true;
+	}
 
+	private void checkSlotLimit(Effect newEffect)
+	{
 		int slotType = getSlotType(newEffect);
 		if (slotType == NONE_SLOT_TYPE)
 		{
@@ -212,7 +258,7 @@ public class EffectList
 
 		int size = 0;
 		TIntArrayList skillIds = new TIntArrayList();
-		for (Effect e : _effects)
+		for (Effect e : getSnapshot().effects)
 		{
 			if (e.isInUse())
 			{
@@ -256,7 +302,7 @@ public class EffectList
 		}
 
 		int skillId = 0;
-		for (Effect e : _effects)
+		for (Effect e : getSnapshot().effects)
 		{
 			if (e.isInUse())
 			{
@@ -326,13 +372,14 @@ public class EffectList
 		{
 			if (_effects == null)
 			{
-				_effects = new CopyOnWriteArrayList<Effect>();
+				_effects = new ArrayList<Effect>();
 			}
 
 			if (stackType.equals(EffectTemplate.NO_STACK))
 			{
 				// Delete the same effects
-				for (Effect e : _effects)
+				Effect[] sameSkill = getSnapshot().bySkillId.get(effect.getSkill().getId());
+				for (Effect e : sameSkill == null ? Effect.EMPTY_L2EFFECT_ARRAY : sameSkill)
 				{
 					if (!e.isInUse())
 					{
@@ -358,7 +405,7 @@ public class EffectList
 				// Проверяем, нужно ли накладывать эффект, при совпадении StackType.
 				// Новый эффект накладывается только в том случае, если у него больше StackOrder и больше длительность.
 				// Если условия подходят - удаляем старый.
-				for (Effect e : _effects)
+				for (Effect e : getSnapshot().effects)
 				{
 					if (!e.isInUse() || !checkStackType(e.getTemplate(), effect.getTemplate()))
 					{
@@ -382,7 +429,7 @@ public class EffectList
 			checkSlotLimit(effect);
 
 			// Добавляем новый эффект
-			if (add = _effects.add(effect))
+			if (add = add(effect))
 			{
 				effect.setInUse(true);
 			}
@@ -438,7 +485,7 @@ public class EffectList
 		lock.lock();
 		try
 		{
-			if ((_effects == null) || ((remove = _effects.remove(effect)) == false))
+			if ((_effects == null) || ((remove = remove(effect)) == false))
 			{
 				return;
 			}
@@ -467,7 +514,7 @@ public class EffectList
 		lock.lock();
 		try
 		{
-			for (Effect e : _effects)
+			for (Effect e : getSnapshot().effects)
 			{
 				e.exit();
 			}
@@ -488,7 +535,7 @@ public class EffectList
 			return;
 		}
 
-		for (Effect e : _effects)
+		for (Effect e : getSnapshot().effects)
 		{
 			if (e.getSkill().getId() == skillId)
 			{
@@ -512,7 +559,7 @@ public class EffectList
 			return;
 		}
 
-		for (Effect e : _effects)
+		for (Effect e : getSnapshot().effects)
 		{
 			if (e.getSkill().getDisplayId() == skillId)
 			{
@@ -528,7 +575,7 @@ public class EffectList
 			return;
 		}
 
-		for (Effect e : _effects)
+		for (Effect e : getSnapshot().effects)
 		{
 			if (e.getEffectType() == type)
 			{
@@ -549,7 +596,7 @@ public class EffectList
 
 		TIntHashSet skillIds = new TIntHashSet();
 
-		for (Effect e : _effects)
+		for (Effect e : getSnapshot().effects)
 		{
 			if (e.getEffectType() == type)
 			{
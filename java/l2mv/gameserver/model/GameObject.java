@@ -48,6 +48,8 @@ public abstract class GameObject extends EventOwner
 	protected Reflection _reflection = ReflectionManager.DEFAULT;
 
 	private WorldRegion _currentRegion;
+	/** Позиция объекта в массиве объектов региона, куда он был добавлен последним. Только подсказка, объект может быть в двух регионах. */
+	private int _regionSlot = -1;
 
 	/** Состояние объекта */
 	private final AtomicInteger _state = new AtomicInteger(CREATED);
@@ -216,6 +218,16 @@ public abstract class GameObject extends EventOwner
 		World.addVisibleObject(this, null);
 	}
 
+	/**
+	 * Устанавливает позицию без проверки смены региона, вызывающий сам должен затем вызвать World.addVisibleObject
+	 */
+	void setXYZDeferred(int x, int y, int z)
+	{
+		_x = World.validCoordX(x);
+		_y = World.validCoordY(y);
+		_z = World.validCoordZ(z);
+	}
+
 	/**
 	 * Return the visibility state of the L2Object. <BR><BR>
 	 *
@@ -586,6 +598,16 @@ public abstract class GameObject extends EventOwner
 		_currentRegion = region;
 	}
 
+	int getRegionSlot()
+	{
+		return _regionSlot;
+	}
+
+	void setRegionSlot(int slot)
+	{
+		_regionSlot = slot;
+	}
+
 	public boolean isInObserverMode()
 	{
 		return false;
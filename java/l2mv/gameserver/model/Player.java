@@ -72,7 +72,10 @@ import l2mv.gameserver.dao.AccountReportDAO;
 import l2mv.gameserver.dao.CharacterDAO;
 import l2mv.gameserver.dao.CharacterGroupReuseDAO;
 import l2mv.gameserver.dao.CharacterPostFriendDAO;
+import l2mv.gameserver.dao.CharacterStoreQueue;
 import l2mv.gameserver.dao.EffectsDAO;
+import l2mv.gameserver.dao.QuestStoreQueue;
+import l2mv.gameserver.dao.StoredRow;
 import l2mv.gameserver.data.htm.bypasshandler.BypassType;
 import l2mv.gameserver.data.xml.holder.CharTemplateHolder;
 import l2mv.gameserver.data.xml.holder.EventHolder;
@@ -86,6 +89,7 @@ import l2mv.gameserver.data.xml.holder.ResidenceHolder;
 import l2mv.gameserver.data.xml.holder.SkillAcquireHolder;
 import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.database.mysql;
+import l2mv.gameserver.instancemanager.LeaderboardManager;
 import l2mv.gameserver.multverso.academy.AcademyList;
 import l2mv.gameserver.multverso.datatables.OfflineBuffersTable;
 import l2mv.gameserver.multverso.facebook.FacebookProfile;
@@ -667,6 +671,19 @@ public final class Player extends Playable implements PlayerGroup
 
 	private final Lock _storeLock = new ReentrantLock();
 
+	private static final StoredRow.Table CHARACTERS_TABLE = new StoredRow.Table("characters", "obj_Id=? LIMIT 1", //
+				"face", "hairStyle", "hairColor", "x", "y", "z", //
+				"karma", "pvpkills", "pkkills", "rec_have", "rec_left", "rec_bonus_time", "hunt_points", "hunt_time", "clanid", "deletetime", //
+				"title", "accesslevel", "online", "leaveclan", "deleteclan", "nochannel", //
+				"onlinetime", "pledge_type", "pledge_rank", "lvl_joined_academy", "apprentice", "key_bindings", "pcBangPoints", "char_name", "vitality", //
+				"fame", "bookmarks", "hwid_lock", "raidkills", "eventKills", "siege_kills", "oly_wins", "facebook_id", "forum_login");
+	private static final StoredRow.Table MAX_STATS_TABLE = new StoredRow.Table("character_subclasses", "char_obj_id=? AND class_id=? LIMIT 1", "maxHp", "maxMp", "maxCp");
+
+	/** Последние сохраненные значения строки characters */
+	private final StoredRow _storedRow = new StoredRow(CHARACTERS_TABLE);
+	private final StoredRow _storedMaxStats = new StoredRow(MAX_STATS_TABLE);
+	private long _lastFullStoreTime;
+
 	private int _zoneMask;
 
 	private boolean _offline = false;
@@ -851,6 +868,7 @@ public final class Player extends Playable implements PlayerGroup
 	public void changeSex()
 	{
 		_template = CharTemplateHolder.getInstance().getTemplate(getClassId(), getSex() == 0);
+		invalidateStatsCache();
 	}
 
 	@Override
@@ -1370,6 +1388,8 @@ public final class Player extends Playable implements PlayerGroup
 		{
 			_log.error("Error while storing Player", t);
 		}
+
+		QuestStoreQueue.getInstance().flushLater(getObjectId());
 	}
 
 	/**
@@ -1678,6 +1698,7 @@ public final class Player extends Playable implements PlayerGroup
 	public void setPkKills(int pkKills)
 	{
 		_pkKills = pkKills;
+		LeaderboardManager.getInstance().update(this, LeaderboardManager.Metric.PK);
 	}
 
 	public long getCreateTime()
@@ -2267,6 +2288,7 @@ public final class Player extends Playable implements PlayerGroup
 	public void setPvpKills(int pvpKills)
 	{
 		_pvpKills = pvpKills;
+		LeaderboardManager.getInstance().update(this, LeaderboardManager.Metric.PVP);
 	}
 
 	public ClassId getClassId()
@@ -2430,6 +2452,7 @@ public final class Player extends Playable implements PlayerGroup
 
 		// Set the template of the L2Player
 		_template = t;
+		invalidateStatsCache();
 
 		// Update class icon in party and clan
 		if (isInParty())
@@ -3691,7 +3714,13 @@ public final class Player extends Playable implements PlayerGroup
 
 	private boolean isPacketIgnored(IStaticPacket p)
 	{
-		if ((p == null) || (_notShowBuffAnim && (/* (p.getClass() == MagicSkillUse.class) || */(p.getClass() == MagicSkillLaunched.class) || (p.getClass() == SocialAction.class))))
+		if ((p == null) || (_notShowBuffAnim && ((p.getClass() == MagicSkillLaunched.class) || (p.getClass() == SocialAction.class))))
+		{
+			return true;
+		}
+
+		// The caster always sees his own animation
+		if (_notShowBuffAnim && (p.getClass() == MagicSkillUse.class) && (((MagicSkillUse) p).getCasterId() != getObjectId()))
 		{
 			return true;
 		}
@@ -3712,6 +3741,11 @@ public final class Player extends Playable implements PlayerGroup
 
 		for (IStaticPacket p : packets)
 		{
+			if (isPacketIgnored(p))
+			{
+				continue;
+			}
+
 			_connection.sendPacket(p.packet(this));
 		}
 	}
@@ -5683,6 +5717,8 @@ public final class Player extends Playable implements PlayerGroup
 	@Override
 	public void updateStats()
 	{
+		invalidateStatsCache();
+
 		if (entering || isLogoutStarted())
 		{
 			return;
@@ -5737,6 +5773,9 @@ public final class Player extends Playable implements PlayerGroup
 
 	public void updateOnlineStatus()
 	{
+		// A queued save still holds the previous online value
+		CharacterStoreQueue.getInstance().flush(getObjectId());
+
 		try (Connection con = DatabaseFactory.getInstance().getConnection(); PreparedStatement statement = con.prepareStatement("UPDATE characters SET online=?, lastAccess=? WHERE obj_id=?"))
 		{
 			statement.setInt(1, (isOnline() && !isInOfflineMode()) || (isInOfflineMode() && Config.SHOW_OFFLINE_MODE_IN_ONLINE) ? 1 : 0);
@@ -5867,6 +5906,9 @@ public final class Player extends Playable implements PlayerGroup
 	{
 		Player player = null;
 
+		// Отложенное сохранение персонажа должно попасть в базу до чтения
+		CharacterStoreQueue.getInstance().flush(objectId);
+
 		try (Connection con = DatabaseFactory.getInstance().getConnection(); Statement statement = con.createStatement(); Statement statement2 = con.createStatement(); ResultSet rset = statement.executeQuery("SELECT * FROM `characters` WHERE `obj_Id`=" + objectId + " LIMIT 1"); ResultSet rset2 = statement2.executeQuery("SELECT `class_id` FROM `character_subclasses` WHERE `char_obj_id`=" + objectId + " AND `isBase`=1 LIMIT 1"))
 		{
 			if (rset.next() && rset2.next())
@@ -6410,99 +6452,68 @@ public final class Player extends Playable implements PlayerGroup
 
 		try
 		{
-			try (Connection con = DatabaseFactory.getInstance().getConnection();
-						PreparedStatement statement = con.prepareStatement(//
-									"UPDATE characters SET face=?,hairStyle=?,hairColor=?,x=?,y=?,z=?" + //
-												",karma=?,pvpkills=?,pkkills=?,rec_have=?,rec_left=?,rec_bonus_time=?,hunt_points=?,hunt_time=?,clanid=?,deletetime=?," + //
-												"title=?,accesslevel=?,online=?,leaveclan=?,deleteclan=?,nochannel=?," + //
-												"onlinetime=?,pledge_type=?,pledge_rank=?,lvl_joined_academy=?,apprentice=?,key_bindings=?,pcBangPoints=?,char_name=?,vitality=?," + "fame=?,bookmarks=?,hwid_lock=?,raidkills=?,eventKills=?,siege_kills=?,oly_wins=?,facebook_id=?,forum_login=? WHERE obj_Id=? LIMIT 1");)
+			// Regular saves write only what changed since the previous one, a full save every so often rewrites everything
+			long now = System.currentTimeMillis();
+			boolean full = !fast || now - _lastFullStoreTime >= Config.CHARACTER_STORE_FULL_SAVE_INTERVAL;
+			if (full)
+			{
+				_lastFullStoreTime = now;
+			}
+
+			CharacterStoreQueue.Snapshot snapshot = new CharacterStoreQueue.Snapshot(getObjectId(), getAccountName());
+			Location loc = _stablePoint == null ? getLoc() : _stablePoint;
+			byte[] keyBindings = getKeyBindings();
+			_storedRow.store(snapshot, full, new Object[]
+			{
+				getFace(), getHairStyle(), getHairColor(), loc.x, loc.y, loc.z, //
+				getKarma(), getPvpKills(), getPkKills(), getRecomHave(), getRecomLeft(), getRecomBonusTime(), getNevitSystem().getPoints(), getNevitSystem().getTime(), getClanId(), getDeleteTimer(), //
+				_title, _accessLevel, (isOnline() && !isInOfflineMode()) || (isInOfflineMode() && Config.SHOW_OFFLINE_MODE_IN_ONLINE) ? 1 : 0, getLeaveClanTime() / 1000L, getDeleteClanTime() / 1000L, _NoChannel > 0 ? getNoChannelRemained() / 1000 : _NoChannel, //
+				(int) (getOnlineTime() / 1000L), getPledgeType(), getPowerGrade(), getLvlJoinedAcademy(), getApprentice(), keyBindings == null ? null : keyBindings.clone(), getPcBangPoints(), getName(), (int) getVitality(), //
+				getFame(), bookmarks.getCapacity(), getHwidLock(), getRaidKills(), getEventKills(), getSiegeKills(), getOlyWins(), (_facebookProfile == null ? "" : _facebookProfile.getId()), _forumLogin
+			}, getObjectId());
+
+			if (!isPhantom())
 			{
-				statement.setInt(1, getFace());
-				statement.setInt(2, getHairStyle());
-				statement.setInt(3, getHairColor());
-				if (_stablePoint == null)
+				if (Config.RATE_DROP_ADENA < 20)
 				{
-					statement.setInt(4, getX());
-					statement.setInt(5, getY());
-					statement.setInt(6, getZ());
+					GameStats.increaseUpdatePlayerBase();
 				}
-				else
-				{
-					statement.setInt(4, _stablePoint.x);
-					statement.setInt(5, _stablePoint.y);
-					statement.setInt(6, _stablePoint.z);
-				}
-				statement.setInt(7, getKarma());
-				statement.setInt(8, getPvpKills());
-				statement.setInt(9, getPkKills());
-				statement.setInt(10, getRecomHave());
-				statement.setInt(11, getRecomLeft());
-				statement.setInt(12, getRecomBonusTime());
-				statement.setInt(13, getNevitSystem().getPoints());
-				statement.setInt(14, getNevitSystem().getTime());
-				statement.setInt(15, getClanId());
-				statement.setInt(16, getDeleteTimer());
-				statement.setString(17, _title);
-				statement.setInt(18, _accessLevel);
-				statement.setInt(19, (isOnline() && !isInOfflineMode()) || (isInOfflineMode() && Config.SHOW_OFFLINE_MODE_IN_ONLINE) ? 1 : 0);
-				statement.setLong(20, getLeaveClanTime() / 1000L);
-				statement.setLong(21, getDeleteClanTime() / 1000L);
-				statement.setLong(22, _NoChannel > 0 ? getNoChannelRemained() / 1000 : _NoChannel);
-				statement.setInt(23, (int) (getOnlineTime() / 1000L));
-				statement.setInt(24, getPledgeType());
-				statement.setInt(25, getPowerGrade());
-				statement.setInt(26, getLvlJoinedAcademy());
-				statement.setInt(27, getApprentice());
-				statement.setBytes(28, getKeyBindings());
-				statement.setInt(29, getPcBangPoints());
-				statement.setString(30, getName());
-				statement.setInt(31, (int) getVitality());
-				statement.setInt(32, getFame());
-				statement.setInt(33, bookmarks.getCapacity());
-				statement.setString(34, getHwidLock());
-				statement.setInt(35, getRaidKills());
-				statement.setInt(36, getEventKills());
-				statement.setInt(37, getSiegeKills());
-				statement.setInt(38, getOlyWins());
-				statement.setString(39, (_facebookProfile == null ? "" : _facebookProfile.getId()));
-				statement.setString(40, _forumLogin);
-				statement.setInt(41, getObjectId());
-
-				statement.executeUpdate();
 
-				if (!isPhantom())
+				if (!fast)
 				{
-					if (Config.RATE_DROP_ADENA < 20)
-					{
-						GameStats.increaseUpdatePlayerBase();
-					}
+					EffectsDAO.getInstance().insert(this);
+					CharacterGroupReuseDAO.getInstance().insert(this);
+					storeDisableSkills();
+					storeBlockList();
+				}
 
-					if (!fast)
-					{
-						EffectsDAO.getInstance().insert(this);
-						CharacterGroupReuseDAO.getInstance().insert(this);
-						storeDisableSkills();
-						storeBlockList();
-					}
+				storeCharSubClasses(snapshot, full);
+				bookmarks.store(snapshot, full);
 
-					storeCharSubClasses();
-					bookmarks.store();
+				if (Config.ENABLE_PLAYER_COUNTERS)
+				{
+					getCounters().save(snapshot, full);
 
-					if (Config.ENABLE_PLAYER_COUNTERS)
+					if (Config.ENABLE_ACHIEVEMENTS)
 					{
-						getCounters().save();
-
-						if (Config.ENABLE_ACHIEVEMENTS)
-						{
-							saveAchivements();
-						}
+						saveAchivements();
 					}
 				}
 			}
-			catch (SQLException e)
+
+			if (fast)
+			{
+				// The rows are written by the store queue writers, later saves of this character replace this one until then
+				CharacterStoreQueue.getInstance().store(snapshot);
+			}
+			else
 			{
-				_log.error("Could not store char data: " + this + '!', e);
+				// Full saves (logout, character creation) are written at once: code writing the characters table of offline characters
+				// directly and queries filtering on online must not meet an older snapshot landing later
+				CharacterStoreQueue.getInstance().storeNow(snapshot);
 			}
+
+			LeaderboardManager.getInstance().update(this);
 		}
 		finally
 		{
@@ -6515,6 +6526,7 @@ public final class Player extends Playable implements PlayerGroup
 	public void updateRaidKills()
 	{
 		_raidKills++;
+		LeaderboardManager.getInstance().update(this, LeaderboardManager.Metric.RAID_KILLS);
 	}
 
 	public int getRaidKills()
@@ -6998,6 +7010,8 @@ public final class Player extends Playable implements PlayerGroup
 	 */
 	private void recalcHennaStats()
 	{
+		invalidateStatsCache();
+
 		_hennaINT = 0;
 		_hennaSTR = 0;
 		_hennaCON = 0;
@@ -9511,6 +9525,13 @@ public final class Player extends Playable implements PlayerGroup
 	}
 
 	public void storeCharSubClasses()
+	{
+		CharacterStoreQueue.Snapshot snapshot = new CharacterStoreQueue.Snapshot(getObjectId(), getAccountName());
+		storeCharSubClasses(snapshot, true);
+		CharacterStoreQueue.getInstance().storeNow(snapshot);
+	}
+
+	private void storeCharSubClasses(CharacterStoreQueue.Snapshot snapshot, boolean full)
 	{
 		SubClass main = getActiveClass();
 		if (main != null)
@@ -9529,38 +9550,30 @@ public final class Player extends Playable implements PlayerGroup
 			_log.warn("Could not store char sub data, main class " + getActiveClassId() + " not found for " + this);
 		}
 
-		try (Connection con = DatabaseFactory.getInstance().getConnection(); Statement statement = con.createStatement())
+		for (SubClass subClass : getSubClasses().values())
 		{
-
-			StringBuilder sb;
-			for (SubClass subClass : getSubClasses().values())
+			subClass.getStoredRow().store(snapshot, full, new Object[]
 			{
-				sb = new StringBuilder("UPDATE character_subclasses SET ");
-				sb.append("exp=").append(subClass.getExp()).append(",");
-				sb.append("sp=").append(subClass.getSp()).append(",");
-				sb.append("curHp=").append(subClass.getHp()).append(",");
-				sb.append("curMp=").append(subClass.getMp()).append(",");
-				sb.append("curCp=").append(subClass.getCp()).append(",");
-				sb.append("level=").append(subClass.getLevel()).append(",");
-				sb.append("active=").append(subClass.isActive() ? 1 : 0).append(",");
-				sb.append("isBase=").append(subClass.isBase() ? 1 : 0).append(",");
-				sb.append("death_penalty=").append(subClass.getDeathPenalty(this).getLevelOnSaveDB()).append(",");
-				sb.append("certification='").append(subClass.getCertification()).append("'");
-				sb.append(" WHERE char_obj_id=").append(getObjectId()).append(" AND class_id=").append(subClass.getClassId()).append(" LIMIT 1");
-				statement.executeUpdate(sb.toString());
-			}
-
-			sb = new StringBuilder("UPDATE character_subclasses SET ");
-			sb.append("maxHp=").append(getMaxHp()).append(",");
-			sb.append("maxMp=").append(getMaxMp()).append(",");
-			sb.append("maxCp=").append(getMaxCp());
-			sb.append(" WHERE char_obj_id=").append(getObjectId()).append(" AND active=1 LIMIT 1");
-			statement.executeUpdate(sb.toString());
+				subClass.getExp(),
+				subClass.getSp(),
+				subClass.getHp(),
+				subClass.getMp(),
+				subClass.getCp(),
+				subClass.getLevel(),
+				subClass.isActive() ? 1 : 0,
+				subClass.isBase() ? 1 : 0,
+				subClass.getDeathPenalty(this).getLevelOnSaveDB(),
+				subClass.getCertification()
+			}, getObjectId(), subClass.getClassId());
 		}
-		catch (SQLException e)
+
+		// Keyed by the active class, so a class change rewrites all three
+		_storedMaxStats.store(snapshot, full, new Object[]
 		{
-			_log.warn("Error while storing Char Subclasses", e);
-		}
+			getMaxHp(),
+			getMaxMp(),
+			getMaxCp()
+		}, getObjectId(), getActiveClassId());
 	}
 
 	/**
@@ -11987,6 +12000,7 @@ public final class Player extends Playable implements PlayerGroup
 
 		_fame = fame;
 		sendChanges();
+		LeaderboardManager.getInstance().update(this, LeaderboardManager.Metric.FAME);
 	}
 
 	public void setFame(int fame)
@@ -12003,6 +12017,7 @@ public final class Player extends Playable implements PlayerGroup
 
 		_fame = fame;
 		sendChanges();
+		LeaderboardManager.getInstance().update(this, LeaderboardManager.Metric.FAME);
 	}
 
 	public int getVitalityLevel(boolean blessActive)
@@ -14321,6 +14336,7 @@ public final class Player extends Playable implements PlayerGroup
 	public void setEventKills(int eventKills)
 	{
 		_eventKills = eventKills;
+		LeaderboardManager.getInstance().update(this, LeaderboardManager.Metric.EVENT_KILLS);
 	}
 
 	public int getEventKills()
@@ -14334,11 +14350,13 @@ public final class Player extends Playable implements PlayerGroup
 	public void setSiegeKills(int siegeKills)
 	{
 		_siegeKills = siegeKills;
+		LeaderboardManager.getInstance().update(this, LeaderboardManager.Metric.SIEGE_KILLS);
 	}
 
 	public void incSiegeKills()
 	{
 		_siegeKills++;
+		LeaderboardManager.getInstance().update(this, LeaderboardManager.Metric.SIEGE_KILLS);
 	}
 
 	public int getSiegeKills()
@@ -14352,11 +14370,13 @@ public final class Player extends Playable implements PlayerGroup
 	public void setOlyWins(int olyWins)
 	{
 		_olyWins = olyWins;
+		LeaderboardManager.getInstance().update(this, LeaderboardManager.Metric.OLY_WINS);
 	}
 
 	public void incOlyWins()
 	{
 		_olyWins++;
+		LeaderboardManager.getInstance().update(this, LeaderboardManager.Metric.OLY_WINS);
 	}
 
 	public int getOlyWins()
@@ -1,6 +1,7 @@
 package l2mv.gameserver.model;
 
 import l2mv.gameserver.Config;
+import l2mv.gameserver.dao.StoredRow;
 import l2mv.gameserver.model.base.ClassId;
 import l2mv.gameserver.model.base.Experience;
 
@@ -19,10 +20,20 @@ public class SubClass
 	private boolean _active = false, _isBase = false;
 	private DeathPenalty _dp;
 
+	private static final StoredRow.Table SUBCLASSES_TABLE = new StoredRow.Table("character_subclasses", "char_obj_id=? AND class_id=? LIMIT 1", "exp", "sp", "curHp", "curMp", "curCp", "level", "active", "isBase", "death_penalty", "certification");
+
+	/** Последние сохраненные значения строки character_subclasses */
+	private final StoredRow _storedRow = new StoredRow(SUBCLASSES_TABLE);
+
 	public SubClass()
 	{
 	}
 
+	public StoredRow getStoredRow()
+	{
+		return _storedRow;
+	}
+
 	public int getClassId()
 	{
 		return _class;
@@ -3,7 +3,10 @@ package l2mv.gameserver.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import l2mv.commons.geometry.Point2D;
 import l2mv.commons.geometry.Point3D;
+import l2mv.commons.geometry.Polygon;
+import l2mv.commons.geometry.Rectangle;
 import l2mv.commons.geometry.Shape;
 import l2mv.commons.util.Rnd;
 import l2mv.gameserver.geodata.GeoEngine;
@@ -12,12 +15,27 @@ import l2mv.gameserver.utils.Location;
 
 public class Territory implements Shape, SpawnRange
 {
+	/** Клетка растра целиком вне территории */
+	private static final byte CELL_OUTSIDE = 1;
+	/** Клетка растра целиком внутри территории на плоскости */
+	private static final byte CELL_INSIDE_XY = 2;
+	/** Клетка растра целиком внутри территории на всей ее высоте */
+	private static final byte CELL_INSIDE_XYZ = 4;
+
+	private static final int MIN_RASTER_SHIFT = 5;
+	private static final int MAX_RASTER_SIZE = 64;
+
 	protected final Point3D max = new Point3D();
 	protected final Point3D min = new Point3D();
 
 	private final List<Shape> include = new ArrayList<Shape>(1);
 	private final List<Shape> exclude = new ArrayList<Shape>(1);
 
+	/** Состояния клеток, null если растр не построен, тогда проверяется геометрия */
+	private volatile byte[] _raster;
+	private int _rasterShift;
+	private int _rasterWidth;
+
 	public Territory()
 	{
 
@@ -45,15 +63,173 @@ public class Territory implements Shape, SpawnRange
 		}
 
 		include.add(shape);
+		_raster = null;
 		return this;
 	}
 
 	public Territory addBanned(Shape shape)
 	{
 		exclude.add(shape);
+		_raster = null;
+		return this;
+	}
+
+	/**
+	 * Строит растр территории: клетки, целиком лежащие внутри или вне территории, проверяются без геометрии,
+	 * и только клетки на границе проверяются по фигурам. Растр строится для территорий с многоугольниками,
+	 * остальные фигуры и так проверяются сравнением координат. Территорию нельзя изменять после построения.
+	 * @return this
+	 */
+	public Territory buildRaster()
+	{
+		boolean polygons = false;
+		for (Shape shape : include)
+		{
+			polygons |= shape instanceof Polygon;
+		}
+		for (Shape shape : exclude)
+		{
+			polygons |= shape instanceof Polygon;
+		}
+		if (!polygons)
+		{
+			return this;
+		}
+
+		int shift = MIN_RASTER_SHIFT;
+		while (((max.x - min.x) >> shift) >= MAX_RASTER_SIZE || ((max.y - min.y) >> shift) >= MAX_RASTER_SIZE)
+		{
+			shift++;
+		}
+
+		int width = ((max.x - min.x) >> shift) + 1;
+		int height = ((max.y - min.y) >> shift) + 1;
+		byte[] raster = new byte[width * height];
+		for (int cellY = 0; cellY < height; cellY++)
+		{
+			for (int cellX = 0; cellX < width; cellX++)
+			{
+				int x0 = min.x + (cellX << shift);
+				int y0 = min.y + (cellY << shift);
+				raster[cellY * width + cellX] = getCellState(x0, y0, x0 + (1 << shift) - 1, y0 + (1 << shift) - 1);
+			}
+		}
+
+		_rasterShift = shift;
+		_rasterWidth = width;
+		_raster = raster;
 		return this;
 	}
 
+	private byte getCellState(int x0, int y0, int x1, int y1)
+	{
+		for (Shape shape : exclude)
+		{
+			if (getShapeCellState(shape, x0, y0, x1, y1) != CELL_OUTSIDE)
+			{
+				// Исключенная область задевает клетку, внутренность клетки проверяется по фигурам
+				return isOutside(x0, y0, x1, y1) ? CELL_OUTSIDE : 0;
+			}
+		}
+
+		byte state = CELL_OUTSIDE;
+		for (Shape shape : include)
+		{
+			int shapeState = getShapeCellState(shape, x0, y0, x1, y1);
+			if (shapeState == CELL_INSIDE_XY)
+			{
+				if (shape.getZmin() <= min.z && shape.getZmax() >= max.z)
+				{
+					return CELL_INSIDE_XY | CELL_INSIDE_XYZ;
+				}
+				state = CELL_INSIDE_XY;
+			}
+			else if (shapeState == 0 && state == CELL_OUTSIDE)
+			{
+				state = 0;
+			}
+		}
+		return state;
+	}
+
+	private boolean isOutside(int x0, int y0, int x1, int y1)
+	{
+		for (Shape shape : include)
+		{
+			if (getShapeCellState(shape, x0, y0, x1, y1) != CELL_OUTSIDE)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return CELL_OUTSIDE или CELL_INSIDE_XY, если фигура на плоскости не пересекает клетку или содержит ее целиком, иначе 0
+	 */
+	private static int getShapeCellState(Shape shape, int x0, int y0, int x1, int y1)
+	{
+		if (shape instanceof Rectangle)
+		{
+			if (shape.getXmax() < x0 || shape.getXmin() > x1 || shape.getYmax() < y0 || shape.getYmin() > y1)
+			{
+				return CELL_OUTSIDE;
+			}
+			if (shape.getXmin() <= x0 && shape.getXmax() >= x1 && shape.getYmin() <= y0 && shape.getYmax() >= y1)
+			{
+				return CELL_INSIDE_XY;
+			}
+			return 0;
+		}
+
+		if (shape instanceof Polygon)
+		{
+			if (shape.getXmax() < x0 || shape.getXmin() > x1 || shape.getYmax() < y0 || shape.getYmin() > y1)
+			{
+				return CELL_OUTSIDE;
+			}
+
+			// Ни одна сторона не проходит через клетку с запасом в единицу, значит вся клетка по одну сторону границы
+			Point2D[] points = ((Polygon) shape).getPoints();
+			for (int i = 0, j = points.length - 1; i < points.length; j = i++)
+			{
+				if (isCrossing(points[j], points[i], x0 - 1, y0 - 1, x1 + 1, y1 + 1))
+				{
+					return 0;
+				}
+			}
+			return shape.isInside((x0 + x1) >> 1, (y0 + y1) >> 1) ? CELL_INSIDE_XY : CELL_OUTSIDE;
+		}
+
+		// Прочие фигуры проверяются как есть
+		return 0;
+	}
+
+	/**
+	 * @return true, если отрезок ab пересекает прямоугольник или касается его
+	 */
+	private static boolean isCrossing(Point2D a, Point2D b, int x0, int y0, int x1, int y1)
+	{
+		if (Math.max(a.x, b.x) < x0 || Math.min(a.x, b.x) > x1 || Math.max(a.y, b.y) < y0 || Math.min(a.y, b.y) > y1)
+		{
+			return false;
+		}
+
+		// Отрезок не пересекает прямоугольник, только если все углы лежат строго по одну сторону от прямой
+		int side = side(a, b, x0, y0);
+		return side == 0 || side != side(a, b, x1, y0) || side != side(a, b, x1, y1) || side != side(a, b, x0, y1);
+	}
+
+	private static int side(Point2D a, Point2D b, int x, int y)
+	{
+		return Long.signum((long) (b.x - a.x) * (y - a.y) - (long) (b.y - a.y) * (x - a.x));
+	}
+
+	private int getCell(byte[] raster, int x, int y)
+	{
+		return raster[((y - min.y) >> _rasterShift) * _rasterWidth + ((x - min.x) >> _rasterShift)];
+	}
+
 	public List<Shape> getTerritories()
 	{
 		return include;
@@ -67,6 +243,20 @@ public class Territory implements Shape, SpawnRange
 	@Override
 	public boolean isInside(int x, int y)
 	{
+		byte[] raster = _raster;
+		if (raster != null && x >= min.x && x <= max.x && y >= min.y && y <= max.y)
+		{
+			int cell = getCell(raster, x, y);
+			if ((cell & CELL_OUTSIDE) != 0)
+			{
+				return false;
+			}
+			if ((cell & CELL_INSIDE_XY) != 0)
+			{
+				return true;
+			}
+		}
+
 		Shape shape;
 		for (int i = 0; i < include.size(); i++)
 		{
@@ -87,6 +277,20 @@ public class Territory implements Shape, SpawnRange
 			return false;
 		}
 
+		byte[] raster = _raster;
+		if (raster != null)
+		{
+			int cell = getCell(raster, x, y);
+			if ((cell & CELL_OUTSIDE) != 0)
+			{
+				return false;
+			}
+			if ((cell & CELL_INSIDE_XYZ) != 0)
+			{
+				return true;
+			}
+		}
+
 		Shape shape;
 		for (int i = 0; i < include.size(); i++)
 		{
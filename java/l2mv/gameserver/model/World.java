@@ -3,6 +3,7 @@ package l2mv.gameserver.model;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -357,47 +358,56 @@ public class World
 		return null;
 	}
 
-	public static List<GameObject> getAroundObjects(GameObject object)
+	/**
+	 * Which objects a neighbourhood query looks at. Each mode knows which typed arrays of a region it has to scan,
+	 * so that NPC or player only queries never touch the other objects.
+	 */
+	private static enum AroundType
 	{
-		WorldRegion currentRegion = object.getCurrentRegion();
-		if (currentRegion == null)
-		{
-			return Collections.emptyList();
-		}
+		OBJECTS(true, true, true),
+		CHARACTERS(true, true, true),
+		PLAYABLES(true, false, true),
+		NPCS(false, true, false),
+		PLAYERS(true, false, false);
 
-		int oid = object.getObjectId();
-		int rid = object.getReflectionId();
+		private final boolean[] _types = new boolean[WorldRegion.TYPES_COUNT];
 
-		List<GameObject> result = new ArrayList<GameObject>(128);
+		private AroundType(boolean players, boolean npcs, boolean others)
+		{
+			_types[WorldRegion.TYPE_PLAYER] = players;
+			_types[WorldRegion.TYPE_NPC] = npcs;
+			_types[WorldRegion.TYPE_OTHER] = others;
+		}
 
-		for (int x = validX(currentRegion.getX() - 1); x <= validX(currentRegion.getX() + 1); x++)
+		/**
+		 * Filter for the objects that are neither players nor npcs
+		 */
+		boolean acceptOther(GameObject obj)
 		{
-			for (int y = validY(currentRegion.getY() - 1); y <= validY(currentRegion.getY() + 1); y++)
+			switch (this)
 			{
-				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
-				{
-					for (GameObject obj : getRegion(x, y, z))
-					{
-						if (obj.getObjectId() == oid || obj.getReflectionId() != rid)
-						{
-							continue;
-						}
-
-						result.add(obj);
-					}
-				}
+				case CHARACTERS:
+					return obj.isCreature();
+				case PLAYABLES:
+					return obj.isPlayable();
+				default:
+					return true;
 			}
 		}
-
-		return result;
 	}
 
-	public static List<GameObject> getAroundObjects(GameObject object, int radius, int height)
+	/**
+	 * Передает action все подходящие обьекты в текущем и соседних регионах, находящиеся в том же отражении, что и object.
+	 * Списки не создаются, обьекты других отражений не просматриваются.
+	 * @param radius радиус поиска, или -1 для всех обьектов соседних регионов
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends GameObject> void forEachAround(GameObject object, int radius, int height, AroundType type, Consumer<? super T> action)
 	{
 		WorldRegion currentRegion = object.getCurrentRegion();
 		if (currentRegion == null)
 		{
-			return Collections.emptyList();
+			return;
 		}
 
 		int oid = object.getObjectId();
@@ -407,120 +417,83 @@ public class World
 		int oz = object.getZ();
 		int sqrad = radius * radius;
 
-		List<GameObject> result = new ArrayList<GameObject>(128);
-
 		for (int x = validX(currentRegion.getX() - 1); x <= validX(currentRegion.getX() + 1); x++)
 		{
 			for (int y = validY(currentRegion.getY() - 1); y <= validY(currentRegion.getY() + 1); y++)
 			{
 				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
 				{
-					for (GameObject obj : getRegion(x, y, z))
+					WorldRegion region = getRegion(x, y, z);
+					for (int t = 0; t < WorldRegion.TYPES_COUNT; t++)
 					{
-						if (obj.getObjectId() == oid || obj.getReflectionId() != rid || (Math.abs(obj.getZ() - oz) > height))
+						if (!type._types[t])
 						{
 							continue;
 						}
-						int dx = Math.abs(obj.getX() - ox);
-						if (dx > radius)
+
+						GameObject[] objects = region.getObjects(rid, t);
+						if (objects == null)
 						{
-							continue;
+							break;
 						}
-						int dy = Math.abs(obj.getY() - oy);
-						if ((dy > radius) || (dx * dx + dy * dy > sqrad))
+
+						for (GameObject obj : objects)
 						{
-							continue;
-						}
+							if (obj == null || obj.getObjectId() == oid || (t == WorldRegion.TYPE_OTHER && !type.acceptOther(obj)))
+							{
+								continue;
+							}
+							if (radius >= 0)
+							{
+								if (Math.abs(obj.getZ() - oz) > height)
+								{
+									continue;
+								}
+								int dx = Math.abs(obj.getX() - ox);
+								if (dx > radius)
+								{
+									continue;
+								}
+								int dy = Math.abs(obj.getY() - oy);
+								if ((dy > radius) || (dx * dx + dy * dy > sqrad))
+								{
+									continue;
+								}
+							}
 
-						result.add(obj);
+							action.accept((T) obj);
+						}
 					}
 				}
 			}
 		}
+	}
 
+	public static List<GameObject> getAroundObjects(GameObject object)
+	{
+		List<GameObject> result = new ArrayList<GameObject>(128);
+		forEachAroundObjects(object, result::add);
 		return result;
 	}
 
-	public static List<Creature> getAroundCharacters(GameObject object)
+	public static List<GameObject> getAroundObjects(GameObject object, int radius, int height)
 	{
-		WorldRegion currentRegion = object.getCurrentRegion();
-		if (currentRegion == null)
-		{
-			return Collections.emptyList();
-		}
-
-		int oid = object.getObjectId();
-		int rid = object.getReflectionId();
+		List<GameObject> result = new ArrayList<GameObject>(128);
+		forEachAroundObjects(object, radius, height, result::add);
+		return result;
+	}
 
+	public static List<Creature> getAroundCharacters(GameObject object)
+	{
 		List<Creature> result = new ArrayList<Creature>(64);
-
-		for (int x = validX(currentRegion.getX() - 1); x <= validX(currentRegion.getX() + 1); x++)
-		{
-			for (int y = validY(currentRegion.getY() - 1); y <= validY(currentRegion.getY() + 1); y++)
-			{
-				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
-				{
-					for (GameObject obj : getRegion(x, y, z))
-					{
-						if (!obj.isCreature() || obj.getObjectId() == oid || obj.getReflectionId() != rid)
-						{
-							continue;
-						}
-
-						result.add((Creature) obj);
-					}
-				}
-			}
-		}
-
+		forEachAroundCharacters(object, result::add);
 		return result;
 	}
 
 	public static List<Creature> getAroundCharacters(GameObject object, int radius, int height)
 	{
-		WorldRegion currentRegion = object.getCurrentRegion();
-		if (currentRegion == null)
-		{
-			return Collections.emptyList();
-		}
-
-		int oid = object.getObjectId();
-		int rid = object.getReflectionId();
-		int ox = object.getX();
-		int oy = object.getY();
-		int oz = object.getZ();
-		int sqrad = radius * radius;
-
 		List<Creature> result = new ArrayList<Creature>(64);
-
-		for (int x = validX(currentRegion.getX() - 1); x <= validX(currentRegion.getX() + 1); x++)
-		{
-			for (int y = validY(currentRegion.getY() - 1); y <= validY(currentRegion.getY() + 1); y++)
-			{
-				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
-				{
-					for (GameObject obj : getRegion(x, y, z))
-					{
-						if (!obj.isCreature() || obj.getObjectId() == oid || obj.getReflectionId() != rid || (Math.abs(obj.getZ() - oz) > height))
-						{
-							continue;
-						}
-						int dx = Math.abs(obj.getX() - ox);
-						if (dx > radius)
-						{
-							continue;
-						}
-						int dy = Math.abs(obj.getY() - oy);
-						if ((dy > radius) || (dx * dx + dy * dy > sqrad))
-						{
-							continue;
-						}
-
-						result.add((Creature) obj);
-					}
-				}
-			}
-		}
+		forEachAroundCharacters(object, radius, height, result::add);
 		return result;
 	}
 
@@ -568,248 +541,123 @@ public class World
 
 	public static List<NpcInstance> getAroundNpc(GameObject object)
 	{
-		WorldRegion currentRegion = object.getCurrentRegion();
-		if (currentRegion == null)
-		{
-			return Collections.emptyList();
-		}
-
-		int oid = object.getObjectId();
-		int rid = object.getReflectionId();
-
 		List<NpcInstance> result = new ArrayList<NpcInstance>(64);
-
-		for (int x = validX(currentRegion.getX() - 1); x <= validX(currentRegion.getX() + 1); x++)
-		{
-			for (int y = validY(currentRegion.getY() - 1); y <= validY(currentRegion.getY() + 1); y++)
-			{
-				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
-				{
-					for (GameObject obj : getRegion(x, y, z))
-					{
-						if (!obj.isNpc() || obj.getObjectId() == oid || obj.getReflectionId() != rid)
-						{
-							continue;
-						}
-
-						result.add((NpcInstance) obj);
-					}
-				}
-			}
-		}
+		forEachAroundNpc(object, result::add);
 		return result;
 	}
 
 	public static List<NpcInstance> getAroundNpc(GameObject object, int radius, int height)
 	{
-		WorldRegion currentRegion = object.getCurrentRegion();
-		if (currentRegion == null)
-		{
-			return Collections.emptyList();
-		}
-
-		int oid = object.getObjectId();
-		int rid = object.getReflectionId();
-		int ox = object.getX();
-		int oy = object.getY();
-		int oz = object.getZ();
-		int sqrad = radius * radius;
-
 		List<NpcInstance> result = new ArrayList<NpcInstance>(64);
-
-		for (int x = validX(currentRegion.getX() - 1); x <= validX(currentRegion.getX() + 1); x++)
-		{
-			for (int y = validY(currentRegion.getY() - 1); y <= validY(currentRegion.getY() + 1); y++)
-			{
-				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
-				{
-					for (GameObject obj : getRegion(x, y, z))
-					{
-						if (!obj.isNpc() || obj.getObjectId() == oid || obj.getReflectionId() != rid || (Math.abs(obj.getZ() - oz) > height))
-						{
-							continue;
-						}
-						int dx = Math.abs(obj.getX() - ox);
-						if (dx > radius)
-						{
-							continue;
-						}
-						int dy = Math.abs(obj.getY() - oy);
-						if ((dy > radius) || (dx * dx + dy * dy > sqrad))
-						{
-							continue;
-						}
-
-						result.add((NpcInstance) obj);
-					}
-				}
-			}
-		}
+		forEachAroundNpc(object, radius, height, result::add);
 		return result;
 	}
 
 	public static List<Playable> getAroundPlayables(GameObject object)
 	{
-		WorldRegion currentRegion = object.getCurrentRegion();
-		if (currentRegion == null)
-		{
-			return Collections.emptyList();
-		}
-
-		int oid = object.getObjectId();
-		int rid = object.getReflectionId();
+		List<Playable> result = new ArrayList<Playable>(64);
+		forEachAroundPlayables(object, result::add);
+		return result;
+	}
 
+	public static List<Playable> getAroundPlayables(GameObject object, int radius, int height)
+	{
 		List<Playable> result = new ArrayList<Playable>(64);
+		forEachAroundPlayables(object, radius, height, result::add);
+		return result;
+	}
 
-		for (int x = validX(currentRegion.getX() - 1); x <= validX(currentRegion.getX() + 1); x++)
-		{
-			for (int y = validY(currentRegion.getY() - 1); y <= validY(currentRegion.getY() + 1); y++)
-			{
-				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
-				{
-					for (GameObject obj : getRegion(x, y, z))
-					{
-						if (!obj.isPlayable() || obj.getObjectId() == oid || obj.getReflectionId() != rid)
-						{
-							continue;
-						}
+	public static List<Player> getAroundPlayers(GameObject object)
+	{
+		List<Player> result = new ArrayList<Player>(64);
+		forEachAroundPlayers(object, result::add);
+		return result;
+	}
 
-						result.add((Playable) obj);
-					}
-				}
-			}
-		}
+	public static List<Player> getAroundPlayers(GameObject object, int radius, int height)
+	{
+		List<Player> result = new ArrayList<Player>(64);
+		forEachAroundPlayers(object, radius, height, result::add);
 		return result;
 	}
 
-	public static List<Playable> getAroundPlayables(GameObject object, int radius, int height)
+	public static void forEachAroundObjects(GameObject object, Consumer<? super GameObject> action)
 	{
-		WorldRegion currentRegion = object.getCurrentRegion();
-		if (currentRegion == null)
-		{
-			return Collections.emptyList();
-		}
+		forEachAround(object, -1, 0, AroundType.OBJECTS, action);
+	}
 
-		int oid = object.getObjectId();
-		int rid = object.getReflectionId();
-		int ox = object.getX();
-		int oy = object.getY();
-		int oz = object.getZ();
-		int sqrad = radius * radius;
+	public static void forEachAroundObjects(GameObject object, int radius, int height, Consumer<? super GameObject> action)
+	{
+		forEachAround(object, radius, height, AroundType.OBJECTS, action);
+	}
 
-		List<Playable> result = new ArrayList<Playable>(64);
+	public static void forEachAroundCharacters(GameObject object, Consumer<? super Creature> action)
+	{
+		forEachAround(object, -1, 0, AroundType.CHARACTERS, action);
+	}
 
-		for (int x = validX(currentRegion.getX() - 1); x <= validX(currentRegion.getX() + 1); x++)
-		{
-			for (int y = validY(currentRegion.getY() - 1); y <= validY(currentRegion.getY() + 1); y++)
-			{
-				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
-				{
-					for (GameObject obj : getRegion(x, y, z))
-					{
-						if (!obj.isPlayable() || obj.getObjectId() == oid || obj.getReflectionId() != rid || (Math.abs(obj.getZ() - oz) > height))
-						{
-							continue;
-						}
-						int dx = Math.abs(obj.getX() - ox);
-						if (dx > radius)
-						{
-							continue;
-						}
-						int dy = Math.abs(obj.getY() - oy);
-						if ((dy > radius) || (dx * dx + dy * dy > sqrad))
-						{
-							continue;
-						}
+	public static void forEachAroundCharacters(GameObject object, int radius, int height, Consumer<? super Creature> action)
+	{
+		forEachAround(object, radius, height, AroundType.CHARACTERS, action);
+	}
 
-						result.add((Playable) obj);
-					}
-				}
-			}
-		}
-		return result;
+	public static void forEachAroundNpc(GameObject object, Consumer<? super NpcInstance> action)
+	{
+		forEachAround(object, -1, 0, AroundType.NPCS, action);
 	}
 
-	public static List<Player> getAroundPlayers(GameObject object)
+	public static void forEachAroundNpc(GameObject object, int radius, int height, Consumer<? super NpcInstance> action)
 	{
-		WorldRegion currentRegion = object.getCurrentRegion();
-		if (currentRegion == null)
-		{
-			return Collections.emptyList();
-		}
+		forEachAround(object, radius, height, AroundType.NPCS, action);
+	}
 
-		int oid = object.getObjectId();
-		int rid = object.getReflectionId();
+	public static void forEachAroundPlayables(GameObject object, Consumer<? super Playable> action)
+	{
+		forEachAround(object, -1, 0, AroundType.PLAYABLES, action);
+	}
 
-		List<Player> result = new ArrayList<Player>(64);
+	public static void forEachAroundPlayables(GameObject object, int radius, int height, Consumer<? super Playable> action)
+	{
+		forEachAround(object, radius, height, AroundType.PLAYABLES, action);
+	}
 
-		for (int x = validX(currentRegion.getX() - 1); x <= validX(currentRegion.getX() + 1); x++)
-		{
-			for (int y = validY(currentRegion.getY() - 1); y <= validY(currentRegion.getY() + 1); y++)
-			{
-				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
-				{
-					for (GameObject obj : getRegion(x, y, z))
-					{
-						if (!obj.isPlayer() || obj.getObjectId() == oid || obj.getReflectionId() != rid)
-						{
-							continue;
-						}
+	public static void forEachAroundPlayers(GameObject object, Consumer<? super Player> action)
+	{
+		forEachAround(object, -1, 0, AroundType.PLAYERS, action);
+	}
 
-						result.add((Player) obj);
-					}
-				}
-			}
-		}
-		return result;
+	public static void forEachAroundPlayers(GameObject object, int radius, int height, Consumer<? super Player> action)
+	{
+		forEachAround(object, radius, height, AroundType.PLAYERS, action);
 	}
 
-	public static List<Player> getAroundPlayers(GameObject object, int radius, int height)
+	/**
+	 * Проверяет по счетчикам регионов, есть ли в текущем и соседних регионах игроки или питомцы того же отражения, что и object.
+	 * Объекты не просматриваются.
+	 */
+	public static boolean hasAroundPlayables(GameObject object)
 	{
 		WorldRegion currentRegion = object.getCurrentRegion();
 		if (currentRegion == null)
 		{
-			return Collections.emptyList();
+			return false;
 		}
 
-		int oid = object.getObjectId();
 		int rid = object.getReflectionId();
-		int ox = object.getX();
-		int oy = object.getY();
-		int oz = object.getZ();
-		int sqrad = radius * radius;
-
-		List<Player> result = new ArrayList<Player>(64);
-
 		for (int x = validX(currentRegion.getX() - 1); x <= validX(currentRegion.getX() + 1); x++)
 		{
 			for (int y = validY(currentRegion.getY() - 1); y <= validY(currentRegion.getY() + 1); y++)
 			{
 				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
 				{
-					for (GameObject obj : getRegion(x, y, z))
+					if (getRegion(x, y, z).hasPlayables(rid))
 					{
-						if (!obj.isPlayer() || obj.getObjectId() == oid || obj.getReflectionId() != rid || (Math.abs(obj.getZ() - oz) > height))
-						{
-							continue;
-						}
-						int dx = Math.abs(obj.getX() - ox);
-						if (dx > radius)
-						{
-							continue;
-						}
-						int dy = Math.abs(obj.getY() - oy);
-						if ((dy > radius) || (dx * dx + dy * dy > sqrad))
-						{
-							continue;
-						}
-
-						result.add((Player) obj);
+						return true;
 					}
 				}
 			}
 		}
-		return result;
+		return false;
 	}
 
 	/**
@@ -885,14 +733,24 @@ public class World
 			{
 				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
 				{
-					for (GameObject obj : getRegion(x, y, z))
+					WorldRegion region = getRegion(x, y, z);
+					for (int t = 0; t < WorldRegion.TYPES_COUNT; t++)
 					{
-						if (obj.getObjectId() == oid || obj.getReflectionId() != rid)
+						GameObject[] objects = region.getObjects(rid, t);
+						if (objects == null)
 						{
-							continue;
+							break;
 						}
 
-						player.sendPacket(player.addVisibleObject(obj, null));
+						for (GameObject obj : objects)
+						{
+							if (obj == null || obj.getObjectId() == oid)
+							{
+								continue;
+							}
+
+							player.sendPacket(player.addVisibleObject(obj, null));
+						}
 					}
 				}
 			}
@@ -919,14 +777,24 @@ public class World
 			{
 				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
 				{
-					for (GameObject obj : getRegion(x, y, z))
+					WorldRegion region = getRegion(x, y, z);
+					for (int t = 0; t < WorldRegion.TYPES_COUNT; t++)
 					{
-						if (obj.getObjectId() == oid || obj.getReflectionId() != rid)
+						GameObject[] objects = region.getObjects(rid, t);
+						if (objects == null)
 						{
-							continue;
+							break;
 						}
 
-						player.sendPacket(player.removeVisibleObject(obj, null));
+						for (GameObject obj : objects)
+						{
+							if (obj == null || obj.getObjectId() == oid)
+							{
+								continue;
+							}
+
+							player.sendPacket(player.removeVisibleObject(obj, null));
+						}
 					}
 				}
 			}
@@ -956,9 +824,15 @@ public class World
 			{
 				for (int z = validZ(currentRegion.getZ() - 1); z <= validZ(currentRegion.getZ() + 1); z++)
 				{
-					for (GameObject obj : getRegion(x, y, z))
+					GameObject[] objects = getRegion(x, y, z).getObjects(rid, WorldRegion.TYPE_PLAYER);
+					if (objects == null)
+					{
+						continue;
+					}
+
+					for (GameObject obj : objects)
 					{
-						if (!obj.isPlayer() || obj.getObjectId() == oid || obj.getReflectionId() != rid || obj.getPlayer().isGM())
+						if (obj == null || obj.getObjectId() == oid || obj.getPlayer().isGM())
 						{
 							continue;
 						}
@@ -1041,7 +915,7 @@ public class World
 	public static void getZones(List<Zone> inside, Location loc, Reflection reflection)
 	{
 		WorldRegion region = getRegion(loc);
-		Zone[] zones = region.getZones();
+		Zone[] zones = region.getZones(loc.x, loc.y);
 		if (zones.length == 0)
 		{
 			return;
@@ -1063,7 +937,7 @@ public class World
 	public static Zone getWater(Location loc, Reflection reflection)
 	{
 		WorldRegion region = getRegion(loc);
-		Zone[] zones = region.getZones();
+		Zone[] zones = region.getZones(loc.x, loc.y);
 		if (zones.length == 0)
 		{
 			return null;
@@ -2,6 +2,7 @@ package l2mv.gameserver.model;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
@@ -14,7 +15,7 @@ import l2mv.commons.lang.ArrayUtils;
 import l2mv.commons.threading.RunnableImpl;
 import l2mv.gameserver.ThreadPoolManager;
 import l2mv.gameserver.ai.CtrlIntention;
-import l2mv.gameserver.model.entity.Reflection;
+import l2mv.gameserver.instancemanager.ReflectionManager;
 import l2mv.gameserver.model.instances.NpcInstance;
 import l2mv.gameserver.network.serverpackets.L2GameServerPacket;
 
@@ -51,14 +52,182 @@ public final class WorldRegion implements Iterable<GameObject>
 		}
 	}
 
+	/** Типы объектов, хранящихся в регионе раздельно */
+	static final int TYPE_PLAYER = 0;
+	static final int TYPE_NPC = 1;
+	static final int TYPE_OTHER = 2;
+	static final int TYPES_COUNT = 3;
+
+	/** Размер клетки региона для поиска зон, регион делится на 16x16 клеток */
+	private static final int ZONE_CELL_SHIFT = Math.max(0, World.SHIFT_BY - 4);
+	private static final int ZONE_CELLS = 1 << (World.SHIFT_BY - ZONE_CELL_SHIFT);
+
+	private static final ObjectBucket[] EMPTY_BUCKET_ARRAY = new ObjectBucket[0];
+
+	/**
+	 * Objects of one type and reflection inside the region.
+	 * <p>
+	 * Objects are appended to the end of the array and removed by clearing their slot, so an object never moves while the
+	 * array is in use and readers can walk it without locking: each object is seen at most once, the ones present for the
+	 * whole walk are always seen, and empty slots are simply skipped. Cleared slots are reclaimed by copying the live
+	 * objects into a fresh array once the current one is full or mostly empty; readers still holding the old array keep a
+	 * consistent view of it, since it is never written again. Both adding and removing are amortized O(1), the slot of an
+	 * object is remembered in the object itself. An object may be in two regions at once (a player in observer mode), so the
+	 * remembered slot is only a hint: if it points elsewhere, the array is scanned. Writers are serialized by the region lock.
+	 */
+	private static final class ObjectArray
+	{
+		private static final int MIN_CAPACITY = 8;
+
+		private volatile GameObject[] _elements = GameObject.EMPTY_L2OBJECT_ARRAY;
+		/** First never used slot, written after the slot itself so that a reader that saw it also sees the slots below */
+		private volatile int _tail;
+		/** Number of live objects */
+		private int _size;
+
+		GameObject[] elements()
+		{
+			if (_tail == 0)
+			{
+				return GameObject.EMPTY_L2OBJECT_ARRAY;
+			}
+			return _elements;
+		}
+
+		int size()
+		{
+			return _size;
+		}
+
+		void add(GameObject obj)
+		{
+			GameObject[] elements = _elements;
+			int tail = _tail;
+			if (tail == elements.length)
+			{
+				elements = compact(Math.max(MIN_CAPACITY, _size * 2));
+				tail = _size;
+			}
+
+			elements[tail] = obj;
+			obj.setRegionSlot(tail);
+			_size++;
+			_tail = tail + 1;
+		}
+
+		boolean remove(GameObject obj)
+		{
+			GameObject[] elements = _elements;
+			int tail = _tail;
+			int slot = obj.getRegionSlot();
+			if (slot >= 0 && slot < tail && elements[slot] == obj)
+			{
+				obj.setRegionSlot(-1);
+			}
+			else
+			{
+				// The slot belongs to another region, e.g. the observer region of a player
+				slot = indexOf(elements, tail, obj);
+				if (slot < 0)
+				{
+					return false;
+				}
+			}
+
+			elements[slot] = null;
+			_size--;
+
+			if (_size == 0)
+			{
+				_elements = GameObject.EMPTY_L2OBJECT_ARRAY;
+				_tail = 0;
+			}
+			else if (elements.length > MIN_CAPACITY && _size < elements.length / 4)
+			{
+				compact(Math.max(MIN_CAPACITY, _size * 2));
+			}
+			return true;
+		}
+
+		private static int indexOf(GameObject[] elements, int tail, GameObject obj)
+		{
+			for (int i = 0; i < tail; i++)
+			{
+				if (elements[i] == obj)
+				{
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private GameObject[] compact(int capacity)
+		{
+			GameObject[] elements = _elements;
+			GameObject[] compacted = new GameObject[capacity];
+			int n = 0;
+			for (int i = 0, tail = _tail; i < tail; i++)
+			{
+				GameObject obj = elements[i];
+				if (obj != null)
+				{
+					obj.setRegionSlot(n);
+					compacted[n++] = obj;
+				}
+			}
+
+			// The new array is published first, a reader that sees the shorter tail sees the new array as well
+			_elements = compacted;
+			_tail = n;
+			return compacted;
+		}
+	}
+
+	/**
+	 * Objects of a single reflection inside the region, split by type so that queries for players or npcs
+	 * never scan the rest.
+	 */
+	private static final class ObjectBucket
+	{
+		final int reflectionId;
+		final ObjectArray[] objects = new ObjectArray[TYPES_COUNT];
+		/** Количество игроков и их питомцев, изменяется под блокировкой региона */
+		volatile int playablesCount;
+
+		ObjectBucket(int reflectionId)
+		{
+			this.reflectionId = reflectionId;
+			for (int i = 0; i < TYPES_COUNT; i++)
+			{
+				objects[i] = new ObjectArray();
+			}
+		}
+
+		boolean isEmpty()
+		{
+			for (ObjectArray typed : objects)
+			{
+				if (typed.size() > 0)
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
 	/** Координаты региона в мире */
 	private final int tileX, tileY, tileZ;
-	/** Все объекты в регионе */
-	private volatile GameObject[] _objects = GameObject.EMPTY_L2OBJECT_ARRAY;
+	/** Объекты основного мира */
+	private final ObjectBucket _defaultObjects = new ObjectBucket(ReflectionManager.DEFAULT.getId());
+	/** Объекты отражений, каждое отражение в своей корзине */
+	private volatile ObjectBucket[] _reflectionObjects = EMPTY_BUCKET_ARRAY;
 	/** Количество объектов в регионе */
 	private int _objectsCount = 0;
 	/** Зоны пересекающие этот регион */
 	private volatile Zone[] _zones = Zone.EMPTY_L2ZONE_ARRAY;
+	/** Зоны, пересекающие каждую клетку региона, null если зон нет */
+	private volatile Zone[][] _zoneCells;
 	/** Количество игроков в регионе */
 	private int _playersCount = 0;
 	/** Активен ли регион */
@@ -103,26 +272,30 @@ public final class WorldRegion implements Iterable<GameObject>
 		}
 
 		NpcInstance npc;
-		for (GameObject obj : this)
+		for (ObjectBucket bucket : getBuckets())
 		{
-			if (!obj.isNpc())
-			{
-				continue;
-			}
-			npc = (NpcInstance) obj;
-			if (npc.getAI().isActive() != isActive())
+			for (GameObject obj : bucket.objects[TYPE_NPC].elements())
 			{
-				if (isActive())
+				if (obj == null)
 				{
-					npc.getAI().startAITask();
-					npc.getAI().setIntention(CtrlIntention.AI_INTENTION_ACTIVE);
-					npc.startRandomAnimation();
+					continue;
 				}
-				else if (!npc.getAI().isGlobalAI())
+
+				npc = (NpcInstance) obj;
+				if (npc.getAI().isActive() != isActive())
 				{
-					npc.getAI().stopAITask();
-					npc.getAI().setIntention(CtrlIntention.AI_INTENTION_IDLE);
-					npc.stopRandomAnimation();
+					if (isActive())
+					{
+						npc.getAI().startAITask();
+						npc.getAI().setIntention(CtrlIntention.AI_INTENTION_ACTIVE);
+						npc.startRandomAnimation();
+					}
+					else if (!npc.getAI().isGlobalAI())
+					{
+						npc.getAI().stopAITask();
+						npc.getAI().setIntention(CtrlIntention.AI_INTENTION_IDLE);
+						npc.stopRandomAnimation();
+					}
 				}
 			}
 		}
@@ -141,28 +314,42 @@ public final class WorldRegion implements Iterable<GameObject>
 			player = (Player) object;
 		}
 
+		ObjectBucket bucket = getBucket(object.getReflectionId());
+		if (bucket == null)
+		{
+			return;
+		}
+
 		int oid = object.getObjectId();
-		int rid = object.getReflectionId();
 
 		Player p;
 
-		for (GameObject obj : this)
+		// Показать обьект всем игрокам в регионе
+		for (GameObject obj : bucket.objects[TYPE_PLAYER].elements())
 		{
-			if (obj.getObjectId() == oid || obj.getReflectionId() != rid)
+			if (obj == null || obj.getObjectId() == oid)
 			{
 				continue;
 			}
-			// Если object - игрок, показать ему все видимые обьекты в регионе
-			if (player != null)
-			{
-				player.sendPacket(player.addVisibleObject(obj, null));
-			}
 
-			// Показать обьект всем игрокам в регионе
-			if (obj.isPlayer())
+			p = (Player) obj;
+			p.sendPacket(p.addVisibleObject(object, dropper));
+		}
+
+		// Если object - игрок, показать ему все видимые обьекты в регионе
+		if (player != null)
+		{
+			for (ObjectArray typed : bucket.objects)
 			{
-				p = (Player) obj;
-				p.sendPacket(p.addVisibleObject(object, dropper));
+				for (GameObject obj : typed.elements())
+				{
+					if (obj == null || obj.getObjectId() == oid)
+					{
+						continue;
+					}
+
+					player.sendPacket(player.addVisibleObject(obj, null));
+				}
 			}
 		}
 	}
@@ -180,30 +367,43 @@ public final class WorldRegion implements Iterable<GameObject>
 			player = (Player) object;
 		}
 
+		ObjectBucket bucket = getBucket(object.getReflectionId());
+		if (bucket == null)
+		{
+			return;
+		}
+
 		int oid = object.getObjectId();
-		Reflection rid = object.getReflection();
 
 		Player p;
 		List<L2GameServerPacket> d = null;
 
-		for (GameObject obj : this)
+		// Убрать обьект у всех игроков в регионе
+		for (GameObject obj : bucket.objects[TYPE_PLAYER].elements())
 		{
-			if (obj.getObjectId() == oid || obj.getReflection() != rid)
+			if (obj == null || obj.getObjectId() == oid)
 			{
 				continue;
 			}
 
-			// Если object - игрок, убрать у него все видимые обьекты в регионе
-			if (player != null)
-			{
-				player.sendPacket(player.removeVisibleObject(obj, null));
-			}
+			p = (Player) obj;
+			p.sendPacket(p.removeVisibleObject(object, d == null ? d = object.deletePacketList() : d));
+		}
 
-			// Убрать обьект у всех игроков в регионе
-			if (obj.isPlayer())
+		// Если object - игрок, убрать у него все видимые обьекты в регионе
+		if (player != null)
+		{
+			for (ObjectArray typed : bucket.objects)
 			{
-				p = (Player) obj;
-				p.sendPacket(p.removeVisibleObject(object, d == null ? d = object.deletePacketList() : d));
+				for (GameObject obj : typed.elements())
+				{
+					if (obj == null || obj.getObjectId() == oid)
+					{
+						continue;
+					}
+
+					player.sendPacket(player.removeVisibleObject(obj, null));
+				}
 			}
 		}
 	}
@@ -218,14 +418,19 @@ public final class WorldRegion implements Iterable<GameObject>
 		lock.lock();
 		try
 		{
-			GameObject[] objects = _objects;
-
-			GameObject[] resizedObjects = new GameObject[_objectsCount + 1];
-			System.arraycopy(objects, 0, resizedObjects, 0, _objectsCount);
-			objects = resizedObjects;
-			objects[_objectsCount++] = obj;
-
-			_objects = resizedObjects;
+			int rid = obj.getReflectionId();
+			ObjectBucket bucket = getBucket(rid);
+			if (bucket == null)
+			{
+				bucket = new ObjectBucket(rid);
+				_reflectionObjects = ArrayUtils.add(_reflectionObjects, bucket);
+			}
+			bucket.objects[typeOf(obj)].add(obj);
+			if (obj.isPlayable())
+			{
+				bucket.playablesCount++;
+			}
+			_objectsCount++;
 
 			if (obj.isPlayer())
 			{
@@ -256,31 +461,38 @@ public final class WorldRegion implements Iterable<GameObject>
 		lock.lock();
 		try
 		{
-			GameObject[] objects = _objects;
-
-			int index = -1;
-
-			for (int i = 0; i < _objectsCount; i++)
+			int type = typeOf(obj);
+			ObjectBucket bucket = getBucket(obj.getReflectionId());
+			if (bucket == null || !bucket.objects[type].remove(obj))
 			{
-				if (objects[i] == obj)
+				// The reflection changed while the object was in the region, look it up in the other buckets
+				bucket = null;
+				for (ObjectBucket b : getBuckets())
 				{
-					index = i;
-					break;
+					if (b.objects[type].remove(obj))
+					{
+						bucket = b;
+						break;
+					}
 				}
 			}
 
-			if (index == -1) // Ошибочная ситуация
+			if (bucket == null) // Ошибочная ситуация
 			{
 				return;
 			}
 
-			_objectsCount--;
+			if (obj.isPlayable())
+			{
+				bucket.playablesCount--;
+			}
 
-			GameObject[] resizedObjects = new GameObject[_objectsCount];
-			objects[index] = objects[_objectsCount];
-			System.arraycopy(objects, 0, resizedObjects, 0, _objectsCount);
+			if (bucket != _defaultObjects && bucket.isEmpty())
+			{
+				_reflectionObjects = ArrayUtils.remove(_reflectionObjects, bucket);
+			}
 
-			_objects = resizedObjects;
+			_objectsCount--;
 
 			if (obj.isPlayer())
 			{
@@ -301,6 +513,60 @@ public final class WorldRegion implements Iterable<GameObject>
 		}
 	}
 
+	private static int typeOf(GameObject obj)
+	{
+		if (obj.isPlayer())
+		{
+			return TYPE_PLAYER;
+		}
+		if (obj.isNpc())
+		{
+			return TYPE_NPC;
+		}
+		return TYPE_OTHER;
+	}
+
+	private ObjectBucket getBucket(int reflectionId)
+	{
+		if (reflectionId == _defaultObjects.reflectionId)
+		{
+			return _defaultObjects;
+		}
+		for (ObjectBucket bucket : _reflectionObjects)
+		{
+			if (bucket.reflectionId == reflectionId)
+			{
+				return bucket;
+			}
+		}
+		return null;
+	}
+
+	private ObjectBucket[] getBuckets()
+	{
+		return ArrayUtils.add(_reflectionObjects, _defaultObjects);
+	}
+
+	/**
+	 * @param reflectionId идентификатор отражения
+	 * @param type тип объектов, TYPE_*
+	 * @return объекты отражения в регионе, может содержать пустые ячейки, или null если в отражении нет объектов
+	 */
+	GameObject[] getObjects(int reflectionId, int type)
+	{
+		ObjectBucket bucket = getBucket(reflectionId);
+		return bucket == null ? null : bucket.objects[type].elements();
+	}
+
+	/**
+	 * @return true, если в отражении есть игроки или их питомцы. Читается без блокировки.
+	 */
+	boolean hasPlayables(int reflectionId)
+	{
+		ObjectBucket bucket = getBucket(reflectionId);
+		return bucket != null && bucket.playablesCount > 0;
+	}
+
 	public int getObjectsSize()
 	{
 		return _objectsCount;
@@ -327,6 +593,7 @@ public final class WorldRegion implements Iterable<GameObject>
 		try
 		{
 			_zones = ArrayUtils.add(_zones, zone);
+			_zoneCells = buildZoneCells(_zones);
 		}
 		finally
 		{
@@ -340,6 +607,7 @@ public final class WorldRegion implements Iterable<GameObject>
 		try
 		{
 			_zones = ArrayUtils.remove(_zones, zone);
+			_zoneCells = buildZoneCells(_zones);
 		}
 		finally
 		{
@@ -353,6 +621,83 @@ public final class WorldRegion implements Iterable<GameObject>
 		return _zones;
 	}
 
+	/**
+	 * @return зоны, границы которых пересекают клетку региона с точкой x, y. Для точки вне региона возвращает все зоны региона.
+	 */
+	Zone[] getZones(int x, int y)
+	{
+		Zone[][] cells = _zoneCells;
+		if (cells == null)
+		{
+			return _zones;
+		}
+
+		int cellX = (x - getMinX()) >> ZONE_CELL_SHIFT;
+		int cellY = (y - getMinY()) >> ZONE_CELL_SHIFT;
+		if (cellX < 0 || cellX >= ZONE_CELLS || cellY < 0 || cellY >= ZONE_CELLS)
+		{
+			return _zones;
+		}
+		return cells[cellY * ZONE_CELLS + cellX];
+	}
+
+	private Zone[][] buildZoneCells(Zone[] zones)
+	{
+		if (zones.length == 0)
+		{
+			return null;
+		}
+
+		Zone[][] cells = new Zone[ZONE_CELLS * ZONE_CELLS][];
+		Zone[] cellZones = new Zone[zones.length];
+		for (int cellY = 0; cellY < ZONE_CELLS; cellY++)
+		{
+			for (int cellX = 0; cellX < ZONE_CELLS; cellX++)
+			{
+				int x0 = getMinX() + (cellX << ZONE_CELL_SHIFT);
+				int y0 = getMinY() + (cellY << ZONE_CELL_SHIFT);
+				int x1 = x0 + (1 << ZONE_CELL_SHIFT) - 1;
+				int y1 = y0 + (1 << ZONE_CELL_SHIFT) - 1;
+
+				int count = 0;
+				for (Zone zone : zones)
+				{
+					Territory territory = zone.getTerritory();
+					if (territory.getXmax() >= x0 && territory.getXmin() <= x1 && territory.getYmax() >= y0 && territory.getYmin() <= y1)
+					{
+						cellZones[count++] = zone;
+					}
+				}
+
+				if (count == zones.length)
+				{
+					cells[cellY * ZONE_CELLS + cellX] = zones;
+				}
+				else if (count == 0)
+				{
+					cells[cellY * ZONE_CELLS + cellX] = Zone.EMPTY_L2ZONE_ARRAY;
+				}
+				else
+				{
+					Zone[] cell = new Zone[count];
+					System.arraycopy(cellZones, 0, cell, 0, count);
+					cells[cellY * ZONE_CELLS + cellX] = cell;
+				}
+			}
+		}
+		return cells;
+	}
+
+	private int getMinX()
+	{
+		return (tileX - World.OFFSET_X) << World.SHIFT_BY;
+	}
+
+	private int getMinY()
+	{
+		return (tileY - World.OFFSET_Y) << World.SHIFT_BY;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -362,33 +707,57 @@ public final class WorldRegion implements Iterable<GameObject>
 	@Override
 	public Iterator<GameObject> iterator()
 	{
-		return new InternalIterator(_objects);
+		ObjectBucket[] reflections = _reflectionObjects;
+		GameObject[][] parts = new GameObject[(reflections.length + 1) * TYPES_COUNT][];
+		for (int t = 0; t < TYPES_COUNT; t++)
+		{
+			parts[t] = _defaultObjects.objects[t].elements();
+			for (int i = 0; i < reflections.length; i++)
+			{
+				parts[(i + 1) * TYPES_COUNT + t] = reflections[i].objects[t].elements();
+			}
+		}
+		return new InternalIterator(parts);
 	}
 
 	private class InternalIterator implements Iterator<GameObject>
 	{
-		final GameObject[] objects;
+		final GameObject[][] parts;
+		int part = 0;
 		int cursor = 0;
+		GameObject next;
 
-		public InternalIterator(GameObject[] objects)
+		public InternalIterator(GameObject[][] parts)
 		{
-			this.objects = objects;
+			this.parts = parts;
 		}
 
 		@Override
 		public boolean hasNext()
 		{
-			if (cursor < objects.length)
+			while (next == null && part < parts.length)
 			{
-				return objects[cursor] != null;
+				if (cursor < parts[part].length)
+				{
+					next = parts[part][cursor++];
+					continue;
+				}
+				part++;
+				cursor = 0;
 			}
-			return false;
+			return next != null;
 		}
 
 		@Override
 		public GameObject next()
 		{
-			return objects[cursor++];
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			GameObject obj = next;
+			next = null;
+			return obj;
 		}
 
 		@Override
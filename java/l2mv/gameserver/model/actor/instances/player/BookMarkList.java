@@ -5,6 +5,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -12,6 +13,7 @@ import org.slf4j.LoggerFactory;
 
 import l2mv.commons.dbutils.DbUtils;
 import l2mv.gameserver.cache.Msg;
+import l2mv.gameserver.dao.CharacterStoreQueue;
 import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.instancemanager.ReflectionManager;
 import l2mv.gameserver.model.Player;
@@ -38,6 +40,8 @@ public class BookMarkList
 	private final Player owner;
 	private List<BookMark> elementData;
 	private int capacity;
+	/** Закладки в том виде, в котором они последний раз отправлены на запись */
+	private Object[][] _storedRows;
 
 	public BookMarkList(Player owner, int acapacity)
 	{
@@ -162,41 +166,49 @@ public class BookMarkList
 		return true;
 	}
 
-	public void store()
+	/**
+	 * Пишет закладки заново, только если они изменились с прошлого сохранения или сохранение полное.
+	 */
+	public void store(CharacterStoreQueue.Snapshot snapshot, boolean full)
 	{
-		Connection con = null;
-		PreparedStatement statement = null;
-		try
+		Object[][] rows = getRows();
+		synchronized (this)
 		{
-			con = DatabaseFactory.getInstance().getConnection();
-			statement = con.prepareStatement("DELETE FROM `character_bookmarks` WHERE char_Id=?");
-			statement.setInt(1, owner.getObjectId());
-			statement.execute();
-
-			DbUtils.close(statement);
-			statement = con.prepareStatement("INSERT INTO `character_bookmarks` VALUES(?,?,?,?,?,?,?,?);");
-			int slotId = 0;
-			for (BookMark bookmark : elementData)
+			if (!full && Arrays.deepEquals(rows, _storedRows))
 			{
-				statement.setInt(1, owner.getObjectId());
-				statement.setInt(2, ++slotId);
-				statement.setString(3, bookmark.getName());
-				statement.setString(4, bookmark.getAcronym());
-				statement.setInt(5, bookmark.getIcon());
-				statement.setInt(6, bookmark.x);
-				statement.setInt(7, bookmark.y);
-				statement.setInt(8, bookmark.z);
-				statement.execute();
+				snapshot.setReduced();
+				return;
 			}
+			_storedRows = rows;
 		}
-		catch (SQLException e)
+
+		snapshot.add("DELETE FROM `character_bookmarks` WHERE char_Id=?", owner.getObjectId());
+		for (Object[] row : rows)
 		{
-			_log.error("Error while Inserting BookMarkList! ", e);
+			snapshot.add("INSERT INTO `character_bookmarks` VALUES(?,?,?,?,?,?,?,?);", row);
 		}
-		finally
+	}
+
+	private Object[][] getRows()
+	{
+		BookMark[] bookmarks = toArray();
+		Object[][] rows = new Object[bookmarks.length][];
+		for (int i = 0; i < bookmarks.length; i++)
 		{
-			DbUtils.closeQuietly(con, statement);
+			BookMark bookmark = bookmarks[i];
+			rows[i] = new Object[]
+			{
+				owner.getObjectId(),
+				i + 1,
+				bookmark.getName(),
+				bookmark.getAcronym(),
+				bookmark.getIcon(),
+				bookmark.x,
+				bookmark.y,
+				bookmark.z
+			};
 		}
+		return rows;
 	}
 
 	public void restore(Connection con)
@@ -214,6 +226,7 @@ public class BookMarkList
 			{
 				add(new BookMark(rs.getInt("x"), rs.getInt("y"), rs.getInt("z"), rs.getInt("icon"), rs.getString("name"), rs.getString("acronym")));
 			}
+			_storedRows = getRows();
 		}
 		catch (SQLException e)
 		{
@@ -26,9 +26,9 @@ import l2mv.commons.util.Rnd;
 import l2mv.gameserver.ThreadPoolManager;
 import l2mv.gameserver.data.xml.holder.NpcHolder;
 import l2mv.gameserver.database.mysql;
-import l2mv.gameserver.geodata.GeoEngine;
 import l2mv.gameserver.idfactory.IdFactory;
 import l2mv.gameserver.instancemanager.ReflectionManager;
+import l2mv.gameserver.instancemanager.ReflectionPool;
 import l2mv.gameserver.listener.actor.door.impl.MasterOnOpenCloseListenerImpl;
 import l2mv.gameserver.listener.reflection.OnReflectionCollapseListener;
 import l2mv.gameserver.listener.zone.impl.AirshipControllerZoneListener;
@@ -100,6 +100,10 @@ public class Reflection
 
 	private int _collapseIfEmptyTime;
 
+	/** Отражение подготовлено {@link #prepare(InstantZone)} */
+	private boolean _prepared;
+	/** Подготовлено заранее и еще не запущено, пустое отражение не коллапсирует */
+	private boolean _warm;
 	private boolean _isCollapseStarted;
 	private Future<?> _collapseTask;
 	private Future<?> _collapse1minTask;
@@ -348,6 +352,8 @@ public class Reflection
 			lock.unlock();
 		}
 		listeners.onCollapse();
+		final boolean recycle = ReflectionPool.getInstance().canRecycle(this);
+		boolean clean = false;
 		try
 		{
 			stopCollapseTimer();
@@ -369,6 +375,10 @@ public class Reflection
 
 			for (DoorInstance d : _doors.values())
 			{
+				if (recycle)
+				{
+					d.setGeoOpen(true);
+				}
 				d.deleteMe();
 			}
 			_doors.clear();
@@ -451,13 +461,14 @@ public class Reflection
 			_doors.clear();
 
 			_playerCount = 0;
+			clean = true;
 
 			onCollapse();
 		}
 		finally
 		{
 			ReflectionManager.getInstance().remove(this);
-			GeoEngine.FreeGeoIndex(getGeoIndex());
+			ReflectionPool.getInstance().freeGeoIndex(this, clean);
 		}
 	}
 
@@ -519,7 +530,7 @@ public class Reflection
 			lock.unlock();
 		}
 
-		if ((_playerCount <= 0) && !isDefault() && (_hiddencollapseTask == null))
+		if ((_playerCount <= 0) && !isDefault() && !_warm && (_hiddencollapseTask == null))
 		{
 			if (_collapseIfEmptyTime <= 0)
 			{
@@ -991,14 +1002,38 @@ public class Reflection
 		return new Reflection(id);
 	}
 
+	/**
+	 * Запускает отражение инстанс-зоны: подготавливает его, если оно не взято готовым из {@link ReflectionPool}, запускает таймер
+	 * коллапса и регистрирует отражение.
+	 */
 	public void init(InstantZone instantZone)
 	{
+		if (!_prepared)
+		{
+			prepare(instantZone);
+		}
+		_warm = false;
+
+		startCollapseTimer(instantZone.getTimelimit() * 60 * 1000L);
+
+		onCreate();
+	}
+
+	/**
+	 * Создает слой геодаты, спауны, двери и зоны инстанс-зоны. Подготовленное отражение еще не зарегистрировано и не коллапсирует
+	 * ни по времени, ни без игроков.
+	 */
+	public void prepare(InstantZone instantZone)
+	{
+		_prepared = true;
+		_warm = true;
+
 		setName(instantZone.getName());
 		setInstancedZone(instantZone);
 
 		if (instantZone.getMapX() >= 0)
 		{
-			int geoIndex = GeoEngine.NextGeoIndex(instantZone.getMapX(), instantZone.getMapY(), getId());
+			int geoIndex = ReflectionPool.getInstance().nextGeoIndex(instantZone.getMapX(), instantZone.getMapY(), getId());
 			setGeoIndex(geoIndex);
 		}
 
@@ -1037,9 +1072,6 @@ public class Reflection
 
 		init0(instantZone.getDoors(), instantZone.getZones());
 		setCollapseIfEmptyTime(instantZone.getCollapseIfEmpty());
-		startCollapseTimer(instantZone.getTimelimit() * 60 * 1000L);
-
-		onCreate();
 	}
 
 	public void spawnByGroup(String name)
@@ -17,6 +17,8 @@ import org.slf4j.LoggerFactory;
 
 import l2mv.commons.dbutils.DbUtils;
 import l2mv.gameserver.dao.CharacterDAO;
+import l2mv.gameserver.dao.CharacterStoreQueue;
+import l2mv.gameserver.dao.StoredRow;
 import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.model.Player;
 import l2mv.gameserver.model.World;
@@ -99,6 +101,8 @@ public class PlayerCounters
 	// Here comes the code...
 	private Player _activeChar = null;
 	private int _playerObjId = 0;
+	/** Последние сохраненные значения строки character_counters */
+	private final StoredRow _storedRow = new StoredRow(getTable());
 
 	public PlayerCounters(Player activeChar)
 	{
@@ -135,48 +139,45 @@ public class PlayerCounters
 		return 0;
 	}
 
-	public void save()
+	public void save(CharacterStoreQueue.Snapshot snapshot, boolean full)
 	{
 		if (_activeChar == null)
 		{
 			return;
 		}
 
-		// Because im SQL noob
-		Connection con = null;
-		Connection con2 = null;
-		PreparedStatement statement2 = null;
-		PreparedStatement statement3 = null;
-		ResultSet rs = null;
-		try
+		List<Field> fields = getSavedFields();
+		Object[] values = new Object[fields.size()];
+		for (int i = 0; i < fields.size(); i++)
 		{
-			con2 = DatabaseFactory.getInstance().getConnection();
-			statement2 = con2.prepareStatement("SELECT char_id FROM character_counters WHERE char_id = " + _playerObjId + ";");
-			rs = statement2.executeQuery();
-			if (!rs.next())
+			try
 			{
-				statement3 = con2.prepareStatement("INSERT INTO character_counters (char_id) values (?);");
-				statement3.setInt(1, _playerObjId);
-				statement3.execute();
+				values[i] = fields.get(i).get(this);
+			}
+			catch (IllegalArgumentException | IllegalAccessException e)
+			{
+				_log.error("Error while saving counter " + fields.get(i).getName() + " of " + _activeChar, e);
+				return;
 			}
 		}
-		catch (Exception e)
-		{
-			e.printStackTrace();
-		}
-		finally
+
+		// The row is created by the first save of the character only
+		if (full || !_storedRow.isStored())
 		{
-			DbUtils.closeQuietly(con2, statement2, rs);
+			snapshot.add("INSERT IGNORE INTO character_counters (char_id) VALUES (?)", _playerObjId);
 		}
+		_storedRow.store(snapshot, full, values, _playerObjId);
+	}
 
-		PreparedStatement statement = null;
-		try
+	private static List<Field> _savedFields;
+	private static StoredRow.Table _table;
+
+	private static synchronized List<Field> getSavedFields()
+	{
+		if (_savedFields == null)
 		{
-			con = DatabaseFactory.getInstance().getConnection();
-			StringBuilder sb = new StringBuilder();
-			sb.append("UPDATE character_counters SET ");
-			boolean firstPassed = false;
-			for (Field field : getClass().getFields())
+			List<Field> fields = new ArrayList<Field>();
+			for (Field field : PlayerCounters.class.getFields())
 			{
 				switch (field.getName())
 				// Fields that we wont save.
@@ -186,37 +187,24 @@ public class PlayerCounters
 				case "DUMMY_COUNTER":
 					continue;
 				}
+				fields.add(field);
+			}
 
-				if (firstPassed)
-				{
-					sb.append(",");
-				}
-				sb.append(field.getName());
-				sb.append("=");
-
-				try
-				{
-					sb.append(field.getInt(this));
-				}
-				catch (IllegalArgumentException | IllegalAccessException | SecurityException e)
-				{
-					sb.append(field.getLong(this));
-				}
-
-				firstPassed = true;
+			String[] columns = new String[fields.size()];
+			for (int i = 0; i < columns.length; i++)
+			{
+				columns[i] = fields.get(i).getName();
 			}
-			sb.append(" WHERE char_id=" + _playerObjId + ";");
-			statement = con.prepareStatement(sb.toString());
-			statement.execute();
-		}
-		catch (Exception e)
-		{
-			e.printStackTrace();
-		}
-		finally
-		{
-			DbUtils.closeQuietly(con, statement);
+			_table = new StoredRow.Table("character_counters", "char_id=?", columns);
+			_savedFields = fields;
 		}
+		return _savedFields;
+	}
+
+	private static synchronized StoredRow.Table getTable()
+	{
+		getSavedFields();
+		return _table;
 	}
 
 	public void load()
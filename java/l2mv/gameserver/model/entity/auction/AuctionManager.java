@@ -157,6 +157,9 @@ public class AuctionManager
 	{
 		int objId = -1;
 
+		// The adena row is changed directly, queued writes of it must not overwrite the change
+		ItemsDAO.getInstance().flush();
+
 		try (Connection con = DatabaseFactory.getInstance().getConnection(); PreparedStatement statement = con.prepareStatement("SELECT object_id FROM items WHERE item_id=57 AND owner_id=" + sellerObjectId + " AND loc='INVENTORY'"); ResultSet rset = statement.executeQuery())
 		{
 			if (rset.next())
@@ -33,6 +33,7 @@ import l2mv.gameserver.ThreadPoolManager;
 import l2mv.gameserver.data.xml.holder.DoorHolder;
 import l2mv.gameserver.data.xml.holder.InstantZoneHolder;
 import l2mv.gameserver.instancemanager.ReflectionManager;
+import l2mv.gameserver.instancemanager.ReflectionPool;
 import l2mv.gameserver.instancemanager.SpawnManager;
 import l2mv.gameserver.listener.actor.player.OnPlayerExitListener;
 import l2mv.gameserver.listener.zone.OnZoneEnterLeaveListener;
@@ -2404,7 +2405,7 @@ public abstract class AbstractFightClub extends GlobalEvent
 	{
 		InstantZone iz = InstantZoneHolder.getInstance().getInstantZone(INSTANT_ZONE_ID);
 
-		_reflection = new Reflection();
+		_reflection = ReflectionPool.getInstance().acquire(iz);
 		_reflection.init(iz);
 		_reflection.init(doors, zones);
 
@@ -15,6 +15,7 @@ import l2mv.gameserver.Config;
 import l2mv.gameserver.cache.Msg;
 import l2mv.gameserver.data.xml.holder.InstantZoneHolder;
 import l2mv.gameserver.instancemanager.OlympiadHistoryManager;
+import l2mv.gameserver.instancemanager.ReflectionPool;
 import l2mv.gameserver.model.GameObjectsStorage;
 import l2mv.gameserver.model.Party;
 import l2mv.gameserver.model.Player;
@@ -73,8 +74,8 @@ public class OlympiadGame
 	{
 		_type = type;
 		_id = id;
-		_reflection = new Reflection();
 		InstantZone instantZone = InstantZoneHolder.getInstance().getInstantZone(Rnd.get(STADIUMS_INSTANCE_ID));
+		_reflection = ReflectionPool.getInstance().acquire(instantZone);
 		_reflection.init(instantZone);
 
 		_team1 = new OlympiadTeam(this, 1);
@@ -25,6 +25,7 @@ import l2mv.gameserver.data.xml.holder.InstantZoneHolder;
 import l2mv.gameserver.data.xml.holder.ItemHolder;
 import l2mv.gameserver.handler.bypass.BypassHandler;
 import l2mv.gameserver.instancemanager.ReflectionManager;
+import l2mv.gameserver.instancemanager.ReflectionPool;
 import l2mv.gameserver.listener.game.OnConfigsReloaded;
 import l2mv.gameserver.model.Creature;
 import l2mv.gameserver.model.GameObjectsStorage;
@@ -414,7 +415,7 @@ public final class ActiveBattleManager
 		final InstantZone iz = InstantZoneHolder.getInstance().getInstantZone(INSTANT_ZONE_ID);
 		final Map<String, ZoneTemplate> zones = new HashMap<String, ZoneTemplate>(0);
 		zones.put(map.getZoneTemplate().getName(), map.getZoneTemplate());
-		final Reflection reflection = new Reflection();
+		final Reflection reflection = ReflectionPool.getInstance().acquire(iz);
 		reflection.init(iz);
 		reflection.init(new HashIntObjectMap<>(0), zones);
 		if (Debug.TOURNAMENT.isActive())
@@ -983,5 +983,6 @@ public class PetInstance extends Summon
 	public void changeTemplate(NpcTemplate template)
 	{
 		_template = template;
+		invalidateStatsCache();
 	}
 }
\ No newline at end of file
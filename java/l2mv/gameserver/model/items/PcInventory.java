@@ -9,6 +9,7 @@ import l2mv.commons.dao.JdbcEntityState;
 import l2mv.commons.threading.RunnableImpl;
 import l2mv.gameserver.data.xml.holder.DressArmorHolder;
 import l2mv.gameserver.instancemanager.CursedWeaponsManager;
+import l2mv.gameserver.instancemanager.LeaderboardManager;
 import l2mv.gameserver.model.DressArmorData;
 import l2mv.gameserver.model.Player;
 import l2mv.gameserver.model.Zone;
@@ -505,6 +506,16 @@ public class PcInventory extends Inventory
 		{
 			CursedWeaponsManager.getInstance().checkPlayer(getActor(), item);
 		}
+
+		onChangeAdena(item);
+	}
+
+	@Override
+	protected void onModifyItem(ItemInstance item)
+	{
+		super.onModifyItem(item);
+
+		onChangeAdena(item);
 	}
 
 	@Override
@@ -512,6 +523,8 @@ public class PcInventory extends Inventory
 	{
 		super.onRemoveItem(item);
 
+		onChangeAdena(item);
+
 		getActor().removeItemFromShortCut(item.getObjectId());
 
 		if (item.getItemType() == EtcItemType.RUNE)
@@ -525,6 +538,14 @@ public class PcInventory extends Inventory
 		}
 	}
 
+	private void onChangeAdena(ItemInstance item)
+	{
+		if (item.getItemId() == ItemTemplate.ITEM_ID_ADENA)
+		{
+			LeaderboardManager.getInstance().update(getActor(), LeaderboardManager.Metric.ADENA);
+		}
+	}
+
 	@Override
 	protected void onEquip(int slot, ItemInstance item)
 	{
@@ -21,9 +21,9 @@ import l2mv.commons.threading.RunnableImpl;
 import l2mv.commons.util.TroveUtils;
 import l2mv.gameserver.Config;
 import l2mv.gameserver.ThreadPoolManager;
+import l2mv.gameserver.dao.QuestStoreQueue;
 import l2mv.gameserver.data.xml.holder.ItemHolder;
 import l2mv.gameserver.data.xml.holder.NpcHolder;
-import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.instancemanager.QuestManager;
 import l2mv.gameserver.instancemanager.ReflectionManager;
 import l2mv.gameserver.model.Creature;
@@ -137,18 +137,7 @@ public class Quest
 			return;
 		}
 
-		try (Connection con = DatabaseFactory.getInstance().getConnection(); PreparedStatement statement = con.prepareStatement("REPLACE INTO character_quests (char_id,name,var,value) VALUES (?,?,?,?)"))
-		{
-			statement.setInt(1, qs.getPlayer().getObjectId());
-			statement.setString(2, qs.getQuest().getName());
-			statement.setString(3, var);
-			statement.setString(4, value);
-			statement.executeUpdate();
-		}
-		catch (SQLException e)
-		{
-			_log.error("Could not insert char quest:", e);
-		}
+		QuestStoreQueue.getInstance().set(player.getObjectId(), qs.getQuest().getName(), var, value);
 	}
 
 	/**
@@ -157,16 +146,7 @@ public class Quest
 	 */
 	public static void deleteQuestInDb(QuestState qs)
 	{
-		try (Connection con = DatabaseFactory.getInstance().getConnection(); PreparedStatement statement = con.prepareStatement("DELETE FROM character_quests WHERE char_id=? AND name=?"))
-		{
-			statement.setInt(1, qs.getPlayer().getObjectId());
-			statement.setString(2, qs.getQuest().getName());
-			statement.executeUpdate();
-		}
-		catch (SQLException e)
-		{
-			_log.error("could not delete char quest", e);
-		}
+		QuestStoreQueue.getInstance().delete(qs.getPlayer().getObjectId(), qs.getQuest().getName());
 	}
 
 	/**
@@ -176,17 +156,7 @@ public class Quest
 	 */
 	public static void deleteQuestVarInDb(QuestState qs, String var)
 	{
-		try (Connection con = DatabaseFactory.getInstance().getConnection(); PreparedStatement statement = con.prepareStatement("DELETE FROM character_quests WHERE char_id=? AND name=? AND var=?"))
-		{
-			statement.setInt(1, qs.getPlayer().getObjectId());
-			statement.setString(2, qs.getQuest().getName());
-			statement.setString(3, var);
-			statement.executeUpdate();
-		}
-		catch (SQLException e)
-		{
-			_log.error("Could not delete char quest", e);
-		}
+		QuestStoreQueue.getInstance().delete(qs.getPlayer().getObjectId(), qs.getQuest().getName(), var);
 	}
 
 	/**
@@ -197,6 +167,9 @@ public class Quest
 	 */
 	public static void restoreQuestStates(Player player, Connection con)
 	{
+		// Отложенные записи квестов должны попасть в базу до чтения
+		QuestStoreQueue.getInstance().flush(player.getObjectId());
+
 		try (PreparedStatement invalidQuestData = con.prepareStatement("DELETE FROM character_quests WHERE char_id=? and name=?"); PreparedStatement statement = con.prepareStatement("SELECT name,value FROM character_quests WHERE char_id=? AND var=?"))
 		{
 			statement.setInt(1, player.getObjectId());
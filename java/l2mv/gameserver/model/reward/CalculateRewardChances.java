@@ -2,13 +2,13 @@ package l2mv.gameserver.model.reward;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 
-import l2mv.commons.util.Rnd;
 import l2mv.gameserver.Config;
 import l2mv.gameserver.data.xml.holder.NpcHolder;
 import l2mv.gameserver.instancemanager.SpawnManager;
@@ -20,13 +20,12 @@ import l2mv.gameserver.templates.npc.NpcTemplate;
 
 /**
  * Created by Michał on 04.12.13.
+ * <p>
+ * Поиск идет по обратному индексу наград {@link NpcHolder#getRewardSources(int)}, шанс считается по формуле бросков
+ * {@link RewardGroup#rollItems(double, double, double)} и запоминается для каждого итогового рейта.
  */
 public class CalculateRewardChances
 {
-	public static final double CORRECT_CHANCE_TRIES = 10000.0;
-	private static final Map<Integer, Integer[]> droplistsCountCache = new HashMap<>();
-	private static final Map<String, String> correctedChances = new HashMap<>();
-
 	public static List<NpcTemplate> getNpcsContainingString(CharSequence name)
 	{
 		List<NpcTemplate> templates = new ArrayList<>();
@@ -47,61 +46,15 @@ public class CalculateRewardChances
 
 	public static int getDroplistsCountByItemId(int itemId, boolean drop)
 	{
-		if (droplistsCountCache.containsKey(itemId))
+		int count = 0;
+		for (RewardSource source : NpcHolder.getInstance().getRewardSources(itemId))
 		{
-			if (drop)
-			{
-				return droplistsCountCache.get(itemId)[0].intValue();
-			}
-			else
+			if (source.isSpoil() != drop && templateExists(source.getTemplate()))
 			{
-				return droplistsCountCache.get(itemId)[1].intValue();
+				count++;
 			}
 		}
-
-		int dropCount = 0;
-		int spoilCount = 0;
-		for (NpcTemplate template : NpcHolder.getInstance().getAll())
-		{
-			if (templateExists(template))
-			{
-				for (Map.Entry<RewardType, RewardList> rewardEntry : template.getRewards().entrySet())
-				{
-					for (RewardGroup group : rewardEntry.getValue())
-					{
-						for (RewardData data : group.getItems())
-						{
-							if (data.getItem().getItemId() == itemId)
-							{
-								if (rewardEntry.getKey() == RewardType.SWEEP)
-								{
-									spoilCount++;
-								}
-								else
-								{
-									dropCount++;
-								}
-							}
-						}
-					}
-				}
-			}
-		}
-
-		droplistsCountCache.put(itemId, new Integer[]
-		{
-			dropCount,
-			spoilCount
-		});
-
-		if (drop)
-		{
-			return dropCount;
-		}
-		else
-		{
-			return spoilCount;
-		}
+		return count;
 	}
 
 	private static boolean templateExists(NpcTemplate template)
@@ -115,33 +68,27 @@ public class CalculateRewardChances
 
 	public static boolean isItemDroppable(int itemId)
 	{
-		if (!droplistsCountCache.containsKey(itemId))
+		for (RewardSource source : NpcHolder.getInstance().getRewardSources(itemId))
 		{
-			getDroplistsCountByItemId(itemId, true);
+			if (templateExists(source.getTemplate()))
+			{
+				return true;
+			}
 		}
-
-		return droplistsCountCache.get(itemId)[0].intValue() > 0 || droplistsCountCache.get(itemId)[1].intValue() > 0;
+		return false;
 	}
 
 	public static List<ItemTemplate> getDroppableItems()
 	{
 		List<ItemTemplate> items = new ArrayList<>();
-		for (NpcTemplate template : NpcHolder.getInstance().getAll())
+		for (int itemId : NpcHolder.getInstance().getRewardItemIds())
 		{
-			if (templateExists(template))
+			for (RewardSource source : NpcHolder.getInstance().getRewardSources(itemId))
 			{
-				for (Map.Entry<RewardType, RewardList> rewardEntry : template.getRewards().entrySet())
+				if (templateExists(source.getTemplate()))
 				{
-					for (RewardGroup group : rewardEntry.getValue())
-					{
-						for (RewardData data : group.getItems())
-						{
-							if (!items.contains(data.getItem()))
-							{
-								items.add(data.getItem());
-							}
-						}
-					}
+					items.add(source.getData().getItem());
+					break;
 				}
 			}
 		}
@@ -156,23 +103,17 @@ public class CalculateRewardChances
 	public static List<NpcTemplateDrops> getNpcsByDropOrSpoil(int itemId)
 	{
 		List<NpcTemplateDrops> templates = new ArrayList<>();
-		for (NpcTemplate template : NpcHolder.getInstance().getAll())
+		Set<Integer> added = new HashSet<>();
+		for (RewardSource source : NpcHolder.getInstance().getRewardSources(itemId))
 		{
-			if ((template == null) || (SpawnManager.getInstance().getSpawnedCountByNpc(template.getNpcId()) == 0))
+			NpcTemplate template = source.getTemplate();
+			// Drop and spoil of one template are listed separately, but only once each
+			if (!templateExists(template) || !added.add(source.isSpoil() ? -template.getNpcId() : template.getNpcId()))
 			{
 				continue;
 			}
 
-			boolean[] dropSpoil = templateContainsItemId(template, itemId);
-
-			if (dropSpoil[0])
-			{
-				templates.add(new NpcTemplateDrops(template, true));
-			}
-			if (dropSpoil[1])
-			{
-				templates.add(new NpcTemplateDrops(template, false));
-			}
+			templates.add(new NpcTemplateDrops(template, !source.isSpoil()));
 		}
 		return templates;
 	}
@@ -189,45 +130,6 @@ public class CalculateRewardChances
 		}
 	}
 
-	private static boolean[] templateContainsItemId(NpcTemplate template, int itemId)
-	{
-		boolean[] dropSpoil =
-		{
-			false,
-			false
-		};
-		for (Map.Entry<RewardType, RewardList> rewardEntry : template.getRewards().entrySet())
-		{
-			if (rewardListContainsItemId(rewardEntry.getValue(), itemId))
-			{
-				if (rewardEntry.getKey() == RewardType.SWEEP)
-				{
-					dropSpoil[1] = true;
-				}
-				else
-				{
-					dropSpoil[0] = true;
-				}
-			}
-		}
-		return dropSpoil;
-	}
-
-	private static boolean rewardListContainsItemId(RewardList list, int itemId)
-	{
-		for (RewardGroup group : list)
-		{
-			for (RewardData reward : group.getItems())
-			{
-				if (reward.getItemId() == itemId)
-				{
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-
 	private static boolean isDroppingAnything(NpcTemplate template)
 	{
 		for (Map.Entry<RewardType, RewardList> rewardEntry : template.getRewards().entrySet())
@@ -270,7 +172,7 @@ public class CalculateRewardChances
 
 	public static String getDropChance(Player player, NpcTemplate npc, boolean dropNoSpoil, int itemId)
 	{
-		TypeGroupData info = getGroupAndData(npc, dropNoSpoil, itemId);
+		RewardSource info = getGroupAndData(npc, dropNoSpoil, itemId);
 
 		if (info == null)
 		{
@@ -280,14 +182,14 @@ public class CalculateRewardChances
 		double mod = Experience.penaltyModifier((long) NpcInstance.calculateLevelDiffForDrop(npc.level, player.getLevel(), false), 9.0);
 		double baseRate = 1.0;
 		double playerRate = 1.0;
-		if (info.type == RewardType.SWEEP)
+		if (info.getType() == RewardType.SWEEP)
 		{
 			baseRate = Config.RATE_DROP_SPOIL;
 			playerRate = player.getRateSpoil();
 		}
-		else if (info.type == RewardType.RATED_GROUPED)
+		else if (info.getType() == RewardType.RATED_GROUPED)
 		{
-			if (info.group.isAdena())
+			if (info.getGroup().isAdena())
 			{
 				return getAdenaChance(info, mod);
 			}
@@ -302,20 +204,20 @@ public class CalculateRewardChances
 		return getItemChance(info, mod, baseRate, playerRate);
 	}
 
-	private static String getAdenaChance(TypeGroupData info, double mod)
+	private static String getAdenaChance(RewardSource info, double mod)
 	{
 		if (mod <= 0)
 		{
 			return "0";
 		}
 
-		double groupChance = info.group.getChance();
+		double groupChance = info.getGroup().getChance();
 		if (mod > 10)
 		{
 			groupChance = (double) RewardList.MAX_CHANCE;
 		}
 
-		double itemChance = info.data.getChance();
+		double itemChance = info.getData().getChance();
 
 		groupChance /= (double) RewardList.MAX_CHANCE;
 		itemChance /= (double) RewardList.MAX_CHANCE;
@@ -323,7 +225,7 @@ public class CalculateRewardChances
 		return String.valueOf(finalChance * 100);
 	}
 
-	private static String getItemChance(TypeGroupData info, double mod, double baseRate, double playerRate)
+	private static String getItemChance(RewardSource info, double mod, double baseRate, double playerRate)
 	{
 		if (mod <= 0.0)
 		{
@@ -331,7 +233,7 @@ public class CalculateRewardChances
 		}
 
 		double rate;
-		if (info.group.notRate())
+		if (info.getGroup().notRate())
 		{
 			rate = Math.min(mod, 1.0);
 		}
@@ -340,73 +242,41 @@ public class CalculateRewardChances
 			rate = baseRate * playerRate * mod;
 		}
 
-		double mult = Math.ceil(rate);
-
-		BigDecimal totalChance = BigDecimal.valueOf(0.0);
-		for (double n = 0.0; n < mult; n++)
+		String chance = info.getChance(rate);
+		if (chance == null)
 		{
-			BigDecimal groupChance = BigDecimal.valueOf(info.group.getChance() * Math.min(rate - n, 1.0));
-			BigDecimal itemChance = BigDecimal.valueOf(info.data.getChance());
-			groupChance = groupChance.divide(BigDecimal.valueOf((long) RewardList.MAX_CHANCE));
-			itemChance = itemChance.divide(BigDecimal.valueOf((long) RewardList.MAX_CHANCE));
-			totalChance = totalChance.add(groupChance.multiply(itemChance));
+			chance = BigDecimal.valueOf(calcItemChance(info.getGroup(), info.getData(), rate) * 100.0).toPlainString();
+			info.setChance(rate, chance);
 		}
-		String totalChanceString = totalChance.multiply(BigDecimal.valueOf(100.0)).toString();
-
-		return getCorrectedChance(totalChanceString, info.group.getChance() / 10000.0, info.data.getChance() / 10000.0, mult);
+		return chance;
 	}
 
-	private static String getCorrectedChance(String totalChanceString, double groupChance, double itemChance, double mult)
+	/**
+	 * Вероятность хотя бы одного выпадения предмета за одно убийство.
+	 * <p>
+	 * Группа бросается ceil(rate) раз: каждый полный бросок проходит с шансом группы, последний с шансом, уменьшенным на дробную часть
+	 * рейта. Прошедший бросок выбирает одну вещь группы по ее доле в сумме шансов, но не меньше {@link RewardList#MAX_CHANCE}.
+	 * Предмет не выпадает, только если он не выпал ни в одном броске.
+	 */
+	private static double calcItemChance(RewardGroup group, RewardData data, double rate)
 	{
-		Comparable<BigDecimal> totalChance = new BigDecimal(totalChanceString);
-		if (totalChance.compareTo(BigDecimal.valueOf(5.0)) < 0)
-		{
-			return totalChance.toString();
-		}
+		double itemChance = data.getChance() / Math.max(group.getChanceSum(), RewardList.MAX_CHANCE);
+		double groupChance = Math.min(group.getChance() / RewardList.MAX_CHANCE, 1.0);
 
-		if (correctedChances.containsKey(totalChanceString))
-		{
-			return correctedChances.get(totalChanceString);
-		}
-
-		double totalPassed = 0.0;
-		double x;
-		for (double i = 0.0; i < CORRECT_CHANCE_TRIES; i++)
-		{
-			for (x = 0.0; x < mult; x++)
-			{
-				if (Rnd.chance(groupChance))
-				{
-					if (Rnd.chance(itemChance))
-					{
-						totalPassed++;
-						break;
-					}
-				}
-			}
-		}
-		String finalValue = String.valueOf(totalPassed / (CORRECT_CHANCE_TRIES / 100.0));
-		correctedChances.put(totalChanceString, finalValue);
-		return finalValue;
-	}
+		double fullRolls = Math.floor(rate);
+		double lastRoll = rate - fullRolls;
 
-	private static class TypeGroupData
-	{
-		private final RewardType type;
-		private final RewardGroup group;
-		private final RewardData data;
-
-		private TypeGroupData(RewardType type, RewardGroup group, RewardData data)
+		double missChance = Math.pow(1.0 - groupChance * itemChance, fullRolls);
+		if (lastRoll > 0.0)
 		{
-			this.type = type;
-			this.group = group;
-			this.data = data;
+			missChance *= 1.0 - groupChance * lastRoll * itemChance;
 		}
+		return 1.0 - missChance;
 	}
 
 	public static long[] getDropCounts(Player player, NpcTemplate npc, boolean dropNoSpoil, int itemId)
 	{
-		TypeGroupData info = getGroupAndData(npc, dropNoSpoil, itemId);
+		RewardSource info = getGroupAndData(npc, dropNoSpoil, itemId);
 
 		if (info == null)
 		{
@@ -420,14 +290,14 @@ public class CalculateRewardChances
 		double mod = Experience.penaltyModifier((long) NpcInstance.calculateLevelDiffForDrop(npc.level, player.getLevel(), false), 9.0);
 		double baseRate = 1.0;
 		double playerRate = 1.0;
-		if (info.type == RewardType.SWEEP)
+		if (info.getType() == RewardType.SWEEP)
 		{
 			baseRate = Config.RATE_DROP_SPOIL;
 			playerRate = player.getRateSpoil();
 		}
-		else if (info.type == RewardType.RATED_GROUPED)
+		else if (info.getType() == RewardType.RATED_GROUPED)
 		{
-			if (info.group.isAdena())
+			if (info.getGroup().isAdena())
 			{
 				baseRate = Config.RATE_DROP_ADENA;
 				playerRate = player.getRateAdena();
@@ -439,7 +309,7 @@ public class CalculateRewardChances
 			}
 		}
 		double imult;
-		if (info.data.notRate() && itemId != ItemTemplate.ITEM_ID_ADENA)
+		if (info.getData().notRate() && itemId != ItemTemplate.ITEM_ID_ADENA)
 		{
 			imult = 1.0;
 		}
@@ -448,12 +318,12 @@ public class CalculateRewardChances
 			imult = baseRate * playerRate * mod;
 		}
 
-		long minDrop = info.data.getMinDrop();
+		long minDrop = info.getData().getMinDrop();
 		if (itemId == ItemTemplate.ITEM_ID_ADENA)
 		{
 			minDrop *= (long) imult;
 		}
-		long maxDrop = (long) ((double) info.data.getMaxDrop() * Math.ceil(imult));
+		long maxDrop = (long) ((double) info.getData().getMaxDrop() * Math.ceil(imult));
 		return new long[]
 		{
 			minDrop,
@@ -461,24 +331,13 @@ public class CalculateRewardChances
 		};
 	}
 
-	private static TypeGroupData getGroupAndData(NpcTemplate npc, boolean dropNoSpoil, int itemId)
+	private static RewardSource getGroupAndData(NpcTemplate npc, boolean dropNoSpoil, int itemId)
 	{
-		for (Map.Entry<RewardType, RewardList> rewardEntry : npc.getRewards().entrySet())
+		for (RewardSource source : NpcHolder.getInstance().getRewardSources(itemId))
 		{
-			if ((rewardEntry.getKey() == RewardType.SWEEP && dropNoSpoil) || (rewardEntry.getKey() != RewardType.SWEEP && !dropNoSpoil))
-			{
-				continue;
-			}
-
-			for (RewardGroup group : rewardEntry.getValue())
+			if (source.getTemplate() == npc && source.isSpoil() != dropNoSpoil)
 			{
-				for (RewardData reward : group.getItems())
-				{
-					if (reward.getItemId() == itemId)
-					{
-						return new TypeGroupData(rewardEntry.getKey(), group, reward);
-					}
-				}
+				return source;
 			}
 		}
 		return null;
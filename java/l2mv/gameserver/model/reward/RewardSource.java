@@ -0,0 +1,65 @@
+package l2mv.gameserver.model.reward;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import l2mv.gameserver.templates.npc.NpcTemplate;
+
+/**
+ * Вхождение предмета в список наград NPC: шаблон, тип списка, группа и сама награда.
+ * <p>
+ * Хранится в обратном индексе {@link l2mv.gameserver.data.xml.holder.NpcHolder#getRewardSources(int)} и живет до перезагрузки NPC,
+ * вместе с ним сбрасываются и запомненные шансы.
+ */
+public class RewardSource
+{
+	private final NpcTemplate _template;
+	private final RewardType _type;
+	private final RewardGroup _group;
+	private final RewardData _data;
+	/** Шанс в процентах по итоговому рейту */
+	private final Map<Double, String> _chances = new ConcurrentHashMap<Double, String>();
+
+	public RewardSource(NpcTemplate template, RewardType type, RewardGroup group, RewardData data)
+	{
+		_template = template;
+		_type = type;
+		_group = group;
+		_data = data;
+	}
+
+	public NpcTemplate getTemplate()
+	{
+		return _template;
+	}
+
+	public RewardType getType()
+	{
+		return _type;
+	}
+
+	public RewardGroup getGroup()
+	{
+		return _group;
+	}
+
+	public RewardData getData()
+	{
+		return _data;
+	}
+
+	public boolean isSpoil()
+	{
+		return _type == RewardType.SWEEP;
+	}
+
+	String getChance(double rate)
+	{
+		return _chances.get(rate);
+	}
+
+	void setChance(double rate, String chance)
+	{
+		_chances.put(rate, chance);
+	}
+}
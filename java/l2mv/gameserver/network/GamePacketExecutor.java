@@ -0,0 +1,200 @@
+package l2mv.gameserver.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import l2mv.commons.threading.LoggingRejectedExecutionHandler;
+import l2mv.commons.threading.PriorityThreadFactory;
+import l2mv.gameserver.Config;
+import l2mv.gameserver.ThreadPoolManager;
+import l2mv.gameserver.network.clientpackets.Action;
+import l2mv.gameserver.network.clientpackets.AttackRequest;
+import l2mv.gameserver.network.clientpackets.CannotMoveAnymore;
+import l2mv.gameserver.network.clientpackets.CannotMoveAnymoreInVehicle;
+import l2mv.gameserver.network.clientpackets.CharacterCreate;
+import l2mv.gameserver.network.clientpackets.CharacterDelete;
+import l2mv.gameserver.network.clientpackets.CharacterRestore;
+import l2mv.gameserver.network.clientpackets.CharacterSelected;
+import l2mv.gameserver.network.clientpackets.EnterWorld;
+import l2mv.gameserver.network.clientpackets.Logout;
+import l2mv.gameserver.network.clientpackets.MoveBackwardToLocation;
+import l2mv.gameserver.network.clientpackets.MoveToPawn;
+import l2mv.gameserver.network.clientpackets.MoveWithDelta;
+import l2mv.gameserver.network.clientpackets.RequestActionUse;
+import l2mv.gameserver.network.clientpackets.RequestAutoSoulShot;
+import l2mv.gameserver.network.clientpackets.RequestBypassToServer;
+import l2mv.gameserver.network.clientpackets.RequestExBR_BuyProduct;
+import l2mv.gameserver.network.clientpackets.RequestExCancelSentPost;
+import l2mv.gameserver.network.clientpackets.RequestExDeleteReceivedPost;
+import l2mv.gameserver.network.clientpackets.RequestExDeleteSentPost;
+import l2mv.gameserver.network.clientpackets.RequestExMagicSkillUseGround;
+import l2mv.gameserver.network.clientpackets.RequestExReceivePost;
+import l2mv.gameserver.network.clientpackets.RequestExRequestReceivedPost;
+import l2mv.gameserver.network.clientpackets.RequestExRequestReceivedPostList;
+import l2mv.gameserver.network.clientpackets.RequestExRequestSentPost;
+import l2mv.gameserver.network.clientpackets.RequestExRequestSentPostList;
+import l2mv.gameserver.network.clientpackets.RequestExSendPost;
+import l2mv.gameserver.network.clientpackets.RequestMagicSkillUse;
+import l2mv.gameserver.network.clientpackets.RequestMoveToLocationInVehicle;
+import l2mv.gameserver.network.clientpackets.RequestRestart;
+import l2mv.gameserver.network.clientpackets.RequestSetPledgeCrest;
+import l2mv.gameserver.network.clientpackets.RequestSetPledgeCrestLarge;
+import l2mv.gameserver.network.clientpackets.RequestTargetCanceld;
+import l2mv.gameserver.network.clientpackets.SendWareHouseDepositList;
+import l2mv.gameserver.network.clientpackets.SendWareHouseWithDrawList;
+import l2mv.gameserver.network.clientpackets.UseItem;
+import l2mv.gameserver.network.clientpackets.ValidatePosition;
+
+/**
+ * Исполнение клиентских пакетов по классам приоритета.
+ * <p>
+ * Пакеты каждого клиента по-прежнему выполняются строго по очереди его соединения, но сама очередь запускается в пуле класса
+ * пакета в ее голове: движение и бой в отдельном пуле с малой задержкой, тяжелые пакеты, работающие с базой и диалогами,
+ * в ограниченном пуле, остальное в общем пуле задач. Поток тяжелых пакетов не задерживает движение других игроков.
+ */
+public class GamePacketExecutor
+{
+	private static final GamePacketExecutor _instance = new GamePacketExecutor();
+
+	public static GamePacketExecutor getInstance()
+	{
+		return _instance;
+	}
+
+	public static enum Lane
+	{
+		/** Общий пул задач */
+		GENERAL,
+		/** Движение и бой */
+		FAST,
+		/** Работа с базой данных и диалоги */
+		BLOCKING;
+
+		static final Lane[] VALUES = values();
+	}
+
+	/**
+	 * Счетчики очереди исполнения
+	 */
+	private static class LaneStat
+	{
+		/** Очереди клиентов, ожидающие потока */
+		final AtomicInteger waiting = new AtomicInteger();
+		/** Запуски очередей клиентов в пуле */
+		final LongAdder executed = new LongAdder();
+		final LongAdder waitTime = new LongAdder();
+		final LongAccumulator maxWaitTime = new LongAccumulator(Math::max, 0L);
+	}
+
+	private final Map<Class<?>, Lane> _lanes = new HashMap<Class<?>, Lane>();
+	private final ThreadPoolExecutor _fastExecutor;
+	private final ThreadPoolExecutor _blockingExecutor;
+	private final LaneStat[] _stats = new LaneStat[Lane.VALUES.length];
+
+	private GamePacketExecutor()
+	{
+		for (int i = 0; i < _stats.length; i++)
+		{
+			_stats[i] = new LaneStat();
+		}
+
+		_fastExecutor = new ThreadPoolExecutor(Config.CLIENT_PACKET_FAST_THREADS, Config.CLIENT_PACKET_FAST_THREADS, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new PriorityThreadFactory("ClientPacketFast", Thread.NORM_PRIORITY + 1), new LoggingRejectedExecutionHandler());
+		_blockingExecutor = new ThreadPoolExecutor(Config.CLIENT_PACKET_BLOCKING_THREADS, Config.CLIENT_PACKET_BLOCKING_THREADS, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new PriorityThreadFactory("ClientPacketBlocking", Thread.NORM_PRIORITY), new LoggingRejectedExecutionHandler());
+
+		setLane(Lane.FAST, Action.class, AttackRequest.class, CannotMoveAnymore.class, CannotMoveAnymoreInVehicle.class, MoveBackwardToLocation.class, MoveToPawn.class, MoveWithDelta.class, RequestActionUse.class, RequestAutoSoulShot.class, RequestExMagicSkillUseGround.class, RequestMagicSkillUse.class, RequestMoveToLocationInVehicle.class, RequestTargetCanceld.class, UseItem.class, ValidatePosition.class);
+		setLane(Lane.BLOCKING, CharacterCreate.class, CharacterDelete.class, CharacterRestore.class, CharacterSelected.class, EnterWorld.class, Logout.class, RequestRestart.class, RequestBypassToServer.class, RequestExBR_BuyProduct.class, RequestExCancelSentPost.class, RequestExDeleteReceivedPost.class, RequestExDeleteSentPost.class, RequestExReceivePost.class, RequestExRequestReceivedPost.class, RequestExRequestReceivedPostList.class, RequestExRequestSentPost.class, RequestExRequestSentPostList.class, RequestExSendPost.class, RequestSetPledgeCrest.class, RequestSetPledgeCrestLarge.class, SendWareHouseDepositList.class, SendWareHouseWithDrawList.class);
+	}
+
+	private void setLane(Lane lane, Class<?>... packets)
+	{
+		for (Class<?> packet : packets)
+		{
+			_lanes.put(packet, lane);
+		}
+	}
+
+	/**
+	 * @return номер очереди исполнения пакета
+	 */
+	public int getLane(Object packet)
+	{
+		if (!Config.CLIENT_PACKET_LANES)
+		{
+			return Lane.GENERAL.ordinal();
+		}
+
+		Lane lane = _lanes.get(packet.getClass());
+		return lane == null ? Lane.GENERAL.ordinal() : lane.ordinal();
+	}
+
+	public void execute(final Runnable r, int laneIndex)
+	{
+		final LaneStat stat = _stats[laneIndex];
+		final long queued = System.nanoTime();
+		stat.waiting.incrementAndGet();
+
+		Runnable task = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				long wait = System.nanoTime() - queued;
+				stat.waiting.decrementAndGet();
+				stat.executed.increment();
+				stat.waitTime.add(wait);
+				stat.maxWaitTime.accumulate(wait);
+
+				r.run();
+			}
+		};
+
+		switch (Lane.VALUES[laneIndex])
+		{
+		case FAST:
+			_fastExecutor.execute(task);
+			break;
+		case BLOCKING:
+			_blockingExecutor.execute(task);
+			break;
+		default:
+			ThreadPoolManager.getInstance().execute(task);
+			break;
+		}
+	}
+
+	public void shutdown() throws InterruptedException
+	{
+		_fastExecutor.shutdown();
+		_blockingExecutor.shutdown();
+		_fastExecutor.awaitTermination(10, TimeUnit.SECONDS);
+		_blockingExecutor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	public CharSequence getStats()
+	{
+		StringBuilder list = new StringBuilder();
+
+		list.append("ClientPacketLanes").append(Config.CLIENT_PACKET_LANES ? "" : " (disabled)").append("\n");
+		list.append("=================================================\n");
+		for (Lane lane : Lane.VALUES)
+		{
+			LaneStat stat = _stats[lane.ordinal()];
+			long executed = stat.executed.sum();
+			list.append(lane).append("\n");
+			list.append("\tWaiting: ............ ").append(stat.waiting.get()).append("\n");
+			list.append("\tRuns: ............... ").append(executed).append("\n");
+			list.append("\tAverage wait, us: ... ").append(executed == 0 ? 0 : stat.waitTime.sum() / executed / 1000L).append("\n");
+			list.append("\tMax wait, us: ....... ").append(stat.maxWaitTime.get() / 1000L).append("\n");
+		}
+		list.append("\tFast active/pool: ... ").append(_fastExecutor.getActiveCount()).append('/').append(_fastExecutor.getPoolSize()).append("\n");
+		list.append("\tBlocking active/pool: ").append(_blockingExecutor.getActiveCount()).append('/').append(_blockingExecutor.getPoolSize()).append("\n");
+
+		return list;
+	}
+}
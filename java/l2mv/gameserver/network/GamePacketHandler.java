@@ -1227,4 +1227,16 @@ public final class GamePacketHandler implements IPacketHandler<GameClient>, ICli
 	{
 		ThreadPoolManager.getInstance().execute(r);
 	}
+
+	@Override
+	public int getLane(ReceivablePacket<GameClient> packet)
+	{
+		return GamePacketExecutor.getInstance().getLane(packet);
+	}
+
+	@Override
+	public void execute(Runnable r, int lane)
+	{
+		GamePacketExecutor.getInstance().execute(r, lane);
+	}
 }
\ No newline at end of file
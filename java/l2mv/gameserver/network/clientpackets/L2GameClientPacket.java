@@ -7,6 +7,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import l2mv.commons.net.nio.impl.ReceivablePacket;
+import l2mv.commons.threading.RunnableStatsManager;
+import l2mv.gameserver.Config;
 import l2mv.gameserver.GameServer;
 import l2mv.gameserver.network.GameClient;
 import l2mv.gameserver.network.serverpackets.L2GameServerPacket;
@@ -45,9 +47,14 @@ public abstract class L2GameClientPacket extends ReceivablePacket<GameClient>
 	public final void run()
 	{
 		GameClient client = this.getClient();
+		long begin = Config.ENABLE_RUNNABLE_STATS ? System.nanoTime() : 0L;
 		try
 		{
 			this.runImpl();
+			if (begin != 0L)
+			{
+				RunnableStatsManager.getPacketsInstance().handleStats(this.getClass(), System.nanoTime() - begin);
+			}
 		}
 		catch (RuntimeException e)
 		{
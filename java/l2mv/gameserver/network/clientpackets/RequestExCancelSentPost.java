@@ -3,6 +3,7 @@ package l2mv.gameserver.network.clientpackets;
 import java.util.Set;
 
 import l2mv.commons.math.SafeMath;
+import l2mv.gameserver.dao.ItemsDAO;
 import l2mv.gameserver.dao.MailDAO;
 import l2mv.gameserver.model.Player;
 import l2mv.gameserver.model.items.ItemInstance;
@@ -134,6 +135,7 @@ public class RequestExCancelSentPost extends L2GameClientPacket
 			{
 				activeChar.getInventory().writeUnlock();
 			}
+			ItemsDAO.getInstance().flush();
 		}
 		activeChar.sendPacket(new ExShowSentPostList(activeChar));
 	}
@@ -6,6 +6,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import l2mv.commons.dao.JdbcEntityState;
 import l2mv.commons.math.SafeMath;
+import l2mv.gameserver.dao.ItemsDAO;
 import l2mv.gameserver.dao.MailDAO;
 import l2mv.gameserver.model.Player;
 import l2mv.gameserver.model.World;
@@ -186,6 +187,7 @@ public class RequestExReceivePost extends L2GameClientPacket
 			{
 				activeChar.getInventory().writeUnlock();
 			}
+			ItemsDAO.getInstance().flush();
 		}
 
 		activeChar.sendPacket(new ExShowReceivedPostList(activeChar));
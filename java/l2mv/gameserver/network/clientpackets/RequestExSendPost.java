@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import l2mv.commons.dao.JdbcEntityState;
 import l2mv.gameserver.Config;
 import l2mv.gameserver.dao.CharacterDAO;
+import l2mv.gameserver.dao.ItemsDAO;
 import l2mv.gameserver.database.mysql;
 import l2mv.gameserver.multverso.managers.MailManager;
 import l2mv.gameserver.handler.admincommands.impl.AdminMail;
@@ -401,6 +402,7 @@ public class RequestExSendPost extends L2GameClientPacket
 			mail.addAttachment(item);
 		}
 		mail.save();
+		ItemsDAO.getInstance().flush();
 
 		activeChar.sendPacket(ExReplyWritePost.STATIC_TRUE);
 		activeChar.sendPacket(SystemMsg.MAIL_SUCCESSFULLY_SENT);
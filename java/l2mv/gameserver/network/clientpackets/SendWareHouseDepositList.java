@@ -4,6 +4,7 @@ import org.apache.commons.lang3.ArrayUtils;
 
 import l2mv.commons.math.SafeMath;
 import l2mv.gameserver.Config;
+import l2mv.gameserver.dao.ItemsDAO;
 import l2mv.gameserver.handler.bbs.CommunityBoardManager;
 import l2mv.gameserver.model.Player;
 import l2mv.gameserver.model.items.ItemInstance;
@@ -190,6 +191,7 @@ public class SendWareHouseDepositList extends L2GameClientPacket
 			warehouse.writeUnlock();
 			inventory.writeUnlock();
 		}
+		ItemsDAO.getInstance().flush();
 
 		// Обновляем параметры персонажа
 		activeChar.sendChanges();
@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 
 import l2mv.commons.math.SafeMath;
 import l2mv.gameserver.Config;
+import l2mv.gameserver.dao.ItemsDAO;
 import l2mv.gameserver.model.Player;
 import l2mv.gameserver.model.items.ItemInstance;
 import l2mv.gameserver.model.items.PcInventory;
@@ -187,6 +188,7 @@ public class SendWareHouseWithDrawList extends L2GameClientPacket
 			warehouse.writeUnlock();
 			inventory.writeUnlock();
 		}
+		ItemsDAO.getInstance().flush();
 
 		activeChar.sendChanges();
 		activeChar.sendPacket(SystemMsg.THE_TRANSACTION_IS_COMPLETE);
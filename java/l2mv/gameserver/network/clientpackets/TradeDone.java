@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import l2mv.commons.math.SafeMath;
+import l2mv.gameserver.dao.ItemsDAO;
 import l2mv.gameserver.model.Creature;
 import l2mv.gameserver.model.Player;
 import l2mv.gameserver.model.Request;
@@ -203,5 +204,10 @@ public class TradeDone extends L2GameClientPacket
 			parthner1.sendPacket(success ? SendTradeDone.SUCCESS : SendTradeDone.FAIL);
 			parthner2.sendPacket(success ? SendTradeDone.SUCCESS : SendTradeDone.FAIL);
 		}
+
+		if (success)
+		{
+			ItemsDAO.getInstance().flush();
+		}
 	}
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package l2mv.gameserver.network.serverpackets;
 
+import l2mv.commons.net.nio.impl.IBroadcastPacket;
 import l2mv.gameserver.model.Creature;
 
 /**
@@ -7,7 +8,7 @@ import l2mv.gameserver.model.Creature;
  *
  * format   dd
  */
-public class ChangeMoveType extends L2GameServerPacket
+public class ChangeMoveType extends L2GameServerPacket implements IBroadcastPacket
 {
 	public static int WALK = 0;
 	public static int RUN = 1;
@@ -1,5 +1,6 @@
 package l2mv.gameserver.network.serverpackets;
 
+import l2mv.commons.net.nio.impl.IBroadcastPacket;
 import l2mv.gameserver.model.Creature;
 
 /**
@@ -8,7 +9,7 @@ import l2mv.gameserver.model.Creature;
  *
  * format   dd ddd
  */
-public class ChangeWaitType extends L2GameServerPacket
+public class ChangeWaitType extends L2GameServerPacket implements IBroadcastPacket
 {
 	private int _objectId;
 	private int _moveType;
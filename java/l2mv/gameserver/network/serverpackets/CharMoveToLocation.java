@@ -1,11 +1,12 @@
 package l2mv.gameserver.network.serverpackets;
 
+import l2mv.commons.net.nio.impl.IBroadcastPacket;
 import l2mv.gameserver.Config;
 import l2mv.gameserver.model.Creature;
 import l2mv.gameserver.utils.Location;
 import l2mv.gameserver.utils.Log;
 
-public class CharMoveToLocation extends L2GameServerPacket
+public class CharMoveToLocation extends L2GameServerPacket implements IBroadcastPacket
 {
 	private int _objectId, _client_z_shift;
 	private Location _current;
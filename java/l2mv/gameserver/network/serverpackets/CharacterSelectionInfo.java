@@ -12,6 +12,7 @@ import org.slf4j.LoggerFactory;
 
 import l2mv.gameserver.Config;
 import l2mv.gameserver.dao.CharacterDAO;
+import l2mv.gameserver.dao.CharacterStoreQueue;
 import l2mv.gameserver.data.xml.holder.CharTemplateHolder;
 import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.model.CharSelectInfoPackage;
@@ -156,6 +157,9 @@ public class CharacterSelectionInfo extends L2GameServerPacket
 		CharSelectInfoPackage charInfoPackage;
 		List<CharSelectInfoPackage> characterList = new ArrayList<>();
 
+		// Отложенные сохранения персонажей аккаунта должны попасть в базу до чтения
+		CharacterStoreQueue.getInstance().flush(loginName);
+
 		try (Connection con = DatabaseFactory.getInstance().getConnection(); PreparedStatement statement = con.prepareStatement("SELECT obj_Id, sex, char_name, x, y, z, pkkills, pvpkills, face, hairstyle, haircolor, clanid, karma, deletetime, lastAccess, accesslevel, vitality FROM characters WHERE account_name=? LIMIT 7"))
 		{
 			statement.setString(1, loginName);
@@ -1,6 +1,8 @@
 package l2mv.gameserver.network.serverpackets;
 
-public class MagicSkillCanceled extends L2GameServerPacket
+import l2mv.commons.net.nio.impl.IBroadcastPacket;
+
+public class MagicSkillCanceled extends L2GameServerPacket implements IBroadcastPacket
 {
 
 	private int _objectId;
@@ -3,9 +3,10 @@ package l2mv.gameserver.network.serverpackets;
 import java.util.Collection;
 import java.util.Collections;
 
+import l2mv.commons.net.nio.impl.IBroadcastPacket;
 import l2mv.gameserver.model.Creature;
 
-public class MagicSkillLaunched extends L2GameServerPacket
+public class MagicSkillLaunched extends L2GameServerPacket implements IBroadcastPacket
 {
 	private final int _casterId;
 	private final int _skillId;
@@ -1,7 +1,7 @@
 package l2mv.gameserver.network.serverpackets;
 
+import l2mv.commons.net.nio.impl.IBroadcastPacket;
 import l2mv.gameserver.model.Creature;
-import l2mv.gameserver.model.Player;
 
 /**
  * Format:   dddddddddh [h] h [ddd]
@@ -13,7 +13,7 @@ import l2mv.gameserver.model.Player;
  * F9 B5 FF FF  7D E0 01 00  68 F3 FF FF
  * 00 00 00 00
  */
-public class MagicSkillUse extends L2GameServerPacket
+public class MagicSkillUse extends L2GameServerPacket implements IBroadcastPacket
 {
 	private int _targetId;
 	private int _skillId;
@@ -54,16 +54,18 @@ public class MagicSkillUse extends L2GameServerPacket
 		this._tz = cha.getZ();
 	}
 
+	/**
+	 * Hiding the animation from players with disabled buff animations is done in Player.isPacketIgnored,
+	 * so the packet content stays the same for every viewer.
+	 */
+	public int getCasterId()
+	{
+		return this._chaId;
+	}
+
 	@Override
 	protected final void writeImpl()
 	{
-		Player activeChar = this.getClient().getActiveChar();
-
-		if (activeChar != null && activeChar.isNotShowBuffAnim() && activeChar.getObjectId() != this._chaId)
-		{
-			return;
-		}
-
 		this.writeC(0x48);
 		this.writeD(this._chaId);
 		this.writeD(this._targetId);
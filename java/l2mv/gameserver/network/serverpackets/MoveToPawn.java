@@ -1,8 +1,9 @@
 package l2mv.gameserver.network.serverpackets;
 
+import l2mv.commons.net.nio.impl.IBroadcastPacket;
 import l2mv.gameserver.model.Creature;
 
-public class MoveToPawn extends L2GameServerPacket
+public class MoveToPawn extends L2GameServerPacket implements IBroadcastPacket
 {
 	private int _chaId, _targetId, _distance;
 	private int _x, _y, _z, _tx, _ty, _tz;
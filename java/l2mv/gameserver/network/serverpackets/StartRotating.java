@@ -1,8 +1,9 @@
 package l2mv.gameserver.network.serverpackets;
 
+import l2mv.commons.net.nio.impl.IBroadcastPacket;
 import l2mv.gameserver.model.Creature;
 
-public class StartRotating extends L2GameServerPacket
+public class StartRotating extends L2GameServerPacket implements IBroadcastPacket
 {
 	private int _charId, _degree, _side, _speed;
 
@@ -3,10 +3,12 @@ package l2mv.gameserver.network.serverpackets;
 import java.util.ArrayList;
 import java.util.List;
 
+import l2mv.commons.net.nio.impl.IBroadcastPacket;
+
 /**
  * Даные параметры актуальны для С6(Interlude), 04/10/2007, протокол 746
  */
-public class StatusUpdate extends L2GameServerPacket
+public class StatusUpdate extends L2GameServerPacket implements IBroadcastPacket
 {
 	/**
 	 * Даный параметр отсылается оффом в паре с MAX_HP
@@ -1,11 +1,12 @@
 package l2mv.gameserver.network.serverpackets;
 
+import l2mv.commons.net.nio.impl.IBroadcastPacket;
 import l2mv.gameserver.model.Creature;
 
 /**
  * format   ddddd
  */
-public class StopMove extends L2GameServerPacket
+public class StopMove extends L2GameServerPacket implements IBroadcastPacket
 {
 	private final int _objectId;
 	private final int _x;
@@ -1,12 +1,13 @@
 package l2mv.gameserver.network.serverpackets;
 
+import l2mv.commons.net.nio.impl.IBroadcastPacket;
 import l2mv.gameserver.model.Creature;
 import l2mv.gameserver.utils.Location;
 
 /**
  * format   dddddd		(player id, target id, distance, startx, starty, startz)<p>
  */
-public class ValidateLocation extends L2GameServerPacket
+public class ValidateLocation extends L2GameServerPacket implements IBroadcastPacket
 {
 	private int _chaObjId;
 	private Location _loc;
@@ -19,11 +19,18 @@ import l2mv.commons.threading.RunnableStatsManager;
 import l2mv.gameserver.Config;
 import l2mv.gameserver.ThreadPoolManager;
 import l2mv.gameserver.dao.ItemsDAO;
+import l2mv.gameserver.dao.CharacterStoreQueue;
 import l2mv.gameserver.dao.MailDAO;
+import l2mv.gameserver.dao.QuestStoreQueue;
 import l2mv.gameserver.database.DatabaseFactory;
+import l2mv.gameserver.geodata.HierarchicalPathFind;
 import l2mv.gameserver.geodata.PathFindBuffers;
+import l2mv.gameserver.geodata.PathFindService;
+import l2mv.gameserver.instancemanager.ReflectionPool;
+import l2mv.gameserver.network.GamePacketExecutor;
 import l2mv.gameserver.network.telnet.TelnetCommand;
 import l2mv.gameserver.network.telnet.TelnetCommandHolder;
+import l2mv.gameserver.stats.Calculator;
 import l2mv.gameserver.taskmanager.AiTaskManager;
 import l2mv.gameserver.taskmanager.EffectTaskManager;
 import l2mv.gameserver.utils.GameStats;
@@ -41,7 +48,7 @@ public class TelnetPerfomance implements TelnetCommandHolder
 			@Override
 			public String getUsage()
 			{
-				return "pool [dump]";
+				return "pool [dump|tasks|packets|reset]";
 			}
 
 			@Override
@@ -52,13 +59,16 @@ public class TelnetPerfomance implements TelnetCommandHolder
 				if ((args.length == 0) || args[0].isEmpty())
 				{
 					sb.append(ThreadPoolManager.getInstance().getStats());
+					sb.append(GamePacketExecutor.getInstance().getStats());
 				}
 				else if (args[0].equals("dump") || args[0].equals("d"))
 				{
 					try
 					{
 						new File("stats").mkdir();
-						FileUtils.writeStringToFile(new File("stats/RunnableStats-" + new SimpleDateFormat("MMddHHmmss").format(System.currentTimeMillis()) + ".txt"), RunnableStatsManager.getInstance().getStats().toString());
+						String date = new SimpleDateFormat("MMddHHmmss").format(System.currentTimeMillis());
+						FileUtils.writeStringToFile(new File("stats/RunnableStats-" + date + ".txt"), RunnableStatsManager.getInstance().getStats().toString());
+						FileUtils.writeStringToFile(new File("stats/PacketStats-" + date + ".txt"), RunnableStatsManager.getPacketsInstance().getStats().toString());
 						sb.append("Runnable stats saved.\n");
 					}
 					catch (IOException e)
@@ -66,6 +76,20 @@ public class TelnetPerfomance implements TelnetCommandHolder
 						sb.append("Exception: " + e.getMessage() + "!\n");
 					}
 				}
+				else if (args[0].equals("tasks") || args[0].equals("t"))
+				{
+					sb.append(RunnableStatsManager.getInstance().getTopStats(30));
+				}
+				else if (args[0].equals("packets") || args[0].equals("pk"))
+				{
+					sb.append(RunnableStatsManager.getPacketsInstance().getTopStats(30));
+				}
+				else if (args[0].equals("reset") || args[0].equals("r"))
+				{
+					RunnableStatsManager.getInstance().clear();
+					RunnableStatsManager.getPacketsInstance().clear();
+					sb.append("Runnable stats cleared.\n");
+				}
 				else
 				{
 					return null;
@@ -228,6 +252,8 @@ public class TelnetPerfomance implements TelnetCommandHolder
 				StringBuilder sb = new StringBuilder();
 
 				sb.append(PathFindBuffers.getStats());
+				sb.append(HierarchicalPathFind.getStats());
+				sb.append(PathFindService.getInstance().getStats());
 
 				return sb.toString();
 			}
@@ -283,6 +309,8 @@ public class TelnetPerfomance implements TelnetCommandHolder
 				sb.append("     getInsertCount: .............. ").append(entityStats.getInsertCount()).append("\n");
 				sb.append("     getUpdateCount: .............. ").append(entityStats.getUpdateCount()).append("\n");
 				sb.append("     getDeleteCount: .............. ").append(entityStats.getDeleteCount()).append("\n");
+				sb.append("     getCoalescedCount: ........... ").append(entityStats.getCoalescedCount()).append("\n");
+				sb.append("     Queue size: .................. ").append(ItemsDAO.getInstance().getQueueSize()).append("\n");
 				sb.append("Cache").append("\n");
 				sb.append("     getPutCount: ................. ").append(cacheStats.getPutCount()).append("\n");
 				sb.append("     getUpdateCount: .............. ").append(cacheStats.getUpdateCount()).append("\n");
@@ -320,6 +348,12 @@ public class TelnetPerfomance implements TelnetCommandHolder
 				sb.append("     cacheHitRatio: ............... ").append(String.format("%2.2f", cacheHitRatio)).append("\n");
 				sb.append("=================================================\n");
 
+				sb.append(CharacterStoreQueue.getInstance().getStats());
+				sb.append("=================================================\n");
+
+				sb.append(QuestStoreQueue.getInstance().getStats());
+				sb.append("=================================================\n");
+
 				return sb.toString();
 			}
 
@@ -377,6 +411,46 @@ public class TelnetPerfomance implements TelnetCommandHolder
 			}
 
 		});
+		this._commands.add(new TelnetCommand("statcache", "sc")
+		{
+
+			@Override
+			public String getUsage()
+			{
+				return "statcache";
+			}
+
+			@Override
+			public String handle(String[] args)
+			{
+				StringBuilder sb = new StringBuilder();
+
+				sb.append(Calculator.getCacheStats());
+
+				return sb.toString();
+			}
+
+		});
+		this._commands.add(new TelnetCommand("instancepool", "ip")
+		{
+
+			@Override
+			public String getUsage()
+			{
+				return "instancepool";
+			}
+
+			@Override
+			public String handle(String[] args)
+			{
+				StringBuilder sb = new StringBuilder();
+
+				sb.append(ReflectionPool.getInstance().getStats());
+
+				return sb.toString();
+			}
+
+		});
 	}
 
 	@Override
@@ -172,5 +172,12 @@ public class EffectServitorShare extends Effect
 		{
 			paramEnv.value += paramEnv.character.getPlayer().calcStat(stat, stat.getInit()) * value;
 		}
+
+		// Depends on the stats of the owner
+		@Override
+		public boolean isCacheable()
+		{
+			return false;
+		}
 	}
 }
@@ -1,6 +1,9 @@
 package l2mv.gameserver.stats;
 
+import java.util.concurrent.atomic.LongAdder;
+
 import l2mv.commons.lang.ArrayUtils;
+import l2mv.gameserver.Config;
 import l2mv.gameserver.model.Creature;
 import l2mv.gameserver.stats.funcs.Func;
 import l2mv.gameserver.stats.funcs.FuncOwner;
@@ -17,10 +20,35 @@ import l2mv.gameserver.stats.funcs.FuncOwner;
  *
  * Method addFunc and removeFunc permit to add and remove a Func object from a Calculator.<BR><BR>
  *
+ * The result of a calculation without target and skill is cached until the stats of the character change, see
+ * {@link Creature#invalidateStatsCache()}. Calculators with conditional or non cacheable Funcs are always calculated.<BR><BR>
  */
 public final class Calculator
 {
+	private static final LongAdder _cacheHits = new LongAdder();
+	private static final LongAdder _cacheMisses = new LongAdder();
+	private static final LongAdder _uncached = new LongAdder();
+
+	/** Результат расчета без цели и скилла */
+	private static final class CachedValue
+	{
+		final int epoch;
+		final int level;
+		final double init;
+		final double value;
+
+		CachedValue(int epoch, int level, double init, double value)
+		{
+			this.epoch = epoch;
+			this.level = level;
+			this.init = init;
+			this.value = value;
+		}
+	}
+
 	private Func[] _functions;
+	private volatile boolean _cacheable = true;
+	private volatile CachedValue _cached;
 
 	private double _base;
 	private double _last;
@@ -50,12 +78,19 @@ public final class Calculator
 	{
 		_functions = ArrayUtils.add(_functions, f);
 		ArrayUtils.eqSort(_functions);
+		funcsChanged();
 	}
 
 	/**
 	 * Remove a Func from the Calculator.<BR><BR>
 	 */
 	public void removeFunc(Func f)
+	{
+		removeFunc0(f);
+		funcsChanged();
+	}
+
+	private void removeFunc0(Func f)
 	{
 		_functions = ArrayUtils.remove(_functions, f);
 		if (_functions.length == 0)
@@ -74,13 +109,79 @@ public final class Calculator
 	public void removeOwner(Object owner)
 	{
 		Func[] tmp = _functions;
+		boolean removed = false;
 		for (Func element : tmp)
 		{
 			if (element.owner == owner)
 			{
-				removeFunc(element);
+				removeFunc0(element);
+				removed = true;
+			}
+		}
+
+		if (removed)
+		{
+			funcsChanged();
+		}
+	}
+
+	/**
+	 * Other stats may depend on this one, so the whole cache of the character is dropped.
+	 */
+	private void funcsChanged()
+	{
+		boolean cacheable = true;
+		for (Func func : _functions)
+		{
+			if (func.getCondition() != null || !func.isCacheable())
+			{
+				cacheable = false;
+				break;
 			}
 		}
+		_cacheable = cacheable;
+		_character.invalidateStatsCache();
+	}
+
+	/**
+	 * Run each Func of the Calculator without target and skill, using the cached result while the stats of the character do not change.
+	 */
+	public double calc(double init)
+	{
+		if (!_cacheable || !Config.STATS_CACHE_ENABLED)
+		{
+			_uncached.increment();
+			return calc0(init);
+		}
+
+		// The epoch is read before calculating, a change during the calculation leaves a stale value that is never used
+		int epoch = _character.getStatsEpoch();
+		int level = _character.getLevel();
+		CachedValue cached = _cached;
+		if (cached != null && cached.epoch == epoch && cached.level == level && Double.compare(cached.init, init) == 0)
+		{
+			_cacheHits.increment();
+			return cached.value;
+		}
+
+		_cacheMisses.increment();
+		double value = calc0(init);
+		_cached = new CachedValue(epoch, level, init, value);
+		return value;
+	}
+
+	private double calc0(double init)
+	{
+		Env env = Env.acquire(_character, null, null, init);
+		try
+		{
+			calc(env);
+			return env.value;
+		}
+		finally
+		{
+			Env.release(env);
+		}
 	}
 
 	/**
@@ -144,4 +245,19 @@ public final class Calculator
 	{
 		return _last;
 	}
+
+	public static CharSequence getCacheStats()
+	{
+		long hits = _cacheHits.sum();
+		long misses = _cacheMisses.sum();
+		StringBuilder list = new StringBuilder();
+		list.append("Stats cache").append("\n");
+		list.append("     Enabled: ..................... ").append(Config.STATS_CACHE_ENABLED).append("\n");
+		list.append("     Hits: ........................ ").append(hits).append("\n");
+		list.append("     Misses: ...................... ").append(misses).append("\n");
+		list.append("     Hit ratio: ................... ").append(String.format("%2.2f", hits + misses == 0 ? 0. : hits * 100. / (hits + misses))).append("%\n");
+		list.append("     Not cacheable: ............... ").append(_uncached.sum()).append("\n");
+		list.append("     Invalidations: ............... ").append(Creature.getStatsInvalidationCount()).append("\n");
+		return list;
+	}
 }
\ No newline at end of file
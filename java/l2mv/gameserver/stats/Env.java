@@ -6,6 +6,25 @@ import l2mv.gameserver.model.items.ItemInstance;
 
 public final class Env
 {
+	/**
+	 * Env, повторно используемые потоком при расчете характеристик. Расчет может быть вложенным (функция или условие считает другую
+	 * характеристику), поэтому Env берутся со стека и возвращаются в обратном порядке.
+	 */
+	private static final class Stack
+	{
+		Env[] envs = new Env[8];
+		int depth;
+	}
+
+	private static final ThreadLocal<Stack> _stacks = new ThreadLocal<Stack>()
+	{
+		@Override
+		protected Stack initialValue()
+		{
+			return new Stack();
+		}
+	};
+
 	public Creature character;
 	public Creature target;
 	public ItemInstance item;
@@ -22,4 +41,51 @@ public final class Env
 		target = tar;
 		skill = sk;
 	}
+
+	/**
+	 * Берет Env потока. Он должен быть возвращен через {@link #release(Env)} в блоке finally и не должен сохраняться после этого.
+	 */
+	public static Env acquire(Creature cha, Creature tar, Skill sk, double value)
+	{
+		Stack stack = _stacks.get();
+		if (stack.depth == stack.envs.length)
+		{
+			Env[] envs = new Env[stack.envs.length * 2];
+			System.arraycopy(stack.envs, 0, envs, 0, stack.envs.length);
+			stack.envs = envs;
+		}
+
+		Env env = stack.envs[stack.depth];
+		if (env == null)
+		{
+			env = stack.envs[stack.depth] = new Env();
+		}
+		stack.depth++;
+
+		env.character = cha;
+		env.target = tar;
+		env.item = null;
+		env.skill = sk;
+		env.value = value;
+		return env;
+	}
+
+	/**
+	 * Возвращает Env, взятый последним через {@link #acquire(Creature, Creature, Skill, double)}.
+	 */
+	public static void release(Env env)
+	{
+		Stack stack = _stacks.get();
+		if (stack.depth == 0 || stack.envs[stack.depth - 1] != env)
+		{
+			throw new IllegalStateException("Env released out of order");
+		}
+		stack.depth--;
+
+		// Do not keep creatures reachable from the thread
+		env.character = null;
+		env.target = null;
+		env.item = null;
+		env.skill = null;
+	}
 }
@@ -162,8 +162,16 @@ public class Formulas
 			final SkillTrait trait = skill.getTraitType();
 			if (trait != null)
 			{
-				final Env env = new Env(attacker, target, skill);
-				double traitMul = 1. + (trait.calcProf(env) - trait.calcVuln(env)) / 100.;
+				final Env env = Env.acquire(attacker, target, skill, 0.);
+				double traitMul;
+				try
+				{
+					traitMul = 1. + (trait.calcProf(env) - trait.calcVuln(env)) / 100.;
+				}
+				finally
+				{
+					Env.release(env);
+				}
 				if (traitMul == Double.NEGATIVE_INFINITY) // invul
 				{
 					info.damage = 0;
@@ -619,8 +627,16 @@ public class Formulas
 		final SkillTrait trait = skill.getTraitType();
 		if (trait != null)
 		{
-			final Env env = new Env(attacker, target, skill);
-			double traitMul = 1. + (trait.calcProf(env) - trait.calcVuln(env)) / 100.;
+			final Env env = Env.acquire(attacker, target, skill, 0.);
+			double traitMul;
+			try
+			{
+				traitMul = 1. + (trait.calcProf(env) - trait.calcVuln(env)) / 100.;
+			}
+			finally
+			{
+				Env.release(env);
+			}
 			if (traitMul == Double.NEGATIVE_INFINITY)
 			{ // invul
 				return 0;
@@ -609,6 +609,13 @@ public class StatFunctions
 
 			env.value *= BaseStats.CON.calcBonus(env.character) * cpSSmod;
 		}
+
+		// Depends on the Seven Signs period
+		@Override
+		public boolean isCacheable()
+		{
+			return false;
+		}
 	}
 
 	private static class FuncMaxMpAdd extends Func
@@ -684,6 +691,13 @@ public class StatFunctions
 
 			env.value = Formulas.calcDamageResists(env.skill, env.character, env.target, env.value);
 		}
+
+		// Depends on the target
+		@Override
+		public boolean isCacheable()
+		{
+			return false;
+		}
 	}
 
 	private static class FuncMDamageResists extends Func
@@ -705,6 +719,13 @@ public class StatFunctions
 			}
 			env.value = Formulas.calcDamageResists(env.skill, env.character, env.target, env.value);
 		}
+
+		// Depends on the target
+		@Override
+		public boolean isCacheable()
+		{
+			return false;
+		}
 	}
 
 	private static class FuncInventory extends Func
@@ -735,6 +756,13 @@ public class StatFunctions
 			env.value += player.getExpandInventory();
 			env.value = Math.min(env.value, Config.SERVICES_EXPAND_INVENTORY_MAX);
 		}
+
+		// Depends on bought expansions and access level
+		@Override
+		public boolean isCacheable()
+		{
+			return false;
+		}
 	}
 
 	private static class FuncWarehouse extends Func
@@ -760,6 +788,13 @@ public class StatFunctions
 			}
 			env.value += player.getExpandWarehouse();
 		}
+
+		// Depends on bought expansions and access level
+		@Override
+		public boolean isCacheable()
+		{
+			return false;
+		}
 	}
 
 	private static class FuncTradeLimit extends Func
@@ -784,6 +819,13 @@ public class StatFunctions
 				env.value = Config.MAX_PVTSTORE_SLOTS_OTHER;
 			}
 		}
+
+		// Depends on bought expansions and access level
+		@Override
+		public boolean isCacheable()
+		{
+			return false;
+		}
 	}
 
 	private static class FuncSDefInit extends Func
@@ -841,6 +883,13 @@ public class StatFunctions
 				}
 			}
 		}
+
+		// Depends on the target
+		@Override
+		public boolean isCacheable()
+		{
+			return false;
+		}
 	}
 
 	private static class FuncSDefPlayers extends Func
@@ -1211,6 +1260,13 @@ public class StatFunctions
 				env.value = env.character.getPlayer().calcStat(stat, 0., env.target, env.skill);
 			}
 		}
+
+		// Depends on the stats of the owner
+		@Override
+		public boolean isCacheable()
+		{
+			return false;
+		}
 	}
 
 	private static class FuncAttributeDefenceSet extends Func
@@ -1243,6 +1299,13 @@ public class StatFunctions
 				env.value = env.character.getPlayer().calcStat(stat, 0., env.target, env.skill);
 			}
 		}
+
+		// Depends on the stats of the owner
+		@Override
+		public boolean isCacheable()
+		{
+			return false;
+		}
 	}
 
 	public static void addPredefinedFuncs(Creature cha)
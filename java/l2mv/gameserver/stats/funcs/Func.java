@@ -41,6 +41,16 @@ public abstract class Func implements Comparable<Func>
 
 	public abstract void calc(Env env);
 
+	/**
+	 * Можно ли кэшировать результат калькулятора с этой функцией без цели и скилла.
+	 * Функция должна зависеть только от env.value, уровня персонажа, других его характеристик и экипировки. Функции с условием
+	 * не кэшируются никогда.
+	 */
+	public boolean isCacheable()
+	{
+		return true;
+	}
+
 	@Override
 	public int compareTo(Func f) throws NullPointerException
 	{
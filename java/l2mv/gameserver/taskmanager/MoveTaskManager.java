@@ -0,0 +1,133 @@
+package l2mv.gameserver.taskmanager;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import l2mv.commons.threading.RunnableImpl;
+import l2mv.commons.util.Rnd;
+import l2mv.gameserver.Config;
+import l2mv.gameserver.ThreadPoolManager;
+import l2mv.gameserver.model.Creature;
+import l2mv.gameserver.model.World;
+
+/**
+ * Двигает всех перемещающихся персонажей пакетно, вместо отдельной задачи на каждый шаг каждого персонажа.
+ * <p>
+ * Персонажи распределяются по шардам по региону, в котором они начали движение. Каждый шард тикает с фиксированной частотой
+ * в общем пуле потоков, продвигает тех, кому пора сделать шаг, и затем одним проходом обновляет их регионы в мире. Шаг в другой
+ * регион меняет регион сразу, чтобы зоны нового региона проверялись на том же шаге.
+ */
+public class MoveTaskManager
+{
+	private static final MoveTaskManager _instance = new MoveTaskManager();
+
+	public static final MoveTaskManager getInstance()
+	{
+		return _instance;
+	}
+
+	private final MoveShard[] _shards;
+
+	private MoveTaskManager()
+	{
+		_shards = new MoveShard[Math.max(1, Config.MOVE_TASK_MANAGER_COUNT)];
+		for (int i = 0; i < _shards.length; i++)
+		{
+			_shards[i] = new MoveShard();
+			ThreadPoolManager.getInstance().scheduleAtFixedRate(_shards[i], Rnd.get(Config.MOVE_TASK_TICK), Config.MOVE_TASK_TICK);
+		}
+	}
+
+	/**
+	 * Добавляет персонажа в шард его региона. Персонаж остается в шарде, пока не перестанет двигаться.
+	 */
+	public void add(Creature creature)
+	{
+		int regionX = creature.getX() >> World.SHIFT_BY;
+		int regionY = creature.getY() >> World.SHIFT_BY;
+		_shards[Math.abs(regionX * 31 + regionY) % _shards.length].add(creature);
+	}
+
+	public int getMovingCount()
+	{
+		int count = 0;
+		for (MoveShard shard : _shards)
+		{
+			count += shard._size;
+		}
+		return count;
+	}
+
+	private static class MoveShard extends RunnableImpl
+	{
+		/** Начавшие движение с прошлого тика */
+		private final Queue<Creature> _added = new ConcurrentLinkedQueue<Creature>();
+		/** Двигающиеся персонажи, используется только потоком тика */
+		private Creature[] _movers = new Creature[64];
+		private volatile int _size;
+		/** Сделавшие шаг на текущем тике, их регионы обновляются в конце тика */
+		private Creature[] _moved = new Creature[64];
+
+		void add(Creature creature)
+		{
+			_added.add(creature);
+		}
+
+		@Override
+		public void runImpl()
+		{
+			Creature[] movers = _movers;
+			int size = _size;
+
+			Creature creature;
+			while ((creature = _added.poll()) != null)
+			{
+				if (size == movers.length)
+				{
+					Creature[] resized = new Creature[size * 2];
+					System.arraycopy(movers, 0, resized, 0, size);
+					_movers = movers = resized;
+				}
+				movers[size++] = creature;
+			}
+
+			if (size == 0)
+			{
+				return;
+			}
+
+			if (_moved.length < size)
+			{
+				_moved = new Creature[movers.length];
+			}
+			Creature[] moved = _moved;
+			int movedCount = 0;
+
+			long now = System.currentTimeMillis();
+			for (int i = 0; i < size; i++)
+			{
+				creature = movers[i];
+				if (creature.isMoving() && now < creature.getNextMoveTime())
+				{
+					continue;
+				}
+
+				if (!creature.updateMove(now))
+				{
+					movers[i--] = movers[--size];
+					movers[size] = null;
+					continue;
+				}
+
+				moved[movedCount++] = creature;
+			}
+			_size = size;
+
+			for (int i = 0; i < movedCount; i++)
+			{
+				World.addVisibleObject(moved[i], null);
+				moved[i] = null;
+			}
+		}
+	}
+}
@@ -7,6 +7,7 @@ import java.util.List;
 
 import l2mv.gameserver.data.xml.holder.InstantZoneHolder;
 import l2mv.gameserver.instancemanager.ReflectionManager;
+import l2mv.gameserver.instancemanager.ReflectionPool;
 import l2mv.gameserver.model.CommandChannel;
 import l2mv.gameserver.model.Party;
 import l2mv.gameserver.model.Player;
@@ -51,7 +52,7 @@ public class ReflectionUtils
 	public static Reflection enterReflection(Player invoker, int instancedZoneId)
 	{
 		final InstantZone iz = InstantZoneHolder.getInstance().getInstantZone(instancedZoneId);
-		return enterReflection(invoker, new Reflection(), iz);
+		return enterReflection(invoker, ReflectionPool.getInstance().acquire(iz), iz);
 	}
 
 	public static Reflection enterReflection(Player invoker, Reflection r, int instancedZoneId)
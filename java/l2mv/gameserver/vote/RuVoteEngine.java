@@ -211,6 +211,10 @@ public class RuVoteEngine extends RunnableImpl
 		{
 			return;
 		}
+
+		// The rows are changed directly, queued writes of them must not overwrite the change
+		ItemsDAO.getInstance().flush();
+
 		try (Connection con = DatabaseFactory.getInstance().getConnection(); PreparedStatement statement = con.prepareStatement("SELECT object_id FROM items WHERE item_id=? AND owner_id=? AND loc='INVENTORY'"))
 		{
 			for (Map.Entry<Integer, List<VoteRewardEntry>> playerReward : rewardsByPlayerId.entrySet())
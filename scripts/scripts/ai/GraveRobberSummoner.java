@@ -38,6 +38,13 @@ public class GraveRobberSummoner extends Mystic
 		{
 			env.value *= _lastMinionCount;
 		}
+
+		// Depends on the number of minions
+		@Override
+		public boolean isCacheable()
+		{
+			return false;
+		}
 	}
 
 	public GraveRobberSummoner(NpcInstance actor)
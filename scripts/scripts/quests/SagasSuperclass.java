@@ -15,6 +15,7 @@ import l2mv.gameserver.Config;
 import l2mv.gameserver.ThreadPoolManager;
 import l2mv.gameserver.ai.CtrlEvent;
 import l2mv.gameserver.ai.CtrlIntention;
+import l2mv.gameserver.dao.QuestStoreQueue;
 import l2mv.gameserver.data.xml.holder.NpcHolder;
 import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.model.Creature;
@@ -290,6 +291,8 @@ public abstract class SagasSuperclass extends Quest
 		PreparedStatement st = null;
 		try
 		{
+			// Отложенные записи этих переменных не должны вернуть строки после удаления
+			QuestStoreQueue.getInstance().flush();
 			con = DatabaseFactory.getInstance().getConnection();
 			st = con.prepareStatement("DELETE FROM character_quests WHERE name=? AND (var='spawned' OR var='kills' OR var='Archon' OR var LIKE 'Mob_%')");
 			st.setString(1, getName());
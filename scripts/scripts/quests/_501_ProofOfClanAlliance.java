@@ -8,12 +8,15 @@ import java.util.List;
 
 import l2mv.commons.dbutils.DbUtils;
 import l2mv.commons.util.Rnd;
+import l2mv.gameserver.dao.CharacterStoreQueue;
+import l2mv.gameserver.dao.QuestStoreQueue;
 import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.model.Creature;
 import l2mv.gameserver.model.GameObjectsStorage;
 import l2mv.gameserver.model.Player;
 import l2mv.gameserver.model.instances.NpcInstance;
 import l2mv.gameserver.model.pledge.Clan;
+import l2mv.gameserver.model.pledge.UnitMember;
 import l2mv.gameserver.model.quest.Quest;
 import l2mv.gameserver.model.quest.QuestState;
 import l2mv.gameserver.scripts.Functions;
@@ -139,6 +142,12 @@ public class _501_ProofOfClanAlliance extends Quest implements ScriptFile
 		PreparedStatement offline = null;
 		try
 		{
+			QuestStoreQueue.getInstance().flush();
+			// Отложенное сохранение только что вышедших участников должно попасть в базу до выборки по online
+			for (UnitMember member : st.getPlayer().getClan().getAllMembers())
+			{
+				CharacterStoreQueue.getInstance().flush(member.getObjectId());
+			}
 			con = DatabaseFactory.getInstance().getConnection();
 			offline = con.prepareStatement("DELETE FROM character_quests WHERE name = ? AND char_id IN (SELECT obj_id FROM characters WHERE clanId = ? AND online = 0)");
 			offline.setString(1, getName());
@@ -8,11 +8,14 @@ import java.util.List;
 import l2mv.commons.dbutils.DbUtils;
 import l2mv.commons.util.Rnd;
 import l2mv.gameserver.Config;
+import l2mv.gameserver.dao.CharacterStoreQueue;
+import l2mv.gameserver.dao.QuestStoreQueue;
 import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.model.Player;
 import l2mv.gameserver.model.World;
 import l2mv.gameserver.model.instances.NpcInstance;
 import l2mv.gameserver.model.pledge.Clan;
+import l2mv.gameserver.model.pledge.UnitMember;
 import l2mv.gameserver.model.quest.Quest;
 import l2mv.gameserver.model.quest.QuestState;
 import l2mv.gameserver.scripts.Functions;
@@ -137,6 +140,12 @@ public class _503_PursuitClanAmbition extends Quest implements ScriptFile
 		ResultSet rs = null;
 		try
 		{
+			QuestStoreQueue.getInstance().flush();
+			// Отложенное сохранение только что вышедших участников должно попасть в базу до выборки по online
+			for (UnitMember member : st.getPlayer().getClan().getAllMembers())
+			{
+				CharacterStoreQueue.getInstance().flush(member.getObjectId());
+			}
 			con = DatabaseFactory.getInstance().getConnection();
 			offline = con.prepareStatement("SELECT obj_Id FROM characters WHERE clanid=? AND online=0");
 			insertion = con.prepareStatement("REPLACE INTO character_quests (char_id,name,var,value) VALUES (?,?,?,?)");
@@ -178,6 +187,12 @@ public class _503_PursuitClanAmbition extends Quest implements ScriptFile
 		PreparedStatement offline = null;
 		try
 		{
+			QuestStoreQueue.getInstance().flush();
+			// Отложенное сохранение только что вышедших участников должно попасть в базу до выборки по online
+			for (UnitMember member : st.getPlayer().getClan().getAllMembers())
+			{
+				CharacterStoreQueue.getInstance().flush(member.getObjectId());
+			}
 			con = DatabaseFactory.getInstance().getConnection();
 			offline = con.prepareStatement("DELETE FROM character_quests WHERE name=? AND char_id IN (SELECT obj_id FROM characters WHERE clanId=? AND online=0)");
 			offline.setString(1, getName());
@@ -247,6 +262,7 @@ public class _503_PursuitClanAmbition extends Quest implements ScriptFile
 		ResultSet rs = null;
 		try
 		{
+			QuestStoreQueue.getInstance().flush();
 			con = DatabaseFactory.getInstance().getConnection();
 			offline = con.prepareStatement("SELECT value FROM character_quests WHERE char_id=? AND var=? AND name=?");
 			offline.setInt(1, leaderId);
@@ -313,6 +329,7 @@ public class _503_PursuitClanAmbition extends Quest implements ScriptFile
 			PreparedStatement offline = null;
 			try
 			{
+				QuestStoreQueue.getInstance().flush();
 				con = DatabaseFactory.getInstance().getConnection();
 				offline = con.prepareStatement("UPDATE character_quests SET value=? WHERE char_id=? AND var=? AND name=?");
 				offline.setString(1, value);
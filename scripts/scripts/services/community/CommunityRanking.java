@@ -1,11 +1,7 @@
 package services.community;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
@@ -19,10 +15,12 @@ import org.slf4j.LoggerFactory;
 import l2mv.gameserver.Config;
 import l2mv.gameserver.ThreadPoolManager;
 import l2mv.gameserver.data.htm.HtmCache;
-import l2mv.gameserver.database.DatabaseFactory;
 import l2mv.gameserver.handler.bbs.CommunityBoardManager;
 import l2mv.gameserver.handler.bbs.ICommunityBoardHandler;
 import l2mv.gameserver.idfactory.IdFactory;
+import l2mv.gameserver.instancemanager.LeaderboardManager;
+import l2mv.gameserver.instancemanager.LeaderboardManager.Entry;
+import l2mv.gameserver.instancemanager.LeaderboardManager.Metric;
 import l2mv.gameserver.instancemanager.ServerVariables;
 import l2mv.gameserver.model.Player;
 import l2mv.gameserver.model.World;
@@ -30,12 +28,10 @@ import l2mv.gameserver.model.base.ClassId;
 import l2mv.gameserver.model.items.ItemInstance;
 import l2mv.gameserver.model.items.ItemInstance.ItemLocation;
 import l2mv.gameserver.model.mail.Mail;
-import l2mv.gameserver.model.pledge.Clan;
 import l2mv.gameserver.network.serverpackets.ExNoticePostArrived;
 import l2mv.gameserver.network.serverpackets.ShowBoard;
 import l2mv.gameserver.network.serverpackets.components.SystemMsg;
 import l2mv.gameserver.scripts.ScriptFile;
-import l2mv.gameserver.tables.ClanTable;
 import l2mv.gameserver.utils.Util;
 
 /**
@@ -51,9 +47,9 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 
 	private static final boolean USE_TALES_DESIGN = true;
 
-	private final int TIME_UPDATE = 60 * 60 * 1000;
+	private final int TIME_UPDATE = 5 * 60 * 1000;
 
-	private final Map<RankingEnum, List<RankingStats>> _stats = new ConcurrentHashMap<>();
+	private final Map<RankingEnum, List<Entry>> _stats = new ConcurrentHashMap<>();
 	private long _lastUpdate = System.currentTimeMillis();
 	private volatile boolean _isLoading = false;
 	private Future<?> _reloadThread;
@@ -65,18 +61,18 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 
 	private static enum RankingEnum
 	{
-		PVP("PvP", "pk", "pvpkills", RankingType.NORMAL), PK("PK", "pvp", "pkkills", RankingType.NORMAL), RAID("Raid Kills", "rk", "raidkills", RankingType.NORMAL), EVENT("Event Kills", "event", "eventKills", RankingType.NORMAL), SIEGE("Siege Kills", "siege", "siege_kills", RankingType.NORMAL), OLY("Olympiad Wins", "oly", "oly_wins", RankingType.NORMAL), ADENA("Adena", "adena", "adena", RankingType.SPECIAL);
+		PVP("PvP", "pk", Metric.PVP, RankingType.NORMAL), PK("PK", "pvp", Metric.PK, RankingType.NORMAL), RAID("Raid Kills", "rk", Metric.RAID_KILLS, RankingType.NORMAL), EVENT("Event Kills", "event", Metric.EVENT_KILLS, RankingType.NORMAL), SIEGE("Siege Kills", "siege", Metric.SIEGE_KILLS, RankingType.NORMAL), OLY("Olympiad Wins", "oly", Metric.OLY_WINS, RankingType.NORMAL), ADENA("Adena", "adena", Metric.ADENA, RankingType.SPECIAL);
 
 		private final String _name;
 		private final String _bypass;
-		private final String _dbName;
+		private final Metric _metric;
 		private final RankingType _rankingType;
 
-		private RankingEnum(String name, String bypass, String dbName, RankingType rankingType)
+		private RankingEnum(String name, String bypass, Metric metric, RankingType rankingType)
 		{
 			_name = name;
 			_bypass = bypass;
-			_dbName = dbName;
+			_metric = metric;
 			_rankingType = rankingType;
 		}
 
@@ -90,9 +86,9 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 			return _bypass;
 		}
 
-		public String getDbName()
+		public Metric getMetric()
 		{
-			return _dbName;
+			return _metric;
 		}
 
 		public RankingType getRankingType()
@@ -124,11 +120,7 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 			loadRankings();
 
 			// Create a thread to reload the rankings every xxx time
-			_reloadThread = ThreadPoolManager.getInstance().scheduleAtFixedRate(() ->
-			{
-				loadRankings();
-				_log.info("Ranking in the community board has been updated.");
-			}, TIME_UPDATE, TIME_UPDATE);
+			_reloadThread = ThreadPoolManager.getInstance().scheduleAtFixedRate(() -> loadRankings(), TIME_UPDATE, TIME_UPDATE);
 		}
 	}
 
@@ -209,7 +201,7 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 			return;
 		}
 
-		final List<RankingStats> stats = _stats.get(type);
+		final List<Entry> stats = _stats.get(type);
 
 		String html = HtmCache.getInstance().getNotNull(Config.BBS_HOME_DIR + "ranking/" + (type.getRankingType() == RankingType.REWARDS ? "rank_rewards" : (type.getRankingType() == RankingType.NORMAL ? "rank_normal" : "rank_special") + ".htm"), player);
 
@@ -219,8 +211,8 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 		{
 			if (stats.size() > index)
 			{
-				final RankingStats playerStats = stats.get(index);
-				html = html.replace("<?top3_name_" + index + "?>", playerStats.getPlayerName());
+				final Entry playerStats = stats.get(index);
+				html = html.replace("<?top3_name_" + index + "?>", playerStats.getName());
 				html = html.replace("<?top3_clan_" + index + "?>", playerStats.getClanName() == null ? "<font color=B59A75>No Clan</font>" : playerStats.getClanName());
 				html = html.replace("<?top3_class_" + index + "?>", Util.getFullClassName(playerStats.getClassId()));
 				html = html.replace("<?top3_count_" + index + "?>", String.valueOf(playerStats.getValue()));
@@ -242,8 +234,8 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 		{
 			if (stats.size() > index)
 			{
-				final RankingStats playerStats = stats.get(index);
-				html = html.replace("<?top10_name_" + index + "?>", playerStats.getPlayerName());
+				final Entry playerStats = stats.get(index);
+				html = html.replace("<?top10_name_" + index + "?>", playerStats.getName());
 				html = html.replace("<?top10_clan_" + index + "?>", playerStats.getClanName() == null ? "<font color=B59A75>No Clan</font>" : playerStats.getClanName());
 				html = html.replace("<?top10_class_" + index + "?>", Util.getFullClassName(playerStats.getClassId()));
 				html = html.replace("<?top10_count_" + index + "?>", String.valueOf(playerStats.getValue()));
@@ -261,9 +253,9 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 
 		// Top 10 Current Position. We try to put the player in the middle of the top 10 for his current position
 		index = 0;
-		for (RankingStats playerStats : stats)
+		for (Entry playerStats : stats)
 		{
-			if (player.getObjectId() == playerStats.getPlayerId())
+			if (player.getObjectId() == playerStats.getObjectId())
 			{
 				break;
 			}
@@ -281,19 +273,19 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 
 			if (stats.size() > i)
 			{
-				final RankingStats playerStats = stats.get(i);
+				final Entry playerStats = stats.get(i);
 
 				// The current index for the player should be in another color
 				if (i == currentIndex)
 				{
-					html = html.replace("<?current_name_" + index + "?>", "<font color=LEVEL>" + playerStats.getPlayerName() + "</font>");
+					html = html.replace("<?current_name_" + index + "?>", "<font color=LEVEL>" + playerStats.getName() + "</font>");
 					html = html.replace("<?current_clan_" + index + "?>", playerStats.getClanName() == null ? "<font color=B59A75>No Clan</font>" : "<font color=LEVEL>" + playerStats.getClanName() + "</font>");
 					html = html.replace("<?current_class_" + index + "?>", "<font color=LEVEL>" + Util.getFullClassName(playerStats.getClassId()) + "</font>");
 					html = html.replace("<?current_count_" + index + "?>", "<font color=LEVEL>" + String.valueOf((type == RankingEnum.ADENA ? Util.convertToLineagePriceFormat(playerStats.getValue()) : playerStats.getValue())) + "</font>");
 				}
 				else
 				{
-					html = html.replace("<?current_name_" + index + "?>", playerStats.getPlayerName());
+					html = html.replace("<?current_name_" + index + "?>", playerStats.getName());
 					html = html.replace("<?current_clan_" + index + "?>", playerStats.getClanName() == null ? "<font color=B59A75>No Clan</font>" : playerStats.getClanName());
 					html = html.replace("<?current_class_" + index + "?>", Util.getFullClassName(playerStats.getClassId()));
 					html = html.replace("<?current_count_" + index + "?>", String.valueOf(playerStats.getValue()));
@@ -324,7 +316,7 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 	private void showTalesRanking(Player player, RankingEnum type, int page)
 	{
 		player.sendMessage("Page: " + page);
-		final List<RankingStats> stats = _stats.get(type);
+		final List<Entry> stats = _stats.get(type);
 
 		String html = HtmCache.getInstance().getNotNull(Config.BBS_HOME_DIR + "ranking/rank_tales.htm", player);
 
@@ -334,8 +326,8 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 		{
 			if (stats.size() > index)
 			{
-				final RankingStats playerStats = stats.get(index);
-				sb.append("<table width=540 height=25 bgcolor=" + (playerStats.getPlayerId() == player.getObjectId() ? "3a0000" : (index % 2 == 0 ? "00080b" : "011118")) + ">");
+				final Entry playerStats = stats.get(index);
+				sb.append("<table width=540 height=25 bgcolor=" + (playerStats.getObjectId() == player.getObjectId() ? "3a0000" : (index % 2 == 0 ? "00080b" : "011118")) + ">");
 				sb.append("<tr>");
 				sb.append("<td align=center>");
 				sb.append("<table>");
@@ -359,7 +351,7 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 					sb.append("<font color=989da0>");
 					break;
 				}
-				sb.append(playerStats.getPlayerName());
+				sb.append(playerStats.getName());
 				sb.append("</font>");
 				sb.append("</td>");
 				sb.append("<td width=100 align=center valign=top>");
@@ -454,58 +446,15 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 	{
 		_isLoading = true;
 
-		// Put all the ranking types with a clean list
+		// The rankings are kept by the leaderboards, here we only take their current state
 		for (RankingEnum type : RankingEnum.values())
 		{
-			_stats.put(type, new ArrayList<RankingStats>());
+			_stats.put(type, LeaderboardManager.getInstance().getTop(type.getMetric()));
 		}
 
 		// Last update
 		_lastUpdate = System.currentTimeMillis();
 
-		// TODO: Limite de 10 quitado para poder tener la posicion de todos los jugadores. Si esto se convierte en un problema de rendimiento volver a agregar y quitar la posicion
-		// Load rankings from db
-		try (Connection con = DatabaseFactory.getInstance().getConnection())
-		{
-			for (RankingEnum type : RankingEnum.values())
-			{
-				if (type == RankingEnum.ADENA)
-				{
-					try (PreparedStatement statement = con.prepareStatement("SELECT obj_Id,char_name,class_id,clanid,it.count FROM characters AS c LEFT JOIN character_subclasses AS cs ON (c.obj_Id=cs.char_obj_id) JOIN items AS it ON (c.obj_Id=it.owner_id) WHERE cs.isBase=1 AND it.item_id=57 AND accesslevel = 0 ORDER BY it.count DESC"); ResultSet rset = statement.executeQuery())
-					{
-						while (rset.next())
-						{
-							if (rset.getString("char_name").isEmpty())
-							{
-								continue;
-							}
-
-							_stats.get(type).add(new RankingStats(rset.getInt("obj_Id"), rset.getString("char_name"), rset.getInt("clanid"), rset.getInt("class_id"), rset.getLong("count")));
-						}
-					}
-				}
-				else
-				{
-					try (PreparedStatement statement = con.prepareStatement("SELECT obj_Id,char_name,class_id,clanid," + type.getDbName() + " FROM characters AS c LEFT JOIN character_subclasses AS cs ON (c.obj_Id=cs.char_obj_id) WHERE cs.isBase=1 AND accesslevel = 0 AND " + type.getDbName() + " > 0 ORDER BY " + type.getDbName() + " DESC"); ResultSet rset = statement.executeQuery())
-					{
-						while (rset.next())
-						{
-							if (rset.getString("char_name").isEmpty())
-							{
-								continue;
-							}
-
-							_stats.get(type).add(new RankingStats(rset.getInt("obj_Id"), rset.getString("char_name"), rset.getInt("clanid"), rset.getInt("class_id"), rset.getLong(type.getDbName())));
-						}
-					}
-				}
-			}
-		}
-		catch (Exception e)
-		{
-			e.printStackTrace();
-		}
-
 		// Now we check for the rankings that must have rewards, so we can reward the top 3 chars. If a week has passed from the last rewards given, then we give the new reward for this
 		// week
 		if (RankingEnum.hasRankWithRewards())
@@ -526,14 +475,14 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 						// The reward goes to the top 3 chars
 						for (int i = 0; i < Math.min(3, _stats.get(type).size()); i++)
 						{
-							final RankingStats stat = _stats.get(type).get(i);
+							final Entry stat = _stats.get(type).get(i);
 
 							// We send the mail with the corresponding prize to the characters in the top 3 of the rewarding categories
 							final Mail mail = new Mail();
 							mail.setSenderId(0);
 							mail.setSenderName("Server Ranking Top 3 Reward");
-							mail.setReceiverId(stat.getPlayerId());
-							mail.setReceiverName(stat.getPlayerName());
+							mail.setReceiverId(stat.getObjectId());
+							mail.setReceiverName(stat.getName());
 							mail.setTopic("Server Ranking Top 3 Reward");
 							mail.setBody("This week prize for the Ranking Top 3 goes to you\nIn the category " + type.getName() + " you ended up in the " + (i + 1) + " position\nCongratulations");
 							mail.setPrice(0);
@@ -542,12 +491,12 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 							mail.setExpireTime(0);
 							final ItemInstance newItem = new ItemInstance(IdFactory.getInstance().getNextId(), Config.SERVER_RANKING_REWARD_ITEM_ID);
 							newItem.setCount(Config.SERVER_RANKING_REWARD_ITEM_COUNT[i]);
-							newItem.setOwnerId(stat.getPlayerId());
+							newItem.setOwnerId(stat.getObjectId());
 							newItem.setLocation(ItemLocation.MAIL);
 							mail.addAttachment(newItem);
 							mail.save();
 
-							final Player target = World.getPlayer(stat.getPlayerId());
+							final Player target = World.getPlayer(stat.getObjectId());
 							if (target != null)
 							{
 								target.sendPacket(ExNoticePostArrived.STATIC_TRUE);
@@ -579,49 +528,4 @@ public class CommunityRanking implements ScriptFile, ICommunityBoardHandler
 	public void onWriteCommand(Player player, String bypass, String arg1, String arg2, String arg3, String arg4, String arg5)
 	{
 	}
-
-	private static class RankingStats
-	{
-		private final int _playerId;
-		private final String _playerName;
-		private final String _clanName;
-		private final int _classId;
-		private final long _value;
-
-		public RankingStats(int playerId, String playerName, int clanId, int classId, long value)
-		{
-			_playerId = playerId;
-			_playerName = playerName;
-			_classId = classId;
-			_value = value;
-
-			final Clan clan = (clanId == 0 ? null : ClanTable.getInstance().getClan(clanId));
-			_clanName = (clan == null ? null : clan.getName());
-		}
-
-		public int getPlayerId()
-		{
-			return _playerId;
-		}
-
-		public String getPlayerName()
-		{
-			return _playerName;
-		}
-
-		public String getClanName()
-		{
-			return _clanName;
-		}
-
-		public int getClassId()
-		{
-			return _classId;
-		}
-
-		public long getValue()
-		{
-			return _value;
-		}
-	}
 }